@@ -0,0 +1,114 @@
+/*
+ * CircuitBenchmark.java - JMH benchmarks of the execution of a quantum circuit
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ */
+package org.mathIT.quantum;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * This class measures the average time of the execution of a random 
+ * {@link Circuit} consisting of layers of single-qubit gates and c-NOT gates,
+ * followed by a quantum Fourier transform, a Grover operator, and a measurement
+ * of all qubits. The circuit is executed both entirely, i.e., with gate fusion,
+ * and step by step with the default checkpoints. The benchmark is started as described in the file
+ * <code>benchmarks/jmh/README.md</code>.
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CircuitBenchmark {
+   /** The number of layers of the random circuit. */
+   private static final int LAYERS = 20;
+
+   /** The number of qubits of the circuit. */
+   @Param({"8", "12", "16"})
+   public int qubits;
+
+   /** The circuit. */
+   private Circuit circuit;
+
+   /** Creates the random circuit.
+    *  @throws NoWireException if the circuit has no wires
+    */
+   @Setup(Level.Trial)
+   public void setUp() throws NoWireException {
+      Random random = new Random(1);
+      circuit = new Circuit();
+      circuit.initialize(qubits, 0, 0);
+      for (int l = 0; l < LAYERS; l++) {
+         for (int i = 1; i <= qubits; i++) {
+            switch (random.nextInt(5)) {
+               case 0: circuit.addHadamard(i, false); break;
+               case 1: circuit.addTGate(i, false); break;
+               case 2: circuit.addSGate(i, false); break;
+               case 3: circuit.addSqrtX(i, false); break;
+               default: circuit.addPauliX(i, false);
+            }
+         }
+         for (int i = 1 + l % 2; i < qubits; i += 2) {
+            circuit.addCNOT(new int[] {i, i + 1}, false);
+         }
+      }
+      circuit.addQFT(false);
+      circuit.addGrover(1);
+      int[] all = new int[qubits];
+      for (int i = 0; i < qubits; i++) {
+         all[i] = i + 1;
+      }
+      circuit.addMeasurement(all, false);
+   }
+
+   /** Executes the entire circuit with gate fusion.
+    *  @return the <i>x</i>-register
+    */
+   @Benchmark
+   public Register execute() {
+      circuit.executeAll();
+      return circuit.getXRegister();
+   }
+
+   /** Executes the circuit step by step without gate fusion.
+    *  @return the <i>x</i>-register
+    */
+   @Benchmark
+   public Register executeStepwise() {
+      circuit.initializeRegisters();
+      while (circuit.getNextGateNumber() < circuit.size()) {
+         circuit.setNextStep();
+      }
+      return circuit.getXRegister();
+   }
+}
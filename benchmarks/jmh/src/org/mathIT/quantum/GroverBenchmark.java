@@ -0,0 +1,97 @@
+/*
+ * GroverBenchmark.java - JMH benchmarks of Grover's search algorithm
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ */
+package org.mathIT.quantum;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * This class measures the average time of a complete Grover search with the 
+ * optimal number {@link Register#groverSteps(int)} of iterations, 
+ * on a register on the heap and on a symbolic register created by
+ * {@link Register#uniform(int)}. The benchmark is started as described in the file
+ * <code>benchmarks/jmh/README.md</code>.
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroverBenchmark {
+   /** The size of a register on the heap. */
+   @State(Scope.Benchmark)
+   public static class Dense {
+      /** The number of qubits of the register. */
+      @Param({"8", "12"})
+      public int qubits;
+   }
+
+   /** The size of a symbolic register. */
+   @State(Scope.Benchmark)
+   public static class Symbolic {
+      /** The number of qubits of the register. */
+      @Param({"20", "40"})
+      public int qubits;
+   }
+
+   /** Grover search on a register on the heap.
+    *  @param size the size of the register
+    *  @return the probability of the needle
+    */
+   @Benchmark
+   public double search(Dense size) {
+      int qubits = size.qubits;
+      int needle = (1 << qubits) - 3;
+      Register register = new Register(qubits);
+      for (int i = 1; i <= qubits; i++) {
+         register.hadamard(i);
+      }
+      for (int k = Register.groverSteps(qubits); k > 0; k--) {
+         register.grover(needle);
+      }
+      return register.probability(-1L >>> (64 - qubits), needle);
+   }
+
+   /** Grover search on a symbolic register.
+    *  @param size the size of the register
+    *  @return the probability of the needle
+    */
+   @Benchmark
+   public double symbolicSearch(Symbolic size) {
+      int qubits = size.qubits;
+      long needle = (1L << qubits) - 3;
+      Register register = Register.uniform(qubits);
+      for (int k = Register.groverSteps(qubits); k > 0; k--) {
+         register.grover(needle);
+      }
+      double[] amplitude = register.getAmplitude(needle);
+      return amplitude[0] * amplitude[0] + amplitude[1] * amplitude[1];
+   }
+}
@@ -0,0 +1,226 @@
+/*
+ * RegisterBenchmark.java - JMH benchmarks of the gates of a quantum register
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ */
+package org.mathIT.quantum;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * This class measures the average time of each gate type of a {@link Register},
+ * of the quantum Fourier transform, of a Grover operator, and of measurements,
+ * for registers of several sizes whose amplitudes are stored either on the heap
+ * or outside the heap. Each gate is applied repeatedly to a register in a
+ * superposition of all basis states with different phases, such that no
+ * amplitude is skipped. The benchmark is started as described in the file
+ * <code>benchmarks/jmh/README.md</code>.
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegisterBenchmark {
+   /** The number of shots of a sampling. */
+   private static final int SHOTS = 1000;
+
+   /** The number of qubits of the register. */
+   @Param({"12", "16", "20"})
+   public int qubits;
+
+   /** The storage of the amplitudes, either "heap" or "offHeap". */
+   @Param({"heap", "offHeap"})
+   public String storage;
+
+   /** The register the gates are applied to. */
+   Register register;
+   /** The lowest, a middle, and the highest qubit. */
+   private int low, middle, high;
+   /** A 2-qubit unitary matrix. */
+   private double[][][] unitary;
+   /** The random number generator of the sampling. */
+   private SplittableRandom random;
+
+   /** Creates the register in a superposition of all basis states. */
+   @Setup(Level.Trial)
+   public void setUp() {
+      register = "offHeap".equals(storage) ? new Register(qubits, true) : new Register(qubits);
+      for (int i = 1; i <= qubits; i++) {
+         register.hadamard(i);
+         register.tGate(i); // break the symmetry of the amplitudes
+      }
+      low = 1;
+      middle = (qubits + 1) / 2;
+      high = qubits;
+      double c = Math.cos(0.3), s = Math.sin(0.3);
+      unitary = new double[][][] {
+         {{c,0}, {0,-s}, {0,0}, {0,0}},
+         {{0,-s}, {c,0}, {0,0}, {0,0}},
+         {{0,0}, {0,0}, {c,0}, {-s,0}},
+         {{0,0}, {0,0}, {s,0}, {c,0}}
+      };
+      random = new SplittableRandom(1);
+   }
+
+   /** Holds a copy of the register which is collapsed by a measurement. */
+   @State(Scope.Thread)
+   public static class Collapsible {
+      /** The copy of the register. */
+      Register register;
+
+      /** Copies the register before each measurement.
+       *  @param benchmark the benchmark holding the register
+       */
+      @Setup(Level.Invocation)
+      public void setUp(RegisterBenchmark benchmark) {
+         register = benchmark.register.copy();
+      }
+   }
+
+   /** Hadamard gate on the middle qubit. */
+   @Benchmark
+   public void hadamard() {
+      register.hadamard(middle);
+   }
+
+   /** Pauli-X gate on the middle qubit. */
+   @Benchmark
+   public void xPauli() {
+      register.xPauli(middle);
+   }
+
+   /** Pauli-Y gate on the middle qubit. */
+   @Benchmark
+   public void yPauli() {
+      register.yPauli(middle);
+   }
+
+   /** Pauli-Z gate on the middle qubit. */
+   @Benchmark
+   public void zPauli() {
+      register.zPauli(middle);
+   }
+
+   /** <i>S</i> gate on the middle qubit. */
+   @Benchmark
+   public void sGate() {
+      register.sGate(middle);
+   }
+
+   /** <i>T</i> gate on the middle qubit. */
+   @Benchmark
+   public void tGate() {
+      register.tGate(middle);
+   }
+
+   /** &#x221A;X gate on the middle qubit. */
+   @Benchmark
+   public void sqrtX() {
+      register.sqrtX(middle);
+   }
+
+   /** Rotation about the <i>y</i>-axis of the middle qubit. */
+   @Benchmark
+   public void rotation() {
+      register.rotate(new int[] {middle}, "y", 0.7);
+   }
+
+   /** Controlled rotation about the <i>z</i>-axis of the highest qubit. */
+   @Benchmark
+   public void controlledRotation() {
+      register.rotate(new int[] {low, high}, "z", 0.7);
+   }
+
+   /** c-NOT gate with the lowest qubit as control and the highest as target. */
+   @Benchmark
+   public void cNOT() {
+      register.cNOT(low, high);
+   }
+
+   /** Toffoli gate with the lowest and the middle qubit as controls. */
+   @Benchmark
+   public void toffoli() {
+      register.toffoli(low, middle, high);
+   }
+
+   /** 2-qubit unitary on the lowest and the highest qubit. */
+   @Benchmark
+   public void apply() {
+      register.apply(unitary, low, high);
+   }
+
+   /** Quantum Fourier transform of the entire register. */
+   @Benchmark
+   public void qft() {
+      register.qftRange(1, qubits);
+   }
+
+   /** Inverse quantum Fourier transform of the entire register. */
+   @Benchmark
+   public void inverseQft() {
+      register.inverseQftRange(1, qubits);
+   }
+
+   /** Grover operator. */
+   @Benchmark
+   public void grover() {
+      register.grover(5);
+   }
+
+   /** Sampling of {@value #SHOTS} shots without collapse.
+    *  @return the histogram of the shots
+    */
+   @Benchmark
+   public TreeMap<Integer, Integer> sample() {
+      return register.sample(SHOTS, random);
+   }
+
+   /** Measurement of the entire register.
+    *  @param state the register to be collapsed
+    *  @return the measured value
+    */
+   @Benchmark
+   public int measure(Collapsible state) {
+      return state.register.measure();
+   }
+
+   /** Measurement of the middle qubit.
+    *  @param state the register to be collapsed
+    *  @return the measured value
+    */
+   @Benchmark
+   public int measureQubit(Collapsible state) {
+      return state.register.measure(middle);
+   }
+}
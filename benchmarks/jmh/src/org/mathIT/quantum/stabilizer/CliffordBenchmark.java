@@ -0,0 +1,134 @@
+/*
+ * CliffordBenchmark.java - JMH benchmarks of random Clifford circuits
+ *
+ * Copyright (C) 2012-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ */
+package org.mathIT.quantum.stabilizer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * This class measures the average time of a random Clifford circuit with
+ * interleaved single-qubit measurements on a stabilizer {@link Register},
+ * represented either as a {@link GraphRegister} or as a {@link TableauRegister},
+ * and directly on a {@link GraphRegister}. 
+ * The gates are drawn uniformly from the Hadamard, <i>S</i>, <i>S</i><sup>-1</sup>,
+ * Pauli, and c-NOT gates, with a measurement at every tenth position.
+ * The benchmark is started as described in the file
+ * <code>benchmarks/jmh/README.md</code>.
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CliffordBenchmark {
+   /** The number of gates of the random circuit. */
+   private static final int GATES = 1000;
+
+   /** The number of qubits of the register. */
+   @Param({"16", "64", "256"})
+   public int qubits;
+
+   /** The gate types, where 9 denotes a measurement. */
+   private int[] gate;
+   /** The first qubit of each gate, 0 &#x2264; <i>v</i> &lt; <i>n</i>. */
+   private int[] v;
+   /** The second qubit of each gate, different from the first one. */
+   private int[] w;
+
+   /** The representation of a stabilizer register. */
+   @State(Scope.Thread)
+   public static class Representation {
+      /** The representation, either "graph" or "tableau". */
+      @Param({"graph", "tableau"})
+      public String name;
+   }
+
+   /** Draws the random circuit. */
+   @Setup(Level.Trial)
+   public void setUp() {
+      Random random = new Random(1);
+      gate = new int[GATES];
+      v = new int[GATES];
+      w = new int[GATES];
+      for (int g = 0; g < GATES; g++) {
+         gate[g] = g % 10 == 9 ? 9 : random.nextInt(9);
+         v[g] = random.nextInt(qubits);
+         w[g] = (v[g] + 1 + random.nextInt(qubits - 1)) % qubits;
+      }
+   }
+
+   /** Executes the circuit on a stabilizer register of the specified representation.
+    *  @param representation the representation of the register
+    *  @return the register after the circuit
+    */
+   @Benchmark
+   public Register register(Representation representation) {
+      Register register = "tableau".equals(representation.name) ? Register.tableau(qubits) : new Register(qubits);
+      for (int g = 0; g < GATES; g++) {
+         int j = v[g] + 1, k = w[g] + 1; // the qubits of a register are numbered from 1
+         switch (gate[g]) {
+            case 0: register.hadamard(j); break;
+            case 1: register.sGate(j); break;
+            case 2: register.inverseSGate(j); break;
+            case 3: register.xPauli(j); break;
+            case 4: register.yPauli(j); break;
+            case 5: register.zPauli(j); break;
+            case 9: register.measure(j); break;
+            default: register.cNOT(j, k);
+         }
+      }
+      return register;
+   }
+
+   /** Executes the circuit directly on a graph register.
+    *  @return the graph register after the circuit
+    */
+   @Benchmark
+   public GraphRegister graphRegister() {
+      GraphRegister register = new GraphRegister(qubits);
+      for (int g = 0; g < GATES; g++) {
+         switch (gate[g]) {
+            case 0: register.hadamard(v[g]); break;
+            case 1: register.sGate(v[g]); break;
+            case 2: register.inverseSGate(v[g]); break;
+            case 3: register.xPauli(v[g]); break;
+            case 4: register.yPauli(v[g]); break;
+            case 5: register.zPauli(v[g]); break;
+            case 9: register.measure(v[g]); break;
+            default: register.cNOT(v[g], w[g]);
+         }
+      }
+      return register;
+   }
+}
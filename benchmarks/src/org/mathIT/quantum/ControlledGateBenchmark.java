@@ -0,0 +1,189 @@
+/*
+ * ControlledGateBenchmark.java - Benchmark of the controlled gates of a quantum register
+ *
+ * Copyright (C) 2004-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ */
+package org.mathIT.quantum;
+import java.util.Arrays;
+import java.util.HashSet;
+/**
+ * This class compares the bit-mask implementation of the c-NOT and the Toffoli
+ * gate of {@link Register} with the former implementation collecting the
+ * exchanged indices in a <code>HashSet</code>.
+ * It is started by
+ * <pre>
+ *   java -cp mathIT.jar:benchmarks org.mathIT.quantum.ControlledGateBenchmark [nMin [nMax]]
+ * </pre>
+ * where <code>nMin</code> and <code>nMax</code> (default: 20 and 22) denote the
+ * range of the register sizes. For each size, the average time per gate is printed
+ * for the former implementation, the current one on a single thread, and the
+ * current one with parallel execution.
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+public class ControlledGateBenchmark {
+   /** Number of gates applied for each measured value. */
+   private static final int GATES = 10;
+
+   // Suppresses default constructor, ensuring non-instantiability.
+   private ControlledGateBenchmark() {
+   }
+
+   /** The former c-NOT implementation of {@link Register#cNOT(int,int)}.*/
+   private static void hashSetCNOT(double[] real, double[] imaginary, int size, int j, int k) {
+      double tmp;
+      HashSet<Integer> exchange = new HashSet<>();
+      for (int t = 0; t < (1 << size); t++) {
+         if ( (t & (1 << (j-1))) <= 0 ) {
+            continue;
+         }
+         if (!exchange.contains(t - (1 << (k-1)))) {
+            exchange.add(t);
+         }
+      }
+      int t2;
+      for ( int t : exchange) {
+         t2 = (t + (1 << (k-1)) < (1 << size)) ? t + (1 << (k-1)) : t - (1 << (k-1));
+         tmp = real[t];
+         real[t]  = real[t2];
+         real[t2] = tmp;
+         tmp = imaginary[t];
+         imaginary[t]  =  imaginary[t2];
+         imaginary[t2] =  tmp;
+      }
+   }
+
+   /** The former Toffoli implementation of {@link Register#toffoli(int,int,int)}.*/
+   private static void hashSetToffoli(double[] real, double[] imaginary, int size, int j1, int j2, int k) {
+      double tmp;
+      HashSet<Integer> exchange = new HashSet<>();
+      for (int t = 0; t < (1 << size); t++) {
+         if ( (t & (1 << (j1-1))) + (t & (1 << (j2-1))) < (1 << (j1-1)) + (1 << (j2-1)) ) {
+            continue;
+         }
+         if (!exchange.contains(t - (1 << (k-1)))) {
+            exchange.add(t);
+         }
+      }
+      int t2;
+      for ( int t : exchange) {
+         t2 = (t + (1 << (k-1)) < (1 << size)) ? t + (1 << (k-1)) : t - (1 << (k-1));
+         tmp = real[t];
+         real[t]  = real[t2];
+         real[t2] = tmp;
+         tmp = imaginary[t];
+         imaginary[t]  =  imaginary[t2];
+         imaginary[t2] =  tmp;
+      }
+   }
+
+   /** Creates a register of the specified size in a uniform superposition.*/
+   private static Register uniform(int size) {
+      Register register = new Register(size);
+      for (int i = 1; i <= size; i++) {
+         register.hadamard(i);
+      }
+      register.tGate(1); // break the symmetry of the amplitudes
+      return register;
+   }
+
+   /** Returns the average time in milliseconds per gate of the specified gate sequence.*/
+   private static double time(Runnable gates) {
+      gates.run(); // warm-up
+      long start = System.nanoTime();
+      gates.run();
+      return (System.nanoTime() - start) / 1e6 / GATES;
+   }
+
+   /** Runs the benchmark.
+    *  @param args optional minimum and maximum register sizes
+    */
+   public static void main(String[] args) {
+      int nMin = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+      int nMax = args.length > 1 ? Integer.parseInt(args[1]) : nMin + 2;
+      int threshold = Register.getParallelThreshold();
+
+      System.out.println("  n  gate      HashSet [ms]  bit mask [ms]  parallel [ms]");
+      for (int n = nMin; n <= nMax; n++) {
+         final int size = n;
+         final Register former = uniform(n);
+         final Register current = uniform(n);
+
+         double tFormer = time(() -> {
+            for (int g = 0; g < GATES; g++) {
+               hashSetCNOT(former.getReal(), former.getImaginary(), size, 1 + g % size, 1 + (g + 7) % size);
+            }
+         });
+         Register.setParallelThreshold(Integer.MAX_VALUE);
+         double tSerial = time(() -> {
+            for (int g = 0; g < GATES; g++) {
+               current.cNOT(1 + g % size, 1 + (g + 7) % size);
+            }
+         });
+         Register.setParallelThreshold(0);
+         double tParallel = time(() -> {
+            for (int g = 0; g < GATES; g++) {
+               current.cNOT(1 + g % size, 1 + (g + 7) % size);
+            }
+         });
+         Register.setParallelThreshold(threshold);
+         check(size, false);
+         System.out.printf("%3d  c-NOT    %13.2f  %13.2f  %13.2f%n", n, tFormer, tSerial, tParallel);
+
+         tFormer = time(() -> {
+            for (int g = 0; g < GATES; g++) {
+               hashSetToffoli(former.getReal(), former.getImaginary(), size, 1 + g % size, 1 + (g + 3) % size, 1 + (g + 7) % size);
+            }
+         });
+         Register.setParallelThreshold(Integer.MAX_VALUE);
+         tSerial = time(() -> {
+            for (int g = 0; g < GATES; g++) {
+               current.toffoli(1 + g % size, 1 + (g + 3) % size, 1 + (g + 7) % size);
+            }
+         });
+         Register.setParallelThreshold(0);
+         tParallel = time(() -> {
+            for (int g = 0; g < GATES; g++) {
+               current.toffoli(1 + g % size, 1 + (g + 3) % size, 1 + (g + 7) % size);
+            }
+         });
+         Register.setParallelThreshold(threshold);
+         check(size, true);
+         System.out.printf("%3d  Toffoli  %13.2f  %13.2f  %13.2f%n", n, tFormer, tSerial, tParallel);
+      }
+   }
+
+   /** Checks that both implementations yield the same state on a register of the specified size.*/
+   private static void check(int size, boolean toffoli) {
+      Register former = uniform(size);
+      Register current = uniform(size);
+      for (int g = 0; g < GATES; g++) {
+         if (toffoli) {
+            hashSetToffoli(former.getReal(), former.getImaginary(), size, 1 + g % size, 1 + (g + 3) % size, 1 + (g + 7) % size);
+            current.toffoli(1 + g % size, 1 + (g + 3) % size, 1 + (g + 7) % size);
+         } else {
+            hashSetCNOT(former.getReal(), former.getImaginary(), size, 1 + g % size, 1 + (g + 7) % size);
+            current.cNOT(1 + g % size, 1 + (g + 7) % size);
+         }
+      }
+      if (!Arrays.equals(former.getReal(), current.getReal())
+          || !Arrays.equals(former.getImaginary(), current.getImaginary())) {
+         throw new IllegalStateException("Different results of the " + (toffoli ? "Toffoli" : "c-NOT") + " implementations");
+      }
+   }
+}
@@ -0,0 +1,138 @@
+/*
+ * TableauCrossCheck.java - Cross-check of the two stabilizer register representations
+ *
+ * Copyright (C) 2012-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ */
+package org.mathIT.quantum.stabilizer;
+import java.util.Random;
+import static org.mathIT.quantum.stabilizer.LocalCliffordOperator.Z;
+/**
+ * This class runs random Clifford circuits with interleaved measurements both on a
+ * {@link GraphRegister} and on a {@link TableauRegister} and compares the results.
+ * Each measurement is performed randomly on the graph register, and its result
+ * is forced on the tableau register if the latter's result is not determined;
+ * a mismatch thus reveals a determined result contradicting the graph register.
+ * For registers of at most 10 qubits, the state vectors of both registers are
+ * compared after each circuit, up to an overall phase.
+ * It is started by
+ * <pre>
+ *   java -cp mathIT.jar:benchmarks org.mathIT.quantum.stabilizer.TableauCrossCheck [n [circuits [gates [seed]]]]
+ * </pre>
+ * with the default values <i>n</i> = 6, 200 circuits of 60 gates each, and seed 1.
+ * The program prints the number of mismatches and the running times of both
+ * representations, and terminates with exit code 1 if there is a mismatch.
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+public class TableauCrossCheck {
+   /** The maximum register size whose state vectors are compared. */
+   private static final int MAX_VECTOR_SIZE = 10;
+
+   // Suppresses default constructor, ensuring non-instantiability.
+   private TableauCrossCheck() {
+   }
+
+   /** Runs the cross-check.
+    *  @param args the optional register size, number of circuits, number of gates per circuit, and seed
+    */
+   public static void main(String[] args) {
+      int n        = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+      int circuits = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+      int gates    = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+      long seed    = args.length > 3 ? Long.parseLong(args[3]) : 1;
+      if (n < 2) {
+         throw new IllegalArgumentException("At least 2 qubits required");
+      }
+
+      Random random = new Random(seed);
+      int mismatches = 0, measurements = 0;
+      long graphTime = 0, tableauTime = 0;
+      for (int c = 0; c < circuits; c++) {
+         GraphRegister graph = new GraphRegister(n);
+         TableauRegister tableau = new TableauRegister(n);
+         for (int g = 0; g < gates; g++) {
+            int gate = random.nextInt(10);
+            int v = random.nextInt(n);
+            int w = (v + 1 + random.nextInt(n - 1)) % n;
+            long start = System.nanoTime();
+            int result = apply(graph, gate, v, w, -1);
+            long middle = System.nanoTime();
+            int check = apply(tableau, gate, v, w, result);
+            long end = System.nanoTime();
+            graphTime += middle - start;
+            tableauTime += end - middle;
+            if (gate == 9) {
+               measurements++;
+               if (result != check) {
+                  mismatches++;
+                  System.out.println("Circuit " + c + ", gate " + g + ": measured qubit " + v
+                     + " yields " + result + " (graph) and " + check + " (tableau)");
+               }
+            }
+         }
+         if (n <= MAX_VECTOR_SIZE && !tableau.getRegister().equals(graph.getRegister())) {
+            mismatches++;
+            System.out.println("Circuit " + c + ": different states\n" + graph.getRegister()
+               + "\n" + tableau.getRegister() + "\n" + tableau);
+         }
+      }
+      System.out.println(circuits + " circuits of " + gates + " gates on " + n + " qubits, "
+         + measurements + " measurements: " + mismatches + " mismatches");
+      System.out.printf("graph register: %.3f s, tableau register: %.3f s%n",
+         graphTime / 1e9, tableauTime / 1e9);
+      if (mismatches > 0) {
+         System.exit(1);
+      }
+   }
+
+   /** Applies the specified gate to the graph register and returns the measured
+    *  value if it is a measurement.*/
+   private static int apply(GraphRegister register, int gate, int v, int w, int force) {
+      switch (gate) {
+         case 0: register.hadamard(v); break;
+         case 1: register.sGate(v); break;
+         case 2: register.inverseSGate(v); break;
+         case 3: register.xPauli(v); break;
+         case 4: register.yPauli(v); break;
+         case 5: register.zPauli(v); break;
+         case 6:
+         case 7: register.cNOT(v, w); break;
+         case 8: register.cPhase(v, w); break;
+         default: return register.measure(v, Z, force);
+      }
+      return -1;
+   }
+
+   /** Applies the specified gate to the tableau register and returns the measured
+    *  value if it is a measurement.*/
+   private static int apply(TableauRegister register, int gate, int v, int w, int force) {
+      switch (gate) {
+         case 0: register.hadamard(v); break;
+         case 1: register.sGate(v); break;
+         case 2: register.inverseSGate(v); break;
+         case 3: register.xPauli(v); break;
+         case 4: register.yPauli(v); break;
+         case 5: register.zPauli(v); break;
+         case 6:
+         case 7: register.cNOT(v, w); break;
+         case 8: register.cPhase(v, w); break;
+         default: return register.measure(v, force);
+      }
+      return -1;
+   }
+}
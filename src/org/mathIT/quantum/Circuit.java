@@ -1,7 +1,7 @@
 /*
  * Circuit.java - Class to implement a quantum circuit
  *
- * Copyright (C) 2008-2012 Andreas de Vries
+ * Copyright (C) 2008-2026 Andreas de Vries
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -31,14 +31,57 @@
 package org.mathIT.quantum;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import static java.lang.Math.min;
 import org.mathIT.util.FunctionParser;
 /**
  * This class enables the storage of quantum circuits and offers methods to
  * execute quantum operations on it. A quantum circuit consists
  * of a sequence of quantum gates.
+ * <p>
+ * To execute the entire circuit, its gates are compiled first by fusing
+ * adjacent gates acting on a few common qubits into a single unitary matrix,
+ * so that each block of fused gates requires only one pass over the register.
+ * Stepwise execution by {@link #setNextStep()} and {@link #setPreviousStep()}
+ * always performs the original gates.
+ * </p>
+ * <p>
+ * During stepwise execution, snapshots of the registers are taken as checkpoints
+ * every <i>k</i> gates and after each measurement or function gate, and are
+ * held in a ring buffer of bounded capacity, see {@link #setCheckpoints(int, int, boolean)}.
+ * Stepping back over a gate which cannot be inverted, or jumping back by
+ * {@link #setStep(int)}, restores the nearest preceding checkpoint and replays
+ * at most <i>k</i> - 1 gates, so that the latency of scrubbing through the circuit
+ * is bounded independently of its length.
+ * </p>
+ * <p>
+ * The circuit can be executed for many initial states at once by
+ * {@link #executeAll(List, long, Consumer)}, where the executions run in
+ * parallel on independent registers, each with its own random number generator.
+ * Likewise, {@link #executeNoisy(NoiseModel, int, long)} simulates the circuit
+ * under noise by many parallel quantum trajectories, and 
+ * {@link #executeSweep(int, int[], long, Consumer)} executes the circuit for many
+ * angles of a rotation gate, where the common prefix of gates is executed only once.
+ * </p>
+ * <p>
+ * By {@link #setMaxBond(int)}, the registers of the circuit are created as matrix
+ * product states of bounded bond dimension, see {@link Register#matrixProductState(int, int)}.
+ * Then shallow circuits of up to 62 qubits can be executed, provided that they do not 
+ * contain function gates or measurements of an entire register of more than 31 qubits.
+ * </p>
+ * <p>
+ * Before its execution, a circuit may be simplified by {@link #optimize()}, which
+ * removes pairs of gates cancelling each other, such as two Hadamard gates on the
+ * same qubit or an <i>S</i> gate and its inverse, also across gates commuting with them.
+ * </p>
  *
  * @author  Andreas de Vries
- * @version 1.3
+ * @version 1.9
  */
 public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializable {
    private static final long serialVersionUID = -1847355447L; //hash code of "Circuit" 
@@ -48,15 +91,32 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       "initialState",
       "Hadamard", "cNOT", "Pauli-X", "Pauli-Y", "Pauli-Z", "S", "T", "sqrt-X", 
       "invS", "invT",
-      "Toffoli", "QFT", "invQFT", "Function", "Rotation", "Grover", "Measurement"
+      "Toffoli", "Swap", "QFT", "invQFT", "Function", "Rotation", "Unitary", "Grover", "Measurement"
     * .
     */
    public static String[] gatelist = {
       "initialState",
       "Hadamard", "cNOT", "Pauli-X", "Pauli-Y", "Pauli-Z", "S", "T", "sqrt-X", 
       "invS", "invT",
-      "Toffoli", "QFT", "invQFT", "Function", "Rotation", "Grover", "Measurement"
+      "Toffoli", "Swap", "QFT", "invQFT", "Function", "Rotation", "Unitary", "Grover", "Measurement"
    };
+   /** The default maximum number of qubits of a block of fused gates. 
+    *  Its actual value is {@value}.
+    *  @see #compile(int)
+    */
+   public static final int DEFAULT_FUSED_QUBITS = 2;
+   /** The default number of gates between two checkpoints. Its actual value is {@value}.
+    *  @see #setCheckpoints(int, int, boolean)
+    */
+   public static final int DEFAULT_CHECKPOINT_INTERVAL = 16;
+   /** The default maximum number of checkpoints held at the same time.
+    *  Its actual value is {@value}.
+    *  @see #setCheckpoints(int, int, boolean)
+    */
+   public static final int DEFAULT_CHECKPOINT_CAPACITY = 8;
+   /** The number of trajectories executed with a single random number generator
+    *  in {@link #executeNoisy(NoiseModel, int, long)}.*/
+   private static final int TRAJECTORY_CHUNK_LENGTH = 16;
    /** The <i>x</i>-register.*/
    private Register xRegister;
    /** The <i>y</i>-register.*/
@@ -71,6 +131,24 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
     *  If the circuit is in its initial state, the number is 0.
     */
    private int nextGateNumber = 0;
+   /** The number <i>k</i> of gates between two checkpoints.*/
+   private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+   /** The maximum number of checkpoints held at the same time.*/
+   private int checkpointCapacity = DEFAULT_CHECKPOINT_CAPACITY;
+   /** Flag whether register snapshots on the heap are stored outside the heap.*/
+   private boolean offHeapCheckpoints = false;
+   /** The maximum bond dimension of matrix product state registers, or 0 if the
+    *  registers are stored on the heap.*/
+   private int maxBond = 0;
+   /** The ring buffer of checkpoints, ordered by ascending gate numbers, or null
+    *  if no checkpoint has been taken yet.*/
+   private transient Checkpoint[] checkpoints;
+   /** The index of the oldest checkpoint in the ring buffer.*/
+   private transient int oldestCheckpoint = 0;
+   /** The number of checkpoints in the ring buffer.*/
+   private transient int numberOfCheckpoints = 0;
+   /** The measured values of a batch execution, or null if they are not recorded.*/
+   private transient ArrayList<Integer> measurements;
    
    /** Creates an empty quantum circuit.*/
    public Circuit() {
@@ -184,11 +262,19 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       this.clear();
       nextGateNumber = 0;
       
-      xRegister = new Register( xRegisterSize );
-      yRegister = new Register( yRegisterSize );
+      xRegister = newRegister( xRegisterSize );
+      yRegister = newRegister( yRegisterSize );
       
-      xRegister.getReal()[0] = 0; // standard initial state is |0> ...
-      xRegister.getReal()[initialState] = 1;
+      if ( xRegister.isMatrixProductState() ) {
+         for (int j = 1; j <= xRegisterSize && j <= 31; j++) {
+            if ( (initialState & (1 << (j-1))) != 0 ) {
+               xRegister.xPauli(j);
+            }
+         }
+      } else {
+         xRegister.getReal()[0] = 0; // standard initial state is |0> ...
+         xRegister.getReal()[initialState] = 1;
+      }
       
       int[] initialQubits = new int[ xRegisterSize + yRegisterSize ];
       int j = 1;
@@ -210,7 +296,7 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       }
       
       int[] initialQubits = get(0).getQubits();
-      xRegister = new Register(xRegisterSize);
+      xRegister = newRegister(xRegisterSize);
       for (int i = 1; i <= xRegisterSize; i++) {
          if (initialQubits[xRegisterSize - i] == 1) {
             xRegister.xPauli(i);
@@ -218,8 +304,10 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       }
 
       nextGateNumber = 1; // important to mark the current gate to be executed
+      checkpoints = null;
+      numberOfCheckpoints = 0;
       
-      yRegister = new Register(yRegisterSize);
+      yRegister = newRegister(yRegisterSize);
       
       for (int i = 1; i <= yRegisterSize; i++) {
          if (initialQubits[xRegisterSize + yRegisterSize - i] == 1) {
@@ -237,23 +325,231 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
    }
    
    /** Executes the next quantum gate in this quantum circuit.
+    *  A checkpoint is taken after the gate if it is a measurement or a function gate,
+    *  or if the gate is the <i>k</i>-th one after the last checkpoint.
     *  @throws IllegalArgumentException if the quantum gate is unknown
     */
    public void setNextStep() {
       if ( nextGateNumber < this.size() ) {
-         perform( get(nextGateNumber) );
+         discardCheckpoints(nextGateNumber);
+         QuantumGate gate = get(nextGateNumber);
+         perform( gate );
          nextGateNumber++;
+         if ( !isReversible(gate) || nextGateNumber - lastCheckpoint() >= checkpointInterval ) {
+            saveCheckpoint();
+         }
       }
    }
    
-   /** Executes the inverse of the previously executed quantum gate in this quantum circuit.
-    *  @throws IllegalArgumentException if the quantum gate is unknown or if it is a measurement gate
+   /** Undoes the previously executed quantum gate in this quantum circuit.
+    *  If the gate is reversible, its inverse is executed. Otherwise, i.e., if it
+    *  is a measurement or a function gate, the registers are restored to the 
+    *  state before the gate by {@link #setStep(int)}.
+    *  @throws IllegalArgumentException if the quantum gate is unknown
     */
    public void setPreviousStep() {
       if ( nextGateNumber > 1 ) {
-         nextGateNumber--;
-         unperform( get(nextGateNumber) );
+         QuantumGate gate = get(nextGateNumber - 1);
+         if ( isReversible(gate) ) {
+            nextGateNumber--;
+            unperform( gate );
+         } else {
+            setStep(nextGateNumber - 1);
+         }
+      }
+   }
+   
+   /** Sets this quantum circuit into the state before the execution of the 
+    *  specified gate. If the gate number is greater than the number of the gate
+    *  to be executed next, the gates up to it are executed stepwise. Otherwise,
+    *  the registers are restored to the nearest checkpoint preceding the gate,
+    *  and at most <i>k</i> - 1 gates are executed to reach it, where <i>k</i>
+    *  is the checkpoint interval. If no such checkpoint is available since it has
+    *  already been dropped from the ring buffer, the gates are executed from the
+    *  initial state on; in this case, measurements are repeated and may yield
+    *  different results.
+    *  @param gateNumber the number of the gate to be executed next, where
+    *  1 denotes the initial state and the number of all gates the final state
+    *  @throws IllegalArgumentException if the gate number is out of range,
+    *  or if a quantum gate is unknown
+    *  @see #setCheckpoints(int, int, boolean)
+    */
+   public void setStep(int gateNumber) {
+      if ( gateNumber < 1 || gateNumber > this.size() ) {
+         throw new IllegalArgumentException("Gate number " + gateNumber + " out of range");
+      }
+      if ( gateNumber < nextGateNumber ) {
+         restoreCheckpoint(gateNumber);
+      }
+      while ( nextGateNumber < gateNumber ) {
+         setNextStep();
+      }
+   }
+   
+   /** Sets the checkpoints of the stepwise execution of this quantum circuit. 
+    *  A checkpoint consists of snapshots of both registers and is taken every
+    *  <i>k</i> gates, as well as after each measurement and function gate, whose
+    *  effect cannot be undone otherwise. The checkpoints are held in a ring buffer
+    *  of the specified capacity, such that the oldest checkpoint is dropped
+    *  if the buffer is full. Each checkpoint requires the memory of both registers,
+    *  which is 2<sup><i>n</i>+4</sup> bytes for a register of <i>n</i> qubits on the heap.
+    *  Snapshots of registers stored sparsely remain sparse, snapshots of registers
+    *  outside the heap remain outside the heap. All current checkpoints are discarded,
+    *  as they are by a structural modification of the list of gates or by
+    *  {@link #initializeRegisters()}; after replacing a gate by <code>set</code>,
+    *  the registers have to be initialized.
+    *  @param interval the number <i>k</i> of gates between two checkpoints
+    *  @param capacity the maximum number of checkpoints held at the same time,
+    *  where 0 disables checkpoints
+    *  @param offHeap flag whether the snapshots of registers on the heap are stored
+    *  outside the heap in direct memory
+    *  @throws IllegalArgumentException if the interval is less than 1 or the capacity is negative
+    *  @see #DEFAULT_CHECKPOINT_INTERVAL
+    *  @see #DEFAULT_CHECKPOINT_CAPACITY
+    */
+   public void setCheckpoints(int interval, int capacity, boolean offHeap) {
+      if ( interval < 1 || capacity < 0 ) {
+         throw new IllegalArgumentException(
+            "Invalid checkpoint interval " + interval + " or capacity " + capacity
+         );
+      }
+      checkpointInterval = interval;
+      checkpointCapacity = capacity;
+      offHeapCheckpoints = offHeap;
+      checkpoints = null;
+      numberOfCheckpoints = 0;
+   }
+   
+   /** Lets the registers be created as matrix product states with the specified
+    *  maximum bond dimension by the next call of {@link #initialize(int, int, int)}
+    *  or {@link #initializeRegisters()}, or on the heap if the value is 0. A matrix product state register requires
+    *  memory and time polynomial in its number of qubits and its bond dimension,
+    *  and thus enables circuits of many qubits generating little entanglement,
+    *  such as circuits of a few layers of gates on neighbouring qubits.
+    *  The accuracy of the simulation is given by {@link Register#getTruncationError()}.
+    *  @param maxBond the maximum bond dimension, or 0 for registers on the heap
+    *  @throws IllegalArgumentException if <code>maxBond</code> is negative
+    *  @see Register#matrixProductState(int, int)
+    */
+   public void setMaxBond(int maxBond) {
+      if ( maxBond < 0 ) {
+         throw new IllegalArgumentException("Negative maximum bond dimension " + maxBond);
+      }
+      this.maxBond = maxBond;
+   }
+   
+   /** Returns the maximum bond dimension of the registers as matrix product states,
+    *  or 0 if they are stored on the heap.
+    *  @return the maximum bond dimension, or 0 for registers on the heap
+    *  @see #setMaxBond(int)
+    */
+   public int getMaxBond() {
+      return maxBond;
+   }
+   
+   /** Returns a new register of the specified size in the state |0&gt;, stored as
+    *  a matrix product state if a maximum bond dimension is set.*/
+   private Register newRegister(int size) {
+      return maxBond > 0 && size > 0 ? Register.matrixProductState(size, maxBond) : new Register(size);
+   }
+   
+   /** Returns the number <i>k</i> of gates between two checkpoints.
+    *  @return the checkpoint interval
+    *  @see #setCheckpoints(int, int, boolean)
+    */
+   public int getCheckpointInterval() {
+      return checkpointInterval;
+   }
+   
+   /** Returns the maximum number of checkpoints held at the same time.
+    *  @return the checkpoint capacity
+    *  @see #setCheckpoints(int, int, boolean)
+    */
+   public int getCheckpointCapacity() {
+      return checkpointCapacity;
+   }
+   
+   /** Returns whether the specified gate can be undone by its inverse gate.*/
+   private static boolean isReversible(QuantumGate gate) {
+      return !gate.getName().equalsIgnoreCase("Measurement") 
+          && !gate.getName().equalsIgnoreCase("Function");
+   }
+   
+   /** Returns the <i>i</i>-th checkpoint of the ring buffer, counted from the oldest one.*/
+   private Checkpoint checkpoint(int i) {
+      return checkpoints[(oldestCheckpoint + i) % checkpoints.length];
+   }
+   
+   /** Returns the gate number of the latest checkpoint, or 1 if there is none.*/
+   private int lastCheckpoint() {
+      return numberOfCheckpoints > 0 ? checkpoint(numberOfCheckpoints - 1).gateNumber : 1;
+   }
+   
+   /** Discards all checkpoints taken after the specified gate number, 
+    *  or all checkpoints if the list of gates has been modified structurally.
+    */
+   private void discardCheckpoints(int gateNumber) {
+      if ( numberOfCheckpoints > 0 && checkpoint(0).modCount != modCount ) {
+         numberOfCheckpoints = 0;
+      }
+      while ( numberOfCheckpoints > 0 && checkpoint(numberOfCheckpoints - 1).gateNumber > gateNumber ) {
+         checkpoints[(oldestCheckpoint + numberOfCheckpoints - 1) % checkpoints.length] = null;
+         numberOfCheckpoints--;
+      }
+   }
+   
+   /** Stores snapshots of the registers in the ring buffer, dropping the oldest
+    *  checkpoint if the buffer is full.
+    */
+   private void saveCheckpoint() {
+      if ( checkpointCapacity == 0 ) {
+         return;
+      }
+      if ( checkpoints == null ) {
+         checkpoints = new Checkpoint[checkpointCapacity];
+         oldestCheckpoint = 0;
+         numberOfCheckpoints = 0;
+      }
+      Checkpoint checkpoint = new Checkpoint(nextGateNumber, modCount, 
+         snapshot(xRegister), snapshot(yRegister), onHeap(xRegister), onHeap(yRegister));
+      if ( numberOfCheckpoints == checkpoints.length ) { // drop the oldest one
+         oldestCheckpoint = (oldestCheckpoint + 1) % checkpoints.length;
+         numberOfCheckpoints--;
+      }
+      checkpoints[(oldestCheckpoint + numberOfCheckpoints) % checkpoints.length] = checkpoint;
+      numberOfCheckpoints++;
+   }
+   
+   /** Restores the registers to the latest checkpoint not after the specified
+    *  gate number, or to the initial state if there is no such checkpoint.
+    */
+   private void restoreCheckpoint(int gateNumber) {
+      discardCheckpoints(nextGateNumber);
+      Checkpoint checkpoint = null;
+      for (int i = numberOfCheckpoints - 1; i >= 0 && checkpoint == null; i--) {
+         if ( checkpoint(i).gateNumber <= gateNumber ) {
+            checkpoint = checkpoint(i);
+         }
+      }
+      if ( checkpoint == null ) {
+         initializeRegisters();
+         return;
       }
+      xRegister = checkpoint.xOnHeap ? checkpoint.x.copy(false) : checkpoint.x.copy();
+      yRegister = checkpoint.yOnHeap ? checkpoint.y.copy(false) : checkpoint.y.copy();
+      yRegisterSize = yRegister.size;
+      nextGateNumber = checkpoint.gateNumber;
+   }
+   
+   /** Returns a snapshot of the specified register.*/
+   private Register snapshot(Register register) {
+      return offHeapCheckpoints && onHeap(register) ? register.copy(true) : register.copy();
+   }
+   
+   /** Returns whether the amplitudes of the specified register are stored in the arrays on the heap.*/
+   private static boolean onHeap(Register register) {
+      return !register.isOffHeap() && !register.isSparse() && !register.isMatrixProductState()
+         && !register.isSinglePrecision();
    }
    
    /**
@@ -270,6 +566,8 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          this.set(0, new QuantumGate("initialState", initialQubits, false));
       }
       nextGateNumber = 1;
+      checkpoints = null;
+      numberOfCheckpoints = 0;
    }
    
    /**
@@ -434,6 +732,23 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       this.add( new QuantumGate("Toffoli", qubits, yRegister ) );
    }
    
+   /**
+    * Adds a SWAP gate exchanging the two qubits specified by the two numbers 
+    * in the qubit array;
+    * if the flag <code>yRegister</code> is set, it is added to the
+    * <i>y</i>-register, otherwise to the <i>x</i>-register.
+    * The gate is executed in constant time, see {@link Register#swap(int, int)}.
+    * @param qubits the numbers of qubit; array size <b>must</b> be two
+    * @param yRegister flag whether the gate is added in the <i>y</i>-register
+    * @throws org.mathIT.quantum.NoWireException if the register is not existing
+    */
+   public void addSwap( int[] qubits, boolean yRegister ) throws NoWireException {
+      if ( numberOfWires == 0 ) {
+         throw new NoWireException( "Register not existing" );
+      }
+      this.add( new QuantumGate("Swap", qubits, yRegister ) );
+   }
+   
    /**
     * Adds the inverse Fourier transform gate to the circuit;
     * if the flag <code>yRegister</code> is set, it is added to the
@@ -552,20 +867,355 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       this.add( new QuantumGate("Measurement", qubits, yRegister ) );
    }
    
+   /**
+    * Compiles the quantum gates of this circuit into an equivalent list of
+    * gates, where blocks of adjacent gates acting on at most 
+    * {@link #DEFAULT_FUSED_QUBITS} common qubits are fused.
+    * @return the compiled list of quantum gates of this circuit
+    * @see #compile(int)
+    */
+   public ArrayList<QuantumGate> compile() {
+      return compile(DEFAULT_FUSED_QUBITS);
+   }
+   
+   /**
+    * Compiles the quantum gates of this circuit into an equivalent list of
+    * gates requiring less passes over the quantum registers.
+    * A run of single-qubit gates on the same wire, such as Hadamard, Pauli, 
+    * <i>S</i>, <i>T</i>, &#x221A;X or rotation gates, is fused into a single 
+    * "Unitary" gate given by the 2 &#x00D7; 2 product matrix.
+    * Moreover, adjacent gates acting on at most <code>maxQubits</code> qubits
+    * in total are merged into a "Unitary" gate of these qubits.
+    * The Fourier transforms, function evaluations, Grover operators, and 
+    * measurements are not fused. The gates of this circuit remain unchanged.
+    * @param maxQubits the maximum number of qubits of a block of fused gates
+    * @return the compiled list of quantum gates of this circuit
+    * @throws IllegalArgumentException if <code>maxQubits</code> is not positive
+    * @see Register#apply(double[][][], int...)
+    */
+   public ArrayList<QuantumGate> compile(int maxQubits) {
+      return GateFusion.compile(this, maxQubits);
+   }
+   
+   /**
+    * Removes the gates of this circuit which cancel each other and returns the
+    * number of removed gates. Two equal self-inverse gates, such as Hadamard,
+    * Pauli-<i>X</i>, Pauli-<i>Y</i>, c-NOT, Toffoli or SWAP gates, cancel, as well 
+    * as an <i>S</i> or a <i>T</i> gate and its inverse, even if they are separated
+    * by gates commuting with them, e.g., by gates on other qubits, by diagonal gates 
+    * on the control qubits of a c-NOT gate, or by a Pauli-<i>X</i> gate on its
+    * target qubit. Moreover, subsequent <i>S</i>, <i>T</i> and Pauli-<i>Z</i> gates 
+    * on the same qubit are merged. The optimization is not applied automatically;
+    * it may be invoked once after the circuit is built and before it is executed by 
+    * {@link #executeAll()}. Since the gates are changed, the registers are reset to
+    * the initial state.
+    * @return the number of gates removed from this circuit
+    * @see #compile(int)
+    */
+   public int optimize() {
+      ArrayList<QuantumGate> optimized = PeepholeOptimizer.optimize(this);
+      int removed = size() - optimized.size();
+      if (removed == 0) {
+         return 0;
+      }
+      clear();
+      addAll(optimized);
+      if (xRegister != null) {
+         initializeRegisters();
+      }
+      return removed;
+   }
+   
    /**
     * Executes the entire quantum circuit and returns <code>true</code> if
-    * the algorithm is terminated.
+    * the algorithm is terminated. The gates are compiled by {@link #compile()}
+    * before execution.
     * @return <code>true</code> after termination of execution
     */
    public boolean executeAll() {
       initializeRegisters();
-      for (int i = 1; i < size(); i++) {
-         perform(get(i));
+      ArrayList<QuantumGate> gates = compile();
+      for (int i = 1; i < gates.size(); i++) {
+         perform(gates.get(i));
       }
       setFinalStep();
       return true;
    }
    
+   /**
+    * Executes the entire quantum circuit for each of the specified initial states,
+    * where the random number generators are seeded randomly.
+    * @param initialStates the initial states of the qubits, each one specified as in
+    * {@link #setInitialState(int[])}
+    * @param consumer the consumer of the results
+    * @throws IllegalArgumentException if an initial state does not consist of
+    * as many qubits as this circuit has wires
+    * @see #executeAll(List, long, Consumer)
+    */
+   public void executeAll(List<int[]> initialStates, Consumer<BatchResult> consumer) {
+      executeAll(initialStates, new SplittableRandom().nextLong(), consumer);
+   }
+   
+   /**
+    * Executes the entire quantum circuit for each of the specified initial states
+    * and passes the result of each execution to the specified consumer as soon
+    * as it is finished.
+    * The gates are compiled once by {@link #compile()}. The executions then run
+    * in parallel in the common fork-join pool, each one on its own copies of
+    * the <i>x</i>- and the <i>y</i>-register, such that the registers and the
+    * current step of this circuit are not changed.
+    * Each execution draws the random numbers of its measurements and function
+    * evaluations from its own generator, split off from a generator with the
+    * specified seed in the order of the initial states. Therefore the results
+    * for a given seed do not depend on the scheduling of the executions.
+    * <p>
+    * The consumer is called by the threads of the pool, in the order in which the
+    * executions finish, but never concurrently; it should return quickly.
+    * This method returns after all results have been consumed.
+    * </p>
+    * @param initialStates the initial states of the qubits, each one specified as in
+    * {@link #setInitialState(int[])}
+    * @param seed the seed of the random number generators
+    * @param consumer the consumer of the results
+    * @throws IllegalArgumentException if an initial state does not consist of
+    * as many qubits as this circuit has wires
+    */
+   public void executeAll(final List<int[]> initialStates, long seed, final Consumer<BatchResult> consumer) {
+      for (int[] initialQubits : initialStates) {
+         if ( initialQubits.length != numberOfWires ) {
+            throw new IllegalArgumentException(
+               "Initial state of " + initialQubits.length + " qubits for " + numberOfWires + " wires"
+            );
+         }
+      }
+      final ArrayList<QuantumGate> gates = compile();
+      final SplittableRandom[] generator = new SplittableRandom[initialStates.size()];
+      SplittableRandom root = new SplittableRandom(seed);
+      for (int i = 0; i < generator.length; i++) {
+         generator[i] = root.split();
+      }
+      final Object lock = new Object();
+      
+      IntStream.range(0, generator.length).parallel().forEach(i -> {
+         Circuit worker = worker(initialStates.get(i).clone(), generator[i]);
+         worker.measurements = new ArrayList<>();
+         for (int g = 1; g < gates.size(); g++) {
+            worker.perform(gates.get(g));
+         }
+         int[] values = new int[worker.measurements.size()];
+         for (int k = 0; k < values.length; k++) {
+            values[k] = worker.measurements.get(k);
+         }
+         BatchResult result = new BatchResult(
+            i, worker.get(0).getQubits(), worker.xRegister, worker.yRegister, values
+         );
+         synchronized (lock) {
+            consumer.accept(result);
+         }
+      });
+   }
+   
+   /**
+    * Executes the quantum circuit repeatedly under the specified noise model and
+    * returns the statistics of the final measurements of the <i>x</i>-register.
+    * Each execution is a quantum trajectory, see {@link NoiseModel}: after each gate
+    * except a measurement, the noise channels act on each qubit involved in the gate,
+    * where the QFT and the Grover gate involve the entire register. Then the
+    * entire <i>x</i>-register is measured. The gates are not compiled, since the
+    * noise acts after each original gate.
+    * <p>
+    * The trajectories run in parallel in the common fork-join pool. They are divided
+    * into chunks, each of which is executed on one thread with its own random number
+    * generator, split off from a generator with the specified seed. Thus at most
+    * one pair of registers per thread is in use at any time, and the result
+    * for a given seed does not depend on the scheduling of the threads.
+    * The registers and the current step of this circuit are not changed.
+    * </p>
+    * @param noise the noise model
+    * @param trajectories the number of trajectories
+    * @param seed the seed of the random number generators
+    * @return a map of the measured values of the <i>x</i>-register to the numbers
+    * of their occurrences
+    * @throws IllegalArgumentException if <code>trajectories</code> is negative
+    */
+   public TreeMap<Integer, Integer> executeNoisy(final NoiseModel noise, final int trajectories, long seed) {
+      if ( trajectories < 0 ) {
+         throw new IllegalArgumentException("Negative number of trajectories: " + trajectories);
+      }
+      final int chunks = (trajectories + TRAJECTORY_CHUNK_LENGTH - 1) / TRAJECTORY_CHUNK_LENGTH;
+      final SplittableRandom[] generator = new SplittableRandom[chunks];
+      SplittableRandom root = new SplittableRandom(seed);
+      for (int c = 0; c < chunks; c++) {
+         generator[c] = root.split();
+      }
+      final int[] initialQubits = get(0).getQubits();
+      @SuppressWarnings("unchecked")
+      final TreeMap<Integer, Integer>[] counts = new TreeMap[chunks];
+      
+      IntStream.range(0, chunks).parallel().forEach(c -> {
+         counts[c] = new TreeMap<>();
+         int end = min(trajectories, (c + 1) * TRAJECTORY_CHUNK_LENGTH);
+         for (int t = c * TRAJECTORY_CHUNK_LENGTH; t < end; t++) {
+            Circuit worker = worker(initialQubits, generator[c]);
+            for (int g = 1; g < size(); g++) {
+               QuantumGate gate = get(g);
+               worker.perform(gate);
+               if ( gate.getName().equalsIgnoreCase("Measurement") ) {
+                  continue;
+               }
+               Register register = gate.yRegister ? worker.yRegister : worker.xRegister;
+               if ( gate.getName().equalsIgnoreCase("Grover") ) {
+                  for (int j = 1; j <= register.size; j++) {
+                     noise.apply(register, j, generator[c]);
+                  }
+               } else {
+                  for (int j : gate.qubits) {
+                     noise.apply(register, j, generator[c]);
+                  }
+               }
+            }
+            counts[c].merge(worker.xRegister.measure(), 1, Integer::sum);
+         }
+      });
+      
+      TreeMap<Integer, Integer> result = new TreeMap<>();
+      for (TreeMap<Integer, Integer> chunk : counts) {
+         for (Map.Entry<Integer, Integer> entry : chunk.entrySet()) {
+            result.merge(entry.getKey(), entry.getValue(), Integer::sum);
+         }
+      }
+      return result;
+   }
+   
+   /**
+    * Executes the quantum circuit for each of the specified angles of a rotation gate,
+    * where the random number generators are seeded randomly.
+    * @param gateNumber the number of the rotation gate, 1 &#x2264; <code>gateNumber</code> &lt; {@link #size()}
+    * @param values the rotation angles, each one specified as the value <i>n</i> 
+    * = <i>&#x03C0;</i>/<i>&#x03C6;</i> of the angle <i>&#x03C6;</i> as in 
+    * {@link #addRotation(int[], boolean, String, int)}
+    * @param consumer the consumer of the results
+    * @throws IllegalArgumentException if the specified gate is not a rotation gate
+    * @see #executeSweep(int, int[], long, Consumer)
+    */
+   public void executeSweep(int gateNumber, int[] values, Consumer<BatchResult> consumer) {
+      executeSweep(gateNumber, values, new SplittableRandom().nextLong(), consumer);
+   }
+   
+   /**
+    * Executes the quantum circuit for each of the specified angles of a rotation gate
+    * and passes the result of each execution to the specified consumer as soon
+    * as it is finished. This is the typical parameter sweep of a variational algorithm,
+    * where only the angle of one gate varies.
+    * <p>
+    * The gates preceding the rotation gate are the same for all angles. Therefore this
+    * prefix is compiled and executed only once, and the resulting <i>x</i>- and 
+    * <i>y</i>-registers are cached. Then for each angle, the suffix of the circuit
+    * starting with the rotation gate of this angle is compiled and executed on copies 
+    * of the cached registers, where the executions run in parallel in the common
+    * fork-join pool. Thus a sweep of <i>m</i> angles over the last gates of a circuit of
+    * <i>g</i> gates requires about <i>g</i> + <i>m</i> instead of <i>m g</i> gate executions.
+    * The registers and the current step of this circuit are not changed, and the 
+    * index of a result is the index of its angle in <code>values</code>.
+    * </p>
+    * <p>
+    * The prefix draws its random numbers from a generator split off first from a 
+    * generator with the specified seed, and each suffix from a generator split off
+    * subsequently in the order of the angles. Hence a measurement in the prefix is
+    * performed once, and all executions continue with its outcome, which is recorded
+    * at the beginning of the measured values of each result. The consumer is called
+    * as by {@link #executeAll(List, long, Consumer)}.
+    * </p>
+    * @param gateNumber the number of the rotation gate, 1 &#x2264; <code>gateNumber</code> &lt; {@link #size()}
+    * @param values the rotation angles, each one specified as the value <i>n</i> 
+    * = <i>&#x03C0;</i>/<i>&#x03C6;</i> of the angle <i>&#x03C6;</i> as in 
+    * {@link #addRotation(int[], boolean, String, int)}
+    * @param seed the seed of the random number generators
+    * @param consumer the consumer of the results
+    * @throws IllegalArgumentException if the specified gate is not a rotation gate
+    */
+   public void executeSweep(
+      final int gateNumber, final int[] values, long seed, final Consumer<BatchResult> consumer
+   ) {
+      if ( gateNumber < 1 || gateNumber >= size() || !get(gateNumber).getName().equalsIgnoreCase("Rotation") ) {
+         throw new IllegalArgumentException("Gate " + gateNumber + " is not a rotation gate");
+      }
+      SplittableRandom root = new SplittableRandom(seed);
+      final int[] initialQubits = get(0).getQubits();
+      
+      // execute the common prefix once:
+      final Circuit prefix = worker(initialQubits, root.split());
+      prefix.measurements = new ArrayList<>();
+      ArrayList<QuantumGate> gates = GateFusion.compile(subList(0, gateNumber), DEFAULT_FUSED_QUBITS);
+      for (int g = 1; g < gates.size(); g++) {
+         prefix.perform(gates.get(g));
+      }
+      
+      final SplittableRandom[] generator = new SplittableRandom[values.length];
+      for (int i = 0; i < generator.length; i++) {
+         generator[i] = root.split();
+      }
+      final QuantumGate rotation = get(gateNumber);
+      final List<QuantumGate> suffix = subList(gateNumber + 1, size());
+      final Object lock = new Object();
+      
+      IntStream.range(0, values.length).parallel().forEach(i -> {
+         Circuit worker = prefix.fork(generator[i]);
+         ArrayList<QuantumGate> varied = new ArrayList<>(suffix.size() + 1);
+         varied.add(new QuantumGate(
+            "Rotation", rotation.qubits, rotation.axis, values[i], rotation.yRegister
+         ));
+         varied.addAll(suffix);
+         for (QuantumGate gate : GateFusion.compile(varied, DEFAULT_FUSED_QUBITS)) {
+            worker.perform(gate);
+         }
+         int[] measured = new int[worker.measurements.size()];
+         for (int k = 0; k < measured.length; k++) {
+            measured[k] = worker.measurements.get(k);
+         }
+         BatchResult result = new BatchResult(
+            i, initialQubits, worker.xRegister, worker.yRegister, measured
+         );
+         synchronized (lock) {
+            consumer.accept(result);
+         }
+      });
+   }
+   
+   /** Returns a copy of this worker with copies of its registers and its measured
+    *  values, drawing its random numbers from the specified generator.
+    */
+   private Circuit fork(SplittableRandom random) {
+      Circuit fork = new Circuit();
+      fork.xRegisterSize = xRegisterSize;
+      fork.yRegisterSize = yRegisterSize;
+      fork.numberOfWires = numberOfWires;
+      fork.maxBond = maxBond;
+      fork.xRegister = xRegister.copy();
+      fork.yRegister = yRegister.copy();
+      fork.measurements = new ArrayList<>(measurements);
+      fork.xRegister.random = random;
+      fork.yRegister.random = random;
+      return fork;
+   }
+   
+   /** Returns a copy of this circuit without gates, whose registers are initialized
+    *  to the specified initial state and draw their random numbers from the
+    *  specified generator.
+    */
+   private Circuit worker(int[] initialQubits, SplittableRandom random) {
+      Circuit worker = new Circuit();
+      worker.xRegisterSize = xRegisterSize;
+      worker.yRegisterSize = yRegisterSize;
+      worker.numberOfWires = numberOfWires;
+      worker.maxBond = maxBond;
+      worker.setInitialState(initialQubits);
+      worker.initializeRegisters();
+      worker.xRegister.random = random;
+      worker.yRegister.random = random;
+      return worker;
+   }
+   
    /** Executes the specified quantum gate.
     *  @param gate the quantum gate to execute
     *  @throws IllegalArgumentException if the quantum gate is unknown
@@ -626,6 +1276,13 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          } else {
             xRegister.tGate( qubit );
          }
+      } else if ( gate.getName().equalsIgnoreCase("invT") ) {
+         int qubit = gate.qubits[0];
+         if ( gate.yRegister ) {
+            yRegister.inverseTGate( qubit );
+         } else {
+            xRegister.inverseTGate( qubit );
+         }
       } else if ( gate.getName().equalsIgnoreCase("sqrt-X") ) {
          int qubit = gate.qubits[0];
          if ( gate.yRegister ) {
@@ -639,6 +1296,12 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          } else {
             xRegister.toffoli( gate.qubits[0], gate.qubits[1], gate.qubits[2] );
          }
+      } else if ( gate.getName().equalsIgnoreCase("Swap") ) {
+         if ( gate.yRegister ) {
+            yRegister.swap( gate.qubits[0], gate.qubits[1] );
+         } else {
+            xRegister.swap( gate.qubits[0], gate.qubits[1] );
+         }
       } else if ( gate.getName().equalsIgnoreCase("QFT") ) {
          if ( gate.yRegister ) { // ( 1 << n ) = 2^n:
             yRegister.qft( (1 << yRegisterSize), (1 << yRegisterSize) );
@@ -654,7 +1317,8 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       } else if ( gate.getName().equalsIgnoreCase("Function") ) {
          int zMin = 0;
          int zMax = ( 1 << (yRegisterSize - 1) );
-         int z = (int) ( zMin + ( zMax - zMin)*Math.random() );
+         double f = xRegister.random.nextDouble();
+         int z = (int) ( zMin + ( zMax - zMin)*f );
          // evaluate function with random number z; if the z-variable is set 
          // by the user, the function is independent from z:
          yRegister = xRegister.evaluateFunction( yRegister, gate.function, z );
@@ -666,12 +1330,18 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          } else {
             xRegister.rotate(gate.qubits, gate.axis, phi);
          }
+      } else if ( gate.getName().equalsIgnoreCase("Unitary") ) {
+         if ( gate.yRegister ) {
+            yRegister.apply(gate.matrix, gate.qubits);
+         } else {
+            xRegister.apply(gate.matrix, gate.qubits);
+         }
       } else if ( gate.getName().equalsIgnoreCase("Grover") ) {
          xRegister.grover(gate.qubits[0]);
       } else if ( gate.getName().equalsIgnoreCase("Measurement") ) {
          if ( gate.yRegister ) {
             if ( gate.qubits.length == 1 ) { // single-qubit measurement
-               yRegister.measure(gate.qubits[0]);
+               record( yRegister.measure(gate.qubits[0]) );
                ArrayList<Integer> values = new ArrayList<>();
                for (int i = 0; i < yRegister.getReal().length; i++) {
                   if (
@@ -687,13 +1357,15 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
                }
                modifyXRegister(value);
             } else { // entire register measurement
-               modifyXRegister(new int[]{yRegister.measure()});
+               int value = yRegister.measure();
+               record( value );
+               modifyXRegister(new int[]{value});
             }
          } else { // x-Register measurement
             if ( gate.qubits.length == 1 ) { // single-qubit measurement
-               xRegister.measure( gate.qubits[0] );
+               record( xRegister.measure( gate.qubits[0] ) );
             } else { // entire register measurement
-               xRegister.measure();
+               record( xRegister.measure() );
             }
             
             // modify y-register (works only if exclusively local gates are used for y-register):
@@ -721,6 +1393,13 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       }
    }
    
+   /** Records the specified measured value during a batch execution.*/
+   private void record(int value) {
+      if ( measurements != null ) {
+         measurements.add(value);
+      }
+   }
+   
    /** Modifies the x-Register in case of a y-register measurement of the specified value.*/
    private void modifyXRegister(int[] value) {
       if (xRegister.getEntanglement() != null && xRegister.getEntanglement().size() > 0) {
@@ -825,6 +1504,13 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          } else {
             xRegister.inverseTGate( qubit );
          }
+      } else if ( gate.getName().equalsIgnoreCase("invT") ) {
+         int qubit = gate.qubits[0];
+         if ( gate.yRegister ) {
+            yRegister.tGate( qubit );
+         } else {
+            xRegister.tGate( qubit );
+         }
       } else if ( gate.getName().equalsIgnoreCase("sqrt-X") ) {
          int qubit = gate.qubits[0];
          if ( gate.yRegister ) {
@@ -838,6 +1524,12 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          } else {
             xRegister.toffoli( gate.qubits[0], gate.qubits[1], gate.qubits[2] );
          }
+      } else if ( gate.getName().equalsIgnoreCase("Swap") ) {
+         if ( gate.yRegister ) {
+            yRegister.swap( gate.qubits[0], gate.qubits[1] );
+         } else {
+            xRegister.swap( gate.qubits[0], gate.qubits[1] );
+         }
       } else if ( gate.getName().equalsIgnoreCase("QFT") ) {
          if ( gate.yRegister ) { // ( 1 << n ) = 2^n:
             yRegister.inverseQft( (1 << yRegisterSize), (1 << yRegisterSize) );
@@ -859,6 +1551,12 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          } else {
             xRegister.rotate(gate.qubits, gate.axis, phi);
          }
+      } else if ( gate.getName().equalsIgnoreCase("Unitary") ) {
+         if ( gate.yRegister ) {
+            yRegister.apply(GateFusion.adjoint(gate.matrix), gate.qubits);
+         } else {
+            xRegister.apply(GateFusion.adjoint(gate.matrix), gate.qubits);
+         }
       } else if ( gate.getName().equalsIgnoreCase("Grover") ) {
          xRegister.inverseGrover(gate.qubits[0]);
       } else if ( gate.getName().equalsIgnoreCase("Measurement") ) {
@@ -867,4 +1565,90 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
          throw new IllegalArgumentException("Unknown quantum gate " + gate.getName());
       }
    }
+
+   /** A checkpoint of the stepwise execution, consisting of snapshots of both
+    *  registers before the execution of a certain gate.
+    */
+   private static final class Checkpoint {
+      /** The number of the gate to be executed next.*/
+      final int gateNumber;
+      /** The modification count of the list of gates when the checkpoint was taken.*/
+      final int modCount;
+      /** The snapshot of the <i>x</i>-register.*/
+      final Register x;
+      /** The snapshot of the <i>y</i>-register.*/
+      final Register y;
+      /** Flags whether the <i>x</i>-register and the <i>y</i>-register were stored on the heap.*/
+      final boolean xOnHeap, yOnHeap;
+
+      Checkpoint(int gateNumber, int modCount, Register x, Register y, boolean xOnHeap, boolean yOnHeap) {
+         this.gateNumber = gateNumber;
+         this.modCount = modCount;
+         this.x = x;
+         this.y = y;
+         this.xOnHeap = xOnHeap;
+         this.yOnHeap = yOnHeap;
+      }
+   }
+
+   /** The result of the execution of a quantum circuit for one of several initial states.
+    *  @see Circuit#executeAll(List, long, Consumer)
+    */
+   public static final class BatchResult {
+      /** The index of the initial state in the list of initial states.*/
+      private final int index;
+      /** The initial states of the qubits.*/
+      private final int[] initialQubits;
+      /** The final <i>x</i>-register.*/
+      private final Register xRegister;
+      /** The final <i>y</i>-register.*/
+      private final Register yRegister;
+      /** The measured values in the order of the measurement gates.*/
+      private final int[] measurements;
+
+      BatchResult(int index, int[] initialQubits, Register xRegister, Register yRegister, int[] measurements) {
+         this.index = index;
+         this.initialQubits = initialQubits;
+         this.xRegister = xRegister;
+         this.yRegister = yRegister;
+         this.measurements = measurements;
+      }
+
+      /** Returns the index of the initial state in the list of initial states.
+       *  @return the index of the initial state
+       */
+      public int getIndex() {
+         return index;
+      }
+
+      /** Returns the initial states of the qubits.
+       *  @return the initial states of the qubits
+       */
+      public int[] getInitialQubits() {
+         return initialQubits;
+      }
+
+      /** Returns the <i>x</i>-register after the execution of the circuit.
+       *  @return the final <i>x</i>-register
+       */
+      public Register getXRegister() {
+         return xRegister;
+      }
+
+      /** Returns the <i>y</i>-register after the execution of the circuit.
+       *  @return the final <i>y</i>-register
+       */
+      public Register getYRegister() {
+         return yRegister;
+      }
+
+      /** Returns the measured values in the order of the measurement gates of the circuit.
+       *  A single-qubit measurement yields the value 0 or 1, a measurement of an
+       *  entire register yields the measured value of the register.
+       *  @return the measured values
+       */
+      public int[] getMeasurements() {
+         return measurements;
+      }
+   }
 }
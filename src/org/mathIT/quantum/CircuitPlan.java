@@ -0,0 +1,456 @@
+/*
+ * CircuitPlan.java - Compiled quantum circuit read from a line-oriented circuit file
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.mathIT.quantum.Register.*;
+/**
+ * This class represents a quantum circuit compiled from a line-oriented circuit
+ * description into an array of primitive opcodes, which is executed directly on
+ * a quantum register. In contrast to a {@link Circuit}, no {@link QuantumGate}
+ * objects are created, neither while reading nor while executing the circuit, so
+ * that circuits of 10<sup>5</sup> gates and more are read and stored with little
+ * time and memory.
+ * <p>
+ * A circuit description consists of one statement per line. Gate names are not 
+ * case sensitive, operands are separated by blanks or commas, and everything 
+ * following a "#" is a comment. The first statement declares the number of qubits,
+ * and each further statement is a gate acting on qubits 1, ..., <i>n</i>:
+ * </p>
+ * <table border="1" summary="Statements of a circuit description">
+ *   <tr><th>statement</th><th>operation</th></tr>
+ *   <tr><td><code>qubits</code> <i>n</i></td><td>declares the <i>n</i> qubits of the circuit</td></tr>
+ *   <tr><td><code>h</code>, <code>x</code>, <code>y</code>, <code>z</code>, 
+ *     <code>s</code>, <code>sdg</code>, <code>t</code>, <code>tdg</code>, 
+ *     <code>sx</code>, <code>sxdg</code> <i>j</i></td>
+ *     <td>Hadamard, Pauli, S, T, and &#x221A;X gates and their inverses on qubit <i>j</i></td></tr>
+ *   <tr><td><code>cx</code> <i>j k</i>, <code>ccx</code> <i>j</i><sub>1</sub> <i>j</i><sub>2</sub> <i>k</i></td>
+ *     <td>c-NOT and Toffoli gates with target qubit <i>k</i></td></tr>
+ *   <tr><td><code>swap</code> <i>j k</i></td><td>swaps qubits <i>j</i> and <i>k</i></td></tr>
+ *   <tr><td><code>rx</code>, <code>ry</code>, <code>rz</code> <i>&#x03C6; j</i></td>
+ *     <td>rotation of qubit <i>j</i> by the angle <i>&#x03C6;</i>, given in radians 
+ *     or as a multiple of <code>pi</code> such as <code>pi/4</code> or <code>-3*pi/8</code></td></tr>
+ *   <tr><td><code>qft</code>, <code>iqft</code> [<i>j m</i>]</td>
+ *     <td>quantum Fourier transform and its inverse of the qubits <i>j</i>, ..., 
+ *     <i>j</i> + <i>m</i> - 1, or of all qubits</td></tr>
+ *   <tr><td><code>measure</code> [<i>j</i>]</td><td>measurement of qubit <i>j</i>, or of all qubits</td></tr>
+ * </table>
+ * <p>
+ * Each gate acting on a single qubit may be prefixed by one "c" for each control
+ * qubit, the control qubits preceding the target qubit; for instance, 
+ * <code>cz 1 2</code> is the controlled Z gate, and <code>ccrx pi/2 1 2 3</code> 
+ * rotates qubit 3 if qubits 1 and 2 are set. A Bell state and its measurement,
+ * for instance, are described by
+ * </p>
+ * <pre>
+ *   qubits 2
+ *   h 1
+ *   cx 1 2     # entangles both qubits
+ *   measure
+ * </pre>
+ * <p>
+ * The description is parsed as a stream, line by line, such that it never is held
+ * in memory as a whole. Plans read by {@link #load(File)} are cached with respect to
+ * the file, its length, and its time of last modification, and thus repeated loads 
+ * of an unchanged circuit file return the same plan without reading the file again.
+ * Since a plan is immutable, it may be executed by several threads on different 
+ * registers simultaneously.
+ * </p>
+ *
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+public final class CircuitPlan {
+   /** The maximum number of plans kept in the cache of {@link #load(File)}.*/
+   public static final int CACHE_CAPACITY = 16;
+   /** The cached plans, given by the canonical paths of their files, in the order of access.*/
+   private static final LinkedHashMap<String, Cached> CACHE = new LinkedHashMap<String, Cached>(16, .75f, true) {
+      private static final long serialVersionUID = 1726354251;
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+         return size() > CACHE_CAPACITY;
+      }
+   };
+
+   // Opcodes. The opcodes of the single-qubit gates are the indices of their matrices.
+   private static final int H = 0, X = 1, Y = 2, Z = 3, S = 4, SDG = 5, T = 6, TDG = 7, SX = 8, SXDG = 9;
+   private static final int CX = 10, CCX = 11, SWAP = 12, UNITARY = 13; 
+   private static final int QFT = 14, IQFT = 15, MEASURE = 16, MEASURE_ALL = 17;
+   /** The matrices of the single-qubit gates, given by their opcodes.*/
+   private static final double[][][][] MATRICES = {
+      HADAMARD, PAULI_X, PAULI_Y, PAULI_Z, S_GATE, INVERSE_S_GATE, 
+      T_GATE, INVERSE_T_GATE, SQRT_X, INVERSE_SQRT_X
+   };
+   /** The opcodes of the gate names without control prefix.*/
+   private static final HashMap<String, Integer> OPCODES = new HashMap<>();
+   static {
+      String[] names = {"h", "x", "y", "z", "s", "sdg", "t", "tdg", "sx", "sxdg"};
+      for (int op = 0; op < names.length; op++) {
+         OPCODES.put(names[op], op);
+      }
+      OPCODES.put("swap", SWAP);
+      OPCODES.put("qft", QFT);
+      OPCODES.put("iqft", IQFT);
+      OPCODES.put("measure", MEASURE);
+   }
+
+   /** The number of qubits of this circuit.*/
+   private final int size;
+   /** The instructions, each one given by its opcode followed by its operands:
+    *  <code>op j</code> for single-qubit gates and measurements, <code>CX j k</code>,
+    *  <code>CCX j1 j2 k</code>, <code>SWAP j k</code>, <code>QFT j m</code>,
+    *  <code>IQFT j m</code>, <code>MEASURE_ALL</code>, and 
+    *  <code>UNITARY u m j1 ... jm</code> for the matrix <code>matrices[u]</code> 
+    *  with controls <code>j1 ... j(m-1)</code> and target <code>jm</code>.
+    */
+   private final int[] code;
+   /** The matrices of the controlled gates and rotations.*/
+   private final double[][][][] matrices;
+   /** The numbers of gates and of measurements of this circuit.*/
+   private final int gates, measurements;
+
+   /** The plan of a file, together with the file's length and time of last modification.*/
+   private static final class Cached {
+      final long length, lastModified;
+      final CircuitPlan plan;
+
+      Cached(long length, long lastModified, CircuitPlan plan) {
+         this.length = length;
+         this.lastModified = lastModified;
+         this.plan = plan;
+      }
+   }
+
+   private CircuitPlan(int size, int[] code, double[][][][] matrices, int gates, int measurements) {
+      this.size = size;
+      this.code = code;
+      this.matrices = matrices;
+      this.gates = gates;
+      this.measurements = measurements;
+   }
+
+   /** Returns the number of qubits of this circuit.
+    *  @return the number of qubits of this circuit
+    */
+   public int getSize() {
+      return size;
+   }
+
+   /** Returns the number of gates of this circuit, including the measurements.
+    *  @return the number of gates of this circuit
+    */
+   public int getNumberOfGates() {
+      return gates;
+   }
+
+   /** Returns the number of measurements of this circuit, i.e., the length of the
+    *  array returned by {@link #execute(Register)}.
+    *  @return the number of measurements of this circuit
+    */
+   public int getNumberOfMeasurements() {
+      return measurements;
+   }
+
+   /** Returns the plan of the circuit described by the specified file.
+    *  If the file has been loaded before and has not been modified since, 
+    *  the cached plan is returned without reading the file.
+    *  At most {@link #CACHE_CAPACITY} plans are cached, the least recently loaded
+    *  ones being discarded first.
+    *  @param file the circuit file
+    *  @return the plan of the circuit
+    *  @throws IOException if the file cannot be read
+    *  @throws IllegalArgumentException if the file is not a valid circuit description
+    *  @see #parse(Reader)
+    */
+   public static CircuitPlan load(File file) throws IOException {
+      String key = file.getCanonicalPath();
+      long length = file.length(), lastModified = file.lastModified();
+      synchronized (CACHE) {
+         Cached cached = CACHE.get(key);
+         if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+            return cached.plan;
+         }
+      }
+      CircuitPlan plan;
+      try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+         plan = parse(reader);
+      }
+      synchronized (CACHE) {
+         CACHE.put(key, new Cached(length, lastModified, plan));
+      }
+      return plan;
+   }
+
+   /** Discards all plans cached by {@link #load(File)}.*/
+   public static void clearCache() {
+      synchronized (CACHE) {
+         CACHE.clear();
+      }
+   }
+
+   /** Compiles the circuit description read from the specified reader, line by line.
+    *  The result is not cached.
+    *  @param reader the reader of the circuit description
+    *  @return the plan of the circuit
+    *  @throws IOException if the reader cannot be read
+    *  @throws IllegalArgumentException if the text is not a valid circuit description,
+    *  the message indicating the number of the invalid line
+    *  @see #load(File)
+    */
+   public static CircuitPlan parse(Reader reader) throws IOException {
+      BufferedReader in = reader instanceof BufferedReader 
+         ? (BufferedReader) reader : new BufferedReader(reader);
+      ArrayList<String> tokens = new ArrayList<>();
+      ArrayList<double[][][]> matrices = new ArrayList<>(Arrays.asList(MATRICES));
+      int[] code = new int[1024];
+      int length = 0, size = 0, gates = 0, measurements = 0, lineNumber = 0;
+      String line;
+      while ((line = in.readLine()) != null) {
+         lineNumber++;
+         tokenize(line, tokens);
+         if (tokens.isEmpty()) {
+            continue;
+         }
+         try {
+            String name = tokens.get(0);
+            if (size == 0) {
+               if (!name.equals("qubits") || tokens.size() != 2) {
+                  throw new IllegalArgumentException("The number of qubits must be declared first");
+               }
+               size = Integer.parseInt(tokens.get(1));
+               if (size < 1) {
+                  throw new IllegalArgumentException("Invalid number of qubits " + size);
+               }
+               continue;
+            }
+            if (code.length - length < tokens.size() + 2) {
+               code = Arrays.copyOf(code, 2 * code.length + tokens.size());
+            }
+            int controls = 0;
+            while (controls < name.length() && name.charAt(controls) == 'c') {
+               controls++;
+            }
+            String base = name.substring(controls);
+            Integer op = OPCODES.get(base);
+            int qubits = tokens.size() - 1;
+            if (base.equals("rx") || base.equals("ry") || base.equals("rz")) {
+               if (qubits != controls + 2) {
+                  throw new IllegalArgumentException(name + " requires an angle and " + (controls + 1) + " qubits");
+               }
+               code[length++] = UNITARY;
+               code[length++] = matrices.size();
+               code[length++] = controls + 1;
+               matrices.add(rotation(base.substring(1), angle(tokens.get(1))));
+               length = qubits(tokens, 2, size, code, length);
+            } else if (op == null || (controls > 0 && op > SXDG)) {
+               throw new IllegalArgumentException("Unknown gate " + name);
+            } else if (op <= SXDG) {
+               if (qubits != controls + 1) {
+                  throw new IllegalArgumentException(name + " requires " + (controls + 1) + " qubits");
+               }
+               if (op == X && controls == 1) {
+                  code[length++] = CX;
+               } else if (op == X && controls == 2) {
+                  code[length++] = CCX;
+               } else if (controls > 0) {
+                  code[length++] = UNITARY;
+                  code[length++] = op;
+                  code[length++] = controls + 1;
+               } else {
+                  code[length++] = op;
+               }
+               length = qubits(tokens, 1, size, code, length);
+            } else if (op == SWAP) {
+               if (qubits != 2) {
+                  throw new IllegalArgumentException("swap requires 2 qubits");
+               }
+               code[length++] = SWAP;
+               length = qubits(tokens, 1, size, code, length);
+            } else if (op == QFT || op == IQFT) {
+               code[length++] = op;
+               if (qubits == 0) {
+                  code[length++] = 1;
+                  code[length++] = size;
+               } else if (qubits == 2) {
+                  int j = Integer.parseInt(tokens.get(1)), m = Integer.parseInt(tokens.get(2));
+                  if (j < 1 || m < 1 || j + m - 1 > size) {
+                     throw new IllegalArgumentException("Invalid qubit range " + j + ", ..., " + (j + m - 1));
+                  }
+                  code[length++] = j;
+                  code[length++] = m;
+               } else {
+                  throw new IllegalArgumentException(name + " requires no or 2 operands");
+               }
+            } else { // measurement
+               if (qubits == 0) {
+                  code[length++] = MEASURE_ALL;
+               } else if (qubits == 1) {
+                  code[length++] = MEASURE;
+                  length = qubits(tokens, 1, size, code, length);
+               } else {
+                  throw new IllegalArgumentException("measure requires no or 1 qubit");
+               }
+               measurements++;
+            }
+            gates++;
+         } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+         }
+      }
+      if (size == 0) {
+         throw new IllegalArgumentException("No qubits declared");
+      }
+      return new CircuitPlan(
+         size, Arrays.copyOf(code, length), matrices.toArray(new double[0][][][]), gates, measurements
+      );
+   }
+
+   /** Splits the specified line into its lower case tokens, ignoring comments.*/
+   private static void tokenize(String line, ArrayList<String> tokens) {
+      tokens.clear();
+      int end = line.indexOf('#');
+      if (end < 0) {
+         end = line.length();
+      }
+      int start = -1;
+      for (int i = 0; i <= end; i++) {
+         char c = i < end ? line.charAt(i) : ' ';
+         if (Character.isWhitespace(c) || c == ',' || c == ';') {
+            if (start >= 0) {
+               tokens.add(line.substring(start, i).toLowerCase());
+               start = -1;
+            }
+         } else if (start < 0) {
+            start = i;
+         }
+      }
+   }
+
+   /** Parses the qubits given by the tokens from the specified index on into the code, 
+    *  and returns the new length of the code.
+    */
+   private static int qubits(ArrayList<String> tokens, int from, int size, int[] code, int length) {
+      int start = length;
+      for (int i = from; i < tokens.size(); i++) {
+         int j = Integer.parseInt(tokens.get(i));
+         if (j < 1 || j > size) {
+            throw new IllegalArgumentException("Qubit " + j + " does not exist");
+         }
+         for (int k = start; k < length; k++) {
+            if (code[k] == j) {
+               throw new IllegalArgumentException("Qubit " + j + " specified twice");
+            }
+         }
+         code[length++] = j;
+      }
+      return length;
+   }
+
+   /** Parses an angle given in radians or as a multiple of &#x03C0;, e.g., "-3*pi/4".*/
+   private static double angle(String token) {
+      int pi = token.indexOf("pi");
+      if (pi < 0) {
+         return Double.parseDouble(token);
+      }
+      double factor;
+      if (pi == 0) {
+         factor = 1;
+      } else if (pi == 1 && token.charAt(0) == '-') {
+         factor = -1;
+      } else if (token.charAt(pi - 1) == '*') {
+         factor = Double.parseDouble(token.substring(0, pi - 1));
+      } else {
+         throw new NumberFormatException("Invalid angle " + token);
+      }
+      String rest = token.substring(pi + 2);
+      if (rest.isEmpty()) {
+         return factor * Math.PI;
+      } else if (rest.charAt(0) == '/') {
+         return factor * Math.PI / Double.parseDouble(rest.substring(1));
+      }
+      throw new NumberFormatException("Invalid angle " + token);
+   }
+
+   /** Executes this circuit on the specified register, whose first qubits are acted on.
+    *  The register therefore must consist of at least as many qubits as the circuit.
+    *  @param register the register to act on
+    *  @return the measured values, in the order of the measurements of the circuit
+    *  @throws IllegalArgumentException if the register has less qubits than the circuit
+    */
+   public int[] execute(Register register) {
+      if (register.getSize() < size) {
+         throw new IllegalArgumentException(
+            "Register of " + register.getSize() + " qubits for a circuit of " + size + " qubits"
+         );
+      }
+      final int[] code = this.code;
+      int[] values = new int[measurements];
+      int m = 0;
+      for (int pc = 0; pc < code.length;) {
+         switch (code[pc]) {
+            case H:    register.hadamard(code[pc + 1]);     pc += 2; break;
+            case X:    register.xPauli(code[pc + 1]);       pc += 2; break;
+            case Y:    register.yPauli(code[pc + 1]);       pc += 2; break;
+            case Z:    register.zPauli(code[pc + 1]);       pc += 2; break;
+            case S:    register.sGate(code[pc + 1]);        pc += 2; break;
+            case SDG:  register.inverseSGate(code[pc + 1]); pc += 2; break;
+            case T:    register.tGate(code[pc + 1]);        pc += 2; break;
+            case TDG:  register.inverseTGate(code[pc + 1]); pc += 2; break;
+            case SX:   register.sqrtX(code[pc + 1]);        pc += 2; break;
+            case SXDG: register.inverseSqrtX(code[pc + 1]); pc += 2; break;
+            case CX:   register.cNOT(code[pc + 1], code[pc + 2]); pc += 3; break;
+            case CCX:  register.toffoli(code[pc + 1], code[pc + 2], code[pc + 3]); pc += 4; break;
+            case SWAP: register.swap(code[pc + 1], code[pc + 2]); pc += 3; break;
+            case UNITARY:
+               int qubits = code[pc + 2];
+               register.applyControlled(matrices[code[pc + 1]], Arrays.copyOfRange(code, pc + 3, pc + 3 + qubits));
+               pc += 3 + qubits;
+               break;
+            case QFT:  register.qftRange(code[pc + 1], code[pc + 2]);        pc += 3; break;
+            case IQFT: register.inverseQftRange(code[pc + 1], code[pc + 2]); pc += 3; break;
+            case MEASURE:     values[m++] = register.measure(code[pc + 1]); pc += 2; break;
+            case MEASURE_ALL: values[m++] = register.measure(); pc += 1; break;
+            default: throw new IllegalStateException("Invalid opcode " + code[pc]);
+         }
+      }
+      return values;
+   }
+}
@@ -0,0 +1,375 @@
+/*
+ * DenseStateVector.java - Operations on all amplitudes of a quantum register
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import static java.lang.Math.*;
+/**
+ * This class implements the operations of a {@link StateVector} storing all 
+ * 2<sup><i>n</i></sup> amplitudes of a quantum register of <i>n</i> qubits, namely
+ * a controlled 2 &#x00D7; 2 unitary, a 2<sup><i>k</i></sup> &#x00D7; 2<sup><i>k</i></sup>
+ * unitary on <i>k</i> qubits, the fast Fourier transform, and the measurement 
+ * operations. They access the amplitudes only by {@link #getReal(long)}, 
+ * {@link #getImaginary(long)} and {@link #set(long, double, double)}, such that they
+ * are independent of the way the subclasses store the amplitudes. A subclass may 
+ * override an operation by a faster one for its kind of storage.
+ * As in the case of a register on the heap, the gates of large registers are
+ * executed in parallel by the common fork-join pool.
+ * @author  Andreas de Vries
+ * @version 1.0
+ * @see OffHeapStateVector
+ * @see FloatStateVector
+ */
+abstract class DenseStateVector extends StateVector {
+   /** The minimum number of indices a parallel chunk consists of.*/
+   private final static long MIN_CHUNK_LENGTH = 1 << 12;
+   /** The number of qubits.*/
+   final int size;
+   /** The number 2<sup><i>n</i></sup> of amplitudes.*/
+   final long length;
+
+   /** Creates the operations on the amplitudes of <i>n</i> qubits.
+    *  @param size the number <i>n</i> of qubits
+    */
+   DenseStateVector(int size) {
+      this.size = size;
+      this.length = 1L << size;
+   }
+
+   @Override
+   long length() {
+      return length;
+   }
+
+   @Override
+   void copyTo(double[] real, double[] imaginary) {
+      for (int i = 0; i < real.length; i++) {
+         real[i] = getReal(i);
+         imaginary[i] = getImaginary(i);
+      }
+   }
+
+   @Override
+   void copyFrom(double[] real, double[] imaginary) {
+      for (int i = 0; i < real.length; i++) {
+         set(i, real[i], imaginary[i]);
+      }
+   }
+
+   @Override
+   void unitary(final long controls, final long h, double[][][] u) {
+      final long fixed = controls | h;
+      final double ur00 = u[0][0][0], ui00 = u[0][0][1];
+      final double ur01 = u[0][1][0], ui01 = u[0][1][1];
+      final double ur10 = u[1][0][0], ui10 = u[1][0][1];
+      final double ur11 = u[1][1][0], ui11 = u[1][1][1];
+
+      execute(length >> Long.bitCount(fixed), (from, to) -> {
+         double x0, y0, x1, y1;
+         for (long r = from; r < to; r++) {
+            long i0 = insertZeros(r, fixed) | controls;
+            long i1 = i0 | h;
+
+            x0 = getReal(i0);
+            y0 = getImaginary(i0);
+            x1 = getReal(i1);
+            y1 = getImaginary(i1);
+
+            set(i0, ur00 * x0 - ui00 * y0 + ur01 * x1 - ui01 * y1,
+                    ur00 * y0 + ui00 * x0 + ur01 * y1 + ui01 * x1);
+            set(i1, ur10 * x0 - ui10 * y0 + ur11 * x1 - ui11 * y1,
+                    ur10 * y0 + ui10 * x0 + ur11 * y1 + ui11 * x1);
+         }
+      });
+   }
+
+   @Override
+   void apply(final double[][][] matrix, long[] bits) {
+      final int dim = matrix.length;
+      final long[] offset = new long[dim];
+      long m = 0;
+      for (int i = 0; i < bits.length; i++) {
+         m |= bits[i];
+         for (int l = 1 << i; l < 1 << (i+1); l++) {
+            offset[l] = offset[l - (1 << i)] | bits[i];
+         }
+      }
+      final long mask = m;
+
+      execute(length >> bits.length, (from, to) -> {
+         double[] x = new double[dim];
+         double[] y = new double[dim];
+         double sumX, sumY;
+         for (long b = from; b < to; b++) {
+            long base = insertZeros(b, mask);
+            for (int l = 0; l < dim; l++) {
+               x[l] = getReal(base | offset[l]);
+               y[l] = getImaginary(base | offset[l]);
+            }
+            for (int r = 0; r < dim; r++) {
+               sumX = 0;
+               sumY = 0;
+               for (int s = 0; s < dim; s++) {
+                  sumX += matrix[r][s][0] * x[s] - matrix[r][s][1] * y[s];
+                  sumY += matrix[r][s][0] * y[s] + matrix[r][s][1] * x[s];
+               }
+               set(base | offset[r], sumX, sumY);
+            }
+         }
+      });
+   }
+
+   /** Exchanges the amplitudes of the index pairs in which exactly one of the
+    *  bits is set, without any arithmetic.*/
+   @Override
+   void swap(final long a, final long b) {
+      final long fixed = a | b;
+
+      execute(length >> 2, (from, to) -> {
+         double x, y;
+         for (long r = from; r < to; r++) {
+            long i = insertZeros(r, fixed) | a;
+            long k = i ^ fixed;
+            x = getReal(i);
+            y = getImaginary(i);
+            set(i, getReal(k), getImaginary(k));
+            set(k, x, y);
+         }
+      });
+   }
+
+   @Override
+   void scale(final double factor) {
+      execute(length, (from, to) -> {
+         for (long i = from; i < to; i++) {
+            set(i, factor * getReal(i), factor * getImaginary(i));
+         }
+      });
+   }
+
+   /** Fast Fourier transform of the amplitudes, with the same bit-reversal and
+    *  Danielson-Lanczos sections as the transform of a register on the heap,
+    *  using the cached twiddle factors of {@link FourierTransform}.
+    */
+   @Override
+   void fft(final int low, final int bits, final int isign) {
+      if (bits == 0) {
+         return;
+      }
+      final long mask = (1L << bits) - 1;
+      final double scale = sqrt(1. / (1L << bits));
+      final FourierTransform twiddles = FourierTransform.of(bits);
+
+      // bit-reversal of the qubits, each pair of indices swapped by the smaller one:
+      execute(length, (from, to) -> {
+         for (long i = from; i < to; i++) {
+            long t = (i >>> low) & mask;
+            long r = Long.reverse(t) >>> (64 - bits);
+            if (r >= t) {
+               long k = i + ((r - t) << low);
+               double tempr = getReal(k) * scale;
+               double tempi = getImaginary(k) * scale;
+               set(k, getReal(i) * scale, getImaginary(i) * scale);
+               set(i, tempr, tempi);
+            }
+         }
+      });
+
+      // Danielson-Lanczos routine, the butterflies of each stage in parallel:
+      for (long mmax = 1; mmax <= mask; mmax *= 2) {
+         final long h = mmax << low;
+         final long span = mmax - 1;
+         final int shift = bits - 1 - Long.numberOfTrailingZeros(mmax); // t * M/2mmax
+         execute(length / 2, (from, to) -> {
+            for (long p = from; p < to; p++) {
+               long i = insertZeros(p, h);
+               long k = i + h;
+               long t = ((i >>> low) & span) << shift;
+               double wr = twiddles.cos(t);
+               double wi = isign * twiddles.sin(t);
+               double tmpr = wr * getReal(k) - wi * getImaginary(k);
+               double tmpi = wr * getImaginary(k) + wi * getReal(k);
+               double xr = getReal(i), xi = getImaginary(i);
+               set(k, xr - tmpr, xi - tmpi);
+               set(i, xr + tmpr, xi + tmpi);
+            }
+         });
+      }
+   }
+
+   @Override
+   double probability(final long mask, final long value) {
+      return new SumTask(0, length, (from, to) -> {
+         double p = 0;
+         for (long i = from; i < to; i++) {
+            if ((i & mask) == value) {
+               double x = getReal(i), y = getImaginary(i);
+               p += x * x + y * y;
+            }
+         }
+         return p;
+      }).invoke();
+   }
+
+   @Override
+   long cumulativeIndex(double f) {
+      long j = -1;
+      while (f >= 0 && j < length - 1) {
+         j++;
+         double x = getReal(j), y = getImaginary(j);
+         f -= x * x + y * y;
+      }
+      return j;
+   }
+
+   @Override
+   long[] cumulativeIndices(double[] f) {
+      long[] indices = new long[f.length];
+      double total = probability(0, 0);
+      double sum = 0;
+      long j = 0;
+      for (int s = 0; s < f.length; s++) {
+         double p = f[s] * total;
+         while (j < length - 1) {
+            double x = getReal(j), y = getImaginary(j);
+            if (p < sum + x * x + y * y) {
+               break;
+            }
+            sum += x * x + y * y;
+            j++;
+         }
+         indices[s] = j;
+      }
+      return indices;
+   }
+
+   @Override
+   void collapse(final long j) {
+      execute(length, (from, to) -> {
+         for (long i = from; i < to; i++) {
+            set(i, i == j ? 1 : 0, 0);
+         }
+      });
+   }
+
+   @Override
+   void project(final long h, final long value) {
+      execute(length, (from, to) -> {
+         for (long i = from; i < to; i++) {
+            if ((i & h) != value) {
+               set(i, 0, 0);
+            } else if (abs(getReal(i)) > Register.ACCURACY || abs(getImaginary(i)) > Register.ACCURACY) {
+               set(i, 1, 0);
+            }
+         }
+      });
+      scale(1 / sqrt(probability(0, 0)));
+   }
+
+   /** Executes the kernel on the index range [0, <code>length</code>), in parallel
+    *  if the register is large enough.
+    */
+   void execute(long length, Kernel kernel) {
+      if (size < Register.getParallelThreshold() || length < 2 * MIN_CHUNK_LENGTH) {
+         kernel.apply(0, length);
+      } else {
+         long chunk = max(MIN_CHUNK_LENGTH, length / (4 * ForkJoinPool.getCommonPoolParallelism()));
+         ForkJoinPool.commonPool().invoke(new KernelTask(kernel, 0, length, chunk));
+      }
+   }
+
+   /** An operation on the indices of a contiguous range.*/
+   @FunctionalInterface
+   interface Kernel {
+      /** Applies the operation to the indices <i>from</i>, ..., <i>to</i> - 1. */
+      void apply(long from, long to);
+   }
+
+   /** A summation over the indices of a contiguous range.*/
+   @FunctionalInterface
+   private interface Summand {
+      /** Returns the sum over the indices <i>from</i>, ..., <i>to</i> - 1. */
+      double apply(long from, long to);
+   }
+
+   /** Fork-join task recursively halving an index range of a kernel.*/
+   private static class KernelTask extends RecursiveAction {
+      private static final long serialVersionUID = 1516331736;
+      private final Kernel kernel;
+      private final long from, to, chunk;
+
+      KernelTask(Kernel kernel, long from, long to, long chunk) {
+         this.kernel = kernel;
+         this.from = from;
+         this.to = to;
+         this.chunk = chunk;
+      }
+
+      @Override
+      protected void compute() {
+         if (to - from <= chunk) {
+            kernel.apply(from, to);
+         } else {
+            long mid = (from + to) >>> 1;
+            invokeAll(new KernelTask(kernel, from, mid, chunk), new KernelTask(kernel, mid, to, chunk));
+         }
+      }
+   }
+
+   /** Fork-join task recursively halving an index range of a summation.
+    *  The ranges do not depend on the parallelism, so the result is reproducible.
+    */
+   private static class SumTask extends RecursiveTask<Double> {
+      private static final long serialVersionUID = 1516331737;
+      private static final long CHUNK = 1 << 16;
+      private final long from, to;
+      private final Summand summand;
+
+      SumTask(long from, long to, Summand summand) {
+         this.from = from;
+         this.to = to;
+         this.summand = summand;
+      }
+
+      @Override
+      protected Double compute() {
+         if (to - from <= CHUNK) {
+            return summand.apply(from, to);
+         }
+         long mid = (from + to) >>> 1;
+         SumTask left = new SumTask(from, mid, summand);
+         left.fork();
+         double right = new SumTask(mid, to, summand).compute();
+         return left.join() + right;
+      }
+   }
+}
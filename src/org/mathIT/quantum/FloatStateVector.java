@@ -0,0 +1,248 @@
+/*
+ * FloatStateVector.java - Amplitudes of a quantum register stored in single precision
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import static java.lang.Math.*;
+/**
+ * This class stores the 2<sup><i>n</i></sup> amplitudes of a quantum register of
+ * <i>n</i> qubits in single precision, i.e., their real and imaginary parts as
+ * <code>float</code> values in arrays on the heap. Thus a register requires 
+ * 2<sup><i>n</i>+3</sup> bytes, half the memory of a register in double precision,
+ * such that one more qubit fits into the same memory. Since the amplitudes are 
+ * addressed by <code>long</code> indices and stored in pages of at most 
+ * 2<sup>26</sup> amplitudes, the number of qubits is not limited by the maximum
+ * array length.
+ * <p>
+ * The single-qubit gates and the gates on several qubits, whose running time is 
+ * dominated by the memory bandwidth for large registers, are computed in single
+ * precision directly on the pages; the other operations are those of 
+ * {@link DenseStateVector}. Therefore each gate changes the norm of the state by a
+ * relative rounding error of the order 10<sup>-7</sup>, and the deviations accumulate
+ * over many gates. To monitor this drift, the state can be renormalized after every
+ * <i>k</i> gates, where the maximum deviation of the squared norm from 1 is recorded.
+ * </p>
+ * @author  Andreas de Vries
+ * @version 1.0
+ * @see Register#singlePrecision(int)
+ */
+final class FloatStateVector extends DenseStateVector {
+   /** The binary logarithm of the maximum number of amplitudes of a page.*/
+   private final static int PAGE_BITS = 26;
+   /** The bit mask of the index of an amplitude within its page.*/
+   private final static int PAGE_MASK = (1 << PAGE_BITS) - 1;
+   /** The pages of the real parts of the amplitudes.*/
+   private final float[][] re;
+   /** The pages of the imaginary parts of the amplitudes.*/
+   private final float[][] im;
+   /** The number <i>k</i> of gates after which the state is renormalized, or 0.*/
+   private int renormalizationInterval;
+   /** The number of gates since the last renormalization.*/
+   private int gates;
+   /** The maximum deviation of the squared norm from 1 at a renormalization.*/
+   private double maxNormDrift;
+
+   /** Creates the amplitudes of <i>n</i> qubits in single precision,
+    *  initialized to the state |0&gt;.
+    *  @param size the number <i>n</i> of qubits
+    */
+   FloatStateVector(int size) {
+      super(size);
+      int pageLength = (int) min(length, 1L << PAGE_BITS);
+      re = new float[(int) (length / pageLength)][pageLength];
+      im = new float[re.length][pageLength];
+      re[0][0] = 1;
+   }
+
+   /** Returns the number <i>k</i> of gates after which the state is renormalized.
+    *  @return the renormalization interval, or 0 if the state is not renormalized
+    */
+   int getRenormalizationInterval() {
+      return renormalizationInterval;
+   }
+
+   /** Sets the number <i>k</i> of gates after which the state is renormalized.
+    *  @param interval the renormalization interval, or 0 if the state is not renormalized
+    */
+   void setRenormalizationInterval(int interval) {
+      renormalizationInterval = interval;
+      gates = 0;
+   }
+
+   /** Returns the maximum deviation |1 - ||<i>&#x03C8;</i>||<sup>2</sup>| of the
+    *  squared norm from 1 found at a renormalization.
+    *  @return the maximum norm drift
+    */
+   double getMaxNormDrift() {
+      return maxNormDrift;
+   }
+
+   /** Normalizes the state, recording the deviation of its squared norm from 1.*/
+   void renormalize() {
+      double norm = probability(0, 0);
+      maxNormDrift = max(maxNormDrift, abs(1 - norm));
+      if (norm > 0) {
+         scale(1 / sqrt(norm));
+      }
+      gates = 0;
+   }
+
+   /** Counts a gate and renormalizes the state if the interval is reached.*/
+   private void count() {
+      if (renormalizationInterval > 0 && ++gates >= renormalizationInterval) {
+         renormalize();
+      }
+   }
+
+   @Override
+   double getReal(long i) {
+      return re[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK];
+   }
+
+   @Override
+   double getImaginary(long i) {
+      return im[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK];
+   }
+
+   @Override
+   void set(long i, double x, double y) {
+      re[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK] = (float) x;
+      im[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK] = (float) y;
+   }
+
+   @Override
+   FloatStateVector copy() {
+      FloatStateVector copy = new FloatStateVector(size);
+      for (int p = 0; p < re.length; p++) {
+         System.arraycopy(re[p], 0, copy.re[p], 0, re[p].length);
+         System.arraycopy(im[p], 0, copy.im[p], 0, im[p].length);
+      }
+      copy.renormalizationInterval = renormalizationInterval;
+      copy.gates = gates;
+      copy.maxNormDrift = maxNormDrift;
+      return copy;
+   }
+
+   /** Applies the matrix in single precision to the amplitude pairs whose 
+    *  control bits are all set.*/
+   @Override
+   void unitary(final long controls, final long h, double[][][] u) {
+      final float ur00 = (float) u[0][0][0], ui00 = (float) u[0][0][1];
+      final float ur01 = (float) u[0][1][0], ui01 = (float) u[0][1][1];
+      final float ur10 = (float) u[1][0][0], ui10 = (float) u[1][0][1];
+      final float ur11 = (float) u[1][1][0], ui11 = (float) u[1][1][1];
+      final long fixed = controls | h;
+      
+      if (re.length == 1 && controls == 0) { // a single page: the pair index suffices
+         final float[] re0 = re[0], im0 = im[0];
+         final int k = (int) h;
+         execute(length >> 1, (from, to) -> {
+            for (int p = (int) from; p < to; p++) {
+               int k0 = ((p & -k) << 1) | (p & (k - 1));
+               int k1 = k0 | k;
+               float x0 = re0[k0], y0 = im0[k0], x1 = re0[k1], y1 = im0[k1];
+               re0[k0] = ur00 * x0 - ui00 * y0 + ur01 * x1 - ui01 * y1;
+               im0[k0] = ur00 * y0 + ui00 * x0 + ur01 * y1 + ui01 * x1;
+               re0[k1] = ur10 * x0 - ui10 * y0 + ur11 * x1 - ui11 * y1;
+               im0[k1] = ur10 * y0 + ui10 * x0 + ur11 * y1 + ui11 * x1;
+            }
+         });
+         count();
+         return;
+      }
+      execute(length >> Long.bitCount(fixed), (from, to) -> {
+         for (long r = from; r < to; r++) {
+            long i0 = insertZeros(r, fixed) | controls;
+            long i1 = i0 | h;
+            float[] re0 = re[(int) (i0 >>> PAGE_BITS)], im0 = im[(int) (i0 >>> PAGE_BITS)];
+            float[] re1 = re[(int) (i1 >>> PAGE_BITS)], im1 = im[(int) (i1 >>> PAGE_BITS)];
+            int k0 = (int) i0 & PAGE_MASK, k1 = (int) i1 & PAGE_MASK;
+            float x0 = re0[k0], y0 = im0[k0], x1 = re1[k1], y1 = im1[k1];
+            re0[k0] = ur00 * x0 - ui00 * y0 + ur01 * x1 - ui01 * y1;
+            im0[k0] = ur00 * y0 + ui00 * x0 + ur01 * y1 + ui01 * x1;
+            re1[k1] = ur10 * x0 - ui10 * y0 + ur11 * x1 - ui11 * y1;
+            im1[k1] = ur10 * y0 + ui10 * x0 + ur11 * y1 + ui11 * x1;
+         }
+      });
+      count();
+   }
+
+   /** Applies the matrix in single precision to the amplitudes of each setting
+    *  of the other qubits.*/
+   @Override
+   void apply(double[][][] matrix, long[] bits) {
+      final int dim = matrix.length;
+      final float[][] mr = new float[dim][dim], mi = new float[dim][dim];
+      for (int r = 0; r < dim; r++) {
+         for (int s = 0; s < dim; s++) {
+            mr[r][s] = (float) matrix[r][s][0];
+            mi[r][s] = (float) matrix[r][s][1];
+         }
+      }
+      final long[] offset = new long[dim];
+      long m = 0;
+      for (int i = 0; i < bits.length; i++) {
+         m |= bits[i];
+         for (int l = 1 << i; l < 1 << (i+1); l++) {
+            offset[l] = offset[l - (1 << i)] | bits[i];
+         }
+      }
+      final long mask = m;
+
+      execute(length >> bits.length, (from, to) -> {
+         float[] x = new float[dim];
+         float[] y = new float[dim];
+         for (long b = from; b < to; b++) {
+            long base = insertZeros(b, mask);
+            for (int l = 0; l < dim; l++) {
+               long i = base | offset[l];
+               x[l] = re[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK];
+               y[l] = im[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK];
+            }
+            for (int r = 0; r < dim; r++) {
+               float sumX = 0, sumY = 0;
+               for (int s = 0; s < dim; s++) {
+                  sumX += mr[r][s] * x[s] - mi[r][s] * y[s];
+                  sumY += mr[r][s] * y[s] + mi[r][s] * x[s];
+               }
+               long i = base | offset[r];
+               re[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK] = sumX;
+               im[(int) (i >>> PAGE_BITS)][(int) i & PAGE_MASK] = sumY;
+            }
+         }
+      });
+      count();
+   }
+
+   @Override
+   void fft(int low, int bits, int isign) {
+      super.fft(low, bits, isign);
+      count();
+   }
+}
@@ -0,0 +1,286 @@
+/*
+ * FourierTransform.java - Fast Fourier transform of the amplitudes of a quantum register
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import static java.lang.Math.*;
+/**
+ * This class implements the fast Fourier transform of <i>m</i> consecutive qubits
+ * of a quantum register whose amplitudes are stored in arrays on the heap.
+ * The 2<sup><i>n</i></sup> amplitudes of a register of <i>n</i> qubits decompose
+ * into 2<sup><i>n</i>-<i>m</i></sup> vectors of length <i>M</i> = 2<sup><i>m</i></sup>,
+ * each one given by a fixed setting of the other qubits. Each of these vectors
+ * is transformed as
+ * <p style="text-align:center">
+ *   |<i>t</i>&gt; &#x21A6; <i>M</i><sup>-1/2</sup>
+ *   &#x2211;<sub><i>k</i></sub> e<sup>&#x00B1;2&#x03C0;i<i>tk</i>/<i>M</i></sup> |<i>k</i>&gt;,
+ * </p>
+ * where the index <i>t</i> is formed by the bits of the <i>m</i> qubits.
+ * For <i>m</i> = <i>n</i> this is the quantum Fourier transform of the entire register.
+ * <p>
+ * The transform is computed in place, by a bit-reversal permutation followed by
+ * iterative Danielson-Lanczos stages, two of which are merged into a single
+ * radix-4 pass over the amplitudes. Each pass is executed in parallel by the common
+ * fork-join pool. The twiddle factors e<sup>2&#x03C0;i<i>t</i>/<i>M</i></sup> are
+ * not computed by trigonometric functions during the transform but taken from
+ * tables which are created once for each <i>m</i> and cached. To keep the tables
+ * small for large <i>m</i>, a twiddle factor is the product of an entry of a
+ * fine table and an entry of a coarse table, each one of at most about
+ * 2<sup><i>m</i>/2</sup> entries, or 2<sup>14</sup> entries if this is larger.
+ * </p>
+ *
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+final class FourierTransform {
+   /** The maximum binary logarithm of the length of the fine table of twiddle factors,
+    *  if the coarse table would not be larger.*/
+   private static final int FINE_BITS = 14;
+   /** The minimum number of indices a parallel chunk of a pass consists of.*/
+   private static final int MIN_CHUNK_LENGTH = 1 << 12;
+   /** The cached transforms, given by their numbers of qubits.*/
+   private static final ConcurrentHashMap<Integer, FourierTransform> CACHE = new ConcurrentHashMap<>();
+   /** The number <i>m</i> of transformed qubits.*/
+   private final int bits;
+   /** The binary logarithm of the length of the fine table.*/
+   private final int fineBits;
+   /** The cosines and sines of 2&#x03C0;<i>f</i>/<i>M</i> for 0 &#x2264; <i>f</i> &lt; 2<sup>fineBits</sup>.*/
+   private final double[] fineCos, fineSin;
+   /** The cosines and sines of 2&#x03C0;<i>c</i>&#x00B7;2<sup>fineBits</sup>/<i>M</i>.*/
+   private final double[] coarseCos, coarseSin;
+
+   /** Creates the twiddle tables of the transform of <i>m</i> qubits.*/
+   private FourierTransform(int bits) {
+      this.bits = bits;
+      int tableBits = max(bits - 1, 0); // the twiddle factors 0 <= t < M/2 are required
+      this.fineBits = min(tableBits, max(FINE_BITS, (tableBits + 1) / 2));
+      this.fineCos = new double[1 << fineBits];
+      this.fineSin = new double[1 << fineBits];
+      for (int f = 0; f < fineCos.length; f++) {
+         double theta = 2 * PI * f / pow(2, bits);
+         fineCos[f] = Math.cos(theta);
+         fineSin[f] = Math.sin(theta);
+      }
+      this.coarseCos = new double[1 << (tableBits - fineBits)];
+      this.coarseSin = new double[coarseCos.length];
+      for (int c = 0; c < coarseCos.length; c++) {
+         double theta = 2 * PI * c / pow(2, bits - fineBits);
+         coarseCos[c] = Math.cos(theta);
+         coarseSin[c] = Math.sin(theta);
+      }
+   }
+
+   /** Returns the transform of <i>m</i> qubits, whose twiddle tables are created
+    *  at the first call and cached for all further calls.
+    *  @param bits the number <i>m</i> of transformed qubits
+    *  @return the transform of <i>m</i> qubits
+    */
+   static FourierTransform of(int bits) {
+      return CACHE.computeIfAbsent(bits, FourierTransform::new);
+   }
+
+   /** Returns the cosine of 2&#x03C0;<i>t</i>/<i>M</i>.
+    *  @param t the index of the twiddle factor, 0 &#x2264; <i>t</i> &lt; <i>M</i>/2
+    *  @return the real part of the twiddle factor
+    */
+   double cos(long t) {
+      int f = (int) (t & (fineCos.length - 1)), c = (int) (t >>> fineBits);
+      return coarseCos[c] * fineCos[f] - coarseSin[c] * fineSin[f];
+   }
+
+   /** Returns the sine of 2&#x03C0;<i>t</i>/<i>M</i>.
+    *  @param t the index of the twiddle factor, 0 &#x2264; <i>t</i> &lt; <i>M</i>/2
+    *  @return the imaginary part of the twiddle factor
+    */
+   double sin(long t) {
+      int f = (int) (t & (fineCos.length - 1)), c = (int) (t >>> fineBits);
+      return coarseSin[c] * fineCos[f] + coarseCos[c] * fineSin[f];
+   }
+
+   /** Transforms the amplitudes of the <i>m</i> qubits whose lowest bit is
+    *  2<sup><code>low</code></sup>, for each setting of the other qubits.
+    *  @param real the real parts of the amplitudes
+    *  @param imaginary the imaginary parts of the amplitudes
+    *  @param low the bit position of the lowest transformed qubit, i.e., <i>j</i> - 1
+    *  for the qubits <i>j</i>, ..., <i>j</i> + <i>m</i> - 1
+    *  @param isign +1 for the transform, -1 for the inverse transform
+    *  @param parallel flag whether the passes are executed in parallel
+    */
+   void transform(final double[] real, final double[] imaginary, final int low, final int isign, boolean parallel) {
+      if (bits == 0) {
+         return;
+      }
+      final int n = real.length;
+      final int mask = (1 << bits) - 1;
+      final double scale = sqrt(1. / (1 << bits));
+
+      // bit-reversal of the qubits, each pair of indices swapped by the smaller one:
+      execute(n, parallel, (from, to) -> {
+         for (int i = from; i < to; i++) {
+            int t = (i >>> low) & mask;
+            int r = Integer.reverse(t) >>> (32 - bits);
+            if (r >= t) {
+               int k = i + ((r - t) << low);
+               double tempr = real[k] * scale;
+               double tempi = imaginary[k] * scale;
+               real[k] = real[i] * scale;
+               imaginary[k] = imaginary[i] * scale;
+               real[i] = tempr;
+               imaginary[i] = tempi;
+            }
+         }
+      });
+
+      // Danielson-Lanczos stages, two of them merged into a radix-4 pass:
+      int s = 1;
+      for (; 4 * s <= mask + 1; s *= 4) {
+         radix4(real, imaginary, low, s, isign, parallel);
+      }
+      if (s <= mask) {
+         radix2(real, imaginary, low, s, isign, parallel);
+      }
+   }
+
+   /** Executes the two stages with the butterfly spans <i>s</i> and 2<i>s</i> in one pass.
+    *  The four amplitudes <i>a</i><sub>0</sub>, ..., <i>a</i><sub>3</sub> with the
+    *  indices <i>t</i> + <i>ls</i> in a block of length 4<i>s</i> are transformed by the
+    *  twiddle factors <i>w</i> = e<sup>&#x00B1;2&#x03C0;i<i>t</i>/4<i>s</i></sup> and
+    *  <i>w</i><sup>2</sup>.
+    */
+   private void radix4(final double[] real, final double[] imaginary, final int low, int s,
+                       final int isign, boolean parallel) {
+      final int h1 = s << low, h2 = 2 * s << low;
+      final int span = s - 1;
+      final int shift = bits - 2 - Integer.numberOfTrailingZeros(s); // t * M/4s = t << shift
+      execute(real.length / 4, parallel, (from, to) -> {
+         for (int p = from; p < to; p++) {
+            int i0 = insertZero(insertZero(p, h1), h2);
+            int i1 = i0 + h1, i2 = i0 + h2, i3 = i2 + h1;
+            long t = (long) ((i0 >>> low) & span) << shift;
+            double wr = cos(t), wi = isign * sin(t);
+            double vr = wr * wr - wi * wi, vi = 2 * wr * wi; // w^2
+
+            double tr = vr * real[i1] - vi * imaginary[i1];
+            double ti = vr * imaginary[i1] + vi * real[i1];
+            double y0r = real[i0] + tr, y0i = imaginary[i0] + ti;
+            double y1r = real[i0] - tr, y1i = imaginary[i0] - ti;
+            tr = vr * real[i3] - vi * imaginary[i3];
+            ti = vr * imaginary[i3] + vi * real[i3];
+            double y2r = real[i2] + tr, y2i = imaginary[i2] + ti;
+            double y3r = real[i2] - tr, y3i = imaginary[i2] - ti;
+
+            tr = wr * y2r - wi * y2i;
+            ti = wr * y2i + wi * y2r;
+            real[i0] = y0r + tr;
+            imaginary[i0] = y0i + ti;
+            real[i2] = y0r - tr;
+            imaginary[i2] = y0i - ti;
+            // the twiddle factor of a3 is w times e^(+-i pi/2) = +-i:
+            tr = -isign * (wr * y3i + wi * y3r);
+            ti = isign * (wr * y3r - wi * y3i);
+            real[i1] = y1r + tr;
+            imaginary[i1] = y1i + ti;
+            real[i3] = y1r - tr;
+            imaginary[i3] = y1i - ti;
+         }
+      });
+   }
+
+   /** Executes the last stage with the butterfly span <i>s</i> = <i>M</i>/2.*/
+   private void radix2(final double[] real, final double[] imaginary, final int low, int s,
+                       final int isign, boolean parallel) {
+      final int h = s << low;
+      final int span = s - 1;
+      execute(real.length / 2, parallel, (from, to) -> {
+         for (int p = from; p < to; p++) {
+            int i = insertZero(p, h);
+            int k = i + h;
+            long t = (i >>> low) & span;
+            double wr = cos(t), wi = isign * sin(t);
+            double tmpr = wr * real[k] - wi * imaginary[k];
+            double tmpi = wr * imaginary[k] + wi * real[k];
+            real[k] = real[i] - tmpr;
+            imaginary[k] = imaginary[i] - tmpi;
+            real[i] += tmpr;
+            imaginary[i] += tmpi;
+         }
+      });
+   }
+
+   /** Returns the number resulting from <i>r</i> by inserting a 0 at the position of the bit <i>h</i>.*/
+   private static int insertZero(int r, int h) {
+      return ((r & -h) << 1) | (r & (h - 1));
+   }
+
+   /** Executes the kernel on the index range [0, <code>length</code>), in parallel
+    *  if the flag is set and the range is large enough.
+    */
+   private static void execute(int length, boolean parallel, Kernel kernel) {
+      if (!parallel || length < 2 * MIN_CHUNK_LENGTH) {
+         kernel.apply(0, length);
+      } else {
+         int chunk = max(MIN_CHUNK_LENGTH, length / (4 * ForkJoinPool.getCommonPoolParallelism()));
+         ForkJoinPool.commonPool().invoke(new KernelTask(kernel, 0, length, chunk));
+      }
+   }
+
+   /** An operation on the indices of a contiguous range.*/
+   @FunctionalInterface
+   private interface Kernel {
+      /** Applies the operation to the indices <i>from</i>, ..., <i>to</i> - 1. */
+      void apply(int from, int to);
+   }
+
+   /** Fork-join task recursively halving an index range of a kernel.*/
+   private static class KernelTask extends RecursiveAction {
+      private static final long serialVersionUID = 1516331738;
+      private final Kernel kernel;
+      private final int from, to, chunk;
+
+      KernelTask(Kernel kernel, int from, int to, int chunk) {
+         this.kernel = kernel;
+         this.from = from;
+         this.to = to;
+         this.chunk = chunk;
+      }
+
+      @Override
+      protected void compute() {
+         if (to - from <= chunk) {
+            kernel.apply(from, to);
+         } else {
+            int mid = (from + to) >>> 1;
+            invokeAll(new KernelTask(kernel, from, mid, chunk), new KernelTask(kernel, mid, to, chunk));
+         }
+      }
+   }
+}
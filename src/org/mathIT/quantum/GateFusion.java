@@ -0,0 +1,344 @@
+/*
+ * GateFusion.java - Compiler fusing the gates of a quantum circuit
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import static java.lang.Math.*;
+/**
+ * This class compiles a list of quantum gates into an equivalent list
+ * requiring less passes over the quantum register.
+ * Each unitary gate acting on at most <i>k</i> qubits, such as a Hadamard, Pauli,
+ * <i>S</i>, <i>T</i>, &#x221A;X, c-NOT, Toffoli, or rotation gate, is represented by
+ * its 2<sup><i>k</i></sup> &#x00D7; 2<sup><i>k</i></sup> matrix.
+ * <ul>
+ *   <li>
+ *     A run of single-qubit gates on the same wire is fused into a single
+ *     2 &#x00D7; 2 matrix. Since such a gate commutes with all gates on other wires,
+ *     the run is continued until a gate on a further qubit acts on the wire.
+ *   </li>
+ *   <li>
+ *     Adjacent multi-qubit gates are merged into a block of at most
+ *     <code>maxQubits</code> qubits whose matrix is the product of the matrices
+ *     of its gates; pending single-qubit gates are absorbed.
+ *   </li>
+ * </ul>
+ * Each fused block is represented by a "Unitary" gate which is executed by
+ * {@link Register#apply(double[][][], int...)}. A block consisting of a single
+ * gate is left unchanged. All other gates, i.e., Fourier transforms, function
+ * evaluations, Grover operators, and measurements, are barriers which are not
+ * fused and which terminate all blocks of the registers they act on. So are SWAP 
+ * gates, since they are executed in constant time by relabeling the qubits.
+ * Since the matrix products are computed in a different order, the resulting
+ * register states may differ from gate-by-gate execution by rounding errors.
+ *
+ * @author  Andreas de Vries
+ * @version 1.0
+ */
+final class GateFusion {
+   /** The maximum number of qubits of a fused block.*/
+   private final int maxQubits;
+   /** The list of compiled gates.*/
+   private final ArrayList<QuantumGate> compiled = new ArrayList<>();
+   /** The open multi-qubit blocks of the x- and the y-register, respectively.*/
+   private final Block[] block = new Block[2];
+   /** The pending single-qubit blocks of the x- and the y-register, indexed by their wires.
+    *  The wires of a pending block never belong to the open block of its register.
+    */
+   @SuppressWarnings("unchecked")
+   private final TreeMap<Integer, Block>[] pending = new TreeMap[] {new TreeMap<>(), new TreeMap<>()};
+
+   /** Creates a gate fusion compiler.*/
+   private GateFusion(int maxQubits) {
+      this.maxQubits = maxQubits;
+   }
+
+   /** Compiles the specified list of quantum gates into an equivalent list of
+    *  fused gates, where a fused block acts on at most <code>maxQubits</code> qubits.
+    *  The gates of the original list are not modified.
+    *  @param gates the list of quantum gates
+    *  @param maxQubits the maximum number of qubits of a fused block
+    *  @return the compiled list of quantum gates
+    *  @throws IllegalArgumentException if <code>maxQubits</code> is not positive
+    */
+   static ArrayList<QuantumGate> compile(List<QuantumGate> gates, int maxQubits) {
+      if (maxQubits < 1) {
+         throw new IllegalArgumentException("Non-positive number of fused qubits " + maxQubits);
+      }
+      GateFusion fusion = new GateFusion(maxQubits);
+      for (QuantumGate gate : gates) {
+         fusion.add(gate);
+      }
+      fusion.flush(0);
+      fusion.flush(1);
+      return fusion.compiled;
+   }
+
+   /** Returns the conjugate transpose <i>U</i><sup>&#x2020;</sup> of the specified matrix,
+    *  i.e., the inverse of a unitary matrix <i>U</i>.
+    *  @param u a complex matrix
+    *  @return the conjugate transpose of <i>u</i>
+    */
+   static double[][][] adjoint(double[][][] u) {
+      double[][][] a = new double[u[0].length][u.length][2];
+      for (int r = 0; r < u.length; r++) {
+         for (int s = 0; s < u[r].length; s++) {
+            a[s][r][0] =   u[r][s][0];
+            a[s][r][1] = - u[r][s][1];
+         }
+      }
+      return a;
+   }
+
+   /** Adds the specified gate to the compiled gates.*/
+   private void add(QuantumGate gate) {
+      int reg = gate.yRegister ? 1 : 0;
+      double[][][] u = matrix(gate);
+
+      if (u == null || gate.qubits.length > maxQubits) { // barrier
+         if (gate.getName().equals("Function") || gate.getName().equals("Measurement")) {
+            flush(0); // both registers are affected
+            flush(1);
+         } else if (!gate.getName().equals("initialState")) {
+            flush(reg);
+         }
+         compiled.add(gate);
+      } else if (gate.qubits.length == 1) {
+         Block g = new Block(gate, u);
+         int q = gate.qubits[0];
+         if (block[reg] != null && contains(block[reg].qubits, q)) {
+            block[reg] = combine(block[reg], g);
+         } else if (pending[reg].containsKey(q)) {
+            pending[reg].put(q, combine(pending[reg].get(q), g));
+         } else {
+            pending[reg].put(q, g);
+         }
+      } else {
+         Block g = new Block(gate, u);
+         for (int q : gate.qubits) { // the pending gates precede the gate
+            Block p = pending[reg].remove(q);
+            if (p != null) {
+               g = combine(p, g);
+            }
+         }
+         if (block[reg] != null && union(block[reg].qubits, g.qubits).length <= maxQubits) {
+            block[reg] = combine(block[reg], g);
+         } else {
+            emit(block[reg]);
+            block[reg] = g;
+         }
+      }
+   }
+
+   /** Emits the open block and all pending blocks of the specified register.*/
+   private void flush(int reg) {
+      emit(block[reg]);
+      block[reg] = null;
+      for (Block p : pending[reg].values()) {
+         emit(p);
+      }
+      pending[reg].clear();
+   }
+
+   /** Adds the specified block to the compiled gates.*/
+   private void emit(Block b) {
+      if (b == null) {
+         return;
+      }
+      if (b.gate != null) { // block of a single original gate
+         compiled.add(b.gate);
+         return;
+      }
+      for (double[][] row : b.matrix) {
+         for (double[] entry : row) {
+            if (abs(entry[0]) < Register.ACCURACY) {
+               entry[0] = 0;
+            }
+            if (abs(entry[1]) < Register.ACCURACY) {
+               entry[1] = 0;
+            }
+         }
+      }
+      compiled.add(new QuantumGate("Unitary", b.qubits, b.matrix, b.yRegister));
+   }
+
+   /** Returns the block executing first the block <code>a</code> and then the block <code>b</code>.*/
+   private static Block combine(Block a, Block b) {
+      int[] qubits = union(a.qubits, b.qubits);
+      double[][][] matrix = multiply(expand(b.matrix, b.qubits, qubits), expand(a.matrix, a.qubits, qubits));
+      return new Block(qubits, matrix, a.yRegister);
+   }
+
+   /** Returns the matrix of the specified gate, or null if the gate cannot be fused.
+    *  The <i>i</i>-th bit of the row and column indices refers to <code>gate.qubits[i]</code>.
+    */
+   private static double[][][] matrix(QuantumGate gate) {
+      if (gate.qubits == null || gate.qubits.length == 0 || union(gate.qubits, new int[0]).length < gate.qubits.length) {
+         return null; // no or multiply specified qubits
+      }
+      switch (gate.getName()) {
+         case "Hadamard": return Register.HADAMARD;
+         case "Pauli-X":  return Register.PAULI_X;
+         case "Pauli-Y":  return Register.PAULI_Y;
+         case "Pauli-Z":  return Register.PAULI_Z;
+         case "S":        return Register.S_GATE;
+         case "invS":     return Register.INVERSE_S_GATE;
+         case "T":        return Register.T_GATE;
+         case "invT":     return Register.INVERSE_T_GATE;
+         case "sqrt-X":   return Register.SQRT_X;
+         case "cNOT":
+         case "Toffoli":
+            return controlled(Register.PAULI_X, gate.qubits.length);
+         case "Rotation":
+            double[][][] u = Register.rotation(gate.axis, PI / gate.phiAsPartOfPi);
+            return u == null ? null : controlled(u, gate.qubits.length);
+         case "Unitary":
+            return gate.matrix.length == (1 << gate.qubits.length) ? gate.matrix : null;
+         default:
+            return null;
+      }
+   }
+
+   /** Returns the matrix of the gate applying <i>u</i> to the qubit of the highest
+    *  local bit <i>k</i> - 1 if all other <i>k</i> - 1 qubits are set.
+    */
+   private static double[][][] controlled(double[][][] u, int k) {
+      int dim = 1 << k;
+      int controls = (dim >> 1) - 1;
+      double[][][] m = new double[dim][dim][2];
+      for (int r = 0; r < dim; r++) {
+         if (r < controls || (r & controls) != controls) {
+            m[r][r][0] = 1;
+         }
+      }
+      for (int t = 0; t < 2; t++) {
+         for (int v = 0; v < 2; v++) {
+            m[controls | (t << (k-1))][controls | (v << (k-1))] = u[t][v].clone();
+         }
+      }
+      return m;
+   }
+
+   /** Returns the matrix of <i>u</i> acting on the qubits <code>from</code>,
+    *  embedded into the qubits <code>to</code> containing them.
+    */
+   private static double[][][] expand(double[][][] u, int[] from, int[] to) {
+      int[] position = new int[from.length];
+      int rest = (1 << to.length) - 1;
+      for (int i = 0; i < from.length; i++) {
+         for (position[i] = 0; to[position[i]] != from[i]; position[i]++);
+         rest &= ~(1 << position[i]);
+      }
+      int dim = 1 << to.length;
+      double[][][] m = new double[dim][dim][2];
+      for (int r = 0; r < dim; r++) {
+         for (int s = 0; s < dim; s++) {
+            if (((r ^ s) & rest) == 0) {
+               m[r][s] = u[select(r, position)][select(s, position)].clone();
+            }
+         }
+      }
+      return m;
+   }
+
+   /** Returns the number whose <i>i</i>-th bit is the bit of <i>x</i> at <code>position[i]</code>.*/
+   private static int select(int x, int[] position) {
+      int y = 0;
+      for (int i = 0; i < position.length; i++) {
+         y |= ((x >> position[i]) & 1) << i;
+      }
+      return y;
+   }
+
+   /** Returns the complex matrix product <i>ab</i>.*/
+   private static double[][][] multiply(double[][][] a, double[][][] b) {
+      int dim = a.length;
+      double[][][] c = new double[dim][dim][2];
+      for (int r = 0; r < dim; r++) {
+         for (int l = 0; l < dim; l++) {
+            double ar = a[r][l][0], ai = a[r][l][1];
+            if (ar == 0 && ai == 0) {
+               continue;
+            }
+            for (int s = 0; s < dim; s++) {
+               c[r][s][0] += ar * b[l][s][0] - ai * b[l][s][1];
+               c[r][s][1] += ar * b[l][s][1] + ai * b[l][s][0];
+            }
+         }
+      }
+      return c;
+   }
+
+   /** Returns the sorted union of the specified qubits, without repetitions.*/
+   private static int[] union(int[] a, int[] b) {
+      return IntStream.concat(Arrays.stream(a), Arrays.stream(b)).distinct().sorted().toArray();
+   }
+
+   /** Checks whether the qubit <i>q</i> is contained in the specified array.*/
+   private static boolean contains(int[] qubits, int q) {
+      for (int x : qubits) {
+         if (x == q) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /** A sequence of gates on some qubits of a register, represented by its matrix.*/
+   private static class Block {
+      /** The qubits of this block, where the <i>i</i>-th bit of a matrix index refers to <code>qubits[i]</code>.*/
+      final int[] qubits;
+      /** The matrix of this block.*/
+      final double[][][] matrix;
+      /** The gate of this block if it consists of a single gate, otherwise null.*/
+      final QuantumGate gate;
+      /** Flag whether this block acts on the y-register.*/
+      final boolean yRegister;
+
+      /** Creates a block of a single gate.*/
+      Block(QuantumGate gate, double[][][] matrix) {
+         this.qubits = gate.qubits;
+         this.matrix = matrix;
+         this.gate = gate;
+         this.yRegister = gate.yRegister;
+      }
+
+      /** Creates a block of several fused gates.*/
+      Block(int[] qubits, double[][][] matrix, boolean yRegister) {
+         this.qubits = qubits;
+         this.matrix = matrix;
+         this.gate = null;
+         this.yRegister = yRegister;
+      }
+   }
+}
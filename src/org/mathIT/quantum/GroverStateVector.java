@@ -0,0 +1,334 @@
+/*
+ * GroverStateVector.java - Symbolic amplitudes of a register under Grover iterations
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.Arrays;
+import static java.lang.Math.*;
+/**
+ * This class stores the 2<sup><i>n</i></sup> amplitudes of a quantum register of
+ * <i>n</i> qubits symbolically by only two values, as long as the state has the form
+ * <p style="text-align:center">
+ *   <i>a</i> |<i>m</i>&gt; + <i>b</i> &#x2211;<sub><i>x</i> &ne; <i>m</i></sub> |<i>x</i>&gt;
+ * </p>
+ * with a distinguished index <i>m</i>, the "needle". This is the case for the
+ * uniform superposition and for all states arising from it by Grover operators
+ * with the needle <i>m</i>, since the oracle query and the inversion about the
+ * mean only mix these two amplitude classes. If <i>N</i> = 2<sup><i>n</i></sup>
+ * and <i>&#x03BC;</i> = (<i>a</i> + (<i>N</i> - 1) <i>b</i>) / <i>N</i> denotes
+ * the mean amplitude after the oracle query <i>a</i> &#x2192; -<i>a</i>, 
+ * a Grover operator is given by
+ * <p style="text-align:center">
+ *   <i>a</i> &#x2192; 2<i>&#x03BC;</i> - <i>a</i>, &nbsp; &nbsp;
+ *   <i>b</i> &#x2192; 2<i>&#x03BC;</i> - <i>b</i>,
+ * </p>
+ * requiring constant time and memory for any number <i>n</i> &#x2264; 62 of qubits.
+ * Basis states, i.e., <i>b</i> = 0, are represented as well, such that a complete
+ * measurement keeps the symbolic representation.
+ * <p>
+ * Any other operation, such as a single gate or the measurement of a single qubit,
+ * destroys the symmetry of the state. Then the amplitudes are materialized once
+ * outside the heap, and all operations are delegated to the resulting 
+ * {@link OffHeapStateVector}. A {@link Register} of at most 30 qubits switches
+ * to the arrays on the heap after such a gate.
+ * </p>
+ * @author  Andreas de Vries
+ * @version 1.1
+ * @see Register#uniform(int)
+ */
+final class GroverStateVector extends StateVector {
+   /** The number of qubits.*/
+   private final int size;
+   /** The number 2<sup><i>n</i></sup> of amplitudes.*/
+   private final long length;
+   /** The index <i>m</i> of the distinguished amplitude.*/
+   private long needle;
+   /** The distinguished amplitude <i>a</i> as {Re <i>a</i>, Im <i>a</i>}.*/
+   private final double[] a = new double[2];
+   /** The amplitude <i>b</i> of all other indices as {Re <i>b</i>, Im <i>b</i>}.*/
+   private final double[] b = new double[2];
+   /** The materialized amplitudes, or null as long as they are stored symbolically.*/
+   private StateVector dense;
+
+   /** Creates the amplitudes of <i>n</i> qubits in the uniform superposition
+    *  2<sup>-<i>n</i>/2</sup> &#x2211;<sub><i>x</i></sub> |<i>x</i>&gt;.
+    *  @param size the number <i>n</i> of qubits
+    */
+   GroverStateVector(int size) {
+      this.size = size;
+      this.length = 1L << size;
+      a[0] = b[0] = pow(2, -size / 2.0);
+   }
+
+   /** Returns whether the amplitudes are still stored symbolically.
+    *  @return <code>true</code> if and only if the amplitudes are not materialized
+    */
+   boolean isSymbolic() {
+      return dense == null;
+   }
+
+   /** Applies the Grover operator with the specified needle, or its inverse,
+    *  symbolically if possible. This is the case if the amplitudes have not been
+    *  materialized, and if the needle equals the distinguished index or all
+    *  amplitudes are equal.
+    *  @param needle the value to be searched for
+    *  @param inverse flag whether the inverse Grover operator is applied
+    *  @return <code>true</code> if the operator has been applied, 
+    *  <code>false</code> if the amplitudes have not been changed
+    *  @see Register#grover(long)
+    */
+   boolean grover(long needle, boolean inverse) {
+      if (dense != null || (needle != this.needle && (a[0] != b[0] || a[1] != b[1]))) {
+         return false;
+      }
+      this.needle = needle;
+      double n = length; // exact for at most 62 qubits
+      for (int k = 0; k < 2; k++) {
+         if (!inverse) { // oracle query
+            a[k] = -a[k];
+         }
+         double mean = (a[k] + (n - 1) * b[k]) / n;
+         a[k] = 2 * mean - a[k];
+         b[k] = 2 * mean - b[k];
+         if (inverse) { // oracle query
+            a[k] = -a[k];
+         }
+      }
+      return true;
+   }
+
+   /** Returns a copy of the amplitudes in direct memory.
+    *  @return a copy of the amplitudes in direct memory
+    */
+   OffHeapStateVector offHeap() {
+      if (dense != null) {
+         return (OffHeapStateVector) dense.copy();
+      }
+      OffHeapStateVector v = new OffHeapStateVector(size);
+      if (b[0] == 0 && b[1] == 0) {
+         v.set(0, 0, 0);
+         v.set(needle, a[0], a[1]);
+      } else {
+         for (long i = 0; i < length; i++) {
+            v.set(i, getReal(i), getImaginary(i));
+         }
+      }
+      return v;
+   }
+
+   /** Materializes the amplitudes outside the heap, if not done yet.*/
+   private void materialize() {
+      if (dense == null) {
+         dense = offHeap();
+      }
+   }
+
+   @Override
+   long length() {
+      return length;
+   }
+
+   @Override
+   double getReal(long i) {
+      if (dense != null) {
+         return dense.getReal(i);
+      }
+      return i == needle ? a[0] : b[0];
+   }
+
+   @Override
+   double getImaginary(long i) {
+      if (dense != null) {
+         return dense.getImaginary(i);
+      }
+      return i == needle ? a[1] : b[1];
+   }
+
+   @Override
+   void set(long i, double re, double im) {
+      if (dense == null) {
+         if (i == needle || (a[0] == b[0] && a[1] == b[1])) {
+            needle = i;
+            a[0] = re;
+            a[1] = im;
+            return;
+         } else if (re == b[0] && im == b[1]) {
+            return;
+         }
+         materialize();
+      }
+      dense.set(i, re, im);
+   }
+
+   @Override
+   void copyTo(double[] real, double[] imaginary) {
+      if (dense != null) {
+         dense.copyTo(real, imaginary);
+         return;
+      }
+      Arrays.fill(real, b[0]);
+      Arrays.fill(imaginary, b[1]);
+      real[(int) needle] = a[0];
+      imaginary[(int) needle] = a[1];
+   }
+
+   @Override
+   void copyFrom(double[] real, double[] imaginary) {
+      materialize();
+      dense.copyFrom(real, imaginary);
+   }
+
+   @Override
+   GroverStateVector copy() {
+      GroverStateVector copy = new GroverStateVector(size);
+      copy.needle = needle;
+      System.arraycopy(a, 0, copy.a, 0, 2);
+      System.arraycopy(b, 0, copy.b, 0, 2);
+      copy.dense = dense == null ? null : dense.copy();
+      return copy;
+   }
+
+   @Override
+   void unitary(long controls, long h, double[][][] u) {
+      materialize();
+      dense.unitary(controls, h, u);
+   }
+
+   @Override
+   void apply(double[][][] matrix, long[] bits) {
+      materialize();
+      dense.apply(matrix, bits);
+   }
+
+   @Override
+   void scale(double factor) {
+      if (dense != null) {
+         dense.scale(factor);
+         return;
+      }
+      for (int k = 0; k < 2; k++) {
+         a[k] *= factor;
+         b[k] *= factor;
+      }
+   }
+
+   @Override
+   void fft(int low, int bits, int isign) {
+      materialize();
+      dense.fft(low, bits, isign);
+   }
+
+   @Override
+   double probability(long mask, long value) {
+      if (dense != null) {
+         return dense.probability(mask, value);
+      }
+      double pa = a[0] * a[0] + a[1] * a[1], pb = b[0] * b[0] + b[1] * b[1];
+      double p = pow(2, size - Long.bitCount(mask)) * pb;
+      if ((needle & mask) == value) {
+         p += pa - pb;
+      }
+      return p;
+   }
+
+   /** Evaluates the sum over all indices symbolically: with the amplitudes
+    *  <i>&#x03B1;<sub>i</sub></i> = <i>b</i> + (<i>a</i> - <i>b</i>) <i>&#x03B4;<sub>ik</sub></i>
+    *  for the needle <i>k</i>, the sum consists of the constant term, which vanishes 
+    *  unless the string acts by <i>X</i> and the identity only, and the three terms
+    *  of the needle and its partner index.
+    */
+   @Override
+   double[] expectations(long[] x, long[] z) {
+      if (dense != null) {
+         return dense.expectations(x, z);
+      }
+      double[] sums = new double[x.length];
+      double dr = a[0] - b[0], di = a[1] - b[1];
+      for (int k = 0; k < x.length; k++) {
+         if (z[k] == 0) {
+            sums[k] += pow(2, size) * (b[0] * b[0] + b[1] * b[1]);
+         }
+         sums[k] += pauli(x[k], z[k], needle, dr, di, b[0], b[1]);
+         sums[k] += pauli(x[k], z[k], needle ^ x[k], b[0], b[1], dr, di);
+         if (x[k] == 0) {
+            sums[k] += pauli(0, z[k], needle, dr, di, dr, di);
+         }
+      }
+      return sums;
+   }
+
+   @Override
+   long cumulativeIndex(double f) {
+      if (dense != null) {
+         return dense.cumulativeIndex(f);
+      }
+      double pa = a[0] * a[0] + a[1] * a[1], pb = b[0] * b[0] + b[1] * b[1];
+      if (pb == 0) {
+         return needle;
+      }
+      if (f < needle * pb) { // an index before the needle
+         return min(needle - 1, (long) (f / pb));
+      }
+      f -= needle * pb + pa;
+      if (f < 0 || needle == length - 1) {
+         return needle;
+      }
+      return min(length - 1, needle + 1 + (long) (f / pb));
+   }
+
+   @Override
+   long[] cumulativeIndices(double[] f) {
+      if (dense != null) {
+         return dense.cumulativeIndices(f);
+      }
+      double total = probability(0, 0);
+      long[] result = new long[f.length];
+      for (int s = 0; s < f.length; s++) {
+         result[s] = cumulativeIndex(f[s] * total);
+      }
+      return result;
+   }
+
+   @Override
+   void collapse(long j) {
+      if (dense != null) {
+         dense.collapse(j);
+         return;
+      }
+      needle = j;
+      a[0] = 1;
+      a[1] = b[0] = b[1] = 0;
+   }
+
+   @Override
+   void project(long h, long value) {
+      materialize();
+      dense.project(h, value);
+   }
+}
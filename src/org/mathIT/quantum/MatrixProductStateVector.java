@@ -0,0 +1,867 @@
+/*
+ * MatrixProductStateVector.java - Amplitudes of a quantum register as a matrix product state
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.Arrays;
+import org.mathIT.algebra.Matrix;
+import org.mathIT.algebra.SingularValueDecomposition;
+import static java.lang.Math.*;
+/**
+ * This class stores the 2<sup><i>n</i></sup> amplitudes of a quantum register of
+ * <i>n</i> qubits as a matrix product state, i.e., as a chain of <i>n</i> tensors
+ * <i>A</i><sup>[<i>s</i>]</sup> with
+ * <p style="text-align:center">
+ *   <i>&#x03B1;</i><sub><i>x</i></sub> = 
+ *   <i>A</i><sup>[0]</sup><sub><i>x</i><sub>0</sub></sub>
+ *   <i>A</i><sup>[1]</sup><sub><i>x</i><sub>1</sub></sub> &#x22EF;
+ *   <i>A</i><sup>[<i>n</i>-1]</sup><sub><i>x</i><sub><i>n</i>-1</sub></sub>,
+ * </p>
+ * where <i>x<sub>s</sub></i> is the bit of the qubit at site <i>s</i> of the chain, and
+ * <i>A</i><sup>[<i>s</i>]</sup><sub><i>x</i></sub> is a complex 
+ * <i>&#x03C7;<sub>s</sub></i> &#x00D7; <i>&#x03C7;</i><sub><i>s</i>+1</sub> matrix.
+ * The bond dimensions <i>&#x03C7;<sub>s</sub></i> grow with the entanglement 
+ * between the two parts of the chain and are bounded by a maximum bond dimension
+ * <i>&#x03C7;</i>, such that the memory is O(<i>n&#x03C7;</i><sup>2</sup>) instead
+ * of 2<sup><i>n</i></sup>. Thus circuits building little entanglement, such as
+ * shallow or nearest-neighbour circuits, can be simulated on many qubits.
+ * <p>
+ * The chain is kept in mixed canonical form with respect to an orthogonality center,
+ * which is moved by singular value decompositions. A gate on <i>k</i> qubits brings
+ * them to adjacent sites by swaps, contracts the sites, applies the gate, and splits
+ * the result again by singular value decompositions computed by 
+ * {@link SingularValueDecomposition}; a complex matrix is decomposed via its real 
+ * representation of twice the dimensions. At each split, all but the largest 
+ * <i>&#x03C7;</i> singular values and the singular values below a relative cutoff
+ * are discarded, which is the optimal truncation since the split is performed at the
+ * orthogonality center. The discarded weight is accumulated as truncation error.
+ * Single-qubit unitaries act locally, and the swaps of a Fourier transform merely 
+ * relabel the sites of the qubits.
+ * </p>
+ * <p>
+ * In contrast to the other storages, {@link #project(long, long)} projects the state
+ * onto the measured value without setting the remaining amplitudes to 1, since this
+ * operation cannot be expressed by a matrix product state.
+ * </p>
+ * @author  Andreas de Vries
+ * @version 1.2
+ * @see Register#matrixProductState(int, int)
+ */
+final class MatrixProductStateVector extends StateVector {
+   /** The relative size of a singular value below which it is discarded.*/
+   private final static double CUTOFF = 1e-12;
+   /** The number of qubits.*/
+   private final int size;
+   /** The maximum bond dimension.*/
+   private final int maxBond;
+   /** The bond dimensions, where <code>bond[s]</code> is the left dimension of site <i>s</i>.*/
+   private int[] bond;
+   /** The real parts of the tensors, the entry (<i>a</i>, <i>x</i>, <i>b</i>) of site
+    *  <i>s</i> having the index (2<i>a</i> + <i>x</i>) <code>bond[s+1]</code> + <i>b</i>.*/
+   private double[][] re;
+   /** The imaginary parts of the tensors.*/
+   private double[][] im;
+   /** The qubit, i.e., the bit position of the index, at each site.*/
+   private int[] qubitAt;
+   /** The site of each qubit.*/
+   private int[] siteOf;
+   /** The orthogonality center.*/
+   private int center;
+   /** The accumulated relative weight of the discarded singular values.*/
+   private double discarded;
+
+   /** Creates the matrix product state of <i>n</i> qubits in the state |0&gt;.
+    *  @param size the number <i>n</i> of qubits
+    *  @param maxBond the maximum bond dimension
+    */
+   MatrixProductStateVector(int size, int maxBond) {
+      this.size = size;
+      this.maxBond = maxBond;
+      this.qubitAt = new int[size];
+      this.siteOf = new int[size];
+      for (int s = 0; s < size; s++) { // site 0 holds the most significant qubit
+         qubitAt[s] = size - 1 - s;
+         siteOf[size - 1 - s] = s;
+      }
+      collapse(0);
+   }
+
+   /** Returns the maximum bond dimension.
+    *  @return the maximum bond dimension
+    */
+   int getMaxBond() {
+      return maxBond;
+   }
+
+   /** Returns the current maximum of the bond dimensions.
+    *  @return the current maximum bond dimension
+    */
+   int getBond() {
+      int max = 1;
+      for (int d : bond) {
+         max = max(max, d);
+      }
+      return max;
+   }
+
+   /** Returns the accumulated relative weight of the singular values discarded 
+    *  by truncations.
+    *  @return the truncation error
+    */
+   double getTruncationError() {
+      return discarded;
+   }
+
+   @Override
+   long length() {
+      return 1L << size;
+   }
+
+   @Override
+   double getReal(long i) {
+      return amplitude(i)[0];
+   }
+
+   @Override
+   double getImaginary(long i) {
+      return amplitude(i)[1];
+   }
+
+   /** Returns the amplitude of the specified index by contracting the chain.*/
+   private double[] amplitude(long i) {
+      double[] vr = {1}, vi = {0};
+      for (int s = 0; s < size; s++) {
+         int x = (int) (i >>> qubitAt[s]) & 1;
+         int dl = bond[s], dr = bond[s+1];
+         double[] wr = new double[dr], wi = new double[dr];
+         for (int a = 0; a < dl; a++) {
+            int offset = (2*a + x) * dr;
+            for (int b = 0; b < dr; b++) {
+               wr[b] += vr[a] * re[s][offset + b] - vi[a] * im[s][offset + b];
+               wi[b] += vr[a] * im[s][offset + b] + vi[a] * re[s][offset + b];
+            }
+         }
+         vr = wr;
+         vi = wi;
+      }
+      return new double[] {vr[0], vi[0]};
+   }
+
+   /** Adds the difference to the specified amplitude as a product state to the 
+    *  chain, whose bond dimensions thus grow by 1, and compresses the chain again.
+    */
+   @Override
+   void set(long i, double r, double m) {
+      double[] old = amplitude(i);
+      double dr0 = r - old[0], di0 = m - old[1];
+      if (dr0 == 0 && di0 == 0) {
+         return;
+      }
+      for (int s = 0; s < size; s++) {
+         int x = (int) (i >>> qubitAt[s]) & 1;
+         int dl = bond[s], dr = bond[s+1];
+         int el = s == 0 ? 1 : dl + 1, er = s == size - 1 ? 1 : dr + 1;
+         double[] br = new double[el * 2 * er], bi = new double[el * 2 * er];
+         for (int a = 0; a < dl; a++) {
+            for (int y = 0; y < 2; y++) {
+               System.arraycopy(re[s], (2*a + y) * dr, br, (2*a + y) * er, dr);
+               System.arraycopy(im[s], (2*a + y) * dr, bi, (2*a + y) * er, dr);
+            }
+         }
+         int k = (2*(el - 1) + x) * er + er - 1; // the entry of the added product state
+         br[k] += s == 0 ? dr0 : 1;
+         bi[k] += s == 0 ? di0 : 0;
+         re[s] = br;
+         im[s] = bi;
+      }
+      for (int s = 1; s < size; s++) {
+         bond[s]++;
+      }
+      center = 0; // the sum is not canonical: orthonormalize from the left, then truncate
+      moveCenter(size - 1, Integer.MAX_VALUE);
+      moveCenter(0, maxBond);
+   }
+
+   @Override
+   void copyTo(double[] real, double[] imaginary) {
+      copyTo(0, new double[] {1}, new double[] {0}, 0, real, imaginary);
+   }
+
+   /** Contracts the sites from <i>s</i> on for all bits of these sites.*/
+   private void copyTo(int s, double[] vr, double[] vi, long index, double[] real, double[] imaginary) {
+      if (s == size) {
+         real[(int) index] = vr[0];
+         imaginary[(int) index] = vi[0];
+         return;
+      }
+      int dl = bond[s], dr = bond[s+1];
+      for (int x = 0; x < 2; x++) {
+         double[] wr = new double[dr], wi = new double[dr];
+         for (int a = 0; a < dl; a++) {
+            int offset = (2*a + x) * dr;
+            for (int b = 0; b < dr; b++) {
+               wr[b] += vr[a] * re[s][offset + b] - vi[a] * im[s][offset + b];
+               wi[b] += vr[a] * im[s][offset + b] + vi[a] * re[s][offset + b];
+            }
+         }
+         copyTo(s + 1, wr, wi, index | ((long) x << qubitAt[s]), real, imaginary);
+      }
+   }
+
+   @Override
+   void copyFrom(double[] real, double[] imaginary) {
+      for (int s = 0; s < size; s++) {
+         qubitAt[s] = size - 1 - s;
+         siteOf[size - 1 - s] = s;
+      }
+      bond[0] = 1;
+      bond[size] = 1;
+      center = 0;
+      split(0, size, real.clone(), imaginary.clone());
+   }
+
+   @Override
+   MatrixProductStateVector copy() {
+      MatrixProductStateVector copy = new MatrixProductStateVector(size, maxBond);
+      copy.bond = bond.clone();
+      for (int s = 0; s < size; s++) {
+         copy.re[s] = re[s].clone();
+         copy.im[s] = im[s].clone();
+      }
+      copy.qubitAt = qubitAt.clone();
+      copy.siteOf = siteOf.clone();
+      copy.center = center;
+      copy.discarded = discarded;
+      return copy;
+   }
+
+   @Override
+   void unitary(long controls, long h, double[][][] u) {
+      if (controls == 0) {
+         single(siteOf[Long.numberOfTrailingZeros(h)], u);
+         return;
+      }
+      long[] bits = new long[1 + Long.bitCount(controls)];
+      bits[0] = h;
+      int k = 1;
+      for (long c = controls; c != 0; c &= c - 1) {
+         bits[k++] = c & -c;
+      }
+      int dim = 1 << bits.length, all = (dim >> 1) - 1;
+      double[][][] matrix = new double[dim][dim][2];
+      for (int r = 0; r < dim; r++) {
+         for (int c = 0; c < dim; c++) {
+            if ((r >> 1) == (c >> 1)) {
+               if ((r >> 1) == all) { // all controls set: the target is transformed
+                  matrix[r][c] = u[r & 1][c & 1].clone();
+               } else if (r == c) {
+                  matrix[r][c][0] = 1;
+               }
+            }
+         }
+      }
+      apply(matrix, bits);
+   }
+
+   /** Applies the 2 &#x00D7; 2 matrix to the physical index of the specified site.
+    *  A non-unitary matrix is applied at the orthogonality center to keep the 
+    *  canonical form.
+    */
+   private void single(int s, double[][][] u) {
+      if (!isUnitary(u)) {
+         moveCenter(s, maxBond);
+      }
+      int dl = bond[s], dr = bond[s+1];
+      for (int a = 0; a < dl; a++) {
+         for (int b = 0; b < dr; b++) {
+            int i0 = 2*a*dr + b, i1 = i0 + dr;
+            double r0 = re[s][i0], m0 = im[s][i0], r1 = re[s][i1], m1 = im[s][i1];
+            re[s][i0] = u[0][0][0]*r0 - u[0][0][1]*m0 + u[0][1][0]*r1 - u[0][1][1]*m1;
+            im[s][i0] = u[0][0][0]*m0 + u[0][0][1]*r0 + u[0][1][0]*m1 + u[0][1][1]*r1;
+            re[s][i1] = u[1][0][0]*r0 - u[1][0][1]*m0 + u[1][1][0]*r1 - u[1][1][1]*m1;
+            im[s][i1] = u[1][0][0]*m0 + u[1][0][1]*r0 + u[1][1][0]*m1 + u[1][1][1]*r1;
+         }
+      }
+   }
+
+   /** Returns whether the 2 &#x00D7; 2 matrix is unitary.*/
+   private static boolean isUnitary(double[][][] u) {
+      double n0 = u[0][0][0]*u[0][0][0] + u[0][0][1]*u[0][0][1] + u[1][0][0]*u[1][0][0] + u[1][0][1]*u[1][0][1];
+      double n1 = u[0][1][0]*u[0][1][0] + u[0][1][1]*u[0][1][1] + u[1][1][0]*u[1][1][0] + u[1][1][1]*u[1][1][1];
+      double pr = u[0][0][0]*u[0][1][0] + u[0][0][1]*u[0][1][1] + u[1][0][0]*u[1][1][0] + u[1][0][1]*u[1][1][1];
+      double pi = u[0][0][0]*u[0][1][1] - u[0][0][1]*u[0][1][0] + u[1][0][0]*u[1][1][1] - u[1][0][1]*u[1][1][0];
+      return abs(n0 - 1) < Register.ACCURACY && abs(n1 - 1) < Register.ACCURACY 
+          && abs(pr) < Register.ACCURACY && abs(pi) < Register.ACCURACY;
+   }
+
+   @Override
+   void apply(double[][][] matrix, long[] bits) {
+      int k = bits.length;
+      if (k == 1) {
+         single(siteOf[Long.numberOfTrailingZeros(bits[0])], matrix);
+         return;
+      }
+      int[] qubits = new int[k];
+      for (int i = 0; i < k; i++) {
+         qubits[i] = Long.numberOfTrailingZeros(bits[i]);
+      }
+      int s0 = gather(qubits);
+      moveCenter(s0, maxBond);
+      int dim = 1 << k;
+      int[] position = new int[dim]; // the index within the contracted sites of a matrix index
+      for (int r = 0; r < dim; r++) {
+         for (int i = 0; i < k; i++) {
+            if ((r & (1 << i)) != 0) {
+               position[r] |= 1 << (s0 + k - 1 - siteOf[qubits[i]]);
+            }
+         }
+      }
+      double[][] theta = contract(s0, k);
+      int dl = bond[s0], dr = bond[s0 + k];
+      double[] xr = new double[dim], xi = new double[dim];
+      for (int a = 0; a < dl; a++) {
+         for (int b = 0; b < dr; b++) {
+            for (int c = 0; c < dim; c++) {
+               int t = (a * dim + position[c]) * dr + b;
+               xr[c] = theta[0][t];
+               xi[c] = theta[1][t];
+            }
+            for (int r = 0; r < dim; r++) {
+               double sr = 0, si = 0;
+               for (int c = 0; c < dim; c++) {
+                  sr += matrix[r][c][0] * xr[c] - matrix[r][c][1] * xi[c];
+                  si += matrix[r][c][0] * xi[c] + matrix[r][c][1] * xr[c];
+               }
+               int t = (a * dim + position[r]) * dr + b;
+               theta[0][t] = sr;
+               theta[1][t] = si;
+            }
+         }
+      }
+      split(s0, k, theta[0], theta[1]);
+   }
+
+   /** Moves the sites of the specified qubits by adjacent swaps to the consecutive
+    *  sites starting at the lowest of their sites, and returns this site.
+    */
+   private int gather(int[] qubits) {
+      int[] sites = new int[qubits.length];
+      for (int i = 0; i < qubits.length; i++) {
+         sites[i] = siteOf[qubits[i]];
+      }
+      Arrays.sort(sites);
+      int s0 = sites[0];
+      for (int i = 1; i < sites.length; i++) {
+         for (int s = sites[i]; s > s0 + i; s--) {
+            swapSites(s - 1);
+         }
+      }
+      return s0;
+   }
+
+   /** Exchanges the qubits of the adjacent sites <i>s</i> and <i>s</i>+1.*/
+   private void swapSites(int s) {
+      moveCenter(s, maxBond);
+      double[][] theta = contract(s, 2);
+      int dl = bond[s], dr = bond[s+2];
+      for (int a = 0; a < dl; a++) {
+         for (int b = 0; b < dr; b++) {
+            int t1 = (4*a + 1) * dr + b, t2 = (4*a + 2) * dr + b;
+            double r = theta[0][t1], m = theta[1][t1];
+            theta[0][t1] = theta[0][t2];
+            theta[1][t1] = theta[1][t2];
+            theta[0][t2] = r;
+            theta[1][t2] = m;
+         }
+      }
+      split(s, 2, theta[0], theta[1]);
+      int q = qubitAt[s];
+      qubitAt[s] = qubitAt[s+1];
+      qubitAt[s+1] = q;
+      siteOf[qubitAt[s]] = s;
+      siteOf[qubitAt[s+1]] = s + 1;
+   }
+
+   /** Exchanges two qubits by relabeling their sites.*/
+   private void swapQubits(int q1, int q2) {
+      int s1 = siteOf[q1], s2 = siteOf[q2];
+      siteOf[q1] = s2;
+      siteOf[q2] = s1;
+      qubitAt[s1] = q2;
+      qubitAt[s2] = q1;
+   }
+
+   /** Returns the contraction of the <i>k</i> sites starting at <i>s</i> as the
+    *  real and imaginary parts of the tensor with the entries (<i>a</i>, <i>X</i>, <i>b</i>)
+    *  at the index (2<sup><i>k</i></sup><i>a</i> + <i>X</i>) <code>bond[s+k]</code> + <i>b</i>,
+    *  where the bit of site <i>s</i> is the most significant bit of <i>X</i>.
+    */
+   private double[][] contract(int s, int k) {
+      double[] tr = re[s], ti = im[s];
+      int rows = bond[s] * 2;
+      for (int j = s + 1; j < s + k; j++) {
+         double[][] t = multiply(tr, ti, re[j], im[j], rows, bond[j], 2 * bond[j+1]);
+         tr = t[0];
+         ti = t[1];
+         rows *= 2;
+      }
+      return new double[][] {tr, ti};
+   }
+
+   /** Splits the contracted tensor of the <i>k</i> sites starting at <i>s</i>,
+    *  where the orthogonality center is in these sites, into the tensors of
+    *  the sites by truncated singular value decompositions. Afterwards, the
+    *  orthogonality center is the last of the sites.
+    */
+   private void split(int s, int k, double[] tr, double[] ti) {
+      int dr = bond[s + k];
+      int columns = (1 << k) * dr / 2;
+      for (int j = s; j < s + k - 1; j++) {
+         int rows = 2 * bond[j];
+         Decomposition d = decompose(tr, ti, rows, columns, maxBond);
+         re[j] = d.ur;
+         im[j] = d.ui;
+         bond[j+1] = d.rank;
+         d.scaleRows();
+         tr = d.vr;
+         ti = d.vi;
+         columns /= 2;
+      }
+      re[s + k - 1] = tr;
+      im[s + k - 1] = ti;
+      center = s + k - 1;
+   }
+
+   /** Moves the orthogonality center to the specified site, truncating the
+    *  bonds to the specified dimension.*/
+   private void moveCenter(int target, int limit) {
+      while (center < target) {
+         int s = center;
+         Decomposition d = decompose(re[s], im[s], 2 * bond[s], bond[s+1], limit);
+         re[s] = d.ur;
+         im[s] = d.ui;
+         d.scaleRows();
+         double[][] t = multiply(d.vr, d.vi, re[s+1], im[s+1], d.rank, bond[s+1], 2 * bond[s+2]);
+         re[s+1] = t[0];
+         im[s+1] = t[1];
+         bond[s+1] = d.rank;
+         center++;
+      }
+      while (center > target) {
+         int s = center;
+         Decomposition d = decompose(re[s], im[s], bond[s], 2 * bond[s+1], limit);
+         re[s] = d.vr;
+         im[s] = d.vi;
+         d.scaleColumns();
+         double[][] t = multiply(re[s-1], im[s-1], d.ur, d.ui, 2 * bond[s-1], bond[s], d.rank);
+         re[s-1] = t[0];
+         im[s-1] = t[1];
+         bond[s] = d.rank;
+         center--;
+      }
+   }
+
+   /** Exchanges the qubits by relabeling their sites, without changing any tensor.*/
+   @Override
+   void swap(long a, long b) {
+      swapQubits(Long.numberOfTrailingZeros(a), Long.numberOfTrailingZeros(b));
+   }
+
+   @Override
+   void scale(double factor) {
+      for (int t = 0; t < re[center].length; t++) {
+         re[center][t] *= factor;
+         im[center][t] *= factor;
+      }
+   }
+
+   /** Applies the Fourier transform by Hadamard and controlled phase gates,
+    *  followed by the reversal of the qubits which only relabels their sites.
+    */
+   @Override
+   void fft(int low, int bits, int isign) {
+      double[][][] h = Register.HADAMARD;
+      for (int i = low + bits - 1; i >= low; i--) {
+         single(siteOf[i], h);
+         for (int j = i - 1; j >= low; j--) {
+            double phi = isign * PI / (1L << (i - j));
+            double[][][] phase = new double[4][4][2];
+            phase[0][0][0] = phase[1][1][0] = phase[2][2][0] = 1;
+            phase[3][3][0] = cos(phi);
+            phase[3][3][1] = sin(phi);
+            apply(phase, new long[] {1L << i, 1L << j});
+         }
+      }
+      for (int i = 0; i < bits / 2; i++) {
+         swapQubits(low + i, low + bits - 1 - i);
+      }
+   }
+
+   @Override
+   double probability(long mask, long value) {
+      double[][] e = {{1}, {0}};
+      for (int s = 0; s < size; s++) {
+         long h = 1L << qubitAt[s];
+         double[][][] w = new double[2][2][2];
+         w[0][0][0] = (mask & h) == 0 || (value & h) == 0 ? 1 : 0;
+         w[1][1][0] = (mask & h) == 0 || (value & h) != 0 ? 1 : 0;
+         e = transfer(s, e, w);
+      }
+      return e[0][0];
+   }
+
+   /** Contracts the chain with the Pauli strings site by site.*/
+   @Override
+   double[] expectations(long[] x, long[] z) {
+      double[] result = new double[x.length];
+      for (int k = 0; k < x.length; k++) {
+         double[][] e = {{1}, {0}};
+         for (int s = 0; s < size; s++) {
+            long h = 1L << qubitAt[s];
+            double[][][] w = new double[2][2][2]; // w[x][x'] = <x'|P|x>
+            if ((x[k] & h) == 0) {
+               w[0][0][0] = 1;
+               w[1][1][0] = (z[k] & h) == 0 ? 1 : -1;
+            } else if ((z[k] & h) == 0) {
+               w[0][1][0] = w[1][0][0] = 1;
+            } else {
+               w[0][1][1] = 1;
+               w[1][0][1] = -1;
+            }
+            e = transfer(s, e, w);
+         }
+         result[k] = e[0][0];
+      }
+      return result;
+   }
+
+   /** Returns the environment after site <i>s</i>, i.e., the matrix 
+    *  <p style="text-align:center">
+    *    <i>F</i><sub><i>bb</i>'</sub> = &#x2211; <i>w</i><sub><i>xx</i>'</sub> 
+    *    <i>E</i><sub><i>aa</i>'</sub> <i>A</i><sub><i>axb</i></sub> 
+    *    <i>A</i><sub><i>a</i>'<i>x</i>'<i>b</i>'</sub>*
+    *  </p>
+    *  of the environment <i>E</i> before the site, where the sum runs over 
+    *  <i>a</i>, <i>a</i>', <i>x</i>, <i>x</i>'. The complex matrices are given as
+    *  pairs of their real and imaginary parts stored by rows.
+    */
+   private double[][] transfer(int s, double[][] e, double[][][] w) {
+      int dl = bond[s], dr = bond[s+1];
+      double[] fr = new double[dr * dr], fi = new double[dr * dr];
+      for (int x = 0; x < 2; x++) {
+         if (w[x][0][0] == 0 && w[x][0][1] == 0 && w[x][1][0] == 0 && w[x][1][1] == 0) {
+            continue;
+         }
+         // t[a'][b] = sum_a e[a][a'] A[a][x][b]:
+         double[] tr = new double[dl * dr], ti = new double[dl * dr];
+         for (int a = 0; a < dl; a++) {
+            int offset = (2*a + x) * dr;
+            for (int a2 = 0; a2 < dl; a2++) {
+               double pr = e[0][a*dl + a2], pi = e[1][a*dl + a2];
+               if (pr == 0 && pi == 0) {
+                  continue;
+               }
+               for (int b = 0; b < dr; b++) {
+                  tr[a2*dr + b] += pr * re[s][offset + b] - pi * im[s][offset + b];
+                  ti[a2*dr + b] += pr * im[s][offset + b] + pi * re[s][offset + b];
+               }
+            }
+         }
+         for (int x2 = 0; x2 < 2; x2++) {
+            double wr = w[x][x2][0], wi = w[x][x2][1];
+            if (wr == 0 && wi == 0) {
+               continue;
+            }
+            // f[b][b'] += w sum_a' t[a'][b] conj(A[a'][x'][b']):
+            for (int a2 = 0; a2 < dl; a2++) {
+               int offset = (2*a2 + x2) * dr;
+               for (int b = 0; b < dr; b++) {
+                  double pr = wr * tr[a2*dr + b] - wi * ti[a2*dr + b];
+                  double pi = wr * ti[a2*dr + b] + wi * tr[a2*dr + b];
+                  for (int b2 = 0; b2 < dr; b2++) {
+                     fr[b*dr + b2] += pr * re[s][offset + b2] + pi * im[s][offset + b2];
+                     fi[b*dr + b2] += pi * re[s][offset + b2] - pr * im[s][offset + b2];
+                  }
+               }
+            }
+         }
+      }
+      return new double[][] {fr, fi};
+   }
+
+   /** Determines the bits of the index from the most significant one on by the
+    *  marginal probabilities.*/
+   @Override
+   long cumulativeIndex(double f) {
+      long index = 0, mask = 0;
+      for (int q = size - 1; q >= 0; q--) {
+         long h = 1L << q;
+         double p = probability(mask | h, index);
+         mask |= h;
+         if (f >= p) {
+            f -= p;
+            index |= h;
+         }
+      }
+      return index;
+   }
+
+   @Override
+   long[] cumulativeIndices(double[] f) {
+      double total = probability(0, 0);
+      long[] result = new long[f.length];
+      for (int s = 0; s < f.length; s++) {
+         result[s] = cumulativeIndex(f[s] * total);
+      }
+      return result;
+   }
+
+   @Override
+   void collapse(long j) {
+      bond = new int[size + 1];
+      re = new double[size][];
+      im = new double[size][];
+      for (int s = 0; s <= size; s++) {
+         bond[s] = 1;
+      }
+      for (int s = 0; s < size; s++) {
+         re[s] = new double[2];
+         im[s] = new double[2];
+         re[s][(int) (j >>> qubitAt[s]) & 1] = 1;
+      }
+      center = 0;
+   }
+
+   @Override
+   void project(long h, long value) {
+      int s = siteOf[Long.numberOfTrailingZeros(h)];
+      moveCenter(s, maxBond);
+      int x = value == 0 ? 1 : 0; // the vanishing bit
+      int dr = bond[s+1];
+      double norm = 0;
+      for (int a = 0; a < bond[s]; a++) {
+         for (int b = 0; b < dr; b++) {
+            re[s][(2*a + x) * dr + b] = 0;
+            im[s][(2*a + x) * dr + b] = 0;
+            int t = (2*a + 1 - x) * dr + b;
+            norm += re[s][t] * re[s][t] + im[s][t] * im[s][t];
+         }
+      }
+      scale(1 / sqrt(norm));
+   }
+
+   /** Returns the product of the complex <i>m</i> &#x00D7; <i>k</i> matrix <i>A</i> and
+    *  the complex <i>k</i> &#x00D7; <i>n</i> matrix <i>B</i>, each stored by rows.*/
+   private static double[][] multiply(double[] ar, double[] ai, double[] br, double[] bi, int m, int k, int n) {
+      double[] cr = new double[m * n], ci = new double[m * n];
+      for (int i = 0; i < m; i++) {
+         for (int l = 0; l < k; l++) {
+            double xr = ar[i*k + l], xi = ai[i*k + l];
+            if (xr == 0 && xi == 0) {
+               continue;
+            }
+            for (int j = 0; j < n; j++) {
+               cr[i*n + j] += xr * br[l*n + j] - xi * bi[l*n + j];
+               ci[i*n + j] += xr * bi[l*n + j] + xi * br[l*n + j];
+            }
+         }
+      }
+      return new double[][] {cr, ci};
+   }
+
+   /** Returns the truncated singular value decomposition of the complex 
+    *  <i>m</i> &#x00D7; <i>n</i> matrix <i>M</i> = <i>A</i> + i<i>B</i>.
+    *  It is computed from the real singular value decomposition of
+    *  <p style="text-align:center">
+    *    <i>E</i> = [[<i>A</i>, -<i>B</i>], [<i>B</i>, <i>A</i>]],
+    *  </p>
+    *  whose singular values are those of <i>M</i>, each occurring twice, with the 
+    *  singular vectors (Re <i>u</i>, Im <i>u</i>) and (-Im <i>u</i>, Re <i>u</i>) 
+    *  for each complex singular vector <i>u</i>. Of each such pair, one vector is 
+    *  selected by a complex Gram-Schmidt orthogonalization.
+    *  At most <code>limit</code> singular values are kept, and singular values
+    *  below the relative cutoff are discarded. The kept singular values are rescaled
+    *  such that the Frobenius norm is preserved.
+    */
+   private Decomposition decompose(double[] ar, double[] ai, int m, int n, int limit) {
+      int k = min(m, n);
+      boolean transposed = m < n;
+      double[][] e = transposed ? new double[2*n][2*m] : new double[2*m][2*n];
+      for (int r = 0; r < m; r++) {
+         for (int c = 0; c < n; c++) {
+            double a = ar[r*n + c], b = ai[r*n + c];
+            if (transposed) {
+               e[c][r] = a;  e[c + n][r] = -b;  e[c][r + m] = b;  e[c + n][r + m] = a;
+            } else {
+               e[r][c] = a;  e[r][c + n] = -b;  e[r + m][c] = b;  e[r + m][c + n] = a;
+            }
+         }
+      }
+      SingularValueDecomposition svd = new SingularValueDecomposition(new Matrix(e));
+      double[][] left = transposed ? svd.getV().getMatrix() : svd.getU().getMatrix();
+      double[][] right = transposed ? svd.getU().getMatrix() : svd.getV().getMatrix();
+      double[] sigma = svd.getSingularValues();
+
+      // select k complex singular triplets of the 2k real ones:
+      double[][] ur = new double[k][m], ui = new double[k][m], vr = new double[k][n], vi = new double[k][n];
+      double[] s = new double[k];
+      boolean[] used = new boolean[2*k];
+      int count = 0;
+      for (int pass = 0; pass < 2 && count < k; pass++) {
+         double threshold = pass == 0 ? .5 : 1e-6;
+         for (int j = 0; j < 2*k && count < k; j++) {
+            if (used[j]) {
+               continue;
+            }
+            double[] xr = new double[m], xi = new double[m], yr = new double[n], yi = new double[n];
+            for (int r = 0; r < m; r++) {
+               xr[r] = left[r][j];
+               xi[r] = left[r + m][j];
+            }
+            for (int c = 0; c < n; c++) {
+               yr[c] = right[c][j];
+               yi[c] = right[c + n][j];
+            }
+            for (int l = 0; l < count; l++) { // x -= <u_l, x> u_l, y -= <u_l, x> v_l
+               double pr = 0, pi = 0;
+               for (int r = 0; r < m; r++) {
+                  pr += ur[l][r] * xr[r] + ui[l][r] * xi[r];
+                  pi += ur[l][r] * xi[r] - ui[l][r] * xr[r];
+               }
+               for (int r = 0; r < m; r++) {
+                  xr[r] -= pr * ur[l][r] - pi * ui[l][r];
+                  xi[r] -= pr * ui[l][r] + pi * ur[l][r];
+               }
+               for (int c = 0; c < n; c++) {
+                  yr[c] -= pr * vr[l][c] - pi * vi[l][c];
+                  yi[c] -= pr * vi[l][c] + pi * vr[l][c];
+               }
+            }
+            double norm = 0;
+            for (int r = 0; r < m; r++) {
+               norm += xr[r] * xr[r] + xi[r] * xi[r];
+            }
+            if (norm > threshold) {
+               norm = 1 / sqrt(norm);
+               for (int r = 0; r < m; r++) {
+                  ur[count][r] = xr[r] * norm;
+                  ui[count][r] = xi[r] * norm;
+               }
+               for (int c = 0; c < n; c++) {
+                  vr[count][c] = yr[c] * norm;
+                  vi[count][c] = yi[c] * norm;
+               }
+               s[count++] = sigma[j];
+               used[j] = true;
+            }
+         }
+      }
+
+      // sort by descending singular values and truncate:
+      Integer[] order = new Integer[count];
+      double total = 0;
+      for (int j = 0; j < count; j++) {
+         order[j] = j;
+         total += s[j] * s[j];
+      }
+      Arrays.sort(order, (p, q) -> Double.compare(s[q], s[p]));
+      int rank = 0;
+      double kept = 0;
+      while (rank < min(count, limit) && s[order[rank]] > CUTOFF * s[order[0]]) {
+         kept += s[order[rank]] * s[order[rank]];
+         rank++;
+      }
+      rank = max(rank, 1);
+      if (total > 0 && kept > 0) {
+         discarded += (total - kept) / total;
+      }
+      double factor = kept > 0 ? sqrt(total / kept) : 1;
+      Decomposition d = new Decomposition(m, n, rank);
+      for (int j = 0; j < rank; j++) {
+         int o = order[j];
+         d.s[j] = s[o] * factor;
+         for (int r = 0; r < m; r++) {
+            d.ur[r*rank + j] = ur[o][r];
+            d.ui[r*rank + j] = ui[o][r];
+         }
+         for (int c = 0; c < n; c++) { // the rows of V* are the conjugates of v
+            d.vr[j*n + c] = vr[o][c];
+            d.vi[j*n + c] = -vi[o][c];
+         }
+      }
+      return d;
+   }
+
+   /** A truncated singular value decomposition <i>U S V</i>* of a complex 
+    *  <i>m</i> &#x00D7; <i>n</i> matrix, with <i>U</i> and <i>V</i>* stored by rows.*/
+   private static final class Decomposition {
+      /** The number of kept singular values.*/
+      final int rank;
+      /** The number of rows and columns of the matrix.*/
+      final int m, n;
+      /** The kept singular values.*/
+      final double[] s;
+      /** The real and imaginary parts of the <i>m</i> &#x00D7; <i>rank</i> matrix <i>U</i>.*/
+      final double[] ur, ui;
+      /** The real and imaginary parts of the <i>rank</i> &#x00D7; <i>n</i> matrix <i>V</i>*.*/
+      final double[] vr, vi;
+
+      /** Creates an empty decomposition.*/
+      Decomposition(int m, int n, int rank) {
+         this.m = m;
+         this.n = n;
+         this.rank = rank;
+         this.s = new double[rank];
+         this.ur = new double[m * rank];
+         this.ui = new double[m * rank];
+         this.vr = new double[rank * n];
+         this.vi = new double[rank * n];
+      }
+
+      /** Multiplies the rows of <i>V</i>* by the singular values, yielding <i>S V</i>*.*/
+      void scaleRows() {
+         for (int j = 0; j < rank; j++) {
+            for (int c = 0; c < n; c++) {
+               vr[j*n + c] *= s[j];
+               vi[j*n + c] *= s[j];
+            }
+         }
+      }
+
+      /** Multiplies the columns of <i>U</i> by the singular values, yielding <i>U S</i>.*/
+      void scaleColumns() {
+         for (int r = 0; r < m; r++) {
+            for (int j = 0; j < rank; j++) {
+               ur[r*rank + j] *= s[j];
+               ui[r*rank + j] *= s[j];
+            }
+         }
+      }
+   }
+}
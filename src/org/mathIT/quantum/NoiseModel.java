@@ -0,0 +1,202 @@
+/*
+ * NoiseModel.java - Noise channels acting on the qubits of a quantum circuit
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.SplittableRandom;
+import static java.lang.Math.*;
+/**
+ * This class represents a model of the noise acting on each qubit of a quantum
+ * circuit after each gate which involves it. The noise is given by the following
+ * single-qubit channels, applied in this order:
+ * <ul>
+ *   <li>
+ *     the <i>amplitude damping</i> with rate <i>&#x03B3;</i>, i.e., the decay
+ *     |1&gt; &#x2192; |0&gt; of the excited state, given by the Kraus operators
+ *     <i>K</i><sub>0</sub> = |0&gt;&lt;0| + &#x221A;(1 - <i>&#x03B3;</i>) |1&gt;&lt;1|
+ *     and <i>K</i><sub>1</sub> = &#x221A;<i>&#x03B3;</i> |0&gt;&lt;1|;
+ *   </li>
+ *   <li>
+ *     the <i>depolarizing channel</i> with probability <i>p</i>, applying each of
+ *     the Pauli gates <i>X</i>, <i>Y</i>, <i>Z</i> with probability <i>p</i>/3;
+ *   </li>
+ *   <li>
+ *     the <i>bit flip</i> <i>X</i> with probability <i>p<sub>x</sub></i>;
+ *   </li>
+ *   <li>
+ *     the <i>phase flip</i> <i>Z</i> with probability <i>p<sub>z</sub></i>.
+ *   </li>
+ * </ul>
+ * The channels are simulated by quantum trajectories: instead of evolving a density
+ * matrix, a single state vector is evolved, where each channel randomly applies one
+ * of its Kraus operators according to its probability in the current state, followed by
+ * normalization. The average over many trajectories then yields the statistics of
+ * the density matrix, with a memory of only one state vector per trajectory.
+ * @author  Andreas de Vries
+ * @version 1.0
+ * @see Circuit#executeNoisy(NoiseModel, int, long)
+ */
+public class NoiseModel {
+   /** The probability of the depolarizing channel.*/
+   private final double depolarizing;
+   /** The rate of the amplitude damping.*/
+   private final double amplitudeDamping;
+   /** The probability of a bit flip.*/
+   private final double bitFlip;
+   /** The probability of a phase flip.*/
+   private final double phaseFlip;
+
+   /** Creates a noise model with the specified channels, each of them being
+    *  switched off by the value 0.
+    *  @param depolarizing the probability <i>p</i> of the depolarizing channel
+    *  @param amplitudeDamping the rate <i>&#x03B3;</i> of the amplitude damping
+    *  @param bitFlip the probability <i>p<sub>x</sub></i> of a bit flip
+    *  @param phaseFlip the probability <i>p<sub>z</sub></i> of a phase flip
+    *  @throws IllegalArgumentException if a value is not in the interval [0, 1]
+    */
+   public NoiseModel(double depolarizing, double amplitudeDamping, double bitFlip, double phaseFlip) {
+      this.depolarizing = check(depolarizing);
+      this.amplitudeDamping = check(amplitudeDamping);
+      this.bitFlip = check(bitFlip);
+      this.phaseFlip = check(phaseFlip);
+   }
+
+   /** Returns the noise model consisting of the depolarizing channel only.
+    *  @param p the probability of the depolarizing channel
+    *  @return the noise model of the depolarizing channel
+    *  @throws IllegalArgumentException if <i>p</i> is not in the interval [0, 1]
+    */
+   public static NoiseModel depolarizing(double p) {
+      return new NoiseModel(p, 0, 0, 0);
+   }
+
+   /** Returns the noise model consisting of the amplitude damping only.
+    *  @param gamma the rate of the amplitude damping
+    *  @return the noise model of the amplitude damping
+    *  @throws IllegalArgumentException if <i>&#x03B3;</i> is not in the interval [0, 1]
+    */
+   public static NoiseModel amplitudeDamping(double gamma) {
+      return new NoiseModel(0, gamma, 0, 0);
+   }
+
+   /** Returns the noise model consisting of the bit flip channel only.
+    *  @param p the probability of a bit flip
+    *  @return the noise model of the bit flip channel
+    *  @throws IllegalArgumentException if <i>p</i> is not in the interval [0, 1]
+    */
+   public static NoiseModel bitFlip(double p) {
+      return new NoiseModel(0, 0, p, 0);
+   }
+
+   /** Returns the noise model consisting of the phase flip channel only.
+    *  @param p the probability of a phase flip
+    *  @return the noise model of the phase flip channel
+    *  @throws IllegalArgumentException if <i>p</i> is not in the interval [0, 1]
+    */
+   public static NoiseModel phaseFlip(double p) {
+      return new NoiseModel(0, 0, 0, p);
+   }
+
+   /** Returns the probability of the depolarizing channel.
+    *  @return the probability of the depolarizing channel
+    */
+   public double getDepolarizing() {
+      return depolarizing;
+   }
+
+   /** Returns the rate of the amplitude damping.
+    *  @return the rate of the amplitude damping
+    */
+   public double getAmplitudeDamping() {
+      return amplitudeDamping;
+   }
+
+   /** Returns the probability of a bit flip.
+    *  @return the probability of a bit flip
+    */
+   public double getBitFlip() {
+      return bitFlip;
+   }
+
+   /** Returns the probability of a phase flip.
+    *  @return the probability of a phase flip
+    */
+   public double getPhaseFlip() {
+      return phaseFlip;
+   }
+
+   /** Applies one trajectory step of the noise channels to the specified qubit.
+    *  @param register the register
+    *  @param j the qubit
+    *  @param random the random number generator of the trajectory
+    */
+   void apply(Register register, int j, SplittableRandom random) {
+      if ( amplitudeDamping > 0 ) {
+         long h = 1L << (j - 1);
+         double jump = amplitudeDamping * register.probability(h, h);
+         if ( random.nextDouble() < jump ) { // K_1, i.e., the decay |1> -> |0>
+            register.apply(new double[][][] {{{0,0}, {1,0}}, {{0,0}, {0,0}}}, j);
+            register.scale(1 / sqrt(register.probability(0, 0)));
+         } else { // K_0
+            register.apply(new double[][][] {{{1,0}, {0,0}}, {{0,0}, {sqrt(1 - amplitudeDamping),0}}}, j);
+            register.scale(1 / sqrt(1 - jump));
+         }
+      }
+      if ( depolarizing > 0 && random.nextDouble() < depolarizing ) {
+         switch ( random.nextInt(3) ) {
+            case 0: register.xPauli(j); break;
+            case 1: register.yPauli(j); break;
+            default: register.zPauli(j);
+         }
+      }
+      if ( bitFlip > 0 && random.nextDouble() < bitFlip ) {
+         register.xPauli(j);
+      }
+      if ( phaseFlip > 0 && random.nextDouble() < phaseFlip ) {
+         register.zPauli(j);
+      }
+   }
+
+   /** Returns the specified probability if it is in the interval [0, 1].*/
+   private static double check(double p) {
+      if ( !(p >= 0 && p <= 1) ) {
+         throw new IllegalArgumentException("Probability " + p + " not in [0, 1]");
+      }
+      return p;
+   }
+
+   /** Returns a string representation of this noise model.
+    *  @return a string representation of this noise model
+    */
+   @Override
+   public String toString() {
+      return "depolarizing " + depolarizing + ", amplitude damping " + amplitudeDamping
+         + ", bit flip " + bitFlip + ", phase flip " + phaseFlip;
+   }
+}
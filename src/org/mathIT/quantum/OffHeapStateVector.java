@@ -0,0 +1,135 @@
+/*
+ * OffHeapStateVector.java - Amplitudes of a quantum register stored outside the Java heap
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import static java.lang.Math.*;
+/**
+ * This class stores the 2<sup><i>n</i></sup> amplitudes of a quantum register of
+ * <i>n</i> qubits outside the Java heap, either in direct byte buffers or in a
+ * memory-mapped file. Since the amplitudes are addressed by <code>long</code>
+ * indices, the number of qubits is not limited by the maximum array length of
+ * 2<sup>31</sup> - 1, but only by the available memory or disk space.
+ * <p>
+ * The amplitudes are stored in pages of at most 2<sup>26</sup> amplitudes, i.e.,
+ * 1 GiB, each amplitude as the pair of its real and imaginary part in native
+ * byte order. The gates of a {@link Register} are executed by the generic
+ * operations of {@link DenseStateVector}, namely a controlled 2 &#x00D7; 2 unitary, a
+ * 2<sup><i>k</i></sup> &#x00D7; 2<sup><i>k</i></sup> unitary on <i>k</i> qubits,
+ * the fast Fourier transform, and the measurement operations.
+ * As in the case of a register on the heap, the gates of large registers are
+ * executed in parallel by the common fork-join pool.
+ * </p>
+ * @author  Andreas de Vries
+ * @version 1.2
+ */
+final class OffHeapStateVector extends DenseStateVector {
+   /** The binary logarithm of the maximum number of amplitudes of a page.*/
+   private final static int PAGE_BITS = 26;
+   /** The bit mask of the index of an amplitude within its page.*/
+   private final static int PAGE_MASK = (1 << PAGE_BITS) - 1;
+   /** The pages of the amplitudes, each amplitude occupying two consecutive entries.*/
+   private final DoubleBuffer[] pages;
+
+   /** Creates the amplitudes of <i>n</i> qubits in direct byte buffers,
+    *  initialized to the state |0&gt;.
+    *  @param size the number <i>n</i> of qubits
+    */
+   OffHeapStateVector(int size) {
+      super(size);
+      int pageLength = (int) min(length, 1L << PAGE_BITS);
+      this.pages = new DoubleBuffer[(int) (length / pageLength)];
+      for (int p = 0; p < pages.length; p++) {
+         pages[p] = ByteBuffer.allocateDirect(16 * pageLength)
+                              .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+      }
+      set(0, 1, 0);
+   }
+
+   /** Creates the amplitudes of <i>n</i> qubits in the specified file which is
+    *  mapped into memory, initialized to the state |0&gt;.
+    *  Previous contents of the file are overwritten.
+    *  @param size the number <i>n</i> of qubits
+    *  @param file the file storing the amplitudes
+    *  @throws IOException if the file cannot be created or mapped
+    */
+   OffHeapStateVector(int size, File file) throws IOException {
+      super(size);
+      int pageLength = (int) min(length, 1L << PAGE_BITS);
+      this.pages = new DoubleBuffer[(int) (length / pageLength)];
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+         raf.setLength(0); // the file is filled with zeros
+         raf.setLength(16 * length);
+         FileChannel channel = raf.getChannel();
+         for (int p = 0; p < pages.length; p++) {
+            pages[p] = channel.map(FileChannel.MapMode.READ_WRITE, 16L * p * pageLength, 16L * pageLength)
+                              .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+         }
+      } // the mappings remain valid after closing the file
+      set(0, 1, 0);
+   }
+
+   @Override
+   double getReal(long i) {
+      return pages[(int) (i >>> PAGE_BITS)].get(((int) i & PAGE_MASK) << 1);
+   }
+
+   @Override
+   double getImaginary(long i) {
+      return pages[(int) (i >>> PAGE_BITS)].get((((int) i & PAGE_MASK) << 1) + 1);
+   }
+
+   @Override
+   void set(long i, double re, double im) {
+      DoubleBuffer page = pages[(int) (i >>> PAGE_BITS)];
+      int k = ((int) i & PAGE_MASK) << 1;
+      page.put(k, re);
+      page.put(k + 1, im);
+   }
+
+   /** Returns a copy of the amplitudes in direct memory, even if they are
+    *  stored in a file mapped into memory.
+    *  @return a copy of the amplitudes in direct memory
+    */
+   @Override
+   OffHeapStateVector copy() {
+      OffHeapStateVector copy = new OffHeapStateVector(size);
+      for (int p = 0; p < pages.length; p++) {
+         copy.pages[p].duplicate().put(pages[p].duplicate());
+      }
+      return copy;
+   }
+}
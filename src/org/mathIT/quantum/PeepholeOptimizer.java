@@ -0,0 +1,340 @@
+/*
+ * PeepholeOptimizer.java - Optimizer removing cancelling gates of a quantum circuit
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * This class removes gates of a list of quantum gates which cancel each other,
+ * by local rewriting rules. Each gate is compared with the preceding gates of
+ * the compiled list, from the last one backwards, as long as these commute with it.
+ * <ul>
+ *   <li>
+ *     Two equal Hadamard, Pauli-<i>X</i>, Pauli-<i>Y</i>, c-NOT, Toffoli or SWAP 
+ *     gates cancel, as well as an <i>S</i> gate and its inverse, or a <i>T</i> gate
+ *     and its inverse.
+ *   </li>
+ *   <li>
+ *     The diagonal gates <i>Z</i> = <i>T</i><sup>4</sup>, <i>S</i> = <i>T</i><sup>2</sup>,
+ *     <i>S</i><sup>-1</sup> = <i>T</i><sup>6</sup>, <i>T</i>, and 
+ *     <i>T</i><sup>-1</sup> = <i>T</i><sup>7</sup> on the same qubit are merged
+ *     into the power <i>T<sup>k</sup></i> with <i>k</i> mod 8, which is represented
+ *     by at most two gates, and vanishes for <i>k</i> = 0.
+ *   </li>
+ *   <li>
+ *     A gate commutes with all gates on other qubits or on the other register.
+ *     Moreover, the diagonal gates commute with each other and with the control
+ *     qubits of a c-NOT or Toffoli gate, a Pauli-<i>X</i> gate commutes with the 
+ *     target qubit of a c-NOT or Toffoli gate, and two c-NOT or Toffoli gates commute
+ *     if neither target qubit is a control qubit of the other gate.
+ *   </li>
+ * </ul>
+ * Since a cancellation may enable further cancellations, as in <i>H X X H</i>,
+ * the comparison is done with the already optimized gates.
+ * Fourier transforms and Grover operators act on the entire register, and function
+ * evaluations and measurements are barriers which are not passed at all.
+ * At most {@link #WINDOW} preceding gates are compared, such that the running time
+ * is linear in the number of gates.
+ *
+ * @author  Andreas de Vries
+ * @version 1.0
+ * @see Circuit#optimize()
+ */
+final class PeepholeOptimizer {
+   /** The maximum number of preceding gates compared with a gate.
+    *  Its actual value is {@value}.*/
+   static final int WINDOW = 256;
+   /** The names of the gates <i>T<sup>k</sup></i> for <i>k</i> = 0, 1, ..., 7.*/
+   private static final String[][] PHASE_GATES = {
+      {}, {"T"}, {"S"}, {"S", "T"}, {"Pauli-Z"}, {"Pauli-Z", "T"}, {"invS"}, {"invT"}
+   };
+   /** The optimized gates, where removed gates are null.*/
+   private final ArrayList<Entry> compiled = new ArrayList<>();
+   /** The index of the first compiled gate after the last barrier.*/
+   private int barrier = 0;
+
+   /** Creates an optimizer.*/
+   private PeepholeOptimizer() {
+   }
+
+   /** Returns the list of gates resulting from the specified list by removing the
+    *  gates which cancel each other. The gates of the original list are not modified.
+    *  @param gates the list of quantum gates
+    *  @return the optimized list of quantum gates
+    */
+   static ArrayList<QuantumGate> optimize(List<QuantumGate> gates) {
+      PeepholeOptimizer optimizer = new PeepholeOptimizer();
+      for (QuantumGate gate : gates) {
+         optimizer.add(gate);
+      }
+      ArrayList<QuantumGate> optimized = new ArrayList<>(gates.size());
+      for (Entry e : optimizer.compiled) {
+         if (e != null) {
+            e.emit(optimized);
+         }
+      }
+      return optimized;
+   }
+
+   /** Adds the specified gate to the compiled gates, unless it cancels a preceding gate.*/
+   private void add(QuantumGate gate) {
+      Entry g = new Entry(gate);
+      if (g.kind == Kind.BARRIER) {
+         compiled.add(g);
+         barrier = compiled.size();
+         return;
+      }
+      int compared = 0;
+      for (int i = compiled.size() - 1; i >= barrier && compared < WINDOW; i--) {
+         Entry h = compiled.get(i);
+         if (h == null) {
+            continue;
+         }
+         compared++;
+         if (h.cancels(g)) {
+            compiled.set(i, null);
+            return;
+         }
+         if (h.kind == Kind.PHASE && g.kind == Kind.PHASE && h.yRegister == g.yRegister 
+             && h.qubits[0] == g.qubits[0]) {
+            h.phase = (h.phase + g.phase) & 7;
+            h.gate = null; // the merged phase gate
+            if (h.phase == 0) {
+               compiled.set(i, null);
+            }
+            return;
+         }
+         if (!h.commutes(g)) {
+            break;
+         }
+      }
+      compiled.add(g);
+   }
+
+   /** The kinds of gates distinguished by the commutation rules.*/
+   private enum Kind {
+      /** A diagonal gate <i>T<sup>k</sup></i>.*/
+      PHASE,
+      /** A Pauli-<i>X</i> gate.*/
+      NOT,
+      /** A c-NOT or Toffoli gate, whose last qubit is the target qubit.*/
+      CONTROLLED_NOT,
+      /** A gate which only commutes with the gates on other qubits.*/
+      OTHER,
+      /** A gate acting on all qubits of its register.*/
+      REGISTER,
+      /** A gate which is not passed by any other gate.*/
+      BARRIER
+   }
+
+   /** A compiled gate.*/
+   private static class Entry {
+      /** The original gate, or null if this gate results from merged phase gates.*/
+      QuantumGate gate;
+      /** The kind of this gate.*/
+      final Kind kind;
+      /** The qubits of this gate.*/
+      final int[] qubits;
+      /** Flag whether this gate acts on the y-register.*/
+      final boolean yRegister;
+      /** The exponent <i>k</i> of a diagonal gate <i>T<sup>k</sup></i>.*/
+      int phase;
+
+      /** Creates the entry of the specified gate.*/
+      Entry(QuantumGate gate) {
+         this.gate = gate;
+         this.yRegister = gate.yRegister;
+         this.qubits = gate.qubits;
+         this.kind = kind(gate);
+         switch (gate.getName()) {
+            case "T":       phase = 1; break;
+            case "S":       phase = 2; break;
+            case "Pauli-Z": phase = 4; break;
+            case "invS":    phase = 6; break;
+            case "invT":    phase = 7; break;
+            default:        phase = 0;
+         }
+      }
+
+      /** Returns the kind of the specified gate.*/
+      private static Kind kind(QuantumGate gate) {
+         switch (gate.getName()) {
+            case "QFT":
+            case "invQFT":
+            case "Grover":
+               return Kind.REGISTER;
+            case "Function":
+            case "Measurement":
+            case "initialState":
+               return Kind.BARRIER;
+            default:
+         }
+         int[] q = gate.qubits;
+         if (q == null || q.length == 0) {
+            return Kind.BARRIER;
+         }
+         for (int i = 0; i < q.length; i++) {
+            for (int j = 0; j < i; j++) {
+               if (q[i] == q[j]) {
+                  return Kind.BARRIER; // a multiply specified qubit
+               }
+            }
+         }
+         switch (gate.getName()) {
+            case "T":
+            case "S":
+            case "Pauli-Z":
+            case "invS":
+            case "invT":
+               return q.length == 1 ? Kind.PHASE : Kind.BARRIER;
+            case "Pauli-X":
+               return q.length == 1 ? Kind.NOT : Kind.BARRIER;
+            case "cNOT":
+               return q.length == 2 ? Kind.CONTROLLED_NOT : Kind.BARRIER;
+            case "Toffoli":
+               return q.length == 3 ? Kind.CONTROLLED_NOT : Kind.BARRIER;
+            case "Hadamard":
+            case "Pauli-Y":
+            case "sqrt-X":
+               return q.length == 1 ? Kind.OTHER : Kind.BARRIER;
+            case "Swap":
+               return q.length == 2 ? Kind.OTHER : Kind.BARRIER;
+            case "Rotation":
+            case "Unitary":
+               return Kind.OTHER;
+            default:
+               return Kind.BARRIER;
+         }
+      }
+
+      /** Checks whether this gate followed by the specified gate is the identity.*/
+      boolean cancels(Entry g) {
+         if (gate == null || g.gate == null || yRegister != g.yRegister || kind != g.kind) {
+            return false;
+         }
+         String a = gate.getName(), b = g.gate.getName();
+         switch (a) {
+            case "Hadamard":
+            case "Pauli-X":
+            case "Pauli-Y":
+            case "cNOT":
+               return b.equals(a) && java.util.Arrays.equals(qubits, g.qubits);
+            case "Toffoli":
+               return b.equals(a) && qubits[2] == g.qubits[2]
+                  && (qubits[0] == g.qubits[0] && qubits[1] == g.qubits[1]
+                      || qubits[0] == g.qubits[1] && qubits[1] == g.qubits[0]);
+            case "Swap":
+               return b.equals(a)
+                  && (qubits[0] == g.qubits[0] && qubits[1] == g.qubits[1]
+                      || qubits[0] == g.qubits[1] && qubits[1] == g.qubits[0]);
+            default:
+               return false;
+         }
+      }
+
+      /** Checks whether this gate commutes with the specified gate.*/
+      boolean commutes(Entry g) {
+         if (yRegister != g.yRegister) {
+            return true;
+         }
+         if (kind == Kind.REGISTER || g.kind == Kind.REGISTER) {
+            return false;
+         }
+         if (disjoint(qubits, g.qubits)) {
+            return true;
+         }
+         if (kind == Kind.PHASE && g.kind == Kind.PHASE) {
+            return true;
+         }
+         if (kind == Kind.NOT && g.kind == Kind.NOT) {
+            return true;
+         }
+         if (kind == Kind.CONTROLLED_NOT && g.kind == Kind.CONTROLLED_NOT) {
+            return !controls(target(), g) && !g.controls(g.target(), this);
+         }
+         if (kind == Kind.CONTROLLED_NOT) {
+            return g.commutesWithControlledNot(this);
+         }
+         if (g.kind == Kind.CONTROLLED_NOT) {
+            return commutesWithControlledNot(g);
+         }
+         return false;
+      }
+
+      /** Checks whether this single-qubit gate commutes with the specified c-NOT or Toffoli gate.*/
+      private boolean commutesWithControlledNot(Entry c) {
+         if (kind == Kind.PHASE) {
+            return qubits[0] != c.target(); // diagonal on the control qubits
+         }
+         if (kind == Kind.NOT) {
+            return !c.controls(qubits[0], c); // X on the target qubit
+         }
+         return false;
+      }
+
+      /** Returns the target qubit of a c-NOT or Toffoli gate.*/
+      private int target() {
+         return qubits[qubits.length - 1];
+      }
+
+      /** Checks whether the qubit is a control qubit of the specified c-NOT or Toffoli gate.*/
+      private static boolean controls(int q, Entry c) {
+         for (int i = 0; i < c.qubits.length - 1; i++) {
+            if (c.qubits[i] == q) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      /** Adds the gates represented by this entry to the specified list.*/
+      void emit(ArrayList<QuantumGate> gates) {
+         if (gate != null) {
+            gates.add(gate);
+            return;
+         }
+         for (String name : PHASE_GATES[phase]) {
+            gates.add(new QuantumGate(name, new int[] {qubits[0]}, yRegister));
+         }
+      }
+   }
+
+   /** Checks whether the specified arrays of qubits are disjoint.*/
+   private static boolean disjoint(int[] a, int[] b) {
+      for (int x : a) {
+         for (int y : b) {
+            if (x == y) {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+}
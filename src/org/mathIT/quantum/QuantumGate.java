@@ -38,7 +38,7 @@ import org.mathIT.util.FunctionParser;
  * has the value |0&gt; or |1&gt;.
  *
  * @author  Andreas de Vries
- * @version 1.5
+ * @version 1.6
  */
 public class QuantumGate implements java.io.Serializable {
     private static final long serialVersionUID = 1488467558;
@@ -64,6 +64,12 @@ public class QuantumGate implements java.io.Serializable {
      *  is the rotation angle in radians.
      */
     public int phiAsPartOfPi;
+    /** The unitary matrix of a "Unitary" gate, given by its complex entries
+     *  <code>matrix[r][s]</code> = {Re <i>U<sub>rs</sub></i>, Im <i>U<sub>rs</sub></i>}.
+     *  It is null for all other gates.
+     *  @see Register#apply(double[][][], int...)
+     */
+    public double[][][] matrix;
     
     /** Constructs a generic quantum gate.
      * @param name the name of the quantum gate; possible values are determined by
@@ -128,6 +134,32 @@ public class QuantumGate implements java.io.Serializable {
         this.yRegister = yRegister;
     }
     
+    /** Constructor for a quantum gate given by a unitary matrix, i.e., a "Unitary" gate.
+     * The <i>i</i>-th bit of the row and column indices of the matrix refers to 
+     * the qubit <code>qubits[i]</code>.
+     * @param name the name of the quantum gate; possible values are determined by
+     * {@link Circuit#gatelist}
+     * @param qubits array representing the qubits on which the matrix acts
+     * @param matrix the unitary 2<sup><i>k</i></sup> &#x00D7; 2<sup><i>k</i></sup> matrix 
+     * for <i>k</i> qubits
+     * @param yRegister flag indicating whether the gate applies to the y-register
+     * @throws IllegalArgumentException if the gate name is unknown or the matrix is null
+     * @see Register#apply(double[][][], int...)
+     */
+    public QuantumGate(String name, int[] qubits, double[][][] matrix, boolean yRegister) {
+        if (!isValid(name)) {
+          throw new IllegalArgumentException("Unknown quantum gate " + name);
+        }
+        if (matrix == null) {
+          throw new IllegalArgumentException("Unspecified matrix");
+        }
+        
+        this.name = name;
+        this.qubits = qubits;
+        this.matrix = matrix;
+        this.yRegister = yRegister;
+    }
+    
     /**
      * Returns the name of this quantum gate.
      * @return the name of this quantum gate
@@ -30,9 +30,18 @@
  */
 package org.mathIT.quantum;
 import static java.lang.Math.*;
+import static java.lang.Integer.bitCount;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
 import static org.mathIT.numbers.Numbers.*;
 import org.mathIT.util.FunctionParser;
 /**
@@ -66,12 +75,103 @@ import org.mathIT.util.FunctionParser;
  *  and 
  *  <code>imaginary</code>[<i>j</i>] = Im <i>&#x03B1;<sub>j</sub></i>
  *  for <i>j</i> = 0, 1, ..., <i>q</i>-1.
+ *  <p>
+ *  The gate operations of large registers are executed in parallel:
+ *  the amplitude pairs affected by a gate are split into chunks of disjoint 
+ *  index ranges which are processed by the common fork-join pool.
+ *  Each amplitude is computed by exactly the same arithmetic operations as in
+ *  the single-threaded case, so the results do not depend on the number of threads.
+ *  Registers with less than {@link #getParallelThreshold()} qubits are
+ *  always processed single-threaded.
+ *  </p>
+ *  <p>
+ *  Since the arrays of a register on the heap are limited to 2<sup>31</sup> - 1
+ *  entries, a register can alternatively store its amplitudes outside the heap,
+ *  either in direct memory or in a memory-mapped file, see
+ *  {@link #Register(int, boolean)} and {@link #Register(int, java.io.File)}. 
+ *  Such a register may consist of more than 30 qubits, bounded only by the 
+ *  available memory or disk space. All gates work equally on both kinds of registers,
+ *  whereas methods requiring the amplitudes as arrays, 
+ *  such as {@link #getReal()} or {@link #toString()}, are restricted to
+ *  registers of at most 30 qubits.
+ *  </p>
+ *  <p>
+ *  Many states occurring in practice, such as basis states or the states of
+ *  classical reversible circuits, have only few non-vanishing amplitudes.
+ *  A register created by {@link #sparse(int)} stores only these amplitudes,
+ *  such that its memory and the running time of its gates grow with their number
+ *  rather than with 2<sup><i>n</i></sup>. Thus sparse registers may consist of
+ *  up to 62 qubits. As soon as the fraction of non-vanishing amplitudes of a
+ *  sparse register of at most 30 qubits exceeds a fill threshold, 
+ *  the register switches automatically to the arrays on the heap.
+ *  </p>
+ *  <p>
+ *  For Grover's search algorithm, a register created by {@link #uniform(int)} stores
+ *  the uniform superposition symbolically by only two amplitudes, namely the
+ *  amplitude of the searched value and the common amplitude of all other values.
+ *  Then a Grover operator requires constant time, even for registers of 40 and more
+ *  qubits. The amplitudes are materialized only if another gate is applied.
+ *  </p>
+ *  <p>
+ *  A register created by {@link #matrixProductState(int, int)} stores its state
+ *  as a matrix product state, i.e., as a chain of small tensors whose sizes, the
+ *  bond dimensions, grow with the entanglement of the state and are bounded by a
+ *  maximum bond dimension <i>&#x03C7;</i>. Its memory and the running time of its
+ *  gates thus grow polynomially in <i>n</i> and <i>&#x03C7;</i>, such that shallow
+ *  circuits of 60 to 100 qubits, or more precisely up to 62 qubits since the
+ *  indices are of type <code>long</code>, can be simulated. If the bond dimension
+ *  would exceed <i>&#x03C7;</i>, the smallest singular values are discarded,
+ *  and the discarded weight is reported by {@link #getTruncationError()}.
+ *  </p>
+ *  <p>
+ *  A register created by {@link #singlePrecision(int)} stores its amplitudes
+ *  as <code>float</code> values, requiring half the memory and
+ *  memory bandwidth of the other registers at the price of rounding errors of the
+ *  order 10<sup>-7</sup> per gate. The resulting drift of the norm can be monitored
+ *  by {@link #getNormDrift()} and corrected by periodic renormalization, see
+ *  {@link #setRenormalization(int)}.
+ *  </p>
+ *  <p>
+ *  The SWAP gate {@link #swap(int, int)} and the qubit permutation 
+ *  {@link #permute(int...)} move no amplitudes. Instead, the register records the 
+ *  position at which each qubit is stored, and the gates are applied to the qubits
+ *  at their recorded positions, such that a swap requires constant time. Only an 
+ *  operation depending on the order of the qubits, i.e., a Fourier transform, a 
+ *  function evaluation, a measurement of the entire register, or the access to the 
+ *  arrays of all amplitudes, moves the qubits to their own positions before.
+ *  </p>
+ *  <p>
+ *  The measurements of a register draw their random numbers from its own
+ *  {@link SplittableRandom} generator, which can be seeded by {@link #setSeed(long)}
+ *  or replaced by {@link #setRandom(SplittableRandom)}. Thus many registers can be 
+ *  measured in parallel without contention, and the measured values are reproducible.
+ *  </p>
+ *  <p>
+ *  All gates acting on a single target qubit, with or without control qubits, are
+ *  executed by one kernel, cf. {@link #applyControlled(double[][][], int...)}, which
+ *  only iterates over the pairs of amplitudes affected by the gate.
+ *  </p>
  *  @author  Andreas de Vries
- *  @version 1.7
+ *  @version 2.9
  */
 public class Register {
    /** The accuracy up to which calculations are done. Its actual value is {@value}.*/
    public final static double ACCURACY = 1e-12; //Double.MIN_VALUE;
+   /** The default minimum number of qubits from which on gates are executed in parallel.
+    *  Its actual value is {@value}.
+    */
+   public final static int DEFAULT_PARALLEL_THRESHOLD = 16;
+   /** The default fill ratio above which a sparse register switches to the arrays
+    *  on the heap. Its actual value is {@value}.
+    *  @see #sparse(int, double)
+    */
+   public final static double DEFAULT_FILL_THRESHOLD = 0.0625;
+   /** The minimum number of amplitude indices a parallel chunk of a gate consists of.*/
+   private final static int MIN_CHUNK_LENGTH = 1 << 12;
+   /** The number of shots drawn by a single random number generator in {@link #sample(int, SplittableRandom)}.*/
+   private final static int SHOT_CHUNK_LENGTH = 1 << 14;
+   /** The minimum number of qubits from which on gates are executed in parallel.*/
+   private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
    /** The number of qubits of this register.*/
    public int size;
    /** Array containing the real parts of the qubit state components of this register.*/
@@ -80,6 +180,42 @@ public class Register {
    private double[] imaginary;
    /** Map of a list containing the numbers of states being entangled with each other.*/
    private HashMap<Integer, ArrayList<Integer>> entanglement;
+   /** The amplitudes if they are stored outside the heap or sparsely, otherwise null.*/
+   private StateVector vector;
+   /** The position at which each qubit is stored, i.e., the <i>j</i>-th qubit is
+    *  stored as the qubit <code>position[</code><i>j</i> - 1<code>]</code> of the
+    *  amplitudes, or null if each qubit is stored at its own position.*/
+   private int[] position;
+   /** The fill ratio above which a sparse register switches to the arrays on the heap.*/
+   private double fillThreshold;
+   /** The random number generator of the measurements.*/
+   SplittableRandom random = new SplittableRandom();
+   
+   /** The matrix of the Hadamard gate.*/
+   static final double[][][] HADAMARD = {{{1/sqrt(2),0}, {1/sqrt(2),0}}, {{1/sqrt(2),0}, {-1/sqrt(2),0}}};
+   /** The matrix of the Pauli-X gate.*/
+   static final double[][][] PAULI_X = {{{0,0}, {1,0}}, {{1,0}, {0,0}}};
+   /** The matrix of the Pauli-Y gate.*/
+   static final double[][][] PAULI_Y = {{{0,0}, {0,-1}}, {{0,1}, {0,0}}};
+   /** The matrix of the Pauli-Z gate.*/
+   static final double[][][] PAULI_Z = {{{1,0}, {0,0}}, {{0,0}, {-1,0}}};
+   /** The matrix of the <i>S</i> gate.*/
+   static final double[][][] S_GATE = {{{1,0}, {0,0}}, {{0,0}, {0,1}}};
+   /** The matrix of the inverse <i>S</i> gate.*/
+   static final double[][][] INVERSE_S_GATE = {{{1,0}, {0,0}}, {{0,0}, {0,-1}}};
+   /** The matrix of the <i>T</i> gate.*/
+   static final double[][][] T_GATE = {{{1,0}, {0,0}}, {{0,0}, {1/sqrt(2),1/sqrt(2)}}};
+   /** The matrix of the inverse <i>T</i> gate.*/
+   static final double[][][] INVERSE_T_GATE = {{{1,0}, {0,0}}, {{0,0}, {1/sqrt(2),-1/sqrt(2)}}};
+   /** The matrix of the &#x221A;X gate.*/
+   static final double[][][] SQRT_X = {{{.5,.5}, {.5,-.5}}, {{.5,-.5}, {.5,.5}}};
+   /** The matrix of the inverse &#x221A;X gate.*/
+   static final double[][][] INVERSE_SQRT_X = {{{.5,-.5}, {.5,.5}}, {{.5,.5}, {.5,-.5}}};
+   /** The matrix of the SWAP gate.*/
+   static final double[][][] SWAP = {
+      {{1,0}, {0,0}, {0,0}, {0,0}}, {{0,0}, {0,0}, {1,0}, {0,0}}, 
+      {{0,0}, {1,0}, {0,0}, {0,0}}, {{0,0}, {0,0}, {0,0}, {1,0}}
+   };
    
    /**
     *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;.
@@ -106,6 +242,222 @@ public class Register {
       }
    }
    
+   /**
+    *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;,
+    *  whose amplitudes are stored either on the heap or outside the heap in direct memory.
+    *  A register outside the heap may consist of more than 30 qubits.
+    *  It requires 2<sup><i>n</i>+4</sup> bytes of direct memory, whose maximum
+    *  is set by the JVM option <code>-XX:MaxDirectMemorySize</code>.
+    *  @param size the number of qubits this register consists of
+    *  @param offHeap flag whether the amplitudes are stored outside the heap
+    */
+   public Register(int size, boolean offHeap) {
+      this(offHeap ? 0 : size);
+      if (offHeap) {
+         this.size = size;
+         this.real = null;
+         this.imaginary = null;
+         this.vector = new OffHeapStateVector(size);
+      }
+   }
+   
+   /**
+    *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;,
+    *  whose amplitudes are stored in the specified file which is mapped into memory.
+    *  The file requires 2<sup><i>n</i>+4</sup> bytes; its previous contents are overwritten.
+    *  Such a register may consist of more than 30 qubits.
+    *  @param size the number of qubits this register consists of
+    *  @param file the file storing the amplitudes
+    *  @throws IOException if the file cannot be created or mapped into memory
+    */
+   public Register(int size, File file) throws IOException {
+      this(0);
+      this.size = size;
+      this.real = null;
+      this.imaginary = null;
+      this.vector = new OffHeapStateVector(size, file);
+   }
+   
+   /**
+    *  Creates a sparse register of <i>n</i> qubits, initialized to the state |0&gt;,
+    *  with the fill threshold {@link #DEFAULT_FILL_THRESHOLD}.
+    *  @param size the number of qubits this register consists of
+    *  @return a sparse register in the state |0&gt;
+    *  @throws IllegalArgumentException if <code>size</code> is negative or greater than 62
+    *  @see #sparse(int, double)
+    */
+   public static Register sparse(int size) {
+      return sparse(size, DEFAULT_FILL_THRESHOLD);
+   }
+   
+   /**
+    *  Creates a sparse register of <i>n</i> qubits, initialized to the state |0&gt;.
+    *  Only the non-vanishing amplitudes of a sparse register are stored.
+    *  If after a gate their number exceeds the fraction <code>fillThreshold</code>
+    *  of all 2<sup><i>n</i></sup> amplitudes and the register consists of at 
+    *  most 30 qubits, the register switches to the arrays on the heap, where
+    *  the gates are executed faster for dense states. 
+    *  The fill threshold 0 thus yields a register on the heap after the first gate
+    *  creating a superposition, whereas the fill threshold 1 lets the register
+    *  remain sparse in any case.
+    *  A sparse register of more than 30 qubits remains sparse in any case.
+    *  @param size the number of qubits this register consists of
+    *  @param fillThreshold the fill ratio above which the register switches to the heap
+    *  @return a sparse register in the state |0&gt;
+    *  @throws IllegalArgumentException if <code>size</code> is negative or greater than 62,
+    *  or if <code>fillThreshold</code> is negative
+    */
+   public static Register sparse(int size, double fillThreshold) {
+      if (size < 0 || size > 62) {
+         throw new IllegalArgumentException("Sparse register size " + size + " out of range");
+      }
+      if (!(fillThreshold >= 0)) {
+         throw new IllegalArgumentException("Invalid fill threshold " + fillThreshold);
+      }
+      Register register = new Register(0);
+      register.size = size;
+      register.real = null;
+      register.imaginary = null;
+      register.vector = new SparseStateVector(size);
+      register.fillThreshold = fillThreshold;
+      return register;
+   }
+   
+   /**
+    *  Creates a register of <i>n</i> qubits in the uniform superposition
+    *  <p style="text-align:center">
+    *    2<sup>-<i>n</i>/2</sup> &#x2211;<sub><i>x</i></sub> |<i>x</i>&gt;,
+    *  </p>
+    *  i.e., the initial state of Grover's search algorithm, whose amplitudes are
+    *  stored symbolically by two values. As long as only Grover operators 
+    *  {@link #grover(long)} and {@link #inverseGrover(long)} with the same needle,
+    *  complete measurements, or the methods {@link #getAmplitude(long)} and 
+    *  {@link #getReal()} are applied, the register remains symbolic, requiring 
+    *  constant time and memory for any number of qubits.
+    *  Any other gate materializes the amplitudes once outside the heap; a 
+    *  register of at most 30 qubits then switches to the arrays on the heap.
+    *  @param size the number of qubits this register consists of
+    *  @return a symbolic register in the uniform superposition
+    *  @throws IllegalArgumentException if <code>size</code> is negative or greater than 62
+    *  @see #isSymbolic()
+    */
+   public static Register uniform(int size) {
+      if (size < 0 || size > 62) {
+         throw new IllegalArgumentException("Symbolic register size " + size + " out of range");
+      }
+      Register register = new Register(0);
+      register.size = size;
+      register.real = null;
+      register.imaginary = null;
+      register.vector = new GroverStateVector(size);
+      return register;
+   }
+   
+   /**
+    *  Creates a register of <i>n</i> qubits in the state |0&gt;, whose amplitudes
+    *  are stored as a matrix product state
+    *  <p style="text-align:center">
+    *    <i>&#x03B1;</i><sub><i>x</i></sub> = 
+    *    <i>A</i><sup>[1]</sup><sub><i>x</i><sub>1</sub></sub> &#x22EF;
+    *    <i>A</i><sup>[<i>n</i>]</sup><sub><i>x</i><sub><i>n</i></sub></sub>
+    *  </p>
+    *  of complex matrices <i>A</i><sup>[<i>s</i>]</sup><sub><i>x</i></sub>, 
+    *  one pair for each qubit, whose dimensions are at most 
+    *  <code>maxBond</code>. All gates of a register can be applied. A single-qubit
+    *  gate acts locally on one tensor, whereas a gate on several qubits moves them
+    *  to adjacent positions of the chain, contracts their tensors, and splits
+    *  the result by singular value decompositions, discarding all but the
+    *  <code>maxBond</code> largest singular values. Thus a register with 
+    *  <code>maxBond</code> = 2<sup><i>n</i>/2</sup> represents any state exactly,
+    *  whereas small values of <code>maxBond</code> suffice for states of low 
+    *  entanglement, e.g., the states of shallow circuits, of many qubits.
+    *  <p>
+    *  A matrix product state register is never switched to the arrays on the heap.
+    *  Note that a measurement of a single qubit by {@link #measure(int)} projects
+    *  the state onto the measured value and normalizes it.
+    *  </p>
+    *  @param size the number of qubits this register consists of
+    *  @param maxBond the maximum bond dimension <i>&#x03C7;</i>
+    *  @return a matrix product state register in the state |0&gt;
+    *  @throws IllegalArgumentException if <code>size</code> is not positive or 
+    *  greater than 62, or if <code>maxBond</code> is not positive
+    *  @see #isMatrixProductState()
+    *  @see #getTruncationError()
+    */
+   public static Register matrixProductState(int size, int maxBond) {
+      if (size < 1 || size > 62) {
+         throw new IllegalArgumentException("Matrix product state size " + size + " out of range");
+      }
+      if (maxBond < 1) {
+         throw new IllegalArgumentException("Invalid maximum bond dimension " + maxBond);
+      }
+      Register register = new Register(0);
+      register.size = size;
+      register.real = null;
+      register.imaginary = null;
+      register.vector = new MatrixProductStateVector(size, maxBond);
+      return register;
+   }
+   
+   /**
+    *  Creates a register of <i>n</i> qubits in the state |0&gt;, whose amplitudes
+    *  are stored in single precision in arrays of <code>float</code> values. The register
+    *  requires 2<sup><i>n</i>+3</sup> bytes, i.e., half the memory of a register in
+    *  double precision, such that one more qubit fits into the same memory, and 
+    *  its gates are faster since they read and write half the number of bytes.
+    *  All gates work as for the other registers; the single-qubit gates and the
+    *  gates on several qubits are computed in single precision.
+    *  <p>
+    *  The rounding errors of about 10<sup>-7</sup> per gate let the norm of the state
+    *  drift away from 1. This is suitable for sampling, where probabilities are
+    *  required to a few digits only, but not for amplitudes requiring the accuracy
+    *  {@link #ACCURACY}. The drift can be monitored by {@link #getNormDrift()}
+    *  and corrected periodically by {@link #setRenormalization(int)}.
+    *  </p>
+    *  @param size the number of qubits this register consists of
+    *  @return a single-precision register in the state |0&gt;
+    *  @throws IllegalArgumentException if <code>size</code> is negative or greater than 62
+    *  @see #isSinglePrecision()
+    */
+   public static Register singlePrecision(int size) {
+      if (size < 0 || size > 62) {
+         throw new IllegalArgumentException("Single-precision register size " + size + " out of range");
+      }
+      Register register = new Register(0);
+      register.size = size;
+      register.real = null;
+      register.imaginary = null;
+      register.vector = new FloatStateVector(size);
+      return register;
+   }
+   
+   /**
+    * Returns the minimum number of qubits a register must have such that its
+    * gates are executed in parallel.
+    * @return the minimum register size for parallel gate execution
+    * @see #setParallelThreshold(int)
+    */
+   public static int getParallelThreshold() {
+      return parallelThreshold;
+   }
+   
+   /**
+    * Sets the minimum number of qubits a register must have such that its
+    * gates are executed in parallel. Registers of smaller size are processed
+    * single-threaded. The value {@link Integer#MAX_VALUE} switches off 
+    * parallel execution completely.
+    * Note that the result of a gate does not depend on this value.
+    * @param size the minimum register size for parallel gate execution
+    * @throws IllegalArgumentException if <code>size</code> is negative
+    * @see #getParallelThreshold()
+    */
+   public static void setParallelThreshold(int size) {
+      if (size < 0) {
+         throw new IllegalArgumentException("Negative parallel threshold " + size);
+      }
+      parallelThreshold = size;
+   }
+   
    /**
     * Returns the size of this quantum register. I.e., the number of its qubits.
     * @return the size of this quantum register
@@ -114,14 +466,186 @@ public class Register {
       return size;
    }
    
+   /**
+    * Returns whether the amplitudes of this register are stored outside the heap.
+    * @return <code>true</code> if and only if the amplitudes are stored outside the heap
+    * @see #Register(int, boolean)
+    * @see #Register(int, java.io.File)
+    */
+   public boolean isOffHeap() {
+      return vector instanceof OffHeapStateVector;
+   }
+   
+   /**
+    * Returns whether only the non-vanishing amplitudes of this register are stored.
+    * A sparse register may switch to the arrays on the heap after a gate.
+    * @return <code>true</code> if and only if this register is sparse
+    * @see #sparse(int, double)
+    */
+   public boolean isSparse() {
+      return vector instanceof SparseStateVector;
+   }
+   
+   /**
+    * Returns whether the amplitudes of this register are stored symbolically by
+    * two values. A symbolic register may switch to materialized amplitudes after a gate.
+    * @return <code>true</code> if and only if this register is symbolic
+    * @see #uniform(int)
+    */
+   public boolean isSymbolic() {
+      return vector instanceof GroverStateVector && ((GroverStateVector) vector).isSymbolic();
+   }
+   
+   /**
+    * Returns whether the amplitudes of this register are stored as a matrix product state.
+    * @return <code>true</code> if and only if this register is a matrix product state
+    * @see #matrixProductState(int, int)
+    */
+   public boolean isMatrixProductState() {
+      return vector instanceof MatrixProductStateVector;
+   }
+   
+   /**
+    * Returns whether the amplitudes of this register are stored in single precision.
+    * @return <code>true</code> if and only if this register is stored in single precision
+    * @see #singlePrecision(int)
+    */
+   public boolean isSinglePrecision() {
+      return vector instanceof FloatStateVector;
+   }
+   
+   /**
+    * Lets a single-precision register be renormalized after every <i>k</i> gates,
+    * where each renormalization requires a pass over the amplitudes to compute the norm.
+    * The maximum deviation of the squared norm from 1 found at these renormalizations
+    * is returned by {@link #getMaxNormDrift()}.
+    * @param interval the number <i>k</i> of gates between two renormalizations, 
+    * where 0 switches off the renormalization
+    * @throws IllegalArgumentException if <code>interval</code> is negative
+    * @throws UnsupportedOperationException if this register is not stored in single precision
+    * @see #singlePrecision(int)
+    */
+   public void setRenormalization(int interval) {
+      if ( interval < 0 ) {
+         throw new IllegalArgumentException("Negative renormalization interval " + interval);
+      }
+      if ( !isSinglePrecision() ) {
+         throw new UnsupportedOperationException("Renormalization of a register in double precision");
+      }
+      ((FloatStateVector) vector).setRenormalizationInterval(interval);
+   }
+   
+   /**
+    * Returns the current deviation |1 - ||<i>&#x03C8;</i>||<sup>2</sup>| of the squared
+    * norm of the state of this register from 1, computed by a pass over the amplitudes.
+    * For a register in double precision it is of the order of the rounding errors,
+    * whereas for a single-precision register it grows with the number of gates.
+    * @return the deviation of the squared norm from 1
+    * @see #getMaxNormDrift()
+    */
+   public double getNormDrift() {
+      return abs(1 - probability(0, 0));
+   }
+   
+   /**
+    * Returns the maximum deviation of the squared norm of a single-precision register
+    * from 1 found at the periodic renormalizations set by {@link #setRenormalization(int)}.
+    * @return the maximum norm drift of a single-precision register, or 0 for any other register
+    * @see #getNormDrift()
+    */
+   public double getMaxNormDrift() {
+      return isSinglePrecision() ? ((FloatStateVector) vector).getMaxNormDrift() : 0;
+   }
+   
+   /**
+    * Returns the accumulated relative weight of the singular values discarded by
+    * the truncations of a matrix product state register, i.e., the sum of the 
+    * relative squared norms of the state components neglected after each gate.
+    * For small values it approximately bounds the infidelity 1 - |&lt;<i>&#x03C8;</i>|<i>&#x03C8;</i>'&gt;|<sup>2</sup>
+    * of the stored state <i>&#x03C8;</i>' to the exact state <i>&#x03C8;</i>.
+    * @return the truncation error of a matrix product state register, or 0 for
+    * any other register
+    * @see #matrixProductState(int, int)
+    */
+   public double getTruncationError() {
+      return isMatrixProductState() ? ((MatrixProductStateVector) vector).getTruncationError() : 0;
+   }
+   
+   /**
+    * Returns the random number generator from which the measurements of this register
+    * draw their random numbers.
+    * @return the random number generator of this register
+    * @see #setRandom(SplittableRandom)
+    */
+   public SplittableRandom getRandom() {
+      return random;
+   }
+   
+   /**
+    * Sets the random number generator from which the measurements of this register
+    * draw their random numbers. By default, each register has its own generator,
+    * so that registers measured in different threads do not contend for a common
+    * generator. A generator must not be shared by registers measured concurrently;
+    * instead, each of them may obtain its own generator by {@link SplittableRandom#split()}.
+    * @param random the random number generator
+    * @throws IllegalArgumentException if <code>random</code> is null
+    * @see #setSeed(long)
+    */
+   public void setRandom(SplittableRandom random) {
+      if ( random == null ) {
+         throw new IllegalArgumentException("No random number generator specified");
+      }
+      this.random = random;
+   }
+   
+   /**
+    * Sets the seed of the random number generator of the measurements of this 
+    * register, such that the results of its measurements are reproducible.
+    * @param seed the seed of the random number generator
+    * @see #setRandom(SplittableRandom)
+    */
+   public void setSeed(long seed) {
+      random = new SplittableRandom(seed);
+   }
+   
+   /**
+    * Returns the amplitude <i>&#x03B1;<sub>i</sub></i> of the basis state 
+    * |<i>i</i>&gt; of this register, as the array {Re <i>&#x03B1;<sub>i</sub></i>, 
+    * Im <i>&#x03B1;<sub>i</sub></i>}. 
+    * In contrast to {@link #getReal()} and {@link #getImaginary()}, this method
+    * applies to registers of any size.
+    * @param i the index of the basis state, 0 &#x2264; <i>i</i> &lt; 2<sup><i>n</i></sup>
+    * @return the amplitude of the basis state |<i>i</i>&gt;
+    */
+   public double[] getAmplitude(long i) {
+      i = physicalIndex(i);
+      if (vector != null) {
+         return new double[] {vector.getReal(i), vector.getImaginary(i)};
+      }
+      return new double[] {real[(int) i], imaginary[(int) i]};
+   }
+   
    /** 
     * Returns the array containing the real parts of the qubit state components 
     * of this register.
+    * If the amplitudes are stored outside the heap, they are copied from the array.
     * @param real array of the real parts of this quantum register
     * @throws IllegalArgumentException if <code>real.length</code> is not equal 
     * to 2<sup><i>n</i></sup> where <i>n</i> is the size of this register
     */
    public void setReal(double[] real) {
+      arrange();
+      if (vector != null) {
+         if (real.length != vector.length()) {
+            throw new IllegalArgumentException(
+               "Wrong register size " + real.length + " (" + vector.length() + " required)"
+            );    
+         }
+         double[] imaginary = getImaginary();
+         vector.copyFrom(real, imaginary);
+         updateStorage();
+         return;
+      }
       if (real.length != this.real.length) {
          throw new IllegalArgumentException(
             "Wrong register size " + real.length + " (" + this.real.length + " required)"
@@ -133,20 +657,41 @@ public class Register {
    /** 
     * Returns the array containing the real parts of the qubit state components 
     * of this register.
+    * If the amplitudes are stored outside the heap, a copy of them is returned.
     * @return array of the real parts of this quantum register
+    * @throws UnsupportedOperationException if this register is stored outside the
+    * heap and consists of more than 30 qubits
     */
    public double[] getReal() {
+      arrange();
+      if (vector != null) {
+         double[][] amplitudes = toArrays();
+         return amplitudes[0];
+      }
       return real;
    }
    
    /** 
     * Returns the array containing the imaginary parts of the qubit state components 
     * of this register.
+    * If the amplitudes are stored outside the heap, they are copied from the array.
     * @param imaginary array of the imaginary parts of this quantum register
     * @throws IllegalArgumentException if <code>imaginary.length</code> is not equal 
     * to 2<sup><i>n</i></sup> where <i>n</i> is the size of this register
     */
    public void setImaginary(double[] imaginary) {
+      arrange();
+      if (vector != null) {
+         if (imaginary.length != vector.length()) {
+            throw new IllegalArgumentException(
+               "Wrong register size " + imaginary.length + " (" + vector.length() + " required)"
+            );    
+         }
+         double[] real = getReal();
+         vector.copyFrom(real, imaginary);
+         updateStorage();
+         return;
+      }
       if (imaginary.length != this.real.length) {
          throw new IllegalArgumentException(
             "Wrong register size " + imaginary.length + " (" + this.real.length + " required)"
@@ -158,9 +703,17 @@ public class Register {
    /** 
     * Returns the array containing the imaginary parts of the qubit state components 
     * of this register.
+    * If the amplitudes are stored outside the heap, a copy of them is returned.
     * @return array of the imaginary parts of this quantum register
+    * @throws UnsupportedOperationException if this register is stored outside the
+    * heap and consists of more than 30 qubits
     */
    public double[] getImaginary() {
+      arrange();
+      if (vector != null) {
+         double[][] amplitudes = toArrays();
+         return amplitudes[1];
+      }
       return imaginary;
    }
 
@@ -178,22 +731,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void hadamard( int j ) {
-      double realTmp, imaginaryTmp;
-      
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i0 = k + l;
-            int i1 = k + l + power2(j-1);
-            
-            realTmp      = real[ i0 ];
-            imaginaryTmp = imaginary[ i0 ];
-            
-            real[ i0 ] = ( realTmp + real[ i1 ] ) / SQRT2;
-            imaginary[ i0 ] = ( imaginaryTmp + imaginary[ i1 ] ) / SQRT2;
-            real[ i1 ] = ( realTmp - real[ i1 ] ) / SQRT2;
-            imaginary[ i1 ] = ( imaginaryTmp - imaginary[ i1 ] ) / SQRT2;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), HADAMARD);
    }
    
    /**
@@ -203,34 +742,9 @@ public class Register {
     *  @param k the target qubit
     */
    public void cNOT(int j, int k) {
-      double tmp;
-      
-      /* In the following loop, all target qubit indices it which 
-         have to be exchanged are determined and stored to a binary digit.*/
-      HashSet<Integer> exchange = new HashSet<>();
-      for (int t = 0; t < power2(size); t++) {
-         // if the bit (j-1) is not met by t, then go on...
-         if ( (t & power2(j-1)) <= 0 ) {
-            continue;
-         }
-         
-         if (!exchange.contains(t - power2(k-1))) {
-            exchange.add(t);
-         }
-      }
-      
-      // exchange the stored indices:
-      int t2;
-      for ( int t : exchange) {
-         t2 = (t + power2(k-1) < power2(size)) ? t + power2(k-1) : t - power2(k-1);
-         tmp = real[t];
-         real[t]  = real[t2];
-         real[t2] = tmp;
-
-         tmp = imaginary[t];
-         imaginary[t]  =  imaginary[t2];
-         imaginary[t2] =  tmp;
-      }
+      j = physical(j);
+      k = physical(k);
+      unitary(1L << (j-1), 1L << (k-1), PAULI_X);
    }
    
    /** 
@@ -241,22 +755,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void xPauli( int j ) {
-      double realTmp, imaginaryTmp;
-      
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i0 = k + l;
-            int i1 = k + l + power2(j-1);            
-            
-            realTmp      = real[ i0 ];
-            imaginaryTmp = imaginary[ i0 ];
-            
-            real[ i0 ]      = real[ i1 ];
-            imaginary[ i0 ] = imaginary[ i1 ];
-            real[ i1 ]      = realTmp;
-            imaginary[ i1 ] = imaginaryTmp;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), PAULI_X);
    }
    
    /** 
@@ -266,22 +766,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void yPauli( int j ) {
-      double realTmp, imaginaryTmp;
-      
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i0 = k + l;
-            int i1 = k + l + power2(j-1);            
-            
-            realTmp      = real[ i0 ];
-            imaginaryTmp = imaginary[ i0 ];
-         
-            real[ i0 ]      = imaginary[ i1 ];
-            imaginary[ i0 ] = - real[ i1 ];
-            real[ i1 ]      = - imaginaryTmp;
-            imaginary[ i1 ] = realTmp;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), PAULI_Y);
    }
    
    /** 
@@ -291,14 +777,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void zPauli( int j ) {
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i1 = k + l + power2(j-1);            
-            
-            real[ i1 ]      *= -1;
-            imaginary[ i1 ] *= -1;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), PAULI_Z);
    }
    
    /** 
@@ -308,15 +788,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void sGate( int j ) {
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i1 = k + l + power2(j-1);            
-            
-            double tmp = real[ i1 ];
-            real[ i1 ]      = - imaginary[ i1 ];
-            imaginary[ i1 ] = tmp;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), S_GATE);
    }
    
    /** 
@@ -326,15 +799,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void inverseSGate( int j ) {
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i1 = k + l + power2(j-1);            
-            
-            double tmp = real[ i1 ];
-            real[ i1 ]      = imaginary[ i1 ];
-            imaginary[ i1 ] = - tmp;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), INVERSE_S_GATE);
    }
    
    /** 
@@ -344,15 +810,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void tGate( int j ) {
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i1 = k + l + power2(j-1);            
-            
-            double tmp = real[ i1 ];
-            real[ i1 ]      = (tmp - imaginary[ i1 ]) / sqrt(2);
-            imaginary[ i1 ] = (imaginary[ i1 ] + tmp) / sqrt(2);
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), T_GATE);
    }
    
    /** 
@@ -362,15 +821,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void inverseTGate( int j ) {
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i1 = k + l + power2(j-1);            
-            
-            double tmp = real[ i1 ];
-            real[ i1 ]      = (tmp + imaginary[ i1 ]) / sqrt(2);
-            imaginary[ i1 ] = (imaginary[ i1 ] - tmp) / sqrt(2);
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), INVERSE_T_GATE);
    }
    
    /** 
@@ -380,24 +832,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void sqrtX( int j ) {
-      double x0, y0, x1, y1;
-      
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i0 = k + l;
-            int i1 = k + l + power2(j-1);            
-            
-            x0 = real[ i0 ];
-            y0 = imaginary[ i0 ];
-            x1 = real[ i1 ];
-            y1 = imaginary[ i1 ];
-            
-            real[ i0 ]      = (  x0 + x1 - y0 + y1) / 2.;
-            real[ i1 ]      = (  x0 + x1 + y0 - y1) / 2.;
-            imaginary[ i0 ] = (  x0 - x1 + y0 + y1) / 2.;
-            imaginary[ i1 ] = (- x0 + x1 + y0 + y1) / 2.;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), SQRT_X);
    }
    
    /** 
@@ -408,24 +844,8 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void inverseSqrtX( int j ) {
-      double x0, y0, x1, y1;
-      
-      for ( int k = 0; k < power2( size ); k += power2(j) ) {
-         for ( int l = 0; l < power2(j-1); l++ ) {
-            int i0 = k + l;
-            int i1 = k + l + power2(j-1);            
-            
-            x0 = real[ i0 ];
-            y0 = imaginary[ i0 ];
-            x1 = real[ i1 ];
-            y1 = imaginary[ i1 ];
-         
-            real[ i0 ]      = (  x0 + x1 + y0 - y1) / 2.;
-            real[ i1 ]      = (  x0 + x1 - y0 + y1) / 2.;
-            imaginary[ i0 ] = (- x0 + x1 + y0 + y1) / 2.;
-            imaginary[ i1 ] = (  x0 - x1 + y0 + y1) / 2.;
-         }
-      }
+      j = physical(j);
+      unitary(0, 1L << (j-1), INVERSE_SQRT_X);
    }
    
    /**
@@ -437,34 +857,62 @@ public class Register {
     *  @param k  the target qubit
     */
    public void toffoli(int j1, int j2, int k) {
-      double tmp;
-      
-      /* In the following loop, all target qubit indices it which 
-         have to be exchanged are determined and stored to a binary digit.*/
-      HashSet<Integer> exchange = new HashSet<>();
-      for (int t = 0; t < power2(size); t++) {
-         // if the bits (j1-1) and (j2-1) are not met by t, then go on...
-         if ( (t & power2(j1-1)) + (t & power2(j2-1)) < power2(j1 - 1) + power2(j2 - 1) ) {
-            continue;
-         }
-         
-         if (!exchange.contains(t - power2(k-1))) {
-            exchange.add(t);
-         }
+      j1 = physical(j1);
+      j2 = physical(j2);
+      k = physical(k);
+      unitary((1L << (j1-1)) | (1L << (j2-1)), 1L << (k-1), PAULI_X);
+   }
+   
+   /**
+    *  Swaps the <i>j</i>-th and the <i>k</i>-th qubit of this register.
+    *  No amplitudes are moved, but only the positions at which the two qubits 
+    *  are stored are exchanged, so that the swap requires constant time.
+    *  @param j the first qubit
+    *  @param k the second qubit
+    *  @throws IllegalArgumentException if a qubit is not in the range 1, ..., <i>n</i>
+    *  @see #permute(int...)
+    */
+   public void swap(int j, int k) {
+      if ( j < 1 || j > size || k < 1 || k > size ) {
+         throw new IllegalArgumentException("Qubits " + j + ", " + k + " out of range 1 to " + size);
       }
-      
-      // exchange the stored indices:
-      int t2;
-      for ( int t : exchange) {
-         t2 = (t + power2(k-1) < power2(size)) ? t + power2(k-1) : t - power2(k-1);
-         tmp = real[t];
-         real[t]  = real[t2];
-         real[t2] = tmp;
-
-         tmp = imaginary[t];
-         imaginary[t]  =  imaginary[t2];
-         imaginary[t2] =  tmp;
+      if ( position == null ) {
+         position = IntStream.rangeClosed(1, size).toArray();
       }
+      int p = position[j-1];
+      position[j-1] = position[k-1];
+      position[k-1] = p;
+   }
+   
+   /**
+    *  Permutes the qubits of this register such that the state of the <i>j</i>-th
+    *  qubit becomes the state of the qubit <i>&#x03C0;</i>(<i>j</i>), for 
+    *  <i>j</i> = 1, ..., <i>n</i>. For instance, the permutation (2, 3, 1) of a register
+    *  of three qubits maps the state |<i>x</i><sub>3</sub><i>x</i><sub>2</sub><i>x</i><sub>1</sub>&gt;
+    *  to |<i>x</i><sub>2</sub><i>x</i><sub>1</sub><i>x</i><sub>3</sub>&gt;.
+    *  As for {@link #swap(int, int)}, no amplitudes are moved, so that the 
+    *  permutation requires a time linear in <i>n</i>, independently of the number
+    *  2<sup><i>n</i></sup> of amplitudes.
+    *  @param permutation the images <i>&#x03C0;</i>(1), ..., <i>&#x03C0;</i>(<i>n</i>)
+    *  of the qubits
+    *  @throws IllegalArgumentException if the array is not a permutation of 1, ..., <i>n</i>
+    *  @see #swap(int, int)
+    */
+   public void permute(int... permutation) {
+      if ( permutation.length != size ) {
+         throw new IllegalArgumentException(
+            "Permutation of " + permutation.length + " qubits (" + size + " required)"
+         );
+      }
+      int[] next = new int[size];
+      for ( int j = 1; j <= size; j++ ) {
+         int k = permutation[j-1];
+         if ( k < 1 || k > size || next[k-1] != 0 ) {
+            throw new IllegalArgumentException("Invalid permutation " + Arrays.toString(permutation));
+         }
+         next[k-1] = physical(j);
+      }
+      position = next;
    }
    
    /**
@@ -502,13 +950,28 @@ public class Register {
     * register states are transformed.
     * Note that both <i>q</i> and <code>size</code> must be less than or equal
     * 2<sup><i>n</i></sup> where <i>n</i> is the qubit size of this register.
+    * A register stored outside the heap is always transformed entirely; if it
+    * consists of at most 30 qubits, <i>q</i> must be 2<sup><i>n</i></sup>.
     * </p>
     * @param q the total number of register basis states 
     * |0&gt;, |1&gt;, ..., |<i>q</i> - 1&gt; to be transformed
     * @param size the number of register basis states of the transformed register
+    * @throws UnsupportedOperationException if this register is stored outside the
+    * heap and <i>q</i> &lt; 2<sup><i>n</i></sup>
     * @see #inverseQft(int,int)
     */
    public void qft( int q, int size ) {
+      arrange();
+      if ( vector instanceof SparseStateVector ) {
+         toDense(); // the Fourier transform of a sparse state is dense in general
+      }
+      if ( vector != null ) {
+         if ( this.size <= 30 && q != power2( this.size ) ) {
+            throw new UnsupportedOperationException("Partial QFT of a register outside the heap");
+         }
+         vector.fft(0, this.size, +1);
+         return;
+      }
       if ( q == power2( this.size ) ) {
          fft(+1); // fast Fourier transform of the entire register
       } else {
@@ -583,13 +1046,28 @@ public class Register {
     * register states are transformed.
     * Note that both <i>q</i> and <code>size</code> must be less than or equal
     * 2<sup><i>n</i></sup> where <i>n</i> is the qubit size of this register.
+    * A register stored outside the heap is always transformed entirely; if it
+    * consists of at most 30 qubits, <i>q</i> must be 2<sup><i>n</i></sup>.
     * </p>
     * @param q the total number of register basis states 
     * |0&gt;, |1&gt;, ..., |<i>q</i> - 1&gt; to be transformed
     * @param size the number of register basis states of the transformed register
+    * @throws UnsupportedOperationException if this register is stored outside the
+    * heap and <i>q</i> &lt; 2<sup><i>n</i></sup>
     * @see #qft(int,int)
     */
    public void inverseQft( int q, int size ) {
+      arrange();
+      if ( vector instanceof SparseStateVector ) {
+         toDense(); // the Fourier transform of a sparse state is dense in general
+      }
+      if ( vector != null ) {
+         if ( this.size <= 30 && q != power2( this.size ) ) {
+            throw new UnsupportedOperationException("Partial QFT of a register outside the heap");
+         }
+         vector.fft(0, this.size, -1);
+         return;
+      }
       if ( q == power2( this.size ) ) {
          fft(-1); // inverse fast Fourier transform of the entire register
       } else {
@@ -629,54 +1107,71 @@ public class Register {
       }
    }
 
+   /**
+    * Applies the quantum Fourier transform to the <i>m</i> qubits <i>j</i>, ...,
+    * <i>j</i> + <i>m</i> - 1 of this register, leaving the other qubits unchanged.
+    * With <i>M</i> = 2<sup><i>m</i></sup>, it maps each basis state |<i>t</i>&gt;
+    * of these qubits to
+    * <p style="text-align:center">
+    *   QFT( |<i>t</i>&gt; ) = <i>M</i><sup>-1/2</sup>
+    *   &#x2211;<sub><i>k</i> = 0</sub><sup><i>M</i> - 1</sup> 
+    *   e<sup>2&#960;i<i>tk</i>/<i>M</i></sup> |<i>k</i>&gt;,
+    * </p>
+    * where qubit <i>j</i> is the least significant bit of <i>t</i> and <i>k</i>.
+    * For <i>j</i> = 1 and <i>m</i> = <i>n</i> it is the transform 
+    * {@link #qft(int,int) qft}(2<sup><i>n</i></sup>, 2<sup><i>n</i></sup>) of the entire register.
+    * The transform is computed in place by the fast Fourier transform.
+    * @param j the number of the lowest transformed qubit
+    * @param m the number of transformed qubits
+    * @throws IllegalArgumentException if the qubits are not in the range 1, ..., <i>n</i>
+    * @throws UnsupportedOperationException if this register is sparse and 
+    * consists of more than 30 qubits
+    * @see #inverseQftRange(int,int)
+    */
+   public void qftRange( int j, int m ) {
+      qftRange(j, m, +1);
+   }
+
+   /**
+    * Applies the inverse quantum Fourier transform to the <i>m</i> qubits <i>j</i>, ...,
+    * <i>j</i> + <i>m</i> - 1 of this register, leaving the other qubits unchanged.
+    * It is the inverse of {@link #qftRange(int,int)}.
+    * @param j the number of the lowest transformed qubit
+    * @param m the number of transformed qubits
+    * @throws IllegalArgumentException if the qubits are not in the range 1, ..., <i>n</i>
+    * @throws UnsupportedOperationException if this register is sparse and 
+    * consists of more than 30 qubits
+    * @see #qftRange(int,int)
+    */
+   public void inverseQftRange( int j, int m ) {
+      qftRange(j, m, -1);
+   }
+
+   /** Fourier transform of the qubits <i>j</i>, ..., <i>j</i> + <i>m</i> - 1.*/
+   private void qftRange( int j, int m, int isign ) {
+      if ( j < 1 || m < 0 || j + m - 1 > size ) {
+         throw new IllegalArgumentException(
+            "Qubits " + j + " to " + (j + m - 1) + " out of range 1 to " + size
+         );
+      }
+      arrange(j, m);
+      if ( vector instanceof SparseStateVector ) {
+         toDense(); // the Fourier transform of a sparse state is dense in general
+      }
+      if ( vector != null ) {
+         vector.fft(j - 1, m, isign);
+         return;
+      }
+      FourierTransform.of(m).transform(real, imaginary, j - 1, isign, size >= parallelThreshold);
+   }
+
    /** Fast Fourier transform of the actual register, applying the discrete
     *  Fourier transform. It consists of two sections, the bit-reversal and
     *  the Danielson-Lanczos routine.
+    *  @see FourierTransform
     */
    private void fft( int isign ) {
-      int n = power2(size);
-      double scale = Math.sqrt(1./n);
-
-      int j = 0;
-      for ( int i = 0; i < n; i++ ) {
-         if (j >= i) {
-            double tempr = real[j]*scale;
-            double tempi = imaginary[j]*scale;
-            real[j] = real[i]*scale;
-            imaginary[j] = imaginary[i]*scale;
-            real[i] = tempr;
-            imaginary[i] = tempi;
-         }
-         int m = n/2;
-         while ( m>=1 && j>=m ) {
-            j -= m;
-            m /= 2;
-         }
-         j += m;
-      }
-      
-      // Danielson-Lanczos routine:
-      int istep = 2;
-      for (int mmax = 1; mmax < n; istep = 2*mmax ) {
-         double delta = isign * PI/mmax;
-         for (int m = 0; m < mmax; m++ ) {
-            // trigonometric recurrence:
-            double theta = m * delta;
-            double wr = cos( theta );
-            double wi = sin( theta );
-            for ( int i = m; i < n; i += istep) {
-               j = i + mmax;
-               double tmpr = wr * real[j] - wi * imaginary[j];
-               double tmpi = wr * imaginary[j] + wi * real[j];
-               // this is the Danielson-Lanczos formula:
-               real[j]       = real[i] - tmpr;
-               imaginary[j]  = imaginary[i] - tmpi;
-               real[i]      += tmpr;
-               imaginary[i] += tmpi;
-            }
-         }
-         mmax = istep;
-      }
+      FourierTransform.of(size).transform(real, imaginary, 0, isign, size >= parallelThreshold);
    }
 
    /**
@@ -691,95 +1186,327 @@ public class Register {
     *  @param phi the rotation angle in radians
     */
    public void rotate( int[] cQubits, String axis, double phi ) {
-      int k = cQubits[ cQubits.length - 1 ]; // the target qubit to be rotated
-      double[] realTmp = new double[real.length];
-      System.arraycopy(real,0,realTmp,0,real.length);
-      double[] imaginaryTmp = new double[imaginary.length];
-      System.arraycopy(imaginary,0,imaginaryTmp,0,imaginary.length);
+      double[][][] u = rotation(axis, phi);
+      if ( u != null ) {
+         applyControlled(u, cQubits);
+      }
+   }
 
-      HashSet<Integer> controls = new HashSet<>();
-      
-       /* In the following loops, all target qubit indices ic which 
-          have to be rotated are determined and stored to a set.*/
-      if (cQubits.length == 1) { // there is no control qubit         
-         for ( int ic = 0; ic < real.length; ic++ ) {
-            if ( real[ic] != 0 || imaginary[ic] != 0 ) {
-               if ( ( ic & (1 << k - 1) ) == 0 ) { // Is ic the smaller of the state pair to be rotated?
-                  ic += power2(k-1); // 
+   /** Returns the matrix of the rotation operator about the specified axis, 
+    *  as applied by {@link #rotate(int[], String, double)}.
+    *  @param axis a string representing the axis, i.e., either "x", "y", or "z"
+    *  @param phi the rotation angle in radians
+    *  @return the matrix of the rotation operator, or null if the axis is unknown
+    */
+   static double[][][] rotation( String axis, double phi ) {
+      double c = cos(phi/2);
+      double s = sin(phi/2);
+      switch (axis) {
+         case "x": return new double[][][] {{{c,0}, {0,-s}}, {{0,-s}, {c,0}}};
+         case "y": return new double[][][] {{{c,0}, {-s,0}}, {{s,0}, {c,0}}};
+         case "z": return new double[][][] {{{c,-s}, {0,0}}, {{0,0}, {c,s}}};
+         default:  return null;
+      }
+   }
+
+   /**
+    *  Applies the unitary 2 &#x00D7; 2 matrix <i>U</i> to the target qubit of this
+    *  register, controlled by the other specified qubits. I.e., <i>U</i> acts on each
+    *  pair of amplitudes differing only in the target qubit whose indices have all
+    *  control bits set, and leaves the other amplitudes unchanged.
+    *  The matrix is given by its complex entries
+    *  <i>U<sub>rs</sub></i> = <code>matrix[r][s][0]</code> + i <code>matrix[r][s][1]</code>.
+    *  For instance, the c-NOT gate with control qubit <i>j</i> and target qubit
+    *  <i>k</i> is given by <code>applyControlled(</code>((0, 1), (1, 0))<code>,
+    *  j, k)</code>, and the rotation gates of {@link #rotate(int[], String, double)}
+    *  are applied by this method, too.
+    *  <p>
+    *  All gates of a single target qubit are executed by the same kernel: the indices
+    *  of the qualifying pairs are obtained by inserting the control and target bits
+    *  into a running number, where the indices below the lowest of these bits form
+    *  runs of consecutive indices which are traversed without further bit operations.
+    *  Diagonal and antidiagonal matrices only access the required amplitudes, and
+    *  the NOT matrix merely exchanges them.
+    *  Note that the matrix is not checked to be unitary.
+    *  </p>
+    *  @param matrix the unitary 2 &#x00D7; 2 matrix to apply
+    *  @param cQubits the control qubits and, as the last entry, the target qubit
+    *  (1 &#x2264; <i>j</i> &#x2264; qubit size)
+    *  @throws IllegalArgumentException if the matrix is not 2 &#x00D7; 2, if no
+    *  target qubit is given, or if a qubit is specified twice
+    *  @see #apply(double[][][], int...)
+    */
+   public void applyControlled( double[][][] matrix, int... cQubits ) {
+      if ( matrix.length != 2 || matrix[0].length != 2 || matrix[1].length != 2 ) {
+         throw new IllegalArgumentException("Matrix is not 2 x 2");
+      }
+      if ( cQubits.length == 0 ) {
+         throw new IllegalArgumentException("No target qubit specified");
+      }
+      cQubits = physical(cQubits);
+      long controls = 0;
+      for ( int i = 0; i < cQubits.length - 1; i++ ) {
+         controls |= 1L << (cQubits[i] - 1);
+      }
+      long target = 1L << (cQubits[cQubits.length - 1] - 1);
+      if ( Long.bitCount(controls | target) != cQubits.length ) {
+         throw new IllegalArgumentException("Qubit specified twice");
+      }
+      unitary(controls, target, matrix);
+   }
+
+   /** Applies the unitary 2 &#x00D7; 2 matrix <i>U</i> to the target qubit given
+    *  by the bit <i>h</i>, controlled by the qubits whose bits are set in
+    *  <code>controls</code>. Each gate of a single target qubit is executed by
+    *  this kernel.
+    *  @param controls the bits of the control qubits
+    *  @param h the bit of the target qubit
+    *  @param u the matrix to apply
+    *  @see #applyControlled(double[][][], int...)
+    */
+   private void unitary( long controls, long h, double[][][] u ) {
+      if ( vector != null ) {
+         vector.unitary(controls, h, u);
+         updateStorage();
+         return;
+      }
+      final double[] real = this.real, imaginary = this.imaginary;
+      final int c = (int) controls, t = (int) h, fixed = c | t;
+      final int run = fixed & -fixed; // the length of the runs of consecutive indices
+      final double u00r = u[0][0][0], u00i = u[0][0][1], u01r = u[0][1][0], u01i = u[0][1][1];
+      final double u10r = u[1][0][0], u10i = u[1][0][1], u11r = u[1][1][0], u11i = u[1][1][1];
+      final boolean diagonal = u01r == 0 && u01i == 0 && u10r == 0 && u10i == 0;
+      final boolean antidiagonal = u00r == 0 && u00i == 0 && u11r == 0 && u11i == 0;
+      final boolean upperIdentity = diagonal && u00r == 1 && u00i == 0;
+      final boolean exchange = antidiagonal && u01r == 1 && u01i == 0 && u10r == 1 && u10i == 0;
+
+      /* The smaller index i0 of the p-th qualifying pair is obtained by inserting
+         the control bits and the unset target bit into p; the pairs of a run of
+         consecutive numbers p below the lowest inserted bit have consecutive indices.*/
+      execute(real.length >> bitCount(fixed), (from, to) -> {
+         double x0, y0, x1, y1;
+         for ( int p = from; p < to; ) {
+            int start = insertZeros(p, fixed) | c;
+            int end = start + min(to - p, run - (p & (run - 1)));
+            p += end - start;
+            if ( upperIdentity ) { // only the amplitudes of the upper states change
+               for ( int i0 = start; i0 < end; i0++ ) {
+                  int i1 = i0 | t;
+                  x1 = real[i1];
+                  y1 = imaginary[i1];
+                  real[i1]      = u11r * x1 - u11i * y1;
+                  imaginary[i1] = u11r * y1 + u11i * x1;
                }
-               controls.add(ic);
-            }
-         }
-      } else { // there are control qubits
-         int j=0;
-         for ( int i = 0; i < cQubits.length - 1; i++ ) {
-            j += power2(cQubits[i] - 1);
-         }
-         for ( int kc = j; kc < real.length; kc += 2*j ) {
-            for ( int lc = 0; kc + lc < real.length; lc++ ) {
-               int ic = kc + lc;
-               boolean match = real[ic] != 0 || imaginary[ic] != 0;
-               // Is each control bit set?
-               for ( int i = 0; i < cQubits.length - 1 && match; i++ ) {
-                  match &= (ic & (1 << cQubits[i] - 1)) >= 1;
+            } else if ( diagonal ) {
+               for ( int i0 = start; i0 < end; i0++ ) {
+                  int i1 = i0 | t;
+                  x0 = real[i0];
+                  y0 = imaginary[i0];
+                  x1 = real[i1];
+                  y1 = imaginary[i1];
+                  real[i0]      = u00r * x0 - u00i * y0;
+                  imaginary[i0] = u00r * y0 + u00i * x0;
+                  real[i1]      = u11r * x1 - u11i * y1;
+                  imaginary[i1] = u11r * y1 + u11i * x1;
                }
-               if ( match ) {
-                  // Is ic the smaller of the state pair to be rotated?
-                  if ( ( ic & (1 << k - 1) ) == 0 ) { 
-                     ic += power2(k-1);
-                  }
-                  controls.add(ic);
+            } else if ( exchange ) { // the amplitudes are just swapped
+               for ( int i0 = start; i0 < end; i0++ ) {
+                  int i1 = i0 | t;
+                  x0 = real[i0];
+                  y0 = imaginary[i0];
+                  real[i0]      = real[i1];
+                  imaginary[i0] = imaginary[i1];
+                  real[i1]      = x0;
+                  imaginary[i1] = y0;
+               }
+            } else if ( antidiagonal ) {
+               for ( int i0 = start; i0 < end; i0++ ) {
+                  int i1 = i0 | t;
+                  x0 = real[i0];
+                  y0 = imaginary[i0];
+                  x1 = real[i1];
+                  y1 = imaginary[i1];
+                  real[i0]      = u01r * x1 - u01i * y1;
+                  imaginary[i0] = u01r * y1 + u01i * x1;
+                  real[i1]      = u10r * x0 - u10i * y0;
+                  imaginary[i1] = u10r * y0 + u10i * x0;
+               }
+            } else {
+               for ( int i0 = start; i0 < end; i0++ ) {
+                  int i1 = i0 | t;
+                  x0 = real[i0];
+                  y0 = imaginary[i0];
+                  x1 = real[i1];
+                  y1 = imaginary[i1];
+                  real[i0]      = u00r * x0 - u00i * y0 + u01r * x1 - u01i * y1;
+                  imaginary[i0] = u00r * y0 + u00i * x0 + u01r * y1 + u01i * x1;
+                  real[i1]      = u10r * x0 - u10i * y0 + u11r * x1 - u11i * y1;
+                  imaginary[i1] = u10r * y0 + u10i * x0 + u11r * y1 + u11i * x1;
                }
             }
          }
+      });
+   }
+
+   /**
+    *  Applies the unitary 2<sup><i>k</i></sup> &#x00D7; 2<sup><i>k</i></sup> matrix
+    *  <i>U</i> to the <i>k</i> specified qubits of this register.
+    *  The matrix is given by its complex entries
+    *  <i>U<sub>rs</sub></i> = <code>matrix[r][s][0]</code> + i <code>matrix[r][s][1]</code>,
+    *  where the <i>i</i>-th bit of the row index <i>r</i> and of the column index
+    *  <i>s</i> refers to the qubit <code>qubits[i]</code>.
+    *  For instance, for the qubits {<i>j</i>, <i>k</i>} the c-NOT gate with
+    *  control qubit <i>j</i> and target qubit <i>k</i> is given by the matrix
+    *  <p style="text-align:center">
+    *  <i>U</i> =
+    *  ((1, 0, 0, 0), (0, 0, 0, 1), (0, 0, 1, 0), (0, 1, 0, 0)).
+    *  </p>
+    *  In a single pass over the register, each block of the 2<sup><i>k</i></sup>
+    *  amplitudes differing only in the specified qubits is multiplied by <i>U</i>.
+    *  Therefore, a sequence of gates acting on a few common qubits can be
+    *  executed at once by the product of their matrices.
+    *  Note that the matrix is not checked to be unitary.
+    *  @param matrix the unitary matrix to apply
+    *  @param qubits the numbers of the qubits (1 &#x2264; <i>j</i> &#x2264; qubit size)
+    *  on which the matrix acts
+    *  @throws IllegalArgumentException if the matrix dimension is not
+    *  2<sup><i>k</i></sup> for <i>k</i> qubits, or if a qubit is specified twice
+    */
+   public void apply( double[][][] matrix, int... qubits ) {
+      qubits = physical(qubits);
+      final double[] real = this.real, imaginary = this.imaginary;
+      final int dim = power2(qubits.length);
+      if ( matrix.length != dim ) {
+         throw new IllegalArgumentException(
+            "Matrix dimension " + matrix.length + " does not match " + qubits.length + " qubits"
+         );
       }
       
-      int it0, it1;
-      for ( int ic : controls ) {         
-         it0 = ic - power2(k-1);
-         it1 = ic;
-         switch (axis) {
-            case "x":
-               realTmp[it0]      = real[it0] * cos(phi/2) + imaginary[it1] * sin(phi/2);
-               imaginaryTmp[it0] = imaginary[it0] * cos(phi/2) - real[it1] * sin(phi/2);
-               realTmp[it1]      = real[it1] * cos(phi/2) + imaginary[it0] * sin(phi/2);
-               imaginaryTmp[it1] = imaginary[it1] * cos(phi/2) - real[it0] * sin(phi/2);
-               break;
-            case "y":
-               realTmp[it0]      = real[it0] * cos(phi/2) - real[it1] * sin(phi/2);
-               imaginaryTmp[it0] = imaginary[it0] * cos(phi/2) - imaginary[it1] * sin(phi/2);
-               realTmp[it1]      = real[it1] * cos(phi/2) + real[it0] * sin(phi/2);
-               imaginaryTmp[it1] = imaginary[it1] * cos(phi/2) + imaginary[it0] * sin(phi/2);
-               break;
-            case "z":
-               realTmp[it0]      = real[it0] * cos(phi/2) + imaginary[it0] * sin(phi/2);
-               imaginaryTmp[it0] = imaginary[it0] * cos(phi/2) - real[it0] * sin(phi/2);
-               realTmp[it1]      = real[it1] * cos(phi/2) - imaginary[it1] * sin(phi/2);
-               imaginaryTmp[it1] = imaginary[it1] * cos(phi/2) + real[it1] * sin(phi/2);
-               break;
+      if ( vector != null ) {
+         long[] bits = new long[qubits.length];
+         long mask = 0;
+         for ( int i = 0; i < qubits.length; i++ ) {
+            bits[i] = 1L << (qubits[i] - 1);
+            if ( (mask & bits[i]) != 0 ) {
+               throw new IllegalArgumentException("Qubit " + qubits[i] + " specified twice");
+            }
+            mask |= bits[i];
          }
-         
-         if ( abs(realTmp[it0]) < ACCURACY ) {
-            realTmp[it0] = 0.;
+         if ( qubits.length == 1 ) {
+            vector.unitary(0, bits[0], matrix);
+         } else {
+            vector.apply(matrix, bits);
          }
-         if ( abs(imaginaryTmp[it0]) < ACCURACY ) {
-            imaginaryTmp[it0] = 0.;
+         updateStorage();
+         return;
+      }
+
+      if ( qubits.length == 1 ) {
+         final int h = power2(qubits[0] - 1);
+         final double ur00 = matrix[0][0][0], ui00 = matrix[0][0][1];
+         final double ur01 = matrix[0][1][0], ui01 = matrix[0][1][1];
+         final double ur10 = matrix[1][0][0], ui10 = matrix[1][0][1];
+         final double ur11 = matrix[1][1][0], ui11 = matrix[1][1][1];
+
+         execute(real.length / 2, (from, to) -> {
+            double x0, y0, x1, y1;
+            for ( int p = from; p < to; p++ ) {
+               int i0 = pairIndex(p, h);
+               int i1 = i0 + h;
+
+               x0 = real[ i0 ];
+               y0 = imaginary[ i0 ];
+               x1 = real[ i1 ];
+               y1 = imaginary[ i1 ];
+
+               real[ i0 ]      = ur00 * x0 - ui00 * y0 + ur01 * x1 - ui01 * y1;
+               imaginary[ i0 ] = ur00 * y0 + ui00 * x0 + ur01 * y1 + ui01 * x1;
+               real[ i1 ]      = ur10 * x0 - ui10 * y0 + ur11 * x1 - ui11 * y1;
+               imaginary[ i1 ] = ur10 * y0 + ui10 * x0 + ur11 * y1 + ui11 * x1;
+            }
+         });
+         return;
+      }
+
+      // offset[l] is the index offset of the l-th amplitude of a block:
+      final int[] offset = new int[dim];
+      int m = 0;
+      for ( int i = 0; i < qubits.length; i++ ) {
+         int bit = power2(qubits[i] - 1);
+         if ( (m & bit) != 0 ) {
+            throw new IllegalArgumentException("Qubit " + qubits[i] + " specified twice");
          }
-         if ( abs(realTmp[it1]) < ACCURACY ) {
-            realTmp[it1] = 0.;
+         m |= bit;
+         for ( int l = power2(i); l < power2(i+1); l++ ) {
+            offset[l] = offset[l - power2(i)] | bit;
          }
-         if ( abs(imaginaryTmp[it1]) < ACCURACY ) {
-            imaginaryTmp[it1] = 0.;
+      }
+      final int mask = m;
+      final double[] ur = new double[dim * dim];
+      final double[] ui = new double[dim * dim];
+      for ( int r = 0; r < dim; r++ ) {
+         for ( int s = 0; s < dim; s++ ) {
+            ur[r * dim + s] = matrix[r][s][0];
+            ui[r * dim + s] = matrix[r][s][1];
          }
       }
-      real = realTmp;
-      imaginary = imaginaryTmp;
+
+      if ( qubits.length == 2 ) { // unrolled for the most frequent block size
+         final int o1 = offset[1], o2 = offset[2], o3 = offset[3];
+         execute(real.length / 4, (from, to) -> {
+            double x0, y0, x1, y1, x2, y2, x3, y3;
+            for ( int b = from; b < to; b++ ) {
+               int i0 = insertZeros(b, mask);
+               x0 = real[ i0 ];      y0 = imaginary[ i0 ];
+               x1 = real[ i0 | o1 ]; y1 = imaginary[ i0 | o1 ];
+               x2 = real[ i0 | o2 ]; y2 = imaginary[ i0 | o2 ];
+               x3 = real[ i0 | o3 ]; y3 = imaginary[ i0 | o3 ];
+               for ( int r = 0; r < 4; r++ ) {
+                  int rs = 4 * r;
+                  int i = i0 | offset[r];
+                  real[ i ] = ur[rs] * x0 - ui[rs] * y0 + ur[rs+1] * x1 - ui[rs+1] * y1
+                            + ur[rs+2] * x2 - ui[rs+2] * y2 + ur[rs+3] * x3 - ui[rs+3] * y3;
+                  imaginary[ i ] = ur[rs] * y0 + ui[rs] * x0 + ur[rs+1] * y1 + ui[rs+1] * x1
+                                 + ur[rs+2] * y2 + ui[rs+2] * x2 + ur[rs+3] * y3 + ui[rs+3] * x3;
+               }
+            }
+         });
+         return;
+      }
+
+      /* The smallest index of each block is obtained by inserting the unset
+         bits of the qubits into a number b < q/2^k.*/
+      execute(real.length >> qubits.length, (from, to) -> {
+         double[] x = new double[dim];
+         double[] y = new double[dim];
+         double sumX, sumY;
+         for ( int b = from; b < to; b++ ) {
+            int base = insertZeros(b, mask);
+            for ( int l = 0; l < dim; l++ ) {
+               x[l] = real[ base | offset[l] ];
+               y[l] = imaginary[ base | offset[l] ];
+            }
+            for ( int r = 0, rs = 0; r < dim; r++ ) {
+               sumX = 0;
+               sumY = 0;
+               for ( int s = 0; s < dim; s++, rs++ ) {
+                  sumX += ur[rs] * x[s] - ui[rs] * y[s];
+                  sumY += ur[rs] * y[s] + ui[rs] * x[s];
+               }
+               real[ base | offset[r] ]      = sumX;
+               imaginary[ base | offset[r] ] = sumY;
+            }
+         }
+      });
    }
-   
+
    /**
     *  Applies the function evaluation of a parsed function <i>f</i>(<i>z</i>) to the
     *  <i>y</i>-register.
     *  This method modifies the input <i>y</i>-register.
+    *  The function is compiled once by {@link FunctionParser#compileInt()}, and its
+    *  values for all basis states <i>x</i> are computed in parallel if this register
+    *  has at least {@link #getParallelThreshold()} qubits.
     *  @param yRegister the <i>y</i>-register where the function values are stored
     *  @param function the parsed function <i>f</i>(<i>z</i>)
     *  @param z the value at which <i>f</i>(<i>z</i>) is to be evaluated
@@ -787,8 +1514,23 @@ public class Register {
     *  regarding entanglement
     *  @throws java.nio.BufferOverflowException if y-register is too small to 
     *  store all function values
+    *  @throws UnsupportedOperationException if a register is stored outside the 
+    *  heap and consists of more than 30 qubits
     */
    public Register evaluateFunction(Register yRegister, FunctionParser function, int z) {
+      arrange();
+      yRegister.arrange();
+      if ( vector != null || yRegister.vector != null ) { // evaluate on copies on the heap
+         Register xCopy = onHeap();
+         Register yCopy = yRegister.onHeap();
+         xCopy.evaluateFunction(yCopy, function, z);
+         setReal(xCopy.real);
+         setImaginary(xCopy.imaginary);
+         entanglement = xCopy.entanglement;
+         yRegister.setReal(yCopy.real);
+         yRegister.setImaginary(yCopy.imaginary);
+         return yRegister;
+      }
       int x = 0;
       while ( x < real.length ) {
          if ( abs(real[x]) < ACCURACY && abs(imaginary[x]) < ACCURACY ) {
@@ -801,11 +1543,20 @@ public class Register {
       double[] realTmp = new double[power2(yRegister.size)];
       double[] imagTmp = new double[power2(yRegister.size)];
       
+      // compile the function once and evaluate it for all x in parallel:
+      final IntBinaryOperator compiled = function.compileInt();
+      final int[] values = new int[real.length];
+      execute(real.length, (from, to) -> {
+         for (int i = from; i < to; i++) {
+            values[i] = compiled.applyAsInt(i, z);
+         }
+      });
+      
       int index, f, y;
       double phase, tmp;
       
       for (x = 0; x < real.length; x++) {
-         f = (int) function.evaluateInt(x , z);
+         f = values[x];
          if (f < 0 || f >= yRegister.real.length) {
             throw new java.nio.BufferOverflowException();
          }
@@ -894,13 +1645,33 @@ public class Register {
     * </p>
     * @param needle the value to be searched for
     * @throws IllegalArgumentException if the needle value is out of register range
+    * @see #grover(long)
     */
    public void grover(int needle) {
+      grover((long) needle);
+   }
+   
+   /**
+    * Performs a Grover operator, or Grover iteration step, on this quantum register,
+    * where the needle may exceed the <code>int</code> range. 
+    * For a symbolic register created by {@link #uniform(int)}, the operator is
+    * applied in constant time, provided that the needle is the same as for the
+    * previous Grover operators.
+    * @param needle the value to be searched for
+    * @throws IllegalArgumentException if the needle value is out of register range
+    * @see #grover(int)
+    */
+   public void grover(long needle) {
+      if (vector != null) {
+         groverOperator(needle, false);
+         return;
+      }
       if (needle < 0 || needle >= real.length) {
          throw new IllegalArgumentException(
            "Searched value is out of register range: "+needle+" >= "+real.length
          );
       }
+      needle = physicalIndex(needle); // the Grover operator is symmetric in the qubits
       // Step 1: Apply an oracle query for each set register value:
       for (int x = 0; x < real.length; x++) {
          if (x == needle) {
@@ -943,11 +1714,30 @@ public class Register {
     * @see #grover(int)
     */
    public void inverseGrover(int needle) {
+      inverseGrover((long) needle);
+   }
+   
+   /**
+    * Applies the inverse of the Grover operator, where the needle may exceed the 
+    * <code>int</code> range. 
+    * For a symbolic register created by {@link #uniform(int)}, the operator is
+    * applied in constant time, provided that the needle is the same as for the
+    * previous Grover operators.
+    * @param needle the value to be searched for
+    * @throws IllegalArgumentException if the needle value is out of register range
+    * @see #grover(long)
+    */
+   public void inverseGrover(long needle) {
+      if (vector != null) {
+         groverOperator(needle, true);
+         return;
+      }
       if (needle < 0 || needle >= real.length) {
          throw new IllegalArgumentException(
            "Searched value is out of register range: "+needle+" >= "+real.length
          );
       }
+      needle = physicalIndex(needle); // the Grover operator is symmetric in the qubits
       
       // Step 1: Apply an n-fold Hadamard on the entire register:
       for (int i = 1; i <= size; i++) {
@@ -985,6 +1775,62 @@ public class Register {
       }
    }
    
+   /**
+    * Performs a Grover operator or its inverse on this register stored outside the heap,
+    * sparsely, or symbolically. Since a sparse register may switch to the arrays on the heap
+    * by the Hadamard gates, the amplitudes are accessed by {@link #negate(long)}.
+    * @param needle the value to be searched for
+    * @param inverse flag whether the inverse Grover operator is applied
+    * @throws IllegalArgumentException if the needle value is out of register range
+    */
+   private void groverOperator(long needle, boolean inverse) {
+      if (needle < 0 || needle >= vector.length()) {
+         throw new IllegalArgumentException(
+           "Searched value is out of register range: "+needle+" >= "+vector.length()
+         );
+      }
+      needle = physicalIndex(needle); // the Grover operator is symmetric in the qubits
+      if (vector instanceof GroverStateVector 
+          && ((GroverStateVector) vector).grover(needle, inverse)) {
+         return;
+      }
+      if (!inverse) { // oracle query
+         negate(needle);
+      }
+      for (int i = 1; i <= size; i++) {
+         hadamard(i);
+      }
+      // conditional phase shift -I_{|0>}:
+      if (vector != null) {
+         vector.scale(-1);
+      } else {
+         for (int x = 0; x < real.length; x++) {
+            real[x] = -real[x];
+            imaginary[x] = -imaginary[x];
+         }
+      }
+      negate(0);
+      for (int i = 1; i <= size; i++) {
+         hadamard(i);
+      }
+      if (inverse) { // oracle query
+         negate(needle);
+      }
+   }
+   
+   /**
+    * Reverses the sign of the amplitude of the basis state |<i>i</i>&gt;.
+    * @param i the index of the basis state
+    */
+   private void negate(long i) {
+      if (vector != null) {
+         vector.set(i, -vector.getReal(i), -vector.getImaginary(i));
+      } else {
+         real[(int) i] = -real[(int) i];
+         imaginary[(int) i] = -imaginary[(int) i];
+      }
+   }
+   
    /**
     * The optimal number <i>r</i> of Grover iterations to successfully apply 
     * Grover's search algorithm. It is given by
@@ -1028,7 +1874,7 @@ public class Register {
     * @return the optimal number of Grover iterations
     */
    public static int groverSteps(int size) {
-      return (int) (sqrt(power2(size)) * PI/4);
+      return (int) (sqrt(pow(2, size)) * PI/4);
    }
    
    /** 
@@ -1047,12 +1893,26 @@ public class Register {
     *  qubit |<i>j</i>&gt; that caused the sign change is the measured qubit state.
     *  </p>
     *  @return the measured (random) value
+    *  @throws UnsupportedOperationException if this register is stored outside the
+    *  heap and consists of more than 31 qubits, since then the measured value
+    *  cannot be represented as an <code>int</code>; in this case the qubits
+    *  can be measured one by one by {@link #measure(int)}
     *  @see #measure(int)
     */
    public int measure() {
-      double f = Math.random();
+      arrange();
+      double f = random.nextDouble();
       double p;
       
+      if (vector != null) {
+         if (size > 31) {
+            throw new UnsupportedOperationException("Measured value of " + size + " qubits exceeds int range");
+         }
+         long j = vector.cumulativeIndex(f);
+         vector.collapse(j);
+         return (int) j;
+      }
+      
       int j=-1;
       while ( f >= 0 ) {
          j++;
@@ -1101,10 +1961,19 @@ public class Register {
     *  @see #measure()
     */
    public int measure(int j) {
-      double f = Math.random();
+      j = physical(j);
+      double f = random.nextDouble();
       double p=0;
       int k, l, m;
       
+      if (vector != null) {
+         long h = 1L << (j-1);
+         p = vector.probability(h, 0);
+         long bit = f < p ? 0 : h;
+         vector.project(h, bit);
+         return bit == 0 ? 0 : 1;
+      }
+      
       for (k = 0; k < power2( size ); k += power2(j)) {
          for (l = 0; l < power2(j-1); l++) {
             m = k + l;
@@ -1150,6 +2019,263 @@ public class Register {
       return value;
    }
    
+   /**
+    *  Returns the outcome counts of the specified number of measurements
+    *  of the entire register, each performed on the current register state.
+    *  In contrast to {@link #measure()}, the register does not collapse,
+    *  i.e., its state remains unchanged. Thus the result is a histogram
+    *  of the measured values, as obtained by measuring many copies of the register.
+    *  The random numbers are drawn from a generator split off from the generator
+    *  of this register, see {@link #setSeed(long)}.
+    *  @param shots the number of measurements
+    *  @return a map of the measured values to the numbers of their occurrences
+    *  @throws IllegalArgumentException if <code>shots</code> is negative
+    *  @see #sample(int, long)
+    *  @see #sample(int, SplittableRandom)
+    */
+   public TreeMap<Integer, Integer> sample(int shots) {
+      return sample(shots, random.split());
+   }
+   
+   /**
+    *  Returns the outcome counts of the specified number of measurements
+    *  of the entire register, where the random numbers are generated from 
+    *  the specified seed. The result thus is reproducible, even if the shots
+    *  are drawn in parallel. The register state remains unchanged.
+    *  @param shots the number of measurements
+    *  @param seed the seed of the random number generator
+    *  @return a map of the measured values to the numbers of their occurrences
+    *  @throws IllegalArgumentException if <code>shots</code> is negative
+    *  @see #sample(int, SplittableRandom)
+    */
+   public TreeMap<Integer, Integer> sample(int shots, long seed) {
+      return sample(shots, new SplittableRandom(seed));
+   }
+   
+   /**
+    *  Returns the outcome counts of the specified number of measurements
+    *  of the entire register, using the specified random number generator.
+    *  The register state remains unchanged.
+    *  <p>
+    *  The cumulative probabilities 
+    *  <i>P<sub>j</sub></i> = |<i>&#x03B1;</i><sub>0</sub>|<sup>2</sup> + ... 
+    *  + |<i>&#x03B1;<sub>j</sub></i>|<sup>2</sup> are computed once.
+    *  Then for each shot a random number 0 &#x2264; <i>f</i> &lt; 1 is drawn, 
+    *  and the outcome is the smallest <i>j</i> with <i>f</i> &lt; <i>P<sub>j</sub></i>, 
+    *  found by binary search in <i>O</i>(log <i>q</i>) steps.
+    *  The shots are divided into chunks of fixed size which are drawn in 
+    *  parallel, each chunk by its own generator split off from the specified one.
+    *  So the result does not depend on the number of threads.
+    *  For a register stored outside the heap, the random numbers are sorted 
+    *  instead and compared with the cumulative probabilities in a single pass.
+    *  </p>
+    *  @param shots the number of measurements
+    *  @param random the random number generator
+    *  @return a map of the measured values to the numbers of their occurrences
+    *  @throws IllegalArgumentException if <code>shots</code> is negative
+    *  @throws UnsupportedOperationException if this register is stored outside the
+    *  heap and consists of more than 31 qubits
+    */
+   public TreeMap<Integer, Integer> sample(int shots, SplittableRandom random) {
+      if (shots < 0) {
+         throw new IllegalArgumentException("Negative number of shots " + shots);
+      }
+      if (vector != null && size > 31) {
+         throw new UnsupportedOperationException("Measured value of " + size + " qubits exceeds int range");
+      }
+      arrange();
+      
+      final int chunks = (shots + SHOT_CHUNK_LENGTH - 1) / SHOT_CHUNK_LENGTH;
+      final SplittableRandom[] generator = new SplittableRandom[chunks];
+      for (int c = 0; c < chunks; c++) {
+         generator[c] = random.split();
+      }
+      final int[] outcomes = new int[shots];
+      
+      if (vector != null) {
+         final double[] f = new double[shots];
+         IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int s = c * SHOT_CHUNK_LENGTH; s < min(shots, (c+1) * SHOT_CHUNK_LENGTH); s++) {
+               f[s] = generator[c].nextDouble();
+            }
+         });
+         Arrays.parallelSort(f);
+         long[] j = vector.cumulativeIndices(f);
+         for (int s = 0; s < shots; s++) {
+            outcomes[s] = (int) j[s];
+         }
+      } else {
+         final double[] cumulative = new double[real.length];
+         double sum = 0;
+         for (int j = 0; j < real.length; j++) {
+            sum += real[j] * real[j] + imaginary[j] * imaginary[j];
+            cumulative[j] = sum;
+         }
+         final double total = sum;
+         
+         IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int s = c * SHOT_CHUNK_LENGTH; s < min(shots, (c+1) * SHOT_CHUNK_LENGTH); s++) {
+               double f = generator[c].nextDouble() * total;
+               // binary search for the smallest j with f < cumulative[j]:
+               int low = 0, high = cumulative.length - 1;
+               while (low < high) {
+                  int mid = (low + high) >>> 1;
+                  if (f < cumulative[mid]) {
+                     high = mid;
+                  } else {
+                     low = mid + 1;
+                  }
+               }
+               outcomes[s] = low;
+            }
+         });
+         Arrays.parallelSort(outcomes);
+      }
+      
+      // count the sorted outcomes:
+      TreeMap<Integer, Integer> counts = new TreeMap<>();
+      for (int s = 0, t; s < shots; s = t) {
+         for (t = s + 1; t < shots && outcomes[t] == outcomes[s]; t++);
+         counts.put(outcomes[s], t - s);
+      }
+      return counts;
+   }
+   
+   /**
+    *  Returns the expectation value &lt;<i>&#x03C8;</i>|<i>P</i>|<i>&#x03C8;</i>&gt; of
+    *  the specified Pauli string <i>P</i> in the current state |<i>&#x03C8;</i>&gt; of 
+    *  this register, without changing the state. The Pauli string is given as a
+    *  sequence of factors separated by blanks, each factor consisting of one of the
+    *  letters <code>I</code>, <code>X</code>, <code>Y</code>, <code>Z</code> and the 
+    *  number of the qubit on which it acts, e.g., <code>"Z1 Z3"</code> for <i>Z</i><sub>1</sub><i>Z</i><sub>3</sub>
+    *  or <code>"X1 Y2 X3"</code>; all other qubits are acted on by the identity.
+    *  <p>
+    *  The expectation value is computed exactly by a single pass over the amplitudes,
+    *  which is executed in parallel for large registers, 
+    *  instead of being estimated by many measurements of copies of the register.
+    *  </p>
+    *  @param pauli the Pauli string
+    *  @return the expectation value of the Pauli string
+    *  @throws IllegalArgumentException if the Pauli string cannot be parsed, 
+    *  a qubit is out of range, or a qubit occurs twice
+    *  @see #expectations(String...)
+    *  @see #expectation(double[], String...)
+    */
+   public double expectation(String pauli) {
+      return expectations(pauli)[0];
+   }
+   
+   /**
+    *  Returns the expectation values of the specified Pauli strings in the current
+    *  state of this register, computed by a single pass over the amplitudes.
+    *  Each Pauli string is given as in {@link #expectation(String)}.
+    *  @param paulis the Pauli strings
+    *  @return the expectation values of the Pauli strings
+    *  @throws IllegalArgumentException if a Pauli string cannot be parsed, 
+    *  a qubit is out of range, or a qubit occurs twice in a string
+    *  @see #expectation(String)
+    */
+   public double[] expectations(String... paulis) {
+      final long[] x = new long[paulis.length], z = new long[paulis.length];
+      for (int k = 0; k < paulis.length; k++) {
+         long[] masks = pauliMasks(paulis[k]);
+         x[k] = masks[0];
+         z[k] = masks[1];
+      }
+      if ( vector != null ) {
+         return vector.expectations(x, z);
+      }
+      final double[] real = this.real, imaginary = this.imaginary;
+      return StateVector.sum(real.length, x.length, size >= parallelThreshold, (from, to, sums) -> {
+         for (int i = (int) from; i < to; i++) {
+            if (real[i] == 0 && imaginary[i] == 0) {
+               continue;
+            }
+            for (int k = 0; k < x.length; k++) {
+               int j = i ^ (int) x[k];
+               sums[k] += StateVector.pauli(x[k], z[k], i, real[i], imaginary[i], real[j], imaginary[j]);
+            }
+         }
+      });
+   }
+   
+   /**
+    *  Returns the expectation value &lt;<i>&#x03C8;</i>|<i>H</i>|<i>&#x03C8;</i>&gt; of 
+    *  the Hamiltonian
+    *  <p style="text-align:center">
+    *    <i>H</i> = &#x2211;<sub><i>k</i></sub> <i>c<sub>k</sub> P<sub>k</sub></i>,
+    *  </p>
+    *  i.e., the weighted sum of the specified Pauli strings <i>P<sub>k</sub></i>, 
+    *  in the current state of this register. All terms are evaluated by a single
+    *  pass over the amplitudes, see {@link #expectations(String...)}.
+    *  For instance, the transverse field Ising Hamiltonian 
+    *  <i>H</i> = -<i>Z</i><sub>1</sub><i>Z</i><sub>2</sub> - <i>Z</i><sub>2</sub><i>Z</i><sub>3</sub> 
+    *  - <i>g</i> (<i>X</i><sub>1</sub> + <i>X</i><sub>2</sub> + <i>X</i><sub>3</sub>) 
+    *  of three qubits yields the energy
+    *  <pre>
+    *    register.expectation(new double[] {-1, -1, -g, -g, -g}, "Z1 Z2", "Z2 Z3", "X1", "X2", "X3");
+    *  </pre>
+    *  @param coefficients the real coefficients <i>c<sub>k</sub></i>
+    *  @param paulis the Pauli strings <i>P<sub>k</sub></i>, each given as in 
+    *  {@link #expectation(String)}
+    *  @return the expectation value of the Hamiltonian
+    *  @throws IllegalArgumentException if the numbers of coefficients and Pauli strings
+    *  differ, if a Pauli string cannot be parsed, a qubit is out of range, or a 
+    *  qubit occurs twice in a string
+    */
+   public double expectation(double[] coefficients, String... paulis) {
+      if ( coefficients.length != paulis.length ) {
+         throw new IllegalArgumentException(
+            coefficients.length + " coefficients for " + paulis.length + " Pauli strings"
+         );
+      }
+      double[] values = expectations(paulis);
+      double energy = 0;
+      for (int k = 0; k < values.length; k++) {
+         energy += coefficients[k] * values[k];
+      }
+      return energy;
+   }
+   
+   /** Returns the bit masks {<i>x</i>, <i>z</i>} of the qubits on which the 
+    *  specified Pauli string acts by <i>X</i> or <i>Y</i>, and by <i>Z</i> or <i>Y</i>,
+    *  respectively.
+    *  @param pauli the Pauli string, e.g., "X1 Y2 Z4"
+    *  @return the bit masks of the Pauli string
+    *  @throws IllegalArgumentException if the Pauli string cannot be parsed, 
+    *  a qubit is out of range, or a qubit occurs twice
+    */
+   private long[] pauliMasks(String pauli) {
+      long x = 0, z = 0;
+      for (String factor : pauli.trim().split("\\s+")) {
+         if ( factor.isEmpty() ) {
+            continue;
+         }
+         int j;
+         try {
+            j = Integer.parseInt(factor.substring(1));
+         } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid Pauli factor \"" + factor + "\" in \"" + pauli + "\"");
+         }
+         if ( j < 1 || j > size ) {
+            throw new IllegalArgumentException("Qubit " + j + " out of range 1 to " + size);
+         }
+         long h = 1L << (physical(j) - 1);
+         if ( ((x | z) & h) != 0 ) {
+            throw new IllegalArgumentException("Qubit " + j + " occurs twice in \"" + pauli + "\"");
+         }
+         switch (Character.toUpperCase(factor.charAt(0))) {
+            case 'I': break;
+            case 'X': x |= h; break;
+            case 'Y': x |= h; z |= h; break;
+            case 'Z': z |= h; break;
+            default:
+               throw new IllegalArgumentException("Invalid Pauli factor \"" + factor + "\" in \"" + pauli + "\"");
+         }
+      }
+      return new long[] {x, z};
+   }
+   
    /** Returns true if and only if the specified object represents a quantum 
     *  register which is physically equivalent to this register.
     *  Two quantum registers are physically equivalent if their qubit amplitudes
@@ -1170,6 +2296,11 @@ public class Register {
       }
       
       Register r = (Register) o;
+      arrange();
+      r.arrange();
+      if (vector != null || r.vector != null) { // compare copies on the heap
+         return size == r.size && onHeap().equals(r.onHeap());
+      }
       // The register sizes must be equal:
       if (real.length != r.real.length) {
          return false;
@@ -1220,12 +2351,11 @@ public class Register {
    @Override
    public int hashCode() {
       // Compare up to an overall phase, determined by the first nonvanishing amplitude:
-      int idx;
       int hash = 7;
       
       for (int i = 0; i < size; i++) {
-         idx = (1 << i) - 1;
-         hash = 31*hash + (Double.valueOf(real[idx]*real[idx] + imaginary[idx]*imaginary[idx])).hashCode();
+         double[] a = getAmplitude((1L << i) - 1);
+         hash = 31*hash + (Double.valueOf(a[0]*a[0] + a[1]*a[1])).hashCode();
       }
       return hash;
    }
@@ -1249,6 +2379,10 @@ public class Register {
     *  of this register
     */
    public String toString( int nMax ) {
+      arrange();
+      if (vector != null) {
+         return onHeap().toString(nMax);
+      }
       int jMax = power2( nMax );
 
       String output = "\n Register state:\n";
@@ -1280,6 +2414,27 @@ public class Register {
     */
    @Override
 public String toString() {
+      if (vector instanceof SparseStateVector) { // list the stored amplitudes only
+         String output = "|psi> = ";
+         boolean first = true;
+         for (long j : ((SparseStateVector) vector).indices()) {
+            String binary = Long.toBinaryString(j);
+            while (binary.length() < size) {
+               binary = "0" + binary;
+            }
+            if (!first) {
+               output += "\n      + ";
+            }
+            output += "(" + 
+               org.mathIT.numbers.Complex.toString(getAmplitude(j))
+               + ") |" + binary + ">";
+            first = false;
+         }
+         return output;
+      }
+      if (vector != null) {
+         return onHeap().toString();
+      }
       int jMax = power2(size);
 
       String output = "|psi> = ";
@@ -1309,6 +2464,303 @@ public String toString() {
       return output;
    }
 
+   /** Checks whether a sparse register has exceeded its fill threshold, or
+    *  whether the amplitudes of a symbolic register have been materialized, and in
+    *  this case switches it to the arrays on the heap, provided that it consists
+    *  of at most 30 qubits.
+    */
+   private void updateStorage() {
+      if ( vector instanceof SparseStateVector && size <= 30
+           && ((SparseStateVector) vector).count() > fillThreshold * vector.length() ) {
+         toDense();
+      } else if ( vector instanceof GroverStateVector && size <= 30 && !isSymbolic() ) {
+         toDense();
+      }
+   }
+   
+   /** Switches a sparse register to the arrays on the heap.
+    *  @throws UnsupportedOperationException if this register consists of more than 30 qubits
+    */
+   private void toDense() {
+      double[][] amplitudes = toArrays();
+      real = amplitudes[0];
+      imaginary = amplitudes[1];
+      vector = null;
+   }
+   
+   /** Returns the amplitudes of this register stored outside the heap or sparsely as the
+    *  two arrays of their real and their imaginary parts.
+    *  @throws UnsupportedOperationException if this register consists of more than 30 qubits
+    */
+   private double[][] toArrays() {
+      if ( size > 30 ) {
+         throw new UnsupportedOperationException(
+            "Register of " + size + " qubits exceeds the array range"
+         );
+      }
+      double[][] amplitudes = new double[2][power2(size)];
+      vector.copyTo(amplitudes[0], amplitudes[1]);
+      return amplitudes;
+   }
+   
+   /** Returns this register if its amplitudes are stored in the arrays on the heap, 
+    *  or otherwise a copy of it with such arrays.
+    *  @throws UnsupportedOperationException if this register consists of more than 30 qubits
+    */
+   private Register onHeap() {
+      if ( vector == null ) {
+         return this;
+      }
+      Register copy = new Register(0);
+      copy.size = size;
+      double[][] amplitudes = toArrays();
+      copy.real = amplitudes[0];
+      copy.imaginary = amplitudes[1];
+      copy.entanglement = entanglement;
+      return copy;
+   }
+
+   /** Returns the sum of the probabilities |<i>&#x03B1;<sub>i</sub></i>|<sup>2</sup>
+    *  of all indices <i>i</i> with <i>i</i> &amp; <code>mask</code> = <code>value</code>,
+    *  without changing the state.
+    *  @param mask the bit mask
+    *  @param value the required bits of the mask
+    *  @return the sum of the probabilities
+    */
+   double probability(long mask, long value) {
+      mask = physicalIndex(mask);
+      value = physicalIndex(value);
+      if ( vector != null ) {
+         return vector.probability(mask, value);
+      }
+      double p = 0;
+      for ( int i = 0; i < real.length; i++ ) {
+         if ( (i & mask) == value ) {
+            p += real[i] * real[i] + imaginary[i] * imaginary[i];
+         }
+      }
+      return p;
+   }
+
+   /** Multiplies all amplitudes of this register by the specified real factor.
+    *  @param factor the factor
+    */
+   void scale(double factor) {
+      if ( vector != null ) {
+         vector.scale(factor);
+         return;
+      }
+      for ( int i = 0; i < real.length; i++ ) {
+         real[i] *= factor;
+         imaginary[i] *= factor;
+      }
+   }
+
+   /** Returns an independent copy of this register, whose amplitudes are stored
+    *  in the same way as the amplitudes of this register. The amplitudes of a
+    *  register stored in a file mapped into memory are copied to direct memory.
+    *  @return a copy of this register
+    */
+   Register copy() {
+      Register copy = new Register(0);
+      copy.size = size;
+      copy.fillThreshold = fillThreshold;
+      if ( vector == null ) {
+         copy.real = real.clone();
+         copy.imaginary = imaginary.clone();
+      } else {
+         copy.real = null;
+         copy.imaginary = null;
+         copy.vector = vector.copy();
+      }
+      if ( position != null ) {
+         copy.position = position.clone();
+      }
+      copy.random = random.split();
+      if ( entanglement != null ) {
+         copy.entanglement = new HashMap<>();
+         for (Integer k : entanglement.keySet()) {
+            copy.entanglement.put(k, new ArrayList<>(entanglement.get(k)));
+         }
+      }
+      return copy;
+   }
+
+   /** Returns an independent copy of this register whose amplitudes are stored
+    *  either outside the heap in direct memory or in the arrays on the heap.
+    *  @param offHeap flag whether the amplitudes of the copy are stored outside the heap
+    *  @return a copy of this register
+    *  @throws UnsupportedOperationException if the copy is to be stored on the heap
+    *  and this register consists of more than 30 qubits
+    */
+   Register copy(boolean offHeap) {
+      Register copy = copy();
+      if ( offHeap && !(copy.vector instanceof OffHeapStateVector) ) {
+         OffHeapStateVector v;
+         if ( copy.vector instanceof GroverStateVector ) {
+            v = ((GroverStateVector) copy.vector).offHeap();
+         } else if ( copy.vector == null ) {
+            v = new OffHeapStateVector(size);
+            v.copyFrom(copy.real, copy.imaginary);
+         } else if ( copy.vector instanceof SparseStateVector ) {
+            v = new OffHeapStateVector(size);
+            for (long i : ((SparseStateVector) copy.vector).indices()) {
+               v.set(i, copy.vector.getReal(i), copy.vector.getImaginary(i));
+            }
+            v.set(0, copy.vector.getReal(0), copy.vector.getImaginary(0));
+         } else {
+            v = new OffHeapStateVector(size);
+            for (long i = 0; i < v.length(); i++) {
+               v.set(i, copy.vector.getReal(i), copy.vector.getImaginary(i));
+            }
+         }
+         copy.real = null;
+         copy.imaginary = null;
+         copy.vector = v;
+      } else if ( !offHeap && copy.vector != null ) {
+         copy.toDense();
+      }
+      return copy;
+   }
+
+   /** Returns the position at which the <i>j</i>-th qubit is stored.*/
+   private int physical(int j) {
+      return position == null ? j : position[j-1];
+   }
+   
+   /** Returns the positions at which the specified qubits are stored.*/
+   private int[] physical(int[] qubits) {
+      if ( position == null ) {
+         return qubits;
+      }
+      int[] p = new int[qubits.length];
+      for ( int i = 0; i < qubits.length; i++ ) {
+         p[i] = position[qubits[i] - 1];
+      }
+      return p;
+   }
+   
+   /** Returns the index of the stored amplitude of the basis state |<i>i</i>&gt;,
+    *  i.e., the number whose bit at the position of the <i>j</i>-th qubit is the 
+    *  <i>j</i>-th bit of <i>i</i>. It also maps a bit mask of qubits to the bit mask
+    *  of their positions.*/
+   private long physicalIndex(long i) {
+      if ( position == null ) {
+         return i;
+      }
+      long p = 0;
+      for ( int j = 1; j <= size; j++ ) {
+         p |= ((i >>> (j-1)) & 1) << (position[j-1] - 1);
+      }
+      return p;
+   }
+   
+   /** Moves the amplitudes such that each qubit is stored at its own position,
+    *  by at most <i>n</i> - 1 exchanges of two qubits.*/
+   private void arrange() {
+      if ( position == null ) {
+         return;
+      }
+      for ( int j = 1; j < size; j++ ) {
+         if ( position[j-1] != j ) {
+            int k = j + 1; // the qubit stored at position j
+            while ( position[k-1] != j ) {
+               k++;
+            }
+            exchange(j, position[j-1]);
+            position[k-1] = position[j-1];
+            position[j-1] = j;
+         }
+      }
+      position = null;
+      updateStorage();
+   }
+   
+   /** Moves the amplitudes such that each qubit is stored at its own position
+    *  if one of the <i>m</i> qubits <i>j</i>, ..., <i>j</i> + <i>m</i> - 1 is not.*/
+   private void arrange(int j, int m) {
+      for ( int i = j; position != null && i < j + m; i++ ) {
+         if ( position[i-1] != i ) {
+            arrange();
+         }
+      }
+   }
+   
+   /** Exchanges the amplitudes of the qubits stored at the positions <i>j</i> and <i>k</i>.*/
+   private void exchange(int j, int k) {
+      if ( vector != null ) {
+         vector.swap(1L << (j-1), 1L << (k-1));
+         return;
+      }
+      final double[] real = this.real, imaginary = this.imaginary;
+      final int a = power2(j-1);
+      final int fixed = a | power2(k-1);
+      
+      /* Each index t with the bit a set and the other bit unset is obtained
+         by inserting these two bits into a number r < q/4.*/
+      execute(real.length / 4, (from, to) -> {
+         double tmp;
+         for ( int r = from; r < to; r++ ) {
+            int t = insertZeros(r, fixed) | a;
+            int t2 = t ^ fixed;
+            
+            tmp = real[t];
+            real[t]  = real[t2];
+            real[t2] = tmp;
+            
+            tmp = imaginary[t];
+            imaginary[t]  = imaginary[t2];
+            imaginary[t2] = tmp;
+         }
+      });
+   }
+   
+   /** Returns the index of the smaller state of the <i>p</i>-th amplitude pair
+    *  with respect to the qubit bit <i>h</i> = 2<sup><i>j</i>-1</sup>, i.e., 
+    *  the number resulting from <i>p</i> by inserting a 0 at bit position <i>j</i>-1.
+    *  The larger state of the pair then has the index <i>i</i><sub>0</sub> + <i>h</i>.
+    *  @param p the number of the amplitude pair, 0 &#x2264; <i>p</i> &lt; <i>q</i>/2
+    *  @param h the value 2<sup><i>j</i>-1</sup> of the qubit bit
+    *  @return the index <i>i</i><sub>0</sub> of the smaller state of the pair
+    */
+   private static int pairIndex( int p, int h ) {
+      return ((p & -h) << 1) | (p & (h - 1));
+   }
+   
+   /** Returns the number resulting from <i>r</i> by inserting a 0 at each
+    *  bit position set in the specified mask. For instance, with 
+    *  <code>mask</code> = 0b0101 the number <i>r</i> = 0b11 is mapped to 0b1010.
+    *  Running <i>r</i> through 0, 1, ..., 2<sup><i>n</i>-<i>m</i></sup> - 1, 
+    *  where <i>m</i> is the number of bits set in the mask, thus enumerates in 
+    *  ascending order all <i>n</i>-bit numbers having these bits unset.
+    *  @param r the number into which the zeros are inserted
+    *  @param mask the bit positions of the inserted zeros
+    *  @return <i>r</i> with zeros inserted at the bit positions of the mask
+    */
+   private static int insertZeros( int r, int mask ) {
+      for ( int m = mask; m != 0; m &= m - 1 ) {
+         int low = m & -m; // the lowest remaining bit of the mask
+         r = ((r & -low) << 1) | (r & (low - 1));
+      }
+      return r;
+   }
+   
+   /** Executes the specified kernel on the index range [0, <code>length</code>).
+    *  If this register has at least {@link #getParallelThreshold()} qubits,
+    *  the range is split into disjoint chunks which are executed by the common
+    *  fork-join pool; otherwise the kernel is invoked once on the entire range.
+    *  @param length the number of indices to be processed by the kernel
+    *  @param kernel the kernel to be executed
+    */
+   private void execute( int length, Kernel kernel ) {
+      if ( size < parallelThreshold || length < 2 * MIN_CHUNK_LENGTH ) {
+         kernel.apply(0, length);
+      } else {
+         int chunk = max(MIN_CHUNK_LENGTH, length / (4 * ForkJoinPool.getCommonPoolParallelism()));
+         ForkJoinPool.commonPool().invoke(new KernelTask(kernel, 0, length, chunk));
+      }
+   }
+   
    /** Returns the value of 2<sup><i>n</i></sup>.
     *  The return value is given as an <code>int</code> value, since
     *  in the context of quantum registers, the values of <i>n</i> are comparably small.
@@ -1520,4 +2972,45 @@ public String toString() {
       System.exit(0);
    }
    // */
+
+   /** A gate operation acting on the amplitudes (or amplitude pairs) 
+    *  with the indices of a given range.
+    */
+   @FunctionalInterface
+   private interface Kernel {
+      /** Applies this kernel on the indices <code>from</code>, ..., <code>to</code> - 1.
+       *  @param from the first index (inclusive)
+       *  @param to the last index (exclusive)
+       */
+      void apply(int from, int to);
+   }
+   
+   /** Fork-join task splitting an index range into chunks of disjoint ranges
+    *  and applying a kernel on each of them.
+    */
+   private static class KernelTask extends RecursiveAction {
+      private static final long serialVersionUID = 1516331735;
+      private final Kernel kernel;
+      private final int from, to, chunk;
+      
+      KernelTask(Kernel kernel, int from, int to, int chunk) {
+         this.kernel = kernel;
+         this.from = from;
+         this.to = to;
+         this.chunk = chunk;
+      }
+      
+      @Override
+      protected void compute() {
+         if ( to - from <= chunk ) {
+            kernel.apply(from, to);
+         } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(
+               new KernelTask(kernel, from, middle, chunk), 
+               new KernelTask(kernel, middle, to, chunk)
+            );
+         }
+      }
+   }
 }
@@ -0,0 +1,389 @@
+/*
+ * SparseStateVector.java - Non-vanishing amplitudes of a quantum register
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.Arrays;
+import static java.lang.Math.*;
+/**
+ * This class stores only the non-vanishing amplitudes of a quantum register,
+ * in a hash map of the <code>long</code> indices to the complex amplitudes.
+ * The map uses open addressing with linear probing on primitive arrays,
+ * so that neither the indices nor the amplitudes are boxed.
+ * Amplitudes whose real and imaginary parts are both less than
+ * {@link Register#ACCURACY} in absolute value are not stored.
+ * <p>
+ * The memory and the running time of a gate are proportional to the number of
+ * non-vanishing amplitudes, independently of the number <i>n</i> of qubits.
+ * Thus registers of 40 or more qubits can be simulated as long as only
+ * few of their 2<sup><i>n</i></sup> basis states are occupied, as is the case
+ * for classical reversible circuits, oracles, or basis state preparations.
+ * </p>
+ * @author  Andreas de Vries
+ * @version 1.2
+ */
+final class SparseStateVector extends StateVector {
+   /** The key marking an empty slot of the hash table.*/
+   private static final long EMPTY = -1L;
+   /** The minimum capacity of the hash table.*/
+   private static final int MIN_CAPACITY = 16;
+   /** The number of qubits.*/
+   private final int size;
+   /** The indices of the stored amplitudes, or {@link #EMPTY}. The length is a power of 2.*/
+   private long[] keys;
+   /** The real parts of the stored amplitudes.*/
+   private double[] re;
+   /** The imaginary parts of the stored amplitudes.*/
+   private double[] im;
+   /** The number of stored amplitudes.*/
+   private int count;
+
+   /** Creates the amplitudes of <i>n</i> qubits, initialized to the state |0&gt;.
+    *  @param size the number <i>n</i> of qubits
+    */
+   SparseStateVector(int size) {
+      this(size, MIN_CAPACITY);
+      put(0, 1, 0);
+   }
+
+   /** Creates an empty hash table of the specified capacity.*/
+   private SparseStateVector(int size, int capacity) {
+      this.size = size;
+      allocate(capacity);
+   }
+
+   /** Replaces the hash table by an empty one of the specified capacity, a power of 2.*/
+   private void allocate(int capacity) {
+      keys = new long[capacity];
+      Arrays.fill(keys, EMPTY);
+      re = new double[capacity];
+      im = new double[capacity];
+      count = 0;
+   }
+
+   /** Takes over the hash table of the specified sparse vector.*/
+   private void adopt(SparseStateVector v) {
+      keys = v.keys;
+      re = v.re;
+      im = v.im;
+      count = v.count;
+   }
+
+   /** Returns the number of stored amplitudes.
+    *  @return the number of stored amplitudes
+    */
+   int count() {
+      return count;
+   }
+
+   /** Returns the ascending indices of all stored amplitudes.
+    *  @return the indices of the stored amplitudes
+    */
+   long[] indices() {
+      long[] indices = new long[count];
+      int n = 0;
+      for (long k : keys) {
+         if (k != EMPTY) {
+            indices[n++] = k;
+         }
+      }
+      Arrays.sort(indices);
+      return indices;
+   }
+
+   /** Returns the slot of the specified index in the hash table, i.e.,
+    *  the slot containing the index or the empty slot where it would be inserted.
+    */
+   private int slot(long key) {
+      long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing
+      int mask = keys.length - 1;
+      int i = (int) (h ^ (h >>> 32)) & mask;
+      while (keys[i] != EMPTY && keys[i] != key) {
+         i = (i + 1) & mask;
+      }
+      return i;
+   }
+
+   /** Stores the specified amplitude, enlarging the hash table if it gets half full.*/
+   private void put(long key, double x, double y) {
+      int i = slot(key);
+      if (keys[i] == EMPTY) {
+         if (2 * (count + 1) > keys.length) {
+            long[] oldKeys = keys;
+            double[] oldRe = re, oldIm = im;
+            allocate(2 * keys.length);
+            for (int s = 0; s < oldKeys.length; s++) {
+               if (oldKeys[s] != EMPTY) {
+                  put(oldKeys[s], oldRe[s], oldIm[s]);
+               }
+            }
+            i = slot(key);
+         }
+         keys[i] = key;
+         count++;
+      }
+      re[i] = x;
+      im[i] = y;
+   }
+
+   /** Stores the specified amplitude if it does not vanish.*/
+   private void putNonZero(long key, double x, double y) {
+      if (abs(x) >= Register.ACCURACY || abs(y) >= Register.ACCURACY) {
+         put(key, x, y);
+      }
+   }
+
+   @Override
+   long length() {
+      return 1L << size;
+   }
+
+   @Override
+   double getReal(long i) {
+      int s = slot(i);
+      return keys[s] == EMPTY ? 0 : re[s];
+   }
+
+   @Override
+   double getImaginary(long i) {
+      int s = slot(i);
+      return keys[s] == EMPTY ? 0 : im[s];
+   }
+
+   @Override
+   void set(long i, double x, double y) {
+      if (x != 0 || y != 0 || keys[slot(i)] != EMPTY) {
+         put(i, x, y);
+      }
+   }
+
+   @Override
+   void copyTo(double[] real, double[] imaginary) {
+      Arrays.fill(real, 0);
+      Arrays.fill(imaginary, 0);
+      for (int s = 0; s < keys.length; s++) {
+         if (keys[s] != EMPTY) {
+            real[(int) keys[s]] = re[s];
+            imaginary[(int) keys[s]] = im[s];
+         }
+      }
+   }
+
+   @Override
+   void copyFrom(double[] real, double[] imaginary) {
+      allocate(MIN_CAPACITY);
+      for (int i = 0; i < real.length; i++) {
+         if (real[i] != 0 || imaginary[i] != 0) {
+            put(i, real[i], imaginary[i]);
+         }
+      }
+   }
+
+   @Override
+   SparseStateVector copy() {
+      SparseStateVector copy = new SparseStateVector(size, MIN_CAPACITY);
+      copy.keys = keys.clone();
+      copy.re = re.clone();
+      copy.im = im.clone();
+      copy.count = count;
+      return copy;
+   }
+
+   @Override
+   void unitary(long controls, long h, double[][][] u) {
+      SparseStateVector next = new SparseStateVector(size, keys.length);
+      for (int s = 0; s < keys.length; s++) {
+         long k = keys[s];
+         if (k == EMPTY) {
+            continue;
+         }
+         if ((k & controls) != controls) {
+            next.put(k, re[s], im[s]);
+            continue;
+         }
+         long i0 = k & ~h;
+         long i1 = k | h;
+         if (k == i1 && keys[slot(i0)] != EMPTY) {
+            continue; // the pair is processed with its smaller index
+         }
+         double x0 = getReal(i0), y0 = getImaginary(i0);
+         double x1 = getReal(i1), y1 = getImaginary(i1);
+         next.putNonZero(i0, u[0][0][0] * x0 - u[0][0][1] * y0 + u[0][1][0] * x1 - u[0][1][1] * y1,
+                             u[0][0][0] * y0 + u[0][0][1] * x0 + u[0][1][0] * y1 + u[0][1][1] * x1);
+         next.putNonZero(i1, u[1][0][0] * x0 - u[1][0][1] * y0 + u[1][1][0] * x1 - u[1][1][1] * y1,
+                             u[1][0][0] * y0 + u[1][0][1] * x0 + u[1][1][0] * y1 + u[1][1][1] * x1);
+      }
+      adopt(next);
+   }
+
+   @Override
+   void apply(double[][][] matrix, long[] bits) {
+      int dim = matrix.length;
+      long[] offset = new long[dim];
+      long mask = 0;
+      for (int i = 0; i < bits.length; i++) {
+         mask |= bits[i];
+         for (int l = 1 << i; l < 1 << (i+1); l++) {
+            offset[l] = offset[l - (1 << i)] | bits[i];
+         }
+      }
+
+      SparseStateVector next = new SparseStateVector(size, keys.length);
+      double[] x = new double[dim];
+      double[] y = new double[dim];
+      for (int s = 0; s < keys.length; s++) {
+         long k = keys[s];
+         if (k == EMPTY) {
+            continue;
+         }
+         long base = k & ~mask;
+         int local = 0;
+         for (int i = 0; i < bits.length; i++) {
+            if ((k & bits[i]) != 0) {
+               local |= 1 << i;
+            }
+         }
+         boolean processed = false;
+         for (int l = 0; !processed && l < local; l++) {
+            processed = keys[slot(base | offset[l])] != EMPTY;
+         }
+         if (processed) {
+            continue; // the block is processed with its smallest stored index
+         }
+         for (int l = 0; l < dim; l++) {
+            x[l] = getReal(base | offset[l]);
+            y[l] = getImaginary(base | offset[l]);
+         }
+         for (int r = 0; r < dim; r++) {
+            double sumX = 0, sumY = 0;
+            for (int c = 0; c < dim; c++) {
+               sumX += matrix[r][c][0] * x[c] - matrix[r][c][1] * y[c];
+               sumY += matrix[r][c][0] * y[c] + matrix[r][c][1] * x[c];
+            }
+            next.putNonZero(base | offset[r], sumX, sumY);
+         }
+      }
+      adopt(next);
+   }
+
+   @Override
+   void scale(double factor) {
+      for (int s = 0; s < keys.length; s++) {
+         re[s] *= factor;
+         im[s] *= factor;
+      }
+   }
+
+   /** Not supported, since a Fourier transform yields a dense state in general.
+    *  @throws UnsupportedOperationException always
+    */
+   @Override
+   void fft(int low, int bits, int isign) {
+      throw new UnsupportedOperationException("Fourier transform of a sparse register");
+   }
+
+   @Override
+   double probability(long mask, long value) {
+      double p = 0;
+      for (int s = 0; s < keys.length; s++) {
+         if (keys[s] != EMPTY && (keys[s] & mask) == value) {
+            p += re[s] * re[s] + im[s] * im[s];
+         }
+      }
+      return p;
+   }
+
+   /** Sums over the stored amplitudes only.*/
+   @Override
+   double[] expectations(long[] x, long[] z) {
+      double[] sums = new double[x.length];
+      for (int s = 0; s < keys.length; s++) {
+         if (keys[s] != EMPTY) {
+            for (int k = 0; k < x.length; k++) {
+               long j = keys[s] ^ x[k];
+               sums[k] += pauli(x[k], z[k], keys[s], re[s], im[s], getReal(j), getImaginary(j));
+            }
+         }
+      }
+      return sums;
+   }
+
+   @Override
+   long cumulativeIndex(double f) {
+      long[] indices = indices();
+      for (long k : indices) {
+         f -= getReal(k) * getReal(k) + getImaginary(k) * getImaginary(k);
+         if (f < 0) {
+            return k;
+         }
+      }
+      return indices.length > 0 ? indices[indices.length - 1] : 0;
+   }
+
+   @Override
+   long[] cumulativeIndices(double[] f) {
+      long[] indices = indices();
+      long[] result = new long[f.length];
+      double total = probability(0, 0);
+      double sum = 0;
+      int j = 0;
+      for (int s = 0; s < f.length; s++) {
+         double p = f[s] * total;
+         while (j < indices.length - 1) {
+            double x = getReal(indices[j]), y = getImaginary(indices[j]);
+            if (p < sum + x * x + y * y) {
+               break;
+            }
+            sum += x * x + y * y;
+            j++;
+         }
+         result[s] = indices.length > 0 ? indices[j] : 0;
+      }
+      return result;
+   }
+
+   @Override
+   void collapse(long j) {
+      allocate(MIN_CAPACITY);
+      put(j, 1, 0);
+   }
+
+   @Override
+   void project(long h, long value) {
+      SparseStateVector next = new SparseStateVector(size, keys.length);
+      for (int s = 0; s < keys.length; s++) {
+         if (keys[s] != EMPTY && (keys[s] & h) == value
+             && (abs(re[s]) > Register.ACCURACY || abs(im[s]) > Register.ACCURACY)) {
+            next.put(keys[s], 1, 0);
+         }
+      }
+      adopt(next);
+      scale(1 / sqrt(probability(0, 0)));
+   }
+}
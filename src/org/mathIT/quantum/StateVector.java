@@ -0,0 +1,310 @@
+/*
+ * StateVector.java - Storage of the amplitudes of a quantum register
+ *
+ * Copyright (C) 2008-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum;
+import java.util.concurrent.RecursiveTask;
+/**
+ * This class represents an alternative storage of the 2<sup><i>n</i></sup>
+ * amplitudes of a quantum register of <i>n</i> qubits, in contrast to the
+ * two arrays of a {@link Register} on the heap. The amplitudes are addressed
+ * by <code>long</code> indices.
+ * All gates of a register are reduced to the few generic operations of this
+ * class, namely a controlled 2 &#x00D7; 2 unitary, a
+ * 2<sup><i>k</i></sup> &#x00D7; 2<sup><i>k</i></sup> unitary on <i>k</i> qubits,
+ * the fast Fourier transform, and the measurement operations.
+ *
+ * @author  Andreas de Vries
+ * @version 1.3
+ * @see OffHeapStateVector
+ * @see SparseStateVector
+ */
+abstract class StateVector {
+   /** Returns the number 2<sup><i>n</i></sup> of amplitudes.
+    *  @return the number of amplitudes
+    */
+   abstract long length();
+
+   /** Returns the real part of the <i>i</i>-th amplitude.
+    *  @param i the index of the amplitude
+    *  @return the real part of the amplitude
+    */
+   abstract double getReal(long i);
+
+   /** Returns the imaginary part of the <i>i</i>-th amplitude.
+    *  @param i the index of the amplitude
+    *  @return the imaginary part of the amplitude
+    */
+   abstract double getImaginary(long i);
+
+   /** Sets the <i>i</i>-th amplitude.
+    *  @param i the index of the amplitude
+    *  @param re the real part of the amplitude
+    *  @param im the imaginary part of the amplitude
+    */
+   abstract void set(long i, double re, double im);
+
+   /** Copies the amplitudes into the specified arrays of length 2<sup><i>n</i></sup>.
+    *  @param real the array of the real parts
+    *  @param imaginary the array of the imaginary parts
+    */
+   abstract void copyTo(double[] real, double[] imaginary);
+
+   /** Copies the amplitudes from the specified arrays of length 2<sup><i>n</i></sup>.
+    *  @param real the array of the real parts
+    *  @param imaginary the array of the imaginary parts
+    */
+   abstract void copyFrom(double[] real, double[] imaginary);
+
+   /** Returns an independent copy of the amplitudes in the same kind of storage.
+    *  @return a copy of the amplitudes
+    */
+   abstract StateVector copy();
+
+   /** Applies the 2 &#x00D7; 2 matrix <i>u</i> to each amplitude pair differing in
+    *  the target bit <i>h</i> whose indices have all control bits set.
+    *  @param controls the bit mask of the control qubits
+    *  @param h the bit of the target qubit
+    *  @param u the 2 &#x00D7; 2 matrix
+    */
+   abstract void unitary(long controls, long h, double[][][] u);
+
+   /** Applies the 2<sup><i>k</i></sup> &#x00D7; 2<sup><i>k</i></sup> matrix to the
+    *  qubits given by the <i>k</i> specified bits.
+    *  @param matrix the matrix
+    *  @param bits the bits of the qubits, where the <i>i</i>-th bit of a matrix
+    *  index refers to <code>bits[i]</code>
+    *  @see Register#apply(double[][][], int...)
+    */
+   abstract void apply(double[][][] matrix, long[] bits);
+
+   /** Exchanges the states of the two qubits given by the specified bits, i.e.,
+    *  the amplitudes of each pair of indices in which exactly one of the bits is set.
+    *  By default, the SWAP matrix is applied to the two qubits.
+    *  @param a the bit of the first qubit
+    *  @param b the bit of the second qubit
+    *  @see Register#swap(int, int)
+    */
+   void swap(long a, long b) {
+      apply(Register.SWAP, new long[] {a, b});
+   }
+
+   /** Multiplies all amplitudes by the specified real factor.
+    *  @param factor the factor
+    */
+   abstract void scale(double factor);
+
+   /** Fast Fourier transform of the amplitudes of the <i>m</i> qubits whose lowest
+    *  bit is 2<sup><code>low</code></sup>, for each setting of the other qubits,
+    *  with the same normalization as the transform of a register on the heap.
+    *  @param low the bit position of the lowest transformed qubit
+    *  @param bits the number <i>m</i> of transformed qubits
+    *  @param isign +1 for the transform, -1 for the inverse transform
+    *  @see FourierTransform
+    */
+   abstract void fft(int low, int bits, int isign);
+
+   /** Returns the sum of the probabilities |<i>&#x03B1;<sub>i</sub></i>|<sup>2</sup>
+    *  of all indices <i>i</i> with <i>i</i> &amp; <code>mask</code> = <code>value</code>.
+    *  @param mask the bit mask
+    *  @param value the required bits of the mask
+    *  @return the sum of the probabilities
+    */
+   abstract double probability(long mask, long value);
+
+   /** Returns the first index <i>j</i> such that the probabilities of the
+    *  indices 0, 1, ..., <i>j</i> sum up to more than <i>f</i>.
+    *  @param f a number 0 &#x2264; <i>f</i> &lt; 1
+    *  @return the index <i>j</i>
+    */
+   abstract long cumulativeIndex(double f);
+
+   /** Returns for each of the specified ascending numbers <i>f</i> the index
+    *  returned by {@link #cumulativeIndex(double)} for the normalized state,
+    *  computed by a single pass over the amplitudes.
+    *  @param f ascending numbers 0 &#x2264; <i>f</i> &lt; 1
+    *  @return the indices of the numbers
+    */
+   abstract long[] cumulativeIndices(double[] f);
+
+   /** Sets the state to the basis state |<i>j</i>&gt;.
+    *  @param j the index of the basis state
+    */
+   abstract void collapse(long j);
+
+   /** Projects the state onto the indices <i>i</i> with <i>i</i> &amp; <i>h</i> =
+    *  <code>value</code>, in the same way as {@link Register#measure(int)}:
+    *  all other amplitudes vanish, each non-vanishing remaining amplitude is set
+    *  to 1, and the state is normalized.
+    *  @param h the bit of the measured qubit
+    *  @param value the measured bit value, i.e., 0 or <i>h</i>
+    */
+   abstract void project(long h, long value);
+
+   /** Returns the expectation values &lt;<i>&#x03C8;</i>|<i>P<sub>k</sub></i>|<i>&#x03C8;</i>&gt;
+    *  of the Pauli strings <i>P<sub>k</sub></i>, computed in a single pass over the 
+    *  amplitudes without changing the state. The string <i>P<sub>k</sub></i> flips the 
+    *  bits of <code>x[k]</code>, i.e., acts by <i>X</i> or <i>Y</i> on them, and changes
+    *  the sign according to the bits of <code>z[k]</code>, i.e., acts by <i>Z</i> or 
+    *  <i>Y</i> on them; it thus acts by <i>Y</i> on the bits of both masks.
+    *  This implementation sums over all indices in parallel and may be overridden
+    *  by storages with fewer stored amplitudes.
+    *  @param x the bit masks of the qubits on which the strings act by <i>X</i> or <i>Y</i>
+    *  @param z the bit masks of the qubits on which the strings act by <i>Z</i> or <i>Y</i>
+    *  @return the expectation values of the Pauli strings
+    *  @see #pauli(long, long, long, double, double, double, double)
+    */
+   double[] expectations(final long[] x, final long[] z) {
+      boolean parallel = Long.numberOfTrailingZeros(length()) >= Register.getParallelThreshold();
+      return sum(length(), x.length, parallel, (from, to, sums) -> {
+         for (long i = from; i < to; i++) {
+            double re = getReal(i), im = getImaginary(i);
+            if (re == 0 && im == 0) {
+               continue;
+            }
+            for (int k = 0; k < x.length; k++) {
+               long j = i ^ x[k];
+               sums[k] += pauli(x[k], z[k], i, re, im, getReal(j), getImaginary(j));
+            }
+         }
+      });
+   }
+
+   /** Returns the contribution of the index <i>i</i> to the expectation value of the
+    *  Pauli string given by the bit masks <i>x</i> and <i>z</i>, i.e., the real part of
+    *  <p style="text-align:center">
+    *    i<sup>|<i>x</i> &amp; <i>z</i>|</sup> (-1)<sup>|<i>i</i> &amp; <i>z</i>|</sup> 
+    *    <i>&#x03B1;</i><sub><i>j</i></sub>* <i>&#x03B1;<sub>i</sub></i>
+    *  </p>
+    *  with <i>j</i> = <i>i</i> &#x2295; <i>x</i>, where |<i>m</i>| denotes the number of 
+    *  bits set in <i>m</i>. The string maps |<i>i</i>&gt; to this multiple of 
+    *  |<i>j</i>&gt;, since <i>Y</i> = i<i>XZ</i>.
+    *  @param x the bits on which the string acts by <i>X</i> or <i>Y</i>
+    *  @param z the bits on which the string acts by <i>Z</i> or <i>Y</i>
+    *  @param i the index
+    *  @param re the real part of <i>&#x03B1;<sub>i</sub></i>
+    *  @param im the imaginary part of <i>&#x03B1;<sub>i</sub></i>
+    *  @param rej the real part of <i>&#x03B1;<sub>j</sub></i>
+    *  @param imj the imaginary part of <i>&#x03B1;<sub>j</sub></i>
+    *  @return the contribution of the index to the expectation value
+    */
+   static double pauli(long x, long z, long i, double re, double im, double rej, double imj) {
+      double cr = rej * re + imj * im, ci = rej * im - imj * re;
+      double v;
+      switch (Long.bitCount(x & z) & 3) {
+         case 0: v = cr; break;
+         case 1: v = -ci; break;
+         case 2: v = -cr; break;
+         default: v = ci;
+      }
+      return (Long.bitCount(i & z) & 1) == 0 ? v : -v;
+   }
+
+   /** Returns the sums of the specified number of terms over the indices
+    *  0, 1, ..., <code>length</code> - 1. The index range is split into chunks of a fixed
+    *  length which are summed in parallel by the common fork-join pool if the flag
+    *  is set; since the chunks do not depend on the parallelism, the result is reproducible.
+    *  @param length the number of indices
+    *  @param terms the number of sums
+    *  @param parallel flag whether the chunks are summed in parallel
+    *  @param summand the summation over the indices of a chunk
+    *  @return the sums
+    */
+   static double[] sum(long length, int terms, boolean parallel, Summand summand) {
+      return new SumTask(0, length, terms, parallel, summand).invoke();
+   }
+
+   /** Returns the number resulting from <i>r</i> by inserting a 0 at each
+    *  bit position set in the specified mask.
+    *  @param r the number into which the zeros are inserted
+    *  @param mask the bit positions of the inserted zeros
+    *  @return <i>r</i> with zeros inserted at the bit positions of the mask
+    */
+   static long insertZeros(long r, long mask) {
+      for (long m = mask; m != 0; m &= m - 1) {
+         long low = m & -m; // the lowest remaining bit of the mask
+         r = ((r & -low) << 1) | (r & (low - 1));
+      }
+      return r;
+   }
+
+   /** A summation of several terms over the indices of a contiguous range.*/
+   @FunctionalInterface
+   interface Summand {
+      /** Adds the terms of the indices <i>from</i>, ..., <i>to</i> - 1 to the sums.
+       *  @param from the first index (inclusive)
+       *  @param to the last index (exclusive)
+       *  @param sums the sums of the terms
+       */
+      void apply(long from, long to, double[] sums);
+   }
+
+   /** Fork-join task recursively halving an index range of a summation of several terms.*/
+   private static class SumTask extends RecursiveTask<double[]> {
+      private static final long serialVersionUID = 1516331738;
+      private static final long CHUNK = 1 << 14;
+      private final long from, to;
+      private final int terms;
+      private final boolean parallel;
+      private final Summand summand;
+
+      SumTask(long from, long to, int terms, boolean parallel, Summand summand) {
+         this.from = from;
+         this.to = to;
+         this.terms = terms;
+         this.parallel = parallel;
+         this.summand = summand;
+      }
+
+      @Override
+      protected double[] compute() {
+         if (to - from <= CHUNK) {
+            double[] sums = new double[terms];
+            summand.apply(from, to, sums);
+            return sums;
+         }
+         long mid = (from + to) >>> 1;
+         SumTask left = new SumTask(from, mid, terms, parallel, summand);
+         SumTask right = new SumTask(mid, to, terms, parallel, summand);
+         double[] l, r;
+         if (parallel) {
+            left.fork();
+            r = right.compute();
+            l = left.join();
+         } else {
+            l = left.compute();
+            r = right.compute();
+         }
+         for (int k = 0; k < terms; k++) {
+            l[k] += r[k];
+         }
+         return l;
+      }
+   }
+}
@@ -656,7 +656,7 @@ public class Circuit extends ArrayList<QuantumGate> implements java.io.Serializa
       } else if ( gate.getName().equalsIgnoreCase("Function") ) {
          int zMin = 0;
          int zMax = ( 1 << (yRegisterSize - 1) );
-         int z = (int) ( zMin + ( zMax - zMin)*Math.random() );
+         int z = (int) ( zMin + ( zMax - zMin)*xRegister.getRandom().nextDouble() );
          // evaluate function with random number z; if the z-variable is set 
          // by the user, the function is independent from z:
          yRegister = xRegister.evaluateFunction( yRegister, gate.function, z );
@@ -1,7 +1,7 @@
 /*
  * GraphRegister.java - Quantum register for stabilizer quantum circuits
  *
- * Copyright (C) 2008-2012 Andreas de Vries
+ * Copyright (C) 2008-2026 Andreas de Vries
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -31,8 +31,8 @@
 package org.mathIT.quantum.stabilizer;
 import static java.lang.Math.*;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.BitSet;
+import java.util.SplittableRandom;
 import static org.mathIT.quantum.stabilizer.LocalCliffordOperator.*;
 /**
  *  This class represents the states of a quantum register consisting of 
@@ -58,8 +58,17 @@ import static org.mathIT.quantum.stabilizer.LocalCliffordOperator.*;
  *  from 2005/01/27 written by Simon Anders, downloadable under
  *  <a href="http://homepage.uibk.ac.at/~c705213/work/graphsim.html">
  *           http://homepage.uibk.ac.at/~c705213/work/graphsim.html</a>
+ *  <p>
+ *  In contrast to graphsim, the neighborhood of each vertex is stored as a bit set,
+ *  such that the edges between sets of vertices, as required by local complementations
+ *  and measurements, are toggled by an exclusive or of 64 vertices at once.
+ *  </p>
+ *  <p>
+ *  The random results of the measurements are drawn from a {@link SplittableRandom}
+ *  generator of each register, see {@link #setSeed(long)}.
+ *  </p>
  *  @author  Andreas de Vries
- *  @version 1.0
+ *  @version 1.3
  */
 public class GraphRegister {
    /** A lookup table on how any LC operator can be composed from them
@@ -277,6 +286,8 @@ public class GraphRegister {
    
    /** Array list storing all the qubits, represented as QubitVertex objects. */
    ArrayList<QubitVertex> vertices;
+   /** The random number generator of the measurements.*/
+   SplittableRandom random = new SplittableRandom();
    
    /**
     *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;.
@@ -291,19 +302,43 @@ public class GraphRegister {
       }
    }
    
+   /**
+    * Sets the random number generator from which the measurements of this register
+    * draw their random results. By default, each register has its own generator.
+    * @param random the random number generator
+    * @throws IllegalArgumentException if <code>random</code> is null
+    * @see #setSeed(long)
+    */
+   public void setRandom(SplittableRandom random) {
+      if (random == null) {
+         throw new IllegalArgumentException("No random number generator specified");
+      }
+      this.random = random;
+   }
+
+   /**
+    * Sets the seed of the random number generator of the measurements of this 
+    * register, such that the results of its measurements are reproducible.
+    * @param seed the seed of the random number generator
+    * @see #setRandom(SplittableRandom)
+    */
+   public void setSeed(long seed) {
+      random = new SplittableRandom(seed);
+   }
+
    /** Add an edge to the graph underlying the state.*/
    private void add_edge(int v1, int v2) {
       //assert(v1 != v2);
       if (v1 == v2) {
          throw new IllegalArgumentException("Edge with identical vertices "+v1);
       }
-      vertices.get(v1).neighbors.add(v2);
-      vertices.get(v2).neighbors.add(v1);
+      vertices.get(v1).neighbors.set(v2);
+      vertices.get(v2).neighbors.set(v1);
    }
    
    private boolean del_edge(int v1, int v2) {
-      vertices.get(v1).neighbors.remove(v2);
-      vertices.get(v2).neighbors.remove(v1);
+      vertices.get(v1).neighbors.clear(v2);
+      vertices.get(v2).neighbors.clear(v1);
       return true;
    }
    
@@ -311,28 +346,38 @@ public class GraphRegister {
     *  i.e., add it if not present, and delete it if present.
     */
    private void toggle_edge(int v1, int v2) {
-      if (vertices.get(v1).neighbors.remove(v2)) {
-         vertices.get(v2).neighbors.remove(v1);
-      } else {
-         add_edge(v1, v2);
+      if (v1 == v2) {
+         throw new IllegalArgumentException("Edge with identical vertices "+v1);
       }
+      vertices.get(v1).neighbors.flip(v2);
+      vertices.get(v2).neighbors.flip(v1);
    }
    
-   /** Toggles the edges between the vertex sets vs1 and vs2.
-    *  The function takes extra care not to invert an edge twice. If vs1 and
-    *  vs2 are disjunct, this cannot happen and we do not need the function.
-    *  If vs1 == v2s, we can do without, too. 
+   /** Toggles the edges between the vertex sets vs1 and vs2, each edge only once
+    *  even if both its vertices are contained in both sets.
+    *  An edge {i, j} is toggled if and only if i &#x2208; vs1 and j &#x2208; vs2
+    *  or vice versa, i.e., each vertex i toggles its edges to vs2 if i &#x2208; vs1,
+    *  and to vs1 if i &#x2208; vs2.
     */
-   private void toggle_edges(HashSet<Integer> vs1, HashSet<Integer> vs2) {
-      HashSet<Edge> procd_edges = new HashSet<>();
-      Edge edge;
-      for (int i : vs1) {
-         for (int j : vs2) {
-            if ((i != j) && !procd_edges.contains(edge = new Edge(i, j))) {
-               procd_edges.add(edge);
-               toggle_edge(i, j);
-            }
-         }
+   private void toggle_edges(BitSet vs1, BitSet vs2) {
+      BitSet union = (BitSet) vs1.clone();
+      union.or(vs2);
+      for (int i = union.nextSetBit(0); i >= 0; i = union.nextSetBit(i+1)) {
+         BitSet partners = vs1.get(i) ? (vs2.get(i) ? union : vs2) : vs1;
+         BitSet neighbors = vertices.get(i).neighbors;
+         neighbors.xor(partners);
+         neighbors.clear(i); // no edge from i to itself
+      }
+   }
+   
+   /** Toggles all edges between the vertices of the specified set, i.e., 
+    *  complements the subgraph induced by the set.
+    */
+   private void complement(BitSet vs) {
+      for (int i = vs.nextSetBit(0); i >= 0; i = vs.nextSetBit(i+1)) {
+         BitSet neighbors = vertices.get(i).neighbors;
+         neighbors.xor(vs);
+         neighbors.clear(i); // no edge from i to itself
       }
    }
    
@@ -340,18 +385,19 @@ public class GraphRegister {
    private int graph_Z_measure (int v, int force) {
       int res;
       if (force == -1) {
-         res = (Math.random() < .5) ? 0 : 1;
+         res = (random.nextDouble() < .5) ? 0 : 1;
       } else {
          res = force;
       }
 
-      // Copy neighborhoods: (necessary since otherwise toggling edges results in a ConcurrentModificationException)
-      HashSet<Integer> nbg  = new HashSet<>(vertices.get(v).neighbors);
-      for (int i : nbg) {
-         if (del_edge(v, i) && res == 1) {
+      BitSet nbg = vertices.get(v).neighbors;
+      for (int i = nbg.nextSetBit(0); i >= 0; i = nbg.nextSetBit(i+1)) {
+         vertices.get(i).neighbors.clear(v);
+         if (res == 1) {
             vertices.get(i).byprod = vertices.get(i).byprod.multiply(Z);
          }
       }
+      nbg.clear();
       if (res == 0) {
          vertices.get(v).byprod = vertices.get(v).byprod.multiply(H);
       } else {
@@ -364,12 +410,12 @@ public class GraphRegister {
    private int graph_Y_measure (int v, int force) {
       int res;
       if (force != 0 && force != 1) {
-         res = (Math.random() < .5) ? 0 : 1;
+         res = (random.nextDouble() < .5) ? 0 : 1;
       } else {
          res = force;
       }
-      ArrayList<Integer> vnbg = new ArrayList<>(vertices.get(v).neighbors);
-      for (int i : vnbg) {
+      BitSet vnbg = (BitSet) vertices.get(v).neighbors.clone();
+      for (int i = vnbg.nextSetBit(0); i >= 0; i = vnbg.nextSetBit(i+1)) {
          if (res != 0) {
             vertices.get(i).byprod = vertices.get(i).byprod.multiply(spiZ);
             //vertices.get(i).byprod = spiZ.multiply(vertices.get(i).byprod);
@@ -378,20 +424,14 @@ public class GraphRegister {
             //vertices.get(i).byprod = smiZ.multiply(vertices.get(i).byprod);
          }
       }
-      vnbg.add(v); // Now, vnbg is the set of v and its neighbours.
-      for (int i = 0; i < vnbg.size(); i++) {
-         for (int j = i; j < vnbg.size(); j++) {
-            if (vnbg.get(i) != vnbg.get(j)) {  // <-- ???
-               toggle_edge(vnbg.get(i), vnbg.get(j));
-            }
-         }
-      }
+      vnbg.set(v); // Now, vnbg is the set of v and its neighbours.
+      complement(vnbg);
 
       if (res == 0) {
-         vertices.get(v).byprod = S.multiply(vertices.get(v).byprod);
+         vertices.get(v).byprod = vertices.get(v).byprod.multiply(S);
       } else {
          // Measurement result: -|0y>
-         vertices.get(v).byprod = S.adjoint().multiply(vertices.get(v).byprod);
+         vertices.get(v).byprod = vertices.get(v).byprod.multiply(S.adjoint());
       }
       return res;
    }
@@ -407,22 +447,22 @@ public class GraphRegister {
       // throw a die:
       int res;
       if (force != 0 && force != 1) {
-         res = (Math.random() < .5) ? 0 : 1;
+         res = (random.nextDouble() < .5) ? 0 : 1;
       } else {
          res = force;
       }
-      int vb = vertices.get(v).neighbors.iterator().next(); // the choosen vertex
+      int vb = vertices.get(v).neighbors.nextSetBit(0); // the choosen vertex
       // preparation step: store the neighborhood of v and vb
-      HashSet<Integer> vn  = new HashSet<>(vertices.get(v).neighbors);
-      HashSet<Integer> vbn = new HashSet<>(vertices.get(vb).neighbors);
+      BitSet vn  = (BitSet) vertices.get(v).neighbors.clone();
+      BitSet vbn = (BitSet) vertices.get(vb).neighbors.clone();
       // First, put the byproduct ops: 
       if (res == 0) {
          // measured a |+>:
          // spiY on vb
          vertices.get(vb).byprod = vertices.get(vb).byprod.multiply(spiY);
          // Z on all in nbg(v) \ nbg(vb) \ {vb}
-         for (int i : vertices.get(v).neighbors) {
-            if (i != vb && vertices.get(vb).neighbors.contains(i)) {
+         for (int i = vn.nextSetBit(0); i >= 0; i = vn.nextSetBit(i+1)) {
+            if (i != vb && !vbn.get(i)) {
                vertices.get(i).byprod = vertices.get(i).byprod.multiply(Z);
             }
          }
@@ -430,10 +470,10 @@ public class GraphRegister {
          // measured a |->:
          // smiY on vb, and Z on v:
          vertices.get(vb).byprod = vertices.get(vb).byprod.multiply(smiY);
-         vertices.get(v).byprod = Z.multiply(vertices.get(v).byprod);
+         vertices.get(v).byprod = vertices.get(v).byprod.multiply(Z);
          // Z on all in nbg(vb) \ nbg(v) \ {v}
-         for (int i : vertices.get(vb).neighbors) {
-            if (i != v && vertices.get(v).neighbors.contains(i)) {
+         for (int i = vbn.nextSetBit(0); i >= 0; i = vbn.nextSetBit(i+1)) {
+            if (i != v && !vn.get(i)) {
                vertices.get(i).byprod = vertices.get(i).byprod.multiply(Z);
             }
          }
@@ -443,23 +483,11 @@ public class GraphRegister {
       toggle_edges(vn, vbn);
       // STEP 2: complement with the complete subgraph induced by the 
       // intersection of nbg(v) and nbg(vb):
-      // First, make the intersection
-      ArrayList<Integer> isc = new ArrayList<>();
-      for (int i : vn) {
-         if (vbn.contains(i)) {
-            isc.add(i);
-         }
-      }
-      // Now, toggle the edges
-      for (int i = 0; i < isc.size(); i++) {
-         for (int j = i; j < isc.size(); j++) {
-            if (! isc.get(i).equals(isc.get(j))) {
-               toggle_edge(isc.get(i), isc.get(j));
-            }
-         }
-      }
+      BitSet isc = (BitSet) vn.clone();
+      isc.and(vbn);
+      complement(isc);
       // STEP 3: Toggle all edges from vb to nbg(v) \ {vb}
-      for (int i : vn) {
+      for (int i = vn.nextSetBit(0); i >= 0; i = vn.nextSetBit(i+1)) {
          if (i != vb) {
             toggle_edge(vb, i);
          }
@@ -479,12 +507,12 @@ public class GraphRegister {
          throw new IllegalArgumentException("Isolated vertex.");
       }
       // This will be the swapping partner:
-      Iterator<Integer> it = vertices.get(v).neighbors.iterator();
-      int vb = it.next();
+      int vb = vertices.get(v).neighbors.nextSetBit(0);
       if (vb == avoid) {
          // Is there an alternative to 'avoid'? If so, use it.
-         if (it.hasNext()) {
-            vb = it.next();
+         int alternative = vertices.get(v).neighbors.nextSetBit(vb + 1);
+         if (alternative >= 0) {
+            vb = alternative;
          }
       }
 
@@ -538,13 +566,13 @@ public class GraphRegister {
    /** Check whether the qubits are connected to each other and to non-operand vertices.*/
    private ConnectionInfo getConnectionInfo (int v1, int v2) {
       ConnectionInfo ci = new ConnectionInfo();
-      ci.wasEdge = vertices.get(v1).neighbors.contains(v2);
+      ci.wasEdge = vertices.get(v1).neighbors.get(v2);
       if (! ci.wasEdge) {
-         ci.non1 = vertices.get(v1).neighbors.size() >= 1; 
-         ci.non2 = vertices.get(v2).neighbors.size() >= 1;
+         ci.non1 = vertices.get(v1).neighbors.cardinality() >= 1; 
+         ci.non2 = vertices.get(v2).neighbors.cardinality() >= 1;
       } else {
-         ci.non1 = vertices.get(v1).neighbors.size() >= 2; 
-         ci.non2 = vertices.get(v2).neighbors.size() >= 2;
+         ci.non1 = vertices.get(v1).neighbors.cardinality() >= 2; 
+         ci.non2 = vertices.get(v2).neighbors.cardinality() >= 2;
       }
       return ci;
    }
@@ -571,10 +599,9 @@ public class GraphRegister {
       for (int i = 0; i < vertices.size(); i++ ) {
          matrices[i] = vertices.get(i).getMatrix();
          
-         for (int j : vertices.get(i).neighbors) {
-            if (j > i) {
-               continue;
-            } // take each edge only once
+         BitSet neighbors = vertices.get(i).neighbors;
+         for (int j = neighbors.nextSetBit(0); j >= 0 && j < i; j = neighbors.nextSetBit(j+1)) {
+            // take each edge only once
 
             for (int k = 0; k < q; k++) {
                // if the bit (j-1) is not met by k, then go on...
@@ -830,6 +857,8 @@ public class GraphRegister {
       }
       
       //LocalCliffordOperator basis_orig = new LocalCliffordOperator(basis.code);  // <- needed to check correctness ...
+      // conjugate a copy, since conjugate() replaces its operator and basis may be a constant:
+      basis = new LocalCliffordOperator(basis.code);
       int rp = basis.conjugate(vertices.get(v).byprod.adjoint()); // phase
       //assert (rp == rp_p1 || rp == rp_m1); // <=> rp == +1 or -1
       if (force != -1 && rp == -1) {
@@ -853,7 +882,7 @@ public class GraphRegister {
       }
       // check: the measured vertex should be singled out:
       //assert (vertices.get(v).neighbors.size() == 0);
-      if (vertices.get(v).neighbors.size() > 0) {
+      if (!vertices.get(v).neighbors.isEmpty()) {
          throw new RuntimeException("Vertex "+v+" is still connected to other qubits after its measurement!");
       }
       // Check that the vertex is now in the correct eigenstate:
@@ -872,16 +901,11 @@ public class GraphRegister {
     */
    void invertNeighborhood(int v) {
       // Invert the neighborhood:
-      Integer[] vn = vertices.get(v).neighbors.toArray(new Integer[0]);
-      for (int i = 0; i < vn.length; i++) {
-         for (int j = i; j < vn.length; j++) {
-            if (vn[i] != vn[j]) {
-               //cerr << "toggling " << *i << "," << *j << endl;
-               toggle_edge(vn[i], vn[j]);
-            }
-         }
-         // and adjust the local Cliffords:
-         vertices.get(vn[i]).byprod = vertices.get(vn[i]).byprod.multiply(spiZ.adjoint());
+      BitSet vn = (BitSet) vertices.get(v).neighbors.clone();
+      complement(vn);
+      // and adjust the local Cliffords:
+      for (int i = vn.nextSetBit(0); i >= 0; i = vn.nextSetBit(i+1)) {
+         vertices.get(i).byprod = vertices.get(i).byprod.multiply(spiZ.adjoint());
       }
       // finally, adjust the local Clifford of v:
       vertices.get(v).byprod = vertices.get(v).byprod.multiply(smiX.adjoint());
@@ -1088,43 +1112,6 @@ public class GraphRegister {
 }
 
 
-/** This structure is needed only by toggle_edges. */
-class Edge { //: public pair<int, int> {
-   int first;
-   int second;
-   
-   public Edge (int a, int b) {
-      if (a < b) {
-         first = a; second = b;
-      } else {
-         first = b; second = a;
-      }
-   }
-   
-   @Override
-   public int hashCode() {
-      return first << 16 ^ second;
-   }
-
-   @Override
-   public boolean equals(Object obj) {
-      if (obj == null) {
-         return false;
-      }
-      if (getClass() != obj.getClass()) {
-         return false;
-      }
-      final Edge other = (Edge) obj;
-      if (this.first != other.first) {
-         return false;
-      }
-      if (this.second != other.second) {
-         return false;
-      }
-      return true;
-   }
-}
-
 /** This class is only for internal use for the cphase functions. */
 class ConnectionInfo {
    boolean wasEdge;
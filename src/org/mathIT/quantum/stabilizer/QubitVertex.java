@@ -1,7 +1,7 @@
 /*
  * QubitVertex.java - Qubit representation of a quantum GraphRegister
  *
- * Copyright (C) 2008-2012 Andreas de Vries
+ * Copyright (C) 2008-2026 Andreas de Vries
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -29,13 +29,13 @@
  * If you do not wish to do so, delete this exception statement from your version.
  */
 package org.mathIT.quantum.stabilizer;
-import java.util.HashSet;
+import java.util.BitSet;
 import static org.mathIT.quantum.stabilizer.LocalCliffordOperator.*;
 /** 
  * A GraphRegister object maintains a list of its vertices (qubits), each 
  * described by an object of this class QubitVertex.
  * @author  Andreas de Vries
- * @version 1.0
+ * @version 1.1
  */
  public class QubitVertex {
    /** byprod is the vertex operator (VOp) associated with the qubit (the name 
@@ -43,15 +43,16 @@ import static org.mathIT.quantum.stabilizer.LocalCliffordOperator.*;
     *  the one-way quantum computer.
     */
    LocalCliffordOperator byprod;
-   /** neigbors is the adjacency list for this vertex. */
-   HashSet<Integer> neighbors;
+   /** neigbors is the adjacency list for this vertex, stored as the bit set
+    *  of the indices of the neighbor vertices. */
+   BitSet neighbors;
    /** Upon construction, a qubit vertex is initialised with the Hadamard
     *  operation as VOp, and with empty neighbor list. This makes it represent
     *  a state |0&gt;. 
     */
    public QubitVertex() {
       byprod = H;
-      neighbors = new HashSet<>();
+      neighbors = new BitSet();
    }
    
    /** Returns the complex 2x2 matrix representing the vertex operator 
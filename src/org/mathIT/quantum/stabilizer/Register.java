@@ -1,7 +1,7 @@
 /*
  * Register.java - Class representing a quantum register
  *
- * Copyright (C) 2004-2012 Andreas de Vries
+ * Copyright (C) 2004-2026 Andreas de Vries
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -33,6 +33,7 @@ import static java.lang.Math.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.SplittableRandom;
 import static org.mathIT.numbers.Numbers.*;
 import org.mathIT.util.FunctionParser;
 /**
@@ -66,8 +67,23 @@ import org.mathIT.util.FunctionParser;
  *  and 
  *  <code>imaginary</code>[<i>j</i>] = Im <i>&#x03B1;<sub>j</sub></i>
  *  for <i>j</i> = 0, 1, ..., <i>q</i>-1.
+ *  <p>
+ *  As long as a register is in a stabilizer state, it is represented either
+ *  as a {@link GraphRegister} or, if created by {@link #tableau(int)}, as a
+ *  {@link TableauRegister}. The latter is preferable for registers of many 
+ *  qubits which are measured frequently.
+ *  A register created by {@link #stabilizerSum(int)} is represented as a weighted
+ *  sum of stabilizer states instead, which grows with each <i>T</i> gate, so that
+ *  circuits of many qubits and few <i>T</i> gates remain efficient.
+ *  </p>
+ *  <p>
+ *  The measurements draw their random numbers from a {@link SplittableRandom}
+ *  generator of each register, which can be seeded by {@link #setSeed(long)},
+ *  such that registers can be measured in parallel without contention and
+ *  with reproducible results.
+ *  </p>
  *  @author  Andreas de Vries
- *  @version 1.0
+ *  @version 1.3
  */
 public class Register {
    /** The accuracy up to which calculations are done. Its actual value is {@value}.*/
@@ -80,6 +96,17 @@ public class Register {
     *  it is a stabilizer state according to the Gottesman-Knill theorem.
     */
    private GraphRegister graphState;
+   /** The tableau register state representing this quantum register if it has
+    *  been created by {@link #tableau(int)}, as long as it is a stabilizer state.
+    *  In this case, the graph register state is <code>null</code>.
+    */
+   private TableauRegister tableauState;
+   /** The sum of stabilizer states representing this quantum register if it has
+    *  been created by {@link #stabilizerSum(int)}, as long as only Clifford gates,
+    *  <i>T</i> gates, Toffoli gates and measurements are applied.
+    *  In this case, the graph register state is <code>null</code>.
+    */
+   private StabilizerSum stabilizerSum;
    /** Array containing the real parts of the qubit state components of this register.
     *  It is null as long as this register is a stabilizer state.
     */
@@ -90,6 +117,8 @@ public class Register {
    private double[] imaginary;
    /** Map of a list containing the numbers of states being entangled with each other.*/
    private HashMap<Integer, ArrayList<Integer>> entanglement;
+   /** The random number generator of the measurements, shared with the stabilizer state.*/
+   private SplittableRandom random = new SplittableRandom();
    
    /**
     *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;.
@@ -126,6 +155,7 @@ public class Register {
       
       if (isStabilizerState && size > 0) {
          graphState = new GraphRegister(size);
+         graphState.random = random;
       } else {
          int q;
          if (size > 0) {
@@ -143,6 +173,112 @@ public class Register {
       }
    }
    
+   /**
+    *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;,
+    *  which is represented by a stabilizer tableau as long as it is a stabilizer state.
+    *  Its Clifford gates then require O(<i>n</i>) and its measurements 
+    *  O(<i>n</i><sup>2</sup>) operations, independently of the entanglement of the qubits.
+    *  @param size the number of qubits this register consists of
+    *  @return a register in the state |0&gt; represented by a stabilizer tableau
+    *  @see TableauRegister
+    */
+   public static Register tableau(int size) {
+      Register register = new Register(size, size > 0);
+      if (size > 0) {
+         register.graphState = null;
+         register.tableauState = new TableauRegister(size);
+         register.tableauState.random = register.random;
+      }
+      return register;
+   }
+   
+   /**
+    *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;,
+    *  which is represented by a weighted sum of stabilizer states, its stabilizer
+    *  rank decomposition. In contrast to the other representations, a <i>T</i> gate
+    *  or a Toffoli gate does not convert the register into the 2<sup><i>n</i></sup>
+    *  amplitudes, but splits each term into at most 2 or 8 terms, respectively, 
+    *  whereas Clifford gates do not increase the number of terms.
+    *  Therefore, circuits of many qubits but few <i>T</i> gates can be simulated
+    *  efficiently, where the terms are transformed in parallel.
+    *  The measurements of single qubits are performed on the sum, too; all other
+    *  operations, as well as the amplitudes returned by {@link #getReal()} and
+    *  {@link #getImaginary()}, require the conversion into the amplitudes.
+    *  @param size the number of qubits this register consists of
+    *  @return a register in the state |0&gt; represented by a sum of stabilizer states
+    *  @see #getStabilizerRank()
+    */
+   public static Register stabilizerSum(int size) {
+      Register register = new Register(size, size > 0);
+      if (size > 0) {
+         register.isStabilizerState = false;
+         register.graphState = null;
+         register.stabilizerSum = new StabilizerSum(size);
+      }
+      return register;
+   }
+   
+   /**
+    * Returns the number of stabilizer states of which the current state of this
+    * register is a weighted sum. If the register has been created by 
+    * {@link #stabilizerSum(int)}, this number grows with the number of <i>T</i>
+    * gates and Toffoli gates; if it is a stabilizer state, it is 1, and if it is
+    * represented by its amplitudes, it is 0.
+    * @return the number of terms of the stabilizer rank decomposition of this register,
+    * or 0 if it is represented by its amplitudes
+    * @see #stabilizerSum(int)
+    */
+   public int getStabilizerRank() {
+      if (stabilizerSum != null) {
+         return stabilizerSum.getRank();
+      }
+      return isStabilizerState ? 1 : 0;
+   }
+   
+   /**
+    * Returns the random number generator from which the measurements of this register
+    * draw their random numbers.
+    * @return the random number generator of this register
+    * @see #setRandom(SplittableRandom)
+    */
+   public SplittableRandom getRandom() {
+      return random;
+   }
+   
+   /**
+    * Sets the random number generator from which the measurements of this register
+    * draw their random numbers, also if it is represented as a stabilizer state.
+    * By default, each register has its own generator, so that registers measured in
+    * different threads do not contend for a common generator. A generator must not
+    * be shared by registers measured concurrently; instead, each of them may obtain
+    * its own generator by {@link SplittableRandom#split()}.
+    * @param random the random number generator
+    * @throws IllegalArgumentException if <code>random</code> is null
+    * @see #setSeed(long)
+    */
+   public void setRandom(SplittableRandom random) {
+      if (random == null) {
+         throw new IllegalArgumentException("No random number generator specified");
+      }
+      this.random = random;
+      if (graphState != null) {
+         graphState.random = random;
+      }
+      if (tableauState != null) {
+         tableauState.random = random;
+      }
+   }
+   
+   /**
+    * Sets the seed of the random number generator of the measurements of this 
+    * register, such that the results of its measurements are reproducible.
+    * @param seed the seed of the random number generator
+    * @see #setRandom(SplittableRandom)
+    */
+   public void setSeed(long seed) {
+      setRandom(new SplittableRandom(seed));
+   }
+   
    /**
     * Returns the size of this quantum register. I.e., the number of its qubits.
     * @return the size of this quantum register
@@ -173,8 +309,8 @@ public class Register {
     * @return array of the real parts of this quantum register
     */
    public double[] getReal() {
-      if (isStabilizerState) {
-         return graphState.getRegister().getReal();
+      if (isStabilizerState || stabilizerSum != null) {
+         return stabilizerRegister().getReal();
       }
       return real;
    }
@@ -201,8 +337,8 @@ public class Register {
     * @return array of the imaginary parts of this quantum register
     */
    public double[] getImaginary() {
-      if (isStabilizerState) {
-         return graphState.getRegister().getImaginary();
+      if (isStabilizerState || stabilizerSum != null) {
+         return stabilizerRegister().getImaginary();
       }
       return imaginary;
    }
@@ -228,6 +364,26 @@ public class Register {
        return graphState;
     }
    
+   /** Returns the tableau register state representing this quantum register as long as
+    *  it is a stabilizer state, if the register has been created by {@link #tableau(int)}.
+    *  Otherwise, the tableau register state is <code>null</code>.
+    *  @return the tableau register state representing this quantum register
+    */
+   public TableauRegister getTableauState() {
+      return tableauState;
+   }
+   
+   /** Returns the register in state vector representation which is represented
+    *  by the stabilizer state of this register.
+    *  @return the register state represented by the stabilizer state
+    */
+   private Register stabilizerRegister() {
+      if (stabilizerSum != null) {
+         return stabilizerSum.getRegister();
+      }
+      return tableauState != null ? tableauState.getRegister() : graphState.getRegister();
+   }
+   
    /** Returns a map of a list containing the numbers of states being entangled with each other.
     * @return map of a list containing the numbers of states being entangled with each other
     */
@@ -242,8 +398,16 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void hadamard( int j ) {
+      if (stabilizerSum != null) {
+         stabilizerSum.hadamard(j-1);
+         return;
+      }
       if (isStabilizerState) {
-         graphState.hadamard(j-1);
+         if (tableauState != null) {
+            tableauState.hadamard(j-1);
+         } else {
+            graphState.hadamard(j-1);
+         }
          return;
       }
       double realTmp, imaginaryTmp;
@@ -271,8 +435,16 @@ public class Register {
     *  @param k the target qubit
     */
    public void cNOT(int j, int k) {
+      if (stabilizerSum != null) {
+         stabilizerSum.cNOT(j-1, k-1);
+         return;
+      }
       if (isStabilizerState) {
-         graphState.cNOT(j-1, k-1);
+         if (tableauState != null) {
+            tableauState.cNOT(j-1, k-1);
+         } else {
+            graphState.cNOT(j-1, k-1);
+         }
          return;
       }
       double tmp;
@@ -313,8 +485,16 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void xPauli( int j ) {
+      if (stabilizerSum != null) {
+         stabilizerSum.xPauli(j-1);
+         return;
+      }
       if (isStabilizerState) {
-         graphState.xPauli(j-1);
+         if (tableauState != null) {
+            tableauState.xPauli(j-1);
+         } else {
+            graphState.xPauli(j-1);
+         }
          return;
       }
       double realTmp, imaginaryTmp;
@@ -342,8 +522,16 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void yPauli( int j ) {
+      if (stabilizerSum != null) {
+         stabilizerSum.yPauli(j-1);
+         return;
+      }
       if (isStabilizerState) {
-         graphState.yPauli(j-1);
+         if (tableauState != null) {
+            tableauState.yPauli(j-1);
+         } else {
+            graphState.yPauli(j-1);
+         }
          return;
       }
       double realTmp, imaginaryTmp;
@@ -371,8 +559,16 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void zPauli( int j ) {
+      if (stabilizerSum != null) {
+         stabilizerSum.zPauli(j-1);
+         return;
+      }
       if (isStabilizerState) {
-         graphState.zPauli(j-1);
+         if (tableauState != null) {
+            tableauState.zPauli(j-1);
+         } else {
+            graphState.zPauli(j-1);
+         }
          return;
       }
       for ( int k = 0; k < power2( size ); k += power2(j) ) {
@@ -392,8 +588,16 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void sGate( int j ) {
+      if (stabilizerSum != null) {
+         stabilizerSum.sGate(j-1);
+         return;
+      }
       if (isStabilizerState) {
-         graphState.sGate(j-1);
+         if (tableauState != null) {
+            tableauState.sGate(j-1);
+         } else {
+            graphState.sGate(j-1);
+         }
          return;
       }
       
@@ -415,8 +619,16 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void inverseSGate( int j ) {
+      if (stabilizerSum != null) {
+         stabilizerSum.inverseSGate(j-1);
+         return;
+      }
       if (isStabilizerState) {
-         graphState.inverseSGate(j-1);
+         if (tableauState != null) {
+            tableauState.inverseSGate(j-1);
+         } else {
+            graphState.inverseSGate(j-1);
+         }
          return;
       }
       
@@ -438,12 +650,18 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void tGate( int j ) {
-      if (isStabilizerState) {
+      if (stabilizerSum != null) {
+         stabilizerSum.tGate(j-1);
+         return;
+      }
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       for ( int k = 0; k < power2( size ); k += power2(j) ) {
@@ -464,12 +682,18 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void inverseTGate( int j ) {
-      if (isStabilizerState) {
+      if (stabilizerSum != null) {
+         stabilizerSum.inverseTGate(j-1);
+         return;
+      }
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       for ( int k = 0; k < power2( size ); k += power2(j) ) {
@@ -490,12 +714,18 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void sqrtX( int j ) {
-      if (isStabilizerState) {
+      if (stabilizerSum != null) {
+         stabilizerSum.sqrtX(j-1);
+         return;
+      }
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       double x0, y0, x1, y1;
@@ -526,12 +756,18 @@ public class Register {
     *  @param j the number of the qubit (1 &#x2264; <i>j</i> &#x2264; qubit size). 
     */
    public void inverseSqrtX( int j ) {
-      if (isStabilizerState) {
+      if (stabilizerSum != null) {
+         stabilizerSum.inverseSqrtX(j-1);
+         return;
+      }
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       double x0, y0, x1, y1;
@@ -563,12 +799,18 @@ public class Register {
     *  @param k  the target qubit
     */
    public void toffoli(int j1, int j2, int k) {
-      if (isStabilizerState) {
+      if (stabilizerSum != null) {
+         stabilizerSum.toffoli(j1-1, j2-1, k-1);
+         return;
+      }
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       double tmp;
@@ -643,12 +885,14 @@ public class Register {
     * @see #inverseQft(int,int)
     */
    public void qft( int q, int size ) {
-      if (isStabilizerState) {
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       if ( q == power2( this.size ) ) {
@@ -732,12 +976,14 @@ public class Register {
     * @see #qft(int,int)
     */
    public void inverseQft( int q, int size ) {
-      if (isStabilizerState) {
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       if ( q == power2( this.size ) ) {
@@ -841,12 +1087,14 @@ public class Register {
     *  @param phi the rotation angle in radians
     */
    public void rotate( int[] cQubits, String axis, double phi ) {
-      if (isStabilizerState) {
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
       int k = cQubits[ cQubits.length - 1 ]; // the target qubit to be rotated
@@ -947,20 +1195,24 @@ public class Register {
     *  store all function values
     */
    public Register evaluateFunction(Register yRegister, FunctionParser function, int z) {
-      if (isStabilizerState) {
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
-      if (yRegister.isStabilizerState) {
+      if (yRegister.isStabilizerState || yRegister.stabilizerSum != null) {
          yRegister.isStabilizerState = false;
-         Register newRegister = yRegister.graphState.getRegister();
+         Register newRegister = yRegister.stabilizerRegister();
          yRegister.real       = newRegister.real;
          yRegister.imaginary  = newRegister.imaginary;
          yRegister.graphState = null;
+         yRegister.tableauState = null;
+         yRegister.stabilizerSum = null;
       }
       
       int x = 0;
@@ -1224,15 +1476,24 @@ public class Register {
     *  @see #measure(int)
     */
    public int measure() {
-      if (isStabilizerState) {
+      if (stabilizerSum != null) {
+         int value = 0;
+         for (int j = 0; j < size; j++) {
+            value |= stabilizerSum.measure(j, random) << j;
+         }
+         return value;
+      }
+      if (isStabilizerState || stabilizerSum != null) {
          isStabilizerState = false;
-         Register newRegister = graphState.getRegister();
+         Register newRegister = stabilizerRegister();
          real      = newRegister.real;
          imaginary = newRegister.imaginary;
          graphState = null;
+         tableauState = null;
+         stabilizerSum = null;
       }
       
-      double f = Math.random();
+      double f = random.nextDouble();
       double p;
       
       int j=-1;
@@ -1283,11 +1544,17 @@ public class Register {
     *  @see #measure()
     */
    public int measure(int j) {
+      if (stabilizerSum != null) {
+         return stabilizerSum.measure(j-1, random);
+      }
       if (isStabilizerState) {
+         if (tableauState != null) {
+            return tableauState.measure(j-1);
+         }
          return graphState.measure(j-1);
       }
       
-      double f = Math.random();
+      double f = random.nextDouble();
       double p=0;
       int k, l, m;
       
@@ -1359,15 +1626,19 @@ public class Register {
          return equals(((GraphRegister) o).getRegister());
       }
       
+      if (o instanceof TableauRegister) {
+         return equals(((TableauRegister) o).getRegister());
+      }
+      
       if (o.getClass() != this.getClass()) {
          return false;
       }
       
       Register r = (Register) o;
-      if (r.isStabilizerState) {
-         r = r.graphState.getRegister();
+      if (r.isStabilizerState || r.stabilizerSum != null) {
+         r = r.stabilizerRegister();
       }
-      Register my = isStabilizerState ? graphState.getRegister() : this;
+      Register my = isStabilizerState || stabilizerSum != null ? stabilizerRegister() : this;
       
       // The register sizes must be equal:
       if (my.real.length != r.real.length) {
@@ -1447,8 +1718,8 @@ public class Register {
       
       for (int b = 0; b < size; b++) {
          i = (1 << b) - 1;
-         if (isStabilizerState) {
-            Register tmpReg = graphState.getRegister();
+         if (isStabilizerState || stabilizerSum != null) {
+            Register tmpReg = stabilizerRegister();
             double[] tmpReal = tmpReg.real;
             double[] tmpImag = tmpReg.imaginary;
             hash = 31*hash + (Double.valueOf(tmpReal[i]*tmpReal[i] + tmpImag[i]*tmpImag[i])).hashCode();
@@ -1541,8 +1812,9 @@ public class Register {
     */
    @Override
    public String toString() {
-      if (isStabilizerState) {
-         Register newRegister = graphState.getRegister();
+      boolean stabilizer = isStabilizerState || stabilizerSum != null;
+      if (stabilizer) {
+         Register newRegister = stabilizerRegister();
          real = newRegister.real;
          imaginary = newRegister.imaginary;
       }
@@ -1573,7 +1845,7 @@ public class Register {
             first = false;
          }
       }
-      if (isStabilizerState) {
+      if (stabilizer) {
          real = null;
          imaginary = null;
       }
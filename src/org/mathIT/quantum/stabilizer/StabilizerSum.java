@@ -0,0 +1,627 @@
+/*
+ * StabilizerSum.java - Class representing a register state as a sum of stabilizer states
+ *
+ * Copyright (C) 2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum.stabilizer;
+import static java.lang.Math.*;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+/**
+ *  This class represents the state of a quantum register after a Clifford+<i>T</i>
+ *  circuit as a weighted sum of stabilizer states,
+ *  <p style="text-align:center">
+ *    |<i>&#x03C8;</i>&gt; 
+ *     = <i>w</i><sub>1</sub> <i>U</i> |<i>x</i><sub>1</sub>&gt;
+ *     + ...
+ *     + <i>w</i><sub><i>r</i></sub> <i>U</i> |<i>x</i><sub><i>r</i></sub>&gt;,
+ *  </p>
+ *  where <i>U</i> is the Clifford operator composed of the Clifford gates applied
+ *  so far, |<i>x</i><sub>1</sub>&gt;, ..., |<i>x</i><sub><i>r</i></sub>&gt; are 
+ *  computational basis states, and <i>w</i><sub>1</sub>, ..., <i>w</i><sub><i>r</i></sub>
+ *  are complex weights. The number <i>r</i> of terms is the stabilizer rank of the
+ *  decomposition. 
+ *  <p>
+ *  All terms share the operator <i>U</i>, which is stored in the Heisenberg picture,
+ *  i.e., by the 2<i>n</i> Pauli operators <i>U</i><sup>&#x2020;</sup><i>X<sub>v</sub>U</i>
+ *  and <i>U</i><sup>&#x2020;</sup><i>Z<sub>v</sub>U</i> for <i>v</i> = 0, 1, ..., 
+ *  <i>n</i> - 1, each one a row of 2<i>n</i> bits and a phase factor <i>i<sup>k</sup></i>
+ *  as in a {@link TableauRegister}. In contrast to the latter, this representation 
+ *  keeps the global phases of the terms, which are required for their superposition.
+ *  A Clifford gate only updates two rows and therefore requires O(<i>n</i>) operations,
+ *  independently of the number of terms. 
+ *  </p>
+ *  <p>
+ *  A <i>T</i> gate on qubit <i>v</i> is decomposed into the Pauli operators
+ *  <i>T</i> = (1 + <i>e</i><sup><i>i&#x03C0;</i>/4</sup>)/2 <i>I</i>
+ *  + (1 - <i>e</i><sup><i>i&#x03C0;</i>/4</sup>)/2 <i>Z</i>, and since
+ *  <i>Z<sub>v</sub>U</i> = <i>U Q</i> with the Pauli operator
+ *  <i>Q</i> = <i>U</i><sup>&#x2020;</sup><i>Z<sub>v</sub>U</i>, it maps each term 
+ *  <i>U</i> |<i>x</i>&gt; to a sum of the two terms <i>U</i> |<i>x</i>&gt; and 
+ *  <i>U Q</i> |<i>x</i>&gt;, where <i>Q</i> |<i>x</i>&gt; is a basis state up to 
+ *  a phase. Terms of equal basis states are merged, so that the rank grows at most 
+ *  by the factor 2 per <i>T</i> gate, and not at all if <i>Q</i> is diagonal.
+ *  Likewise, a Toffoli gate is given by the Pauli operators 
+ *  <i>Z<sub>v</sub></i> of its qubits, and a measurement of qubit <i>v</i> projects 
+ *  the terms by (<i>I</i> &#x00B1; <i>Q</i>)/2, where the probabilities are given by 
+ *  the norms of the projected sums. Before, <i>Q</i> is transformed into a diagonal
+ *  operator by changing <i>U</i>, such that a measurement does not increase the 
+ *  number of terms.
+ *  Thus a circuit of <i>n</i> qubits containing <i>t</i> <i>T</i> gates is simulated 
+ *  with at most 2<sup><i>t</i></sup> terms of O(<i>n</i>) bits each, even if
+ *  2<sup><i>n</i></sup> amplitudes could not be stored.
+ *  The terms are transformed in parallel by the common fork-join pool, as soon as
+ *  their number reaches {@link #MIN_PARALLEL_TERMS}.
+ *  </p>
+ *  For details on stabilizer rank decompositions see the article
+ *  <p>
+ *  S. Bravyi, D. Gosset:
+ *  'Improved Classical Simulation of Quantum Circuits Dominated by Clifford Gates',
+ *  <i>Phys. Rev. Lett.</i> <b>116</b>, 250501 (2016)
+ *  (Preprint:
+ *  <a href="http://arxiv.org/abs/1601.07601" target="_top">arXiv:1601.07601</a>)
+ *  </p>
+ *  As in a {@link TableauRegister}, the qubits are numbered 0, 1, ..., <i>n</i> - 1.
+ *  @author  Andreas de Vries
+ *  @version 1.0
+ *  @see Register#stabilizerSum(int)
+ */
+final class StabilizerSum {
+   /** The minimum number of terms which are transformed in parallel.
+    *  Its actual value is {@value}.*/
+   static final int MIN_PARALLEL_TERMS = 256;
+   /** The squared absolute value below which the weight of a term is neglected.*/
+   private static final double EPSILON = Register.ACCURACY * Register.ACCURACY;
+   /** The operation code of a Hadamard gate.*/
+   private static final int H = 0;
+   /** The operation code of a Pauli-<i>X</i> gate.*/
+   private static final int X = 1;
+   /** The operation code of a Pauli-<i>Y</i> gate.*/
+   private static final int Y = 2;
+   /** The operation code of a Pauli-<i>Z</i> gate.*/
+   private static final int Z = 3;
+   /** The operation code of an <i>S</i> gate.*/
+   private static final int S = 4;
+   /** The operation code of an inverse <i>S</i> gate.*/
+   private static final int INVERSE_S = 5;
+   /** The operation code of a c-NOT gate.*/
+   private static final int CNOT = 6;
+   /** The operation code of a controlled-<i>Z</i> gate.*/
+   private static final int CZ = 7;
+   /** The number of qubits.*/
+   private final int size;
+   /** The number of <code>long</code> words of a row.*/
+   private final int words;
+   /** The <i>x</i> bits of the 2<i>n</i> rows, the <i>i</i>-th row starting at
+    *  index <i>i</i> &#x00B7; {@link #words}. The row <i>v</i> is the Pauli operator
+    *  <i>U</i><sup>&#x2020;</sup><i>X<sub>v</sub>U</i>, the row <i>n</i> + <i>v</i>
+    *  is <i>U</i><sup>&#x2020;</sup><i>Z<sub>v</sub>U</i>.
+    */
+   private final long[] x;
+   /** The <i>z</i> bits of the rows, stored as {@link #x}.*/
+   private final long[] z;
+   /** The exponents <i>k</i> of the phase factors <i>i<sup>k</sup></i> of the rows.*/
+   private final int[] phase;
+   /** The terms of the sum, mapping the basis states to their complex weights.*/
+   private HashMap<Basis, double[]> terms;
+   /** The Clifford gates applied so far, each one given by its operation code
+    *  and two qubits.*/
+   private int[] gates = new int[48];
+   /** The number of entries of {@link #gates}.*/
+   private int gateEntries = 0;
+   /** The Clifford operators <i>V</i> applied to the terms by the measurements, 
+    *  each one given by its operation code and two qubits.*/
+   private int[] transforms = new int[48];
+   /** The number of entries of {@link #transforms}.*/
+   private int transformEntries = 0;
+
+   /**
+    *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;,
+    *  i.e., with <i>U</i> = <i>I</i> and the single term |0&gt;.
+    *  @param size the number of qubits this register consists of
+    */
+   StabilizerSum(int size) {
+      this.size = size;
+      this.words = (size + 63) >>> 6;
+      x = new long[2 * size * words];
+      z = new long[2 * size * words];
+      phase = new int[2 * size];
+      for (int v = 0; v < size; v++) {
+         x[v * words + (v >>> 6)] = 1L << v;
+         z[(size + v) * words + (v >>> 6)] = 1L << v;
+      }
+      terms = new HashMap<>();
+      terms.put(new Basis(new long[words]), new double[] {1, 0});
+   }
+
+   /**
+    * Returns the number of terms of this sum, i.e., the stabilizer rank of its 
+    * decomposition.
+    * @return the number of terms
+    */
+   int getRank() {
+      return terms.size();
+   }
+
+   /** Applies the Hadamard gate to qubit v.
+    *  @param v the qubit
+    */
+   void hadamard(int v) {
+      swap(v, size + v);
+      record(H, v, v);
+   }
+
+   /** Applies the Pauli-<i>X</i> gate to qubit v.
+    *  @param v the qubit
+    */
+   void xPauli(int v) {
+      phase[size + v] ^= 2;
+      record(X, v, v);
+   }
+
+   /** Applies the Pauli-<i>Y</i> gate to qubit v.
+    *  @param v the qubit
+    */
+   void yPauli(int v) {
+      phase[v] ^= 2;
+      phase[size + v] ^= 2;
+      record(Y, v, v);
+   }
+
+   /** Applies the Pauli-<i>Z</i> gate to qubit v.
+    *  @param v the qubit
+    */
+   void zPauli(int v) {
+      phase[v] ^= 2;
+      record(Z, v, v);
+   }
+
+   /** Applies the <i>S</i> gate to qubit v, where <i>S</i><sup>&#x2020;</sup><i>XS</i> 
+    *  = -<i>Y</i> = -<i>iXZ</i>.
+    *  @param v the qubit
+    */
+   void sGate(int v) {
+      multiply(v, size + v, 3);
+      record(S, v, v);
+   }
+
+   /** Applies the inverse <i>S</i> gate to qubit v, where <i>SXS</i><sup>&#x2020;</sup>
+    *  = <i>Y</i> = <i>iXZ</i>.
+    *  @param v the qubit
+    */
+   void inverseSGate(int v) {
+      multiply(v, size + v, 1);
+      record(INVERSE_S, v, v);
+   }
+
+   /** Applies the &#x221A;X gate to qubit v, where &#x221A;X = <i>HSH</i>.
+    *  @param v the qubit
+    */
+   void sqrtX(int v) {
+      hadamard(v);
+      sGate(v);
+      hadamard(v);
+   }
+
+   /** Applies the inverse &#x221A;X gate to qubit v, where 
+    *  &#x221A;X<sup>-1</sup> = <i>HS</i><sup>&#x2020;</sup><i>H</i>.
+    *  @param v the qubit
+    */
+   void inverseSqrtX(int v) {
+      hadamard(v);
+      inverseSGate(v);
+      hadamard(v);
+   }
+
+   /** Applies the c-NOT gate with control qubit vc and target qubit vt, which maps 
+    *  <i>X</i><sub>vc</sub> to <i>X</i><sub>vc</sub><i>X</i><sub>vt</sub> and
+    *  <i>Z</i><sub>vt</sub> to <i>Z</i><sub>vc</sub><i>Z</i><sub>vt</sub>.
+    *  @param vc the control qubit
+    *  @param vt the target qubit
+    */
+   void cNOT(int vc, int vt) {
+      multiply(vc, vt, 0);
+      multiply(size + vt, size + vc, 0);
+      record(CNOT, vc, vt);
+   }
+
+   /** Applies the <i>T</i> gate to qubit v, doubling the terms at most.
+    *  @param v the qubit
+    */
+   void tGate(int v) {
+      double c = cos(PI/4) / 2, s = sin(PI/4) / 2;
+      terms = combine(terms, size + v, new double[] {.5 + c, s}, new double[] {.5 - c, -s});
+   }
+
+   /** Applies the inverse <i>T</i> gate to qubit v, doubling the terms at most.
+    *  @param v the qubit
+    */
+   void inverseTGate(int v) {
+      double c = cos(PI/4) / 2, s = sin(PI/4) / 2;
+      terms = combine(terms, size + v, new double[] {.5 + c, -s}, new double[] {.5 - c, s});
+   }
+
+   /** Applies the Toffoli gate with control qubits v1, v2 and target qubit vt.
+    *  It is given by <i>H</i><sub>vt</sub> <i>CCZ</i> <i>H</i><sub>vt</sub>, where
+    *  <i>CCZ</i> = <i>I</i> - 2 <i>P</i><sub>v1</sub><i>P</i><sub>v2</sub><i>P</i><sub>vt</sub>
+    *  with the projectors <i>P<sub>v</sub></i> = (<i>I</i> - <i>Z<sub>v</sub></i>)/2
+    *  onto |1&gt;, so that the terms are multiplied by 8 at most.
+    *  @param v1 the first control qubit
+    *  @param v2 the second control qubit
+    *  @param vt the target qubit
+    */
+   void toffoli(int v1, int v2, int vt) {
+      hadamard(vt);
+      double[] half = {.5, 0}, minusHalf = {-.5, 0};
+      HashMap<Basis, double[]> projected = combine(terms, size + v1, half, minusHalf);
+      projected = combine(projected, size + v2, half, minusHalf);
+      projected = combine(projected, size + vt, half, minusHalf);
+      for (Map.Entry<Basis, double[]> e : projected.entrySet()) {
+         double[] w = e.getValue();
+         terms.merge(e.getKey(), new double[] {-2*w[0], -2*w[1]}, StabilizerSum::add);
+      }
+      terms.values().removeIf(w -> w[0]*w[0] + w[1]*w[1] < EPSILON);
+      hadamard(vt);
+   }
+
+   /**
+    * Measures qubit v in the computational basis and returns the measured value.
+    * The measurement is the projection of the terms by (<i>I</i> &#x00B1; <i>Q</i>)/2,
+    * where <i>Q</i> = <i>U</i><sup>&#x2020;</sup><i>Z<sub>v</sub>U</i>. Unless <i>Q</i>
+    * is diagonal, the operator <i>U</i> is first replaced by <i>UV</i><sup>&#x2020;</sup>
+    * and the terms by <i>V</i> |<i>x</i>&gt;, with a Clifford operator <i>V</i> composed
+    * of c-NOT, controlled-<i>Z</i>, <i>S</i> and a single Hadamard gate such that
+    * <i>VQV</i><sup>&#x2020;</sup> = &#x00B1;<i>Z<sub>p</sub></i> for some qubit <i>p</i>.
+    * Then the projection selects the terms of one value of bit <i>p</i>, so that 
+    * the number of terms does not grow.
+    * @param v the measured qubit
+    * @param random the random number generator
+    * @return the measured value
+    */
+   int measure(int v, SplittableRandom random) {
+      final int row = size + v;
+      int p = -1;
+      for (int i = 0; i < words && p < 0; i++) {
+         if (x[row * words + i] != 0) {
+            p = (i << 6) + Long.numberOfTrailingZeros(x[row * words + i]);
+         }
+      }
+      if (p >= 0) { // reduce Q to i^k X_p by c-NOT and CZ gates, to +-Z_p by S and H
+         for (int j = 0; j < size; j++) {
+            if (j != p && bit(x, row, j)) {
+               transform(CNOT, p, j);
+            }
+         }
+         for (int j = 0; j < size; j++) {
+            if (j != p && bit(z, row, j)) {
+               transform(CZ, p, j);
+            }
+         }
+         if (bit(z, row, p)) {
+            transform(S, p, p);
+         }
+         transform(H, p, p);
+      }
+      
+      // Q is diagonal, Q|x> = i^k (-1)^{z.x} |x> with k = 0 or 2:
+      HashMap<Basis, double[]> projected = project(row, 0);
+      double prob = norm(projected);
+      int value = 0;
+      if (random.nextDouble() >= prob) {
+         value = 1;
+         projected = project(row, 1);
+         prob = norm(projected);
+      }
+      double length = sqrt(prob);
+      for (double[] w : projected.values()) {
+         w[0] /= length;
+         w[1] /= length;
+      }
+      terms = projected;
+      return value;
+   }
+
+   /** Returns the register in state vector representation which is represented
+    *  by this sum. It is obtained by applying the inverses of the Clifford operators
+    *  <i>V</i> of the measurements and the recorded Clifford gates to the
+    *  superposition of the basis states of the terms.
+    *  @return the register state represented by this sum
+    */
+   Register getRegister() {
+      Register register = new Register(size, false);
+      double[] real = register.getReal(), imaginary = register.getImaginary();
+      real[0] = 0;
+      for (Map.Entry<Basis, double[]> e : terms.entrySet()) {
+         int index = (int) e.getKey().bits[0];
+         real[index] = e.getValue()[0];
+         imaginary[index] = e.getValue()[1];
+      }
+      for (int i = transformEntries - 3; i >= 0; i -= 3) {
+         int code = transforms[i];
+         apply(register, code == S ? INVERSE_S : code, transforms[i + 1] + 1, transforms[i + 2] + 1);
+      }
+      for (int i = 0; i < gateEntries; i += 3) {
+         apply(register, gates[i], gates[i + 1] + 1, gates[i + 2] + 1);
+      }
+      return register;
+   }
+
+   /** Applies the gate of the specified operation code to the qubits j and k 
+    *  of the specified register.*/
+   private static void apply(Register register, int code, int j, int k) {
+      switch (code) {
+         case H: register.hadamard(j); break;
+         case X: register.xPauli(j); break;
+         case Y: register.yPauli(j); break;
+         case Z: register.zPauli(j); break;
+         case S: register.sGate(j); break;
+         case INVERSE_S: register.inverseSGate(j); break;
+         case CNOT: register.cNOT(j, k); break;
+         default: // CZ = H_k CNOT H_k
+            register.hadamard(k);
+            register.cNOT(j, k);
+            register.hadamard(k);
+      }
+   }
+
+   /** Applies the Clifford gate V of the specified operation code to the terms and
+    *  replaces U by UV<sup>&#x2020;</sup>, such that the state remains unchanged. 
+    *  The rows are conjugated by V, which maps the qubits a and b by
+    *  <ul>
+    *    <li>H: X &#x2192; Z, Z &#x2192; X;</li>
+    *    <li>S: X &#x2192; iXZ, Z &#x2192; Z;</li>
+    *    <li>c-NOT: X<sub>a</sub> &#x2192; X<sub>a</sub>X<sub>b</sub>, Z<sub>b</sub> &#x2192; Z<sub>a</sub>Z<sub>b</sub>;</li>
+    *    <li>CZ: X<sub>a</sub> &#x2192; X<sub>a</sub>Z<sub>b</sub>, X<sub>b</sub> &#x2192; Z<sub>a</sub>X<sub>b</sub>.</li>
+    *  </ul>
+    */
+   private void transform(int code, int a, int b) {
+      for (int r = 0; r < 2 * size; r++) {
+         boolean xa = bit(x, r, a), za = bit(z, r, a), xb = bit(x, r, b), zb = bit(z, r, b);
+         switch (code) {
+            case H:
+               if (xa && za) {
+                  phase[r] ^= 2;
+               }
+               set(x, r, a, za);
+               set(z, r, a, xa);
+               break;
+            case S:
+               if (xa) {
+                  phase[r] = (phase[r] + 1) & 3;
+                  set(z, r, a, !za);
+               }
+               break;
+            case CNOT:
+               set(x, r, b, xb ^ xa);
+               set(z, r, a, za ^ zb);
+               break;
+            default: // CZ
+               if (xa && xb) {
+                  phase[r] ^= 2;
+               }
+               set(z, r, b, zb ^ xa);
+               set(z, r, a, za ^ xb);
+         }
+      }
+      Stream<Map.Entry<Basis, double[]>> stream = terms.entrySet().stream();
+      if (terms.size() >= MIN_PARALLEL_TERMS) {
+         stream = stream.parallel();
+      }
+      final int w = a >>> 6;
+      final long ma = 1L << a, mb = 1L << b;
+      terms = stream.flatMap(e -> {
+         long[] bits = e.getKey().bits;
+         double[] c = e.getValue();
+         boolean ba = (bits[w] & ma) != 0, bb = (bits[b >>> 6] & mb) != 0;
+         switch (code) {
+            case H:
+               long[] y0 = bits.clone(), y1 = bits.clone();
+               y0[w] &= ~ma;
+               y1[w] |= ma;
+               double f = (ba ? -1 : 1) / sqrt(2);
+               return Stream.of(
+                  new SimpleEntry<>(new Basis(y0), new double[] {c[0] / sqrt(2), c[1] / sqrt(2)}),
+                  new SimpleEntry<>(new Basis(y1), new double[] {f * c[0], f * c[1]})
+               );
+            case S:
+               return Stream.of(new SimpleEntry<>(e.getKey(), ba ? power(1, c) : c));
+            case CNOT:
+               if (!ba) {
+                  return Stream.of(e);
+               }
+               long[] y = bits.clone();
+               y[b >>> 6] ^= mb;
+               return Stream.of(new SimpleEntry<>(new Basis(y), c));
+            default: // CZ
+               return Stream.of(new SimpleEntry<>(e.getKey(), ba && bb ? power(2, c) : c));
+         }
+      }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, StabilizerSum::add, HashMap::new));
+      if (code == H) {
+         terms.values().removeIf(c -> c[0]*c[0] + c[1]*c[1] < EPSILON);
+      }
+      if (transformEntries + 3 > transforms.length) {
+         transforms = Arrays.copyOf(transforms, 2 * transforms.length);
+      }
+      transforms[transformEntries++] = code;
+      transforms[transformEntries++] = a;
+      transforms[transformEntries++] = b;
+   }
+
+   /** Returns the terms of the specified value of the diagonal Pauli operator
+    *  of the specified row, where the value 0 corresponds to the eigenvalue 1
+    *  and the value 1 to the eigenvalue -1. The weights are copied.*/
+   private HashMap<Basis, double[]> project(int row, int value) {
+      Stream<Map.Entry<Basis, double[]>> stream = terms.entrySet().stream();
+      if (terms.size() >= MIN_PARALLEL_TERMS) {
+         stream = stream.parallel();
+      }
+      return stream.filter(e -> {
+         int k = phase[row];
+         long[] b = e.getKey().bits;
+         for (int i = 0; i < words; i++) {
+            k += 2 * Long.bitCount(z[row * words + i] & b[i]);
+         }
+         return ((k >>> 1) & 1) == value;
+      }).collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().clone(), StabilizerSum::add, HashMap::new));
+   }
+
+   /** Returns the sum &#x03B1; &#x03C6; + &#x03B2; <i>Q</i> &#x03C6; of the specified
+    *  terms &#x03C6;, where <i>Q</i> is the Pauli operator of the specified row.
+    *  Terms of equal basis states are merged, and vanishing terms are removed.*/
+   private HashMap<Basis, double[]> combine(HashMap<Basis, double[]> terms, int row, double[] alpha, double[] beta) {
+      Stream<Map.Entry<Basis, double[]>> stream = terms.entrySet().stream();
+      if (terms.size() >= MIN_PARALLEL_TERMS) {
+         stream = stream.parallel();
+      }
+      HashMap<Basis, double[]> result = stream.flatMap(e -> {
+         long[] b = e.getKey().bits, y = new long[words];
+         int k = phase[row];
+         for (int i = 0; i < words; i++) {
+            y[i] = b[i] ^ x[row * words + i];
+            k += 2 * Long.bitCount(z[row * words + i] & b[i]);
+         }
+         double[] w = e.getValue(), c = power(k, beta);
+         return Stream.of(
+            new SimpleEntry<>(e.getKey(), multiply(alpha, w)),
+            new SimpleEntry<>(new Basis(y), multiply(c, w))
+         );
+      }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, StabilizerSum::add, HashMap::new));
+      result.values().removeIf(w -> w[0]*w[0] + w[1]*w[1] < EPSILON);
+      return result;
+   }
+
+   /** Returns the squared norm of the specified terms.*/
+   private static double norm(HashMap<Basis, double[]> terms) {
+      Stream<double[]> stream = terms.values().stream();
+      if (terms.size() >= MIN_PARALLEL_TERMS) {
+         stream = stream.parallel();
+      }
+      return stream.mapToDouble(w -> w[0]*w[0] + w[1]*w[1]).sum();
+   }
+
+   /** Sets row a to the product <i>i<sup>k</sup></i> &#x00B7; row a &#x00B7; row b,
+    *  where (<i>X<sup>a</sup>Z<sup>b</sup></i>)(<i>X<sup>c</sup>Z<sup>d</sup></i>)
+    *  = (-1)<sup><i>b&#x00B7;c</i></sup> <i>X</i><sup><i>a</i>+<i>c</i></sup><i>Z</i><sup><i>b</i>+<i>d</i></sup>.*/
+   private void multiply(int a, int b, int k) {
+      int sign = 0;
+      for (int i = 0; i < words; i++) {
+         sign += Long.bitCount(z[a * words + i] & x[b * words + i]);
+         x[a * words + i] ^= x[b * words + i];
+         z[a * words + i] ^= z[b * words + i];
+      }
+      phase[a] = (phase[a] + phase[b] + k + 2 * sign) & 3;
+   }
+
+   /** Exchanges the rows a and b.*/
+   private void swap(int a, int b) {
+      for (int i = 0; i < words; i++) {
+         long tmp = x[a * words + i];
+         x[a * words + i] = x[b * words + i];
+         x[b * words + i] = tmp;
+         tmp = z[a * words + i];
+         z[a * words + i] = z[b * words + i];
+         z[b * words + i] = tmp;
+      }
+      int tmp = phase[a];
+      phase[a] = phase[b];
+      phase[b] = tmp;
+   }
+
+   /** Appends the specified gate to the recorded Clifford gates.*/
+   private void record(int code, int v1, int v2) {
+      if (gateEntries + 3 > gates.length) {
+         gates = Arrays.copyOf(gates, 2 * gates.length);
+      }
+      gates[gateEntries++] = code;
+      gates[gateEntries++] = v1;
+      gates[gateEntries++] = v2;
+   }
+
+   /** Returns the bit of the specified qubit in the specified row.*/
+   private boolean bit(long[] bits, int row, int qubit) {
+      return (bits[row * words + (qubit >>> 6)] & (1L << qubit)) != 0;
+   }
+
+   /** Sets the bit of the specified qubit in the specified row.*/
+   private void set(long[] bits, int row, int qubit, boolean value) {
+      if (value) {
+         bits[row * words + (qubit >>> 6)] |= 1L << qubit;
+      } else {
+         bits[row * words + (qubit >>> 6)] &= ~(1L << qubit);
+      }
+   }
+
+   /** Returns the product <i>i<sup>k</sup></i> <i>c</i> of the complex number c.*/
+   private static double[] power(int k, double[] c) {
+      switch (k & 3) {
+         case 0:  return c;
+         case 1:  return new double[] {-c[1], c[0]};
+         case 2:  return new double[] {-c[0], -c[1]};
+         default: return new double[] {c[1], -c[0]};
+      }
+   }
+
+   /** Returns the product of the complex numbers a and b.*/
+   private static double[] multiply(double[] a, double[] b) {
+      return new double[] {a[0]*b[0] - a[1]*b[1], a[0]*b[1] + a[1]*b[0]};
+   }
+
+   /** Returns the sum of the complex numbers a and b.*/
+   private static double[] add(double[] a, double[] b) {
+      return new double[] {a[0] + b[0], a[1] + b[1]};
+   }
+
+   /** A computational basis state |<i>x</i>&gt;, given by the bits of <i>x</i>.*/
+   private static final class Basis {
+      /** The bits of the basis state, packed into <code>long</code> words.*/
+      final long[] bits;
+      /** The hash code of the bits.*/
+      private final int hash;
+
+      /** Creates the basis state of the specified bits.*/
+      Basis(long[] bits) {
+         this.bits = bits;
+         this.hash = Arrays.hashCode(bits);
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof Basis && Arrays.equals(bits, ((Basis) o).bits);
+      }
+
+      @Override
+      public int hashCode() {
+         return hash;
+      }
+   }
+}
@@ -0,0 +1,446 @@
+/*
+ * TableauRegister.java - Class representing a stabilizer register by its tableau
+ *
+ * Copyright (C) 2012-2026 Andreas de Vries
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses
+ * or write to the Free Software Foundation,Inc., 51 Franklin Street,
+ * Fifth Floor, Boston, MA 02110-1301  USA
+ *
+ * As a special exception, the copyright holders of this program give you permission
+ * to link this program with independent modules to produce an executable,
+ * regardless of the license terms of these independent modules, and to copy and
+ * distribute the resulting executable under terms of your choice, provided that
+ * you also meet, for each linked independent module, the terms and conditions of
+ * the license of that module. An independent module is a module which is not derived
+ * from or based on this program. If you modify this program, you may extend
+ * this exception to your version of the program, but you are not obligated to do so.
+ * If you do not wish to do so, delete this exception statement from your version.
+ */
+package org.mathIT.quantum.stabilizer;
+import static java.lang.Math.*;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+/**
+ *  This class represents the states of a quantum register consisting of
+ *  stabilizer states by their stabilizer tableau.
+ *  A stabilizer state of <i>n</i> qubits is uniquely determined by <i>n</i>
+ *  commuting Pauli operators, its stabilizer generators, of which it is the common
+ *  eigenstate with eigenvalue +1. The tableau stores these generators together
+ *  with <i>n</i> further Pauli operators, the destabilizers, each Pauli operator
+ *  being a row of 2<i>n</i> bits <i>x</i><sub>0</sub>, ..., <i>x</i><sub><i>n</i>-1</sub>,
+ *  <i>z</i><sub>0</sub>, ..., <i>z</i><sub><i>n</i>-1</sub> and a sign bit <i>r</i>,
+ *  representing the operator
+ *  (-1)<sup><i>r</i></sup> <i>P</i><sub>0</sub> &#x2297; ... &#x2297; <i>P</i><sub><i>n</i>-1</sub>
+ *  with <i>P<sub>j</sub></i> = <i>I</i>, <i>X</i>, <i>Z</i>, <i>Y</i> for
+ *  (<i>x<sub>j</sub></i>, <i>z<sub>j</sub></i>) = (0,0), (1,0), (0,1), (1,1).
+ *  <p>
+ *  The bits of a row are packed into <code>long</code> words, such that a gate
+ *  requires O(<i>n</i>) and a measurement O(<i>n</i><sup>2</sup>) elementary
+ *  operations, where the latter are executed on 64 bits at once.
+ *  Thus registers of thousands of qubits can be simulated.
+ *  In contrast to a {@link GraphRegister}, whose gates are local operations on
+ *  a graph but whose measurements and two-qubit gates depend on the vertex
+ *  degrees, the running times of this class do not depend on the entanglement.
+ *  </p>
+ *  <p>
+ *  For a detailed description of the tableau algorithms see the article
+ *  </p>
+ *  <p>
+ *  S. Aaronson, D. Gottesman:
+ *  'Improved Simulation of Stabilizer Circuits',
+ *  <i>Phys. Rev. A</i> <b>70</b>, 052328 (2004)
+ *  DOI:
+ *  <a href="http://dx.doi.org/10%2E1103/PhysRevA%2E70%2E052328" target="_top">
+ *  10.1103/PhysRevA.70.052328</a>
+ *  (Preprint:
+ *  <a href="http://arxiv.org/abs/quant-ph/0406196" target="_top">quant-ph/0406196</a>)
+ *  </p>
+ *  As in a {@link GraphRegister}, the qubits are numbered 0, 1, ..., <i>n</i> - 1,
+ *  and the random results of the measurements are drawn from a {@link SplittableRandom}
+ *  generator of each register, see {@link #setSeed(long)}.
+ *  @author  Andreas de Vries
+ *  @version 1.1
+ */
+public class TableauRegister {
+   /** The number of qubits.*/
+   private final int size;
+   /** The number of <code>long</code> words of a row.*/
+   private final int words;
+   /** The <i>x</i> bits of the 2<i>n</i> + 1 rows, the <i>i</i>-th row starting at
+    *  index <i>i</i> &#x00B7; {@link #words}. The rows 0, ..., <i>n</i> - 1 are the
+    *  destabilizers, the rows <i>n</i>, ..., 2<i>n</i> - 1 the stabilizer generators,
+    *  and row 2<i>n</i> is a scratch row for deterministic measurements.
+    */
+   private final long[] x;
+   /** The <i>z</i> bits of the rows, stored as {@link #x}.*/
+   private final long[] z;
+   /** The sign bits of the rows.*/
+   private final boolean[] r;
+   /** The random number generator of the measurements.*/
+   SplittableRandom random;
+
+   /**
+    *  Creates a register of <i>n</i> qubits, initialized to the state |0&gt;.
+    *  Its destabilizers are <i>X</i><sub>0</sub>, ..., <i>X</i><sub><i>n</i>-1</sub>,
+    *  its stabilizer generators <i>Z</i><sub>0</sub>, ..., <i>Z</i><sub><i>n</i>-1</sub>.
+    *  @param size the number of qubits this register consists of
+    */
+   public TableauRegister(int size) {
+      this.size = size;
+      this.words = (size + 63) >>> 6;
+      x = new long[(2*size + 1) * words];
+      z = new long[(2*size + 1) * words];
+      r = new boolean[2*size + 1];
+      for (int i = 0; i < size; i++) {
+         x[i * words + (i >>> 6)] = 1L << i;
+         z[(size + i) * words + (i >>> 6)] = 1L << i;
+      }
+      random = new SplittableRandom();
+   }
+
+   /** Creates a copy of the specified register.*/
+   private TableauRegister(TableauRegister register) {
+      size = register.size;
+      words = register.words;
+      x = register.x.clone();
+      z = register.z.clone();
+      r = register.r.clone();
+      random = register.random;
+   }
+
+   /**
+    * Returns the size of this quantum register. I.e., the number of its qubits.
+    * @return the size of this quantum register
+    */
+   public int getSize() {
+      return size;
+   }
+
+   /**
+    * Sets the random number generator from which the measurements of this register
+    * draw their random results. By default, each register has its own generator.
+    * @param random the random number generator
+    * @throws IllegalArgumentException if <code>random</code> is null
+    * @see #setSeed(long)
+    */
+   public void setRandom(SplittableRandom random) {
+      if (random == null) {
+         throw new IllegalArgumentException("No random number generator specified");
+      }
+      this.random = random;
+   }
+
+   /**
+    * Sets the seed of the random number generator of the measurements of this 
+    * register, such that the results of its measurements are reproducible.
+    * @param seed the seed of the random number generator
+    * @see #setRandom(SplittableRandom)
+    */
+   public void setSeed(long seed) {
+      random = new SplittableRandom(seed);
+   }
+
+   /** Apply a Hadamard gate on qubit v.
+    *  @param v the qubit on which the gate is to be applied
+    *  (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    */
+   public void hadamard(int v) {
+      final int w = v >>> 6;
+      final long m = 1L << v;
+      for (int i = 0, k = w; i < 2*size; i++, k += words) {
+         long xi = x[k] & m, zi = z[k] & m;
+         r[i] ^= (xi & zi) != 0;
+         x[k] ^= xi ^ zi;
+         z[k] ^= xi ^ zi;
+      }
+   }
+
+   /** Applies an  <i>S</i> gate, or "phase gate", on qubit v.
+    *  @param v the qubit on which the gate is to be applied
+    *  (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    */
+   public void sGate(int v) {
+      final int w = v >>> 6;
+      final long m = 1L << v;
+      for (int i = 0, k = w; i < 2*size; i++, k += words) {
+         long xi = x[k] & m;
+         r[i] ^= (xi & z[k]) != 0;
+         z[k] ^= xi;
+      }
+   }
+
+   /** Applies an inverse <i>S</i> gate on qubit v.
+    *  @param v the qubit on which the gate is to be applied
+    *  (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    *  @see #sGate(int)
+    */
+   public void inverseSGate(int v) {
+      final int w = v >>> 6;
+      final long m = 1L << v;
+      for (int i = 0, k = w; i < 2*size; i++, k += words) {
+         long xi = x[k] & m;
+         r[i] ^= (xi & ~z[k]) != 0;
+         z[k] ^= xi;
+      }
+   }
+
+   /** Applies a Pauli-<i>X</i>, or "bit flip", on qubit v.
+    *  @param v the qubit on which the gate is to be applied
+    *  (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    */
+   public void xPauli(int v) {
+      final int w = v >>> 6;
+      final long m = 1L << v;
+      for (int i = 0, k = w; i < 2*size; i++, k += words) {
+         r[i] ^= (z[k] & m) != 0;
+      }
+   }
+
+   /** Applies a Pauli-<i>Y</i> on qubit v.
+    *  @param v the qubit on which the gate is to be applied
+    *  (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    */
+   public void yPauli(int v) {
+      final int w = v >>> 6;
+      final long m = 1L << v;
+      for (int i = 0, k = w; i < 2*size; i++, k += words) {
+         r[i] ^= ((x[k] ^ z[k]) & m) != 0;
+      }
+   }
+
+   /** Applies a Pauli-<i>Z</i>, or "phase flip", on qubit v.
+    *  @param v the qubit on which the gate is to be applied
+    *  (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    */
+   public void zPauli(int v) {
+      final int w = v >>> 6;
+      final long m = 1L << v;
+      for (int i = 0, k = w; i < 2*size; i++, k += words) {
+         r[i] ^= (x[k] & m) != 0;
+      }
+   }
+
+   /**
+    * Performs a controlled NOT gate between the qubits vc (control) and vt (target).
+    * @param vc the control qubit
+    * (in an <i>n</i> qubit register, vc = 0, 1, ..., <i>n</i> - 1)
+    * @param vt the target qubit
+    * (in an <i>n</i> qubit register, vt = 0, 1, ..., <i>n</i> - 1)
+    * @throws IllegalArgumentException if vc = vt
+    */
+   public void cNOT(int vc, int vt) {
+      if (vc == vt) {
+         throw new IllegalArgumentException("c-NOT with identical qubits "+vc);
+      }
+      final int wc = vc >>> 6, wt = vt >>> 6;
+      final int sc = vc & 63, st = vt & 63;
+      for (int i = 0, k = 0; i < 2*size; i++, k += words) {
+         long xc = (x[k + wc] >>> sc) & 1L, zc = (z[k + wc] >>> sc) & 1L;
+         long xt = (x[k + wt] >>> st) & 1L, zt = (z[k + wt] >>> st) & 1L;
+         r[i] ^= (xc & zt & (xt ^ zc ^ 1L)) != 0;
+         x[k + wt] ^= xc << st;
+         z[k + wc] ^= zt << sc;
+      }
+   }
+
+   /**
+    * Performs a conditional phase gate c-<i>Z</i> between the two qubits.
+    * @param v1 the first qubit
+    * (in an <i>n</i> qubit register, v1 = 0, 1, ..., <i>n</i> - 1)
+    * @param v2 the second qubit
+    * (in an <i>n</i> qubit register, v2 = 0, 1, ..., <i>n</i> - 1)
+    */
+   public void cPhase(int v1, int v2) {
+      hadamard(v2);
+      cNOT(v1, v2);
+      hadamard(v2);
+   }
+
+   /**
+    * Measures qubit v in the computational basis and returns the measured value.
+    * @param v the measured qubit
+    * (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    * @return the measured value
+    */
+   public int measure(int v) {
+      return measure(v, -1);
+   }
+
+   /**
+    * Measures qubit v in the computational basis and returns the measured value.
+    * If you want to force the result to be a certain value, pass 0 or 1 to 'force'.
+    * This only works if the result is not determined. If it is, 'force' is ignored.
+    * @param v the measured qubit
+    * (in an <i>n</i> qubit register, v = 0, 1, ..., <i>n</i> - 1)
+    * @param force -1 for a random result, or the forced result 0 or 1
+    * @return the measured value
+    */
+   int measure(int v, int force) {
+      if (force < -1 || force > 1) {
+         throw new IllegalArgumentException("Parameter force is not -1, 0, or 1: "+force);
+      }
+      final int w = v >>> 6;
+      final long m = 1L << v;
+
+      // Search for a stabilizer generator anticommuting with Z_v:
+      int p = size;
+      while (p < 2*size && (x[p * words + w] & m) == 0) {
+         p++;
+      }
+
+      if (p < 2*size) { // random result
+         for (int i = 0; i < 2*size; i++) {
+            if (i != p && (x[i * words + w] & m) != 0) {
+               rowsum(i, p);
+            }
+         }
+         // the destabilizer of p becomes the former generator p, which becomes +/- Z_v:
+         System.arraycopy(x, p * words, x, (p - size) * words, words);
+         System.arraycopy(z, p * words, z, (p - size) * words, words);
+         r[p - size] = r[p];
+         Arrays.fill(x, p * words, (p+1) * words, 0L);
+         Arrays.fill(z, p * words, (p+1) * words, 0L);
+         z[p * words + w] = m;
+         int result = force == -1 ? (random.nextDouble() < .5 ? 0 : 1) : force;
+         r[p] = result == 1;
+         return result;
+      }
+
+      // deterministic result, computed in the scratch row:
+      final int h = 2*size;
+      Arrays.fill(x, h * words, (h+1) * words, 0L);
+      Arrays.fill(z, h * words, (h+1) * words, 0L);
+      r[h] = false;
+      for (int i = 0; i < size; i++) {
+         if ((x[i * words + w] & m) != 0) {
+            rowsum(h, i + size);
+         }
+      }
+      return r[h] ? 1 : 0;
+   }
+
+   /** Multiplies the Pauli operator of row <i>h</i> from the left by the
+    *  operator of row <i>i</i>, keeping track of the sign.
+    *  The phase exponent of the product is determined by counting, for each qubit,
+    *  the factors +i and -i arising from the product of the two single-qubit
+    *  Pauli operators, 64 qubits at once.
+    */
+   private void rowsum(int h, int i) {
+      final int kh = h * words, ki = i * words;
+      int phase = (r[h] ? 2 : 0) + (r[i] ? 2 : 0);
+      for (int k = 0; k < words; k++) {
+         long x1 = x[ki + k], z1 = z[ki + k], x2 = x[kh + k], z2 = z[kh + k];
+         long plus  = (x1 & z1 & z2 & ~x2) | (x1 & ~z1 & x2 & z2) | (~x1 & z1 & x2 & ~z2);
+         long minus = (x1 & z1 & x2 & ~z2) | (x1 & ~z1 & ~x2 & z2) | (~x1 & z1 & x2 & z2);
+         phase += Long.bitCount(plus) - Long.bitCount(minus);
+         x[kh + k] = x2 ^ x1;
+         z[kh + k] = z2 ^ z1;
+      }
+      r[h] = (phase & 3) == 2;
+   }
+
+   /** Returns the quantum register (in state vecor representation)
+    * represented by this tableau register.
+    * It is the projection of a computational basis state |<i>b</i>&gt;
+    * with non-vanishing amplitude onto the common eigenspace of the stabilizer generators,
+    * where <i>b</i> is determined by measuring a copy of this register.
+    * @return the register state represented by this tableau register state
+    */
+   public Register getRegister() {
+      final int q = 1 << size;
+      TableauRegister copy = new TableauRegister(this);
+      int b = 0;
+      for (int v = 0; v < size; v++) {
+         b |= copy.measure(v, 0) << v;
+      }
+      double[] real = new double[q];
+      double[] imag = new double[q];
+      real[b] = 1;
+
+      // apply the projectors (I + g)/2 of all stabilizer generators g:
+      double[] realTmp = new double[q];
+      double[] imagTmp = new double[q];
+      for (int i = size; i < 2*size; i++) {
+         int xi = 0, zi = 0;
+         for (int v = 0; v < size; v++) {
+            xi |= (int) ((x[i * words + (v >>> 6)] >>> v) & 1L) << v;
+            zi |= (int) ((z[i * words + (v >>> 6)] >>> v) & 1L) << v;
+         }
+         // g = (-1)^r i^|x & z| X^x Z^z, since Y = iXZ:
+         int phase = (r[i] ? 2 : 0) + Integer.bitCount(xi & zi);
+         for (int k = 0; k < q; k++) {
+            int e = (phase + 2 * Integer.bitCount(zi & k)) & 3;
+            double re = real[k], im = imag[k];
+            // multiply by i^e:
+            double gr = e == 0 ? re : e == 1 ? -im : e == 2 ? -re : im;
+            double gi = e == 0 ? im : e == 1 ? re : e == 2 ? -im : -re;
+            realTmp[k ^ xi] = gr;
+            imagTmp[k ^ xi] = gi;
+         }
+         for (int k = 0; k < q; k++) {
+            real[k] = (real[k] + realTmp[k]) / 2;
+            imag[k] = (imag[k] + imagTmp[k]) / 2;
+         }
+      }
+
+      double norm = 0;
+      for (int k = 0; k < q; k++) {
+         norm += real[k] * real[k] + imag[k] * imag[k];
+      }
+      norm = sqrt(norm);
+      for (int k = 0; k < q; k++) {
+         real[k] /= norm;
+         imag[k] /= norm;
+         if (abs(real[k]) < Register.ACCURACY) {
+            real[k] = 0;
+         }
+         if (abs(imag[k]) < Register.ACCURACY) {
+            imag[k] = 0;
+         }
+      }
+
+      Register register = new Register(size, false);
+      register.setReal(real);
+      register.setImaginary(imag);
+      return register;
+   }
+
+   /** Returns the stabilizer generator of the specified row as a string
+    *  such as "+XZ_Y", where "_" denotes the identity.
+    */
+   private String row(int i) {
+      StringBuilder s = new StringBuilder(r[i] ? "-" : "+");
+      for (int v = 0; v < size; v++) {
+         boolean xv = ((x[i * words + (v >>> 6)] >>> v) & 1L) != 0;
+         boolean zv = ((z[i * words + (v >>> 6)] >>> v) & 1L) != 0;
+         s.append(xv ? (zv ? 'Y' : 'X') : (zv ? 'Z' : '_'));
+      }
+      return s.toString();
+   }
+
+   /** Returns a string representation of this register.
+    *  It prints the stabilizer generators, one per line, where the <i>j</i>-th
+    *  character after the sign denotes the Pauli operator acting on qubit <i>j</i>.
+    *  @return a string representation of this register
+    */
+   @Override
+   public String toString() {
+      String output = "";
+      for (int i = size; i < 2*size; i++) {
+         output += row(i) + "\n";
+      }
+      return output;
+   }
+}
@@ -1,7 +1,7 @@
 /*
  * FunctionParser.java - Parser and evaluation class for a string representing a function
  *
- * Copyright (C) 2004-2012 Andreas de Vries
+ * Copyright (C) 2004-2026 Andreas de Vries
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -32,6 +32,7 @@ package org.mathIT.util;
 import static java.lang.Math.*;
 import java.util.ArrayList;
 import java.util.Stack;
+import java.util.function.IntBinaryOperator;
 import static org.mathIT.numbers.Numbers.*;
 import org.mathIT.numbers.Riemann;
 /**
@@ -60,8 +61,13 @@ import org.mathIT.numbers.Riemann;
  *  </pre>
  *  Fractional numbers (i.e., <code>double</code> values) have to be 
  *  inputted with a decimal point (not a comma).
+ *  <p>
+ *  For repeated evaluations, as for the oracle of a quantum register,
+ *  the function <i>f</i>(<i>x</i>, <i>z</i>) can be compiled once by 
+ *  {@link #compileInt()} into an evaluator working on primitive values.
+ *  </p>
  *  @author  Andreas de Vries
- *  @version 1.3
+ *  @version 1.4
  */
 public class FunctionParser implements java.io.Serializable {
    private static final long serialVersionUID = 2084972087; // = "FunctionParser".hashCode()
@@ -130,9 +136,56 @@ public class FunctionParser implements java.io.Serializable {
    };
    /** Maximum number of letters an operator can have. */
    public static int maxOpLength = 6;
+   /** The operators understood by the evaluation, grouped by equal meaning;
+    *  the index of a group is the operation code of its operators. */
+   private static final String[][] OPCODES = {
+      {"+"},
+      {"-"},
+      {"*"},
+      {"/"},
+      {"%"},
+      {"mod"},
+      {"^", "pow"},
+      {"sin"},
+      {"cos"},
+      {"tan"},
+      {"cot"},
+      {"sec"},
+      {"csc"},
+      {"asin"},
+      {"acos"},
+      {"atan"},
+      {"acot"},
+      {"sinh"},
+      {"cosh"},
+      {"tanh"},
+      {"coth"},
+      {"arsinh"},
+      {"arcosh"},
+      {"artanh"},
+      {"arcoth"},
+      {"exp"},
+      {"ln"},
+      {"log"},
+      {"ld"},
+      {"w", "sqrt"},
+      {"Z"},
+      {"and", "&&", "&"},
+      {"or", "|"},
+      {"xor"},
+      {"if"},
+      {"modPow"},
+      {"<"},
+      {"<="},
+      {">"},
+      {">="},
+      {"==", "="}
+   };
    
    /** An array list containing a list of functions in postfix notation. */
    private ArrayList<String[]> functions;
+   /** The compiled 0-th function, or null if it has not been compiled yet. */
+   private transient IntBinaryOperator compiled;
       
    /** Creates a function parser from a single function in usual notation,
     *  infix for binary operators and prefix for functions and ternary operators.
@@ -734,6 +787,26 @@ public class FunctionParser implements java.io.Serializable {
       return evaluatePostFix( functions.get(0), variable, value );
    }
 
+   /** Compiles the 0-th function <i>f</i>(<i>x</i>, <i>z</i>) of this object into
+    *  an evaluator of integer arguments, returning the same values as
+    *  <code>(int) evaluateInt(x, z)</code>. The postfix notation is translated only
+    *  once into operation codes and numerical constants, such that an evaluation
+    *  requires neither string replacements nor number parsing. In contrast to
+    *  {@link #evaluateInt(int, int)}, the variables <i>x</i> and <i>z</i> are not
+    *  substituted inside the names of operators such as "exp" or "xor".
+    *  The evaluator is compiled at the first call and can be used by several threads
+    *  simultaneously.
+    *  @return the compiled function <i>f</i>(<i>x</i>, <i>z</i>)
+    *  @throws IllegalArgumentException if an operator of the function lacks operands
+    */
+   public IntBinaryOperator compileInt() {
+      if ( compiled == null ) {
+         String[] function = ( functions == null || functions.isEmpty() ) ? null : functions.get(0);
+         compiled = new CompiledFunction( function );
+      }
+      return compiled;
+   }
+
    /** Evaluates the function (in postfix notation) at the value <i>x</i>.
     * @param function the function in postfix notation, each array element being a postfix component
     * @param x the double value to be inserted in the function
@@ -804,128 +877,195 @@ public class FunctionParser implements java.io.Serializable {
    * </p>
    */
   private static String evaluate(double[] x, String op) {
+     return Double.toString( operate( opcode(op), x ) );
+  }
+  
+  /** Returns the index of the group of {@link #OPCODES} containing the operator,
+   *  or -1 if it is unknown.
+   */
+  private static int opcode(String op) {
+     for ( int i = 0; i < OPCODES.length; i++ ) {
+        for ( String name : OPCODES[i] ) {
+           if ( op.equals( name ) ) {
+              return i;
+           }
+        }
+     }
+     return -1;
+  }
+  
+  /** 
+   * evaluates the operation determined by the operation code 
+   * and the operands x[0], x[1], ..., where the operands are 
+   * in reverse order as in {@link #evaluate(double[], String)}.
+   * An unknown operation code yields 0.
+   */
+  private static double operate(int code, double[] x) {
      double y = 0.0;
 
-     if (op.equals("+")) {
-        y = (x[1] + x[0]);
-     } else if (op.equals("-")) {
-        y = x[1] - x[0];
-     } else if (op.equals("*")) {
-        y = (x[1] * x[0]);
-     } else if (op.equals("/")) {
-        if ( x[0] != 0 && x[1] != 0 )
-           y = (x[1] / x[0]);
-        else if ( x[0] == 0 && x[1] == 0 )   
-           y = 1;
-        else if ( x[1] > 0 )
-           y = Double.POSITIVE_INFINITY;
-        else 
-           y = Double.NEGATIVE_INFINITY;
-     } else if (op.equals("%")) {
-        x[0] = (int) x[0];
-        x[1] = (int) x[1];
-        y = (x[1] % x[0]);
-     } else if (op.equals("mod")) {
-        x[0] = (int) x[0];
-        x[1] = (int) x[1];
-        if ( x[0] == 0 )
-           y = Double.POSITIVE_INFINITY; //??
-        else {
-           if ( x[0] < 0 )
-              x[0] = -x[0];
-           if ( x[1] >= 0 )
-              y = x[1] % x[0];
-           else if ( x[1] < 0 )
-              y = x[0] + x[1] % x[0];
-        }
-     } else if (op.equals("^") || op.equals("pow")) {
-        y = pow(x[1], x[0]);
-     } else if (op.equals("sin")) {
-        y = sin(x[0]);
-     } else if (op.equals("cos")) {
-        y = cos(x[0]);
-     } else if (op.equals("tan")) {
-        y = tan(x[0]);
-     } else if (op.equals("cot")) {
-        y = 1/tan(x[0]);
-     } else if (op.equals("sec")) {
-        y = 1/cos(x[0]);
-     } else if (op.equals("csc")) {
-        y = 1/sin(x[0]);
-     } else if (op.equals("asin")) {
-        y = asin(x[0]);
-     } else if (op.equals("acos")) {
-        y = acos(x[0]);
-     } else if (op.equals("atan")) {
-        y = atan(x[0]);
-     } else if (op.equals("acot")) {
-        y = atan(1/x[0]);
-     } else if (op.equals("sinh")) {
-        y = ( exp(x[0]) - exp(-x[0]) ) / 2;
-     } else if (op.equals("cosh")) {
-        y = ( exp(x[0]) + exp(-x[0]) ) / 2;
-     } else if (op.equals("tanh")) {
-        y = ( exp(x[0]) - exp(-x[0]) ) / ( exp(x[0]) + exp(-x[0]) );
-     } else if (op.equals("coth")) {
-        y = ( exp(x[0]) + exp(-x[0]) ) / ( exp(x[0]) - exp(-x[0]) );
-     } else if (op.equals("arsinh")) {
-        y = log( x[0] + sqrt( x[0]*x[0] + 1 ) );
-     } else if (op.equals("arcosh")) {
-        y = log( x[0] + sqrt( x[0]*x[0] - 1 ) );
-     } else if (op.equals("artanh")) {
-        y = log( (1 + x[0]) / (1 - x[0]) ) / 2;
-     } else if (op.equals("arcoth")) {
-        y = log( (x[0] + 1) / (x[0] - 1) ) / 2;
-     } else if (op.equals("exp")) {
-        y = exp(x[0]);
-     } else if (op.equals("ln")) {
-        y = log(x[0]);
-     } else if (op.equals("log")) {
-        y = log(x[0]) / log(10);
-     } else if (op.equals("ld")) {
-        y = log(x[0]) / log(2);
-     } else if ( op.equals("w") || op.equals("sqrt") ) {
-        y = sqrt(x[0]);
-     } else if ( op.equals("Z") ) {
-        y = Riemann.Z(x[0]);
-     } else if ( op.equals("and") || op.equals("&&") || op.equals("&") ) {
-        y = x[1] * x[0];
-     } else if ( op.equals("or") || op.equals("|") ) {
-        y = x[1] >= x[0] ? x[1] : x[0];
-     } else if ( op.equals("xor") ) {
-        y = (x[1] + x[0]) % 2;
-     } else if ( op.equals("if") ) {
-        y = x[2] == 1 ? x[1] : x[0];
-     } else if ( op.equals("modPow") ) {
-        y = modPow( round(x[2]), round(x[1]), round(x[0]) );
-     } else if (op.equals("<")) {
-        if ( x[1] < x[0] )
-           y = 1; // true
-        else 
-           y = 0; // false
-     } else if (op.equals("<=")) {
-        if ( x[1] <= x[0] )
-           y = 1; // true
-        else 
-           y = 0; // false
-     } else if (op.equals(">")) {
-        if ( x[1] > x[0] )
-           y = 1; // true
-        else 
-           y = 0; // false
-     } else if (op.equals(">=")) {
-        if ( x[1] <= x[0] )
-           y = 1; // true
-        else 
-           y = 0; // false
-     } else if (op.equals("==") || op.equals("=") ) {
-        if ( x[1] == x[0] )
-           y = 1; // true
-        else 
-           y = 0; // false
+     switch ( code ) {
+        case 0: // +
+           y = (x[1] + x[0]);
+           break;
+        case 1: // -
+           y = x[1] - x[0];
+           break;
+        case 2: // *
+           y = (x[1] * x[0]);
+           break;
+        case 3: // /
+           if ( x[0] != 0 && x[1] != 0 )
+              y = (x[1] / x[0]);
+           else if ( x[0] == 0 && x[1] == 0 )   
+              y = 1;
+           else if ( x[1] > 0 )
+              y = Double.POSITIVE_INFINITY;
+           else 
+              y = Double.NEGATIVE_INFINITY;
+           break;
+        case 4: // %
+           x[0] = (int) x[0];
+           x[1] = (int) x[1];
+           y = (x[1] % x[0]);
+           break;
+        case 5: // mod
+           x[0] = (int) x[0];
+           x[1] = (int) x[1];
+           if ( x[0] == 0 )
+              y = Double.POSITIVE_INFINITY; //??
+           else {
+              if ( x[0] < 0 )
+                 x[0] = -x[0];
+              if ( x[1] >= 0 )
+                 y = x[1] % x[0];
+              else if ( x[1] < 0 )
+                 y = x[0] + x[1] % x[0];
+           }
+           break;
+        case 6: // ^, pow
+           y = pow(x[1], x[0]);
+           break;
+        case 7: // sin
+           y = sin(x[0]);
+           break;
+        case 8: // cos
+           y = cos(x[0]);
+           break;
+        case 9: // tan
+           y = tan(x[0]);
+           break;
+        case 10: // cot
+           y = 1/tan(x[0]);
+           break;
+        case 11: // sec
+           y = 1/cos(x[0]);
+           break;
+        case 12: // csc
+           y = 1/sin(x[0]);
+           break;
+        case 13: // asin
+           y = asin(x[0]);
+           break;
+        case 14: // acos
+           y = acos(x[0]);
+           break;
+        case 15: // atan
+           y = atan(x[0]);
+           break;
+        case 16: // acot
+           y = atan(1/x[0]);
+           break;
+        case 17: // sinh
+           y = ( exp(x[0]) - exp(-x[0]) ) / 2;
+           break;
+        case 18: // cosh
+           y = ( exp(x[0]) + exp(-x[0]) ) / 2;
+           break;
+        case 19: // tanh
+           y = ( exp(x[0]) - exp(-x[0]) ) / ( exp(x[0]) + exp(-x[0]) );
+           break;
+        case 20: // coth
+           y = ( exp(x[0]) + exp(-x[0]) ) / ( exp(x[0]) - exp(-x[0]) );
+           break;
+        case 21: // arsinh
+           y = log( x[0] + sqrt( x[0]*x[0] + 1 ) );
+           break;
+        case 22: // arcosh
+           y = log( x[0] + sqrt( x[0]*x[0] - 1 ) );
+           break;
+        case 23: // artanh
+           y = log( (1 + x[0]) / (1 - x[0]) ) / 2;
+           break;
+        case 24: // arcoth
+           y = log( (x[0] + 1) / (x[0] - 1) ) / 2;
+           break;
+        case 25: // exp
+           y = exp(x[0]);
+           break;
+        case 26: // ln
+           y = log(x[0]);
+           break;
+        case 27: // log
+           y = log(x[0]) / log(10);
+           break;
+        case 28: // ld
+           y = log(x[0]) / log(2);
+           break;
+        case 29: // w, sqrt
+           y = sqrt(x[0]);
+           break;
+        case 30: // Z
+           y = Riemann.Z(x[0]);
+           break;
+        case 31: // and, &&, &
+           y = x[1] * x[0];
+           break;
+        case 32: // or, |
+           y = x[1] >= x[0] ? x[1] : x[0];
+           break;
+        case 33: // xor
+           y = (x[1] + x[0]) % 2;
+           break;
+        case 34: // if
+           y = x[2] == 1 ? x[1] : x[0];
+           break;
+        case 35: // modPow
+           y = modPow( round(x[2]), round(x[1]), round(x[0]) );
+           break;
+        case 36: // <
+           if ( x[1] < x[0] )
+              y = 1; // true
+           else 
+              y = 0; // false
+           break;
+        case 37: // <=
+           if ( x[1] <= x[0] )
+              y = 1; // true
+           else 
+              y = 0; // false
+           break;
+        case 38: // >
+           if ( x[1] > x[0] )
+              y = 1; // true
+           else 
+              y = 0; // false
+           break;
+        case 39: // >=
+           if ( x[1] <= x[0] )
+              y = 1; // true
+           else 
+              y = 0; // false
+           break;
+        case 40: // ==, =
+           if ( x[1] == x[0] )
+              y = 1; // true
+           else 
+              y = 0; // false
+           break;
+        default:
+           break;
      }
-//System.out.println(" => " + erg);
-     return Double.toString( y );
+     return y;
   }
   
   /** For test purposes...*/
@@ -982,4 +1122,90 @@ public class FunctionParser implements java.io.Serializable {
      System.out.println("Running time for checking: " + (System.currentTimeMillis() - startTime)/1000.0 + " sec" );
   }
   // */
+
+   /** A function <i>f</i>(<i>x</i>, <i>z</i>) compiled from its postfix notation
+    *  into a sequence of operation codes working on a stack of numbers.
+    */
+   private static final class CompiledFunction implements IntBinaryOperator {
+      /** The code pushing a constant.*/
+      private static final int CONSTANT = -2;
+      /** The code pushing the variable <i>x</i>.*/
+      private static final int X = -3;
+      /** The code pushing the variable <i>z</i>.*/
+      private static final int Z = -4;
+      /** The operation codes of {@link #operate(int, double[])}, or the push codes.*/
+      private final int[] code;
+      /** The numbers of operands of the operations.*/
+      private final int[] arity;
+      /** The constants pushed by the code {@link #CONSTANT}.*/
+      private final double[] constant;
+      /** The maximum size of the stack.*/
+      private final int depth;
+
+      /** Compiles the function in postfix notation; null yields the constant NaN.*/
+      CompiledFunction(String[] postfix) {
+         if ( postfix == null ) {
+            postfix = new String[] {"NaN"};
+         }
+         code = new int[postfix.length];
+         arity = new int[postfix.length];
+         constant = new double[postfix.length];
+         int size = 0, max = 0;
+         for ( int i = 0; i < postfix.length; i++ ) {
+            if ( isNumber(postfix[i]) ) {
+               if ( postfix[i].equals("x") ) {
+                  code[i] = X;
+               } else if ( postfix[i].equals("z") ) {
+                  code[i] = Z;
+               } else {
+                  code[i] = CONSTANT;
+                  constant[i] = postfix[i].equals("y") ? Double.NaN : Double.parseDouble(postfix[i]);
+               }
+            } else {
+               code[i] = opcode(postfix[i]);
+               for ( int k = 1; k < operator.length && arity[i] == 0; k++ ) {
+                  if ( isOperator(k, postfix[i]) ) {
+                     arity[i] = k;
+                  }
+               }
+               if ( arity[i] > size ) {
+                  throw new IllegalArgumentException("Operands of " + postfix[i] + " missing");
+               }
+               size -= arity[i];
+            }
+            size++;
+            max = max(max, size);
+         }
+         if ( size == 0 ) {
+            throw new IllegalArgumentException("Empty function");
+         }
+         depth = max;
+      }
+
+      @Override
+      public int applyAsInt(int x, int z) {
+         double[] stack = new double[depth];
+         double[] operands = new double[operator.length - 1];
+         int top = 0;
+         for ( int i = 0; i < code.length; i++ ) {
+            switch ( code[i] ) {
+               case CONSTANT:
+                  stack[top++] = constant[i];
+                  break;
+               case X:
+                  stack[top++] = x;
+                  break;
+               case Z:
+                  stack[top++] = z;
+                  break;
+               default:
+                  for ( int j = 0; j < arity[i]; j++ ) {
+                     operands[j] = stack[--top];
+                  }
+                  stack[top++] = operate(code[i], operands);
+            }
+         }
+         return (int) stack[top - 1];
+      }
+   }
 }